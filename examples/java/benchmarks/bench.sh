@@ -0,0 +1,52 @@
+#!/usr/bin/env bash
+# JMH benchmarks for the TWiT API client
+#
+#   ./bench.sh run [regex] [jmh args...]   build, run with the GC profiler, save results/latest.json
+#   ./bench.sh baseline                    keep results/latest.json as baselines/baseline.json
+#   ./bench.sh compare [baseline.json]     compare results/latest.json with the baseline
+#
+# Example: ./bench.sh run DecodeBenchmark && ./bench.sh baseline
+#          (change the client) ./bench.sh run DecodeBenchmark && ./bench.sh compare
+set -euo pipefail
+
+cd "$(dirname "$0")"
+JAR=target/benchmarks.jar
+
+build() {
+    mvn -q -f ../pom.xml install -DskipTests
+    mvn -q package
+}
+
+case "${1:-run}" in
+    run)
+        shift || true
+        regex="${1:-.*}"
+        shift || true
+        build
+        mkdir -p results
+        java -jar "$JAR" "$regex" -prof gc -rf json -rff results/latest.json "$@"
+        cp results/latest.json "results/$(date +%Y%m%d-%H%M%S).json"
+        ;;
+    baseline)
+        if [ ! -f results/latest.json ]; then
+            echo "No results/latest.json, run ./bench.sh run first" >&2
+            exit 1
+        fi
+        mkdir -p baselines
+        cp results/latest.json baselines/baseline.json
+        echo "Saved baselines/baseline.json"
+        ;;
+    compare)
+        baseline="${2:-baselines/baseline.json}"
+        if [ ! -f "$baseline" ] || [ ! -f results/latest.json ]; then
+            echo "Need $baseline and results/latest.json" >&2
+            exit 1
+        fi
+        [ -f "$JAR" ] || build
+        java -cp "$JAR" tv.twit.api.BaselineComparison "$baseline" results/latest.json
+        ;;
+    *)
+        sed -n '2,9p' "$0"
+        exit 1
+        ;;
+esac
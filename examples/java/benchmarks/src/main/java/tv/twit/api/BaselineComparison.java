@@ -0,0 +1,95 @@
+package tv.twit.api;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Baseline Comparison
+ * Compares two JMH JSON result files (-rf json) benchmark by benchmark: score and normalized
+ * allocation (gc.alloc.rate.norm, from -prof gc), with the change relative to the baseline.
+ *
+ * Usage: BaselineComparison baseline.json current.json
+ */
+public class BaselineComparison {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: BaselineComparison baseline.json current.json");
+            System.exit(2);
+        }
+        Map<String, JSONObject> baseline = load(args[0]);
+        Map<String, JSONObject> current = load(args[1]);
+
+        System.out.printf("%-70s %14s %14s %8s %14s %14s %8s%n",
+                "benchmark", "base score", "score", "change", "base B/op", "B/op", "change");
+        for (Map.Entry<String, JSONObject> entry : current.entrySet()) {
+            JSONObject now = entry.getValue();
+            JSONObject before = baseline.get(entry.getKey());
+            double score = now.getJSONObject("primaryMetric").getDouble("score");
+            double alloc = allocation(now);
+            if (before == null) {
+                System.out.printf("%-70s %14s %14.3f %8s %14s %14.0f %8s%n", entry.getKey(), "-", score, "new", "-", alloc, "");
+                continue;
+            }
+            double baseScore = before.getJSONObject("primaryMetric").getDouble("score");
+            double baseAlloc = allocation(before);
+            System.out.printf("%-70s %14.3f %14.3f %8s %14.0f %14.0f %8s%n", entry.getKey(),
+                    baseScore, score, change(baseScore, score), baseAlloc, alloc, change(baseAlloc, alloc));
+        }
+        System.out.println("Scores are in each benchmark's own unit (" + unitsOf(current) + ")");
+    }
+
+    private static Map<String, JSONObject> load(String file) throws IOException {
+        JSONArray results = new JSONArray(new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8));
+        Map<String, JSONObject> byName = new LinkedHashMap<>();
+        for (int i = 0; i < results.length(); i++) {
+            JSONObject result = results.getJSONObject(i);
+            byName.put(nameOf(result), result);
+        }
+        return byName;
+    }
+
+    /**
+     * Benchmark method name plus its parameters and thread count, e.g. DecodeBenchmark.typedModels[resource=/shows]
+     */
+    private static String nameOf(JSONObject result) {
+        String benchmark = result.getString("benchmark");
+        StringBuilder name = new StringBuilder(benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1));
+        JSONObject params = result.optJSONObject("params");
+        if (params != null) {
+            name.append(params.keySet().stream().sorted().map(key -> key + "=" + params.get(key))
+                    .reduce((a, b) -> a + "," + b).map(p -> "[" + p + "]").orElse(""));
+        }
+        if (result.optInt("threads", 1) > 1) {
+            name.append(" x").append(result.getInt("threads"));
+        }
+        return name.toString();
+    }
+
+    private static double allocation(JSONObject result) {
+        JSONObject secondary = result.optJSONObject("secondaryMetrics");
+        if (secondary == null || !secondary.has("gc.alloc.rate.norm")) {
+            return Double.NaN;
+        }
+        return secondary.getJSONObject("gc.alloc.rate.norm").getDouble("score");
+    }
+
+    private static String change(double before, double after) {
+        if (Double.isNaN(before) || Double.isNaN(after) || before == 0) {
+            return "";
+        }
+        return String.format("%+.1f%%", (after - before) / before * 100);
+    }
+
+    private static String unitsOf(Map<String, JSONObject> results) {
+        return results.values().stream().map(r -> r.getJSONObject("primaryMetric").getString("scoreUnit"))
+                .distinct().reduce((a, b) -> a + ", " + b).orElse("");
+    }
+}
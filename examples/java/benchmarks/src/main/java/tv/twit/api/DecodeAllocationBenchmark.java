@@ -0,0 +1,88 @@
+package tv.twit.api;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.util.EntityUtils;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import tv.twit.api.bench.ApibSamples;
+import tv.twit.api.bench.StubServer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetching a large /episodes page from an in-process stub server, with and without gzip: the old
+ * String-buffered decode (EntityUtils.toString + new JSONObject(String)) against TwitApiClient's
+ * streaming decode. Compare the gc.alloc.rate.norm of the two.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DecodeAllocationBenchmark {
+
+    @Param({"true", "false"})
+    public boolean compression;
+
+    @Param({"50"})
+    public int episodesPerPage;
+
+    private StubServer server;
+    private CloseableHttpClient legacyClient;
+    private TwitApiClient client;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String page = ApibSamples.enlargePage(ApibSamples.load().get("/episodes"), "episodes", episodesPerPage);
+        server = new StubServer(page, 0, 4);
+        HttpClientBuilder legacy = HttpClientBuilder.create();
+        if (!compression) {
+            legacy.disableContentCompression();
+        }
+        legacyClient = legacy.build();
+        client = TwitApiClient.builder()
+                .appId("bench").appKey("bench").baseUrl(server.getBaseUrl())
+                .transport(TransportConfig.builder().compression(compression).build())
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        client.close();
+        legacyClient.close();
+        server.close();
+    }
+
+    @Benchmark
+    public JSONObject stringDecode() throws IOException {
+        HttpGet request = new HttpGet(server.getBaseUrl() + "/episodes");
+        request.setHeader("Accept", "application/json");
+        try (CloseableHttpResponse response = legacyClient.execute(request)) {
+            HttpEntity entity = response.getEntity();
+            return new JSONObject(entity != null ? EntityUtils.toString(entity) : "");
+        }
+    }
+
+    @Benchmark
+    public JSONObject streamingDecode() {
+        return client.getEpisodes();
+    }
+}
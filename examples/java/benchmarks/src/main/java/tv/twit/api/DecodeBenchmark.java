@@ -0,0 +1,65 @@
+package tv.twit.api;
+
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tv.twit.api.bench.ApibSamples;
+import tv.twit.api.model.ModelDecoder;
+import tv.twit.api.model.Page;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of the /shows and /episodes sample responses from documentation/twittv.apib:
+ * org.json from a String (the original client), org.json from a stream (the current client)
+ * and the typed streaming models
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DecodeBenchmark {
+
+    @Param({"/shows", "/episodes"})
+    public String resource;
+
+    private String text;
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        text = ApibSamples.load().get(resource);
+        bytes = text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public JSONObject orgJsonString() {
+        return new JSONObject(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public JSONObject orgJsonStream() {
+        return new JSONObject(new JSONTokener(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public Page<?> typedModels() throws IOException {
+        return "/shows".equals(resource) ? ModelDecoder.shows(bytes) : ModelDecoder.episodes(bytes);
+    }
+}
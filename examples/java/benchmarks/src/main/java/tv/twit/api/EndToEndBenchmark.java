@@ -0,0 +1,73 @@
+package tv.twit.api;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import tv.twit.api.bench.ApibSamples;
+import tv.twit.api.bench.StubServer;
+import tv.twit.api.model.Episode;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request latency through TwitApiClient against an in-process stub server that serves the
+ * /episodes/{id} sample, with and without gzip, single-threaded and with 8 concurrent callers
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EndToEndBenchmark {
+
+    @Param({"true", "false"})
+    public boolean compression;
+
+    private StubServer server;
+    private TwitApiClient client;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new StubServer(ApibSamples.load().get("/episodes/{id}"), 0, 8);
+        client = TwitApiClient.builder()
+                .appId("bench").appKey("bench").baseUrl(server.getBaseUrl())
+                .transport(TransportConfig.builder().compression(compression).build())
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public JSONObject getEpisode() {
+        return client.getEpisode("52940");
+    }
+
+    @Benchmark
+    public Episode loadEpisodeTyped() {
+        return client.loadEpisode("52940");
+    }
+
+    @Benchmark
+    @Threads(8)
+    public JSONObject getEpisodeConcurrent() {
+        return client.getEpisode("52940");
+    }
+}
@@ -0,0 +1,106 @@
+package tv.twit.api;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import tv.twit.api.bench.StubServer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to fetch a batch of episodes by ID against an in-process stub server with a fixed latency,
+ * on a platform thread pool, a virtual thread per call (platform threads before JDK 21) and the async client
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FanOutBenchmark {
+
+    private static final String EPISODE = "{\"episodes\":{\"id\":\"52940\",\"label\":\"Sunday May 31, 2015\"}}";
+
+    @Param({"platform", "virtual", "async"})
+    public String engine;
+
+    @Param({"500"})
+    public int batchSize;
+
+    @Param({"100"})
+    public int maxConcurrency;
+
+    @Param({"20"})
+    public long serverLatencyMillis;
+
+    private StubServer server;
+    private TwitApiClient client;
+    private TwitApiAsyncClient asyncClient;
+    private List<String> ids;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new StubServer(EPISODE, serverLatencyMillis, maxConcurrency * 2);
+        ids = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            ids.add(String.valueOf(50000 + i));
+        }
+        if ("async".equals(engine)) {
+            asyncClient = TwitApiAsyncClient.builder()
+                    .appId("bench").appKey("bench").baseUrl(server.getBaseUrl())
+                    .maxInFlight(maxConcurrency).build();
+        } else {
+            client = TwitApiClient.builder()
+                    .appId("bench").appKey("bench").baseUrl(server.getBaseUrl())
+                    .transport(TransportConfig.builder()
+                            .maxTotalConnections(maxConcurrency)
+                            .maxConnectionsPerRoute(maxConcurrency)
+                            .build())
+                    .bulk("virtual".equals(engine) ? BulkExecutor.Mode.VIRTUAL : BulkExecutor.Mode.PLATFORM,
+                            maxConcurrency)
+                    .build();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (client != null) {
+            client.close();
+        }
+        if (asyncClient != null) {
+            asyncClient.close();
+        }
+        server.close();
+    }
+
+    @Benchmark
+    public List<JSONObject> fetchBatch() {
+        if (asyncClient == null) {
+            return client.fetchEpisodes(ids);
+        }
+        List<CompletableFuture<JSONObject>> futures = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            futures.add(asyncClient.getEpisode(id));
+        }
+        List<JSONObject> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<JSONObject> future : futures) {
+            results.add(future.join());
+        }
+        return results;
+    }
+}
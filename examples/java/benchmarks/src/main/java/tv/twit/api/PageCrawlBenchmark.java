@@ -0,0 +1,78 @@
+package tv.twit.api;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import tv.twit.api.bench.ApibSamples;
+import tv.twit.api.bench.CatalogStub;
+import tv.twit.api.bench.StubServer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Walking a synthetic catalog on an in-process stub server with a fixed latency per page: sequentially
+ * with the lazy iterator (window 1) and with the parallel page fetcher at increasing window sizes
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PageCrawlBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int window;
+
+    @Param({"people"})
+    public String resource;
+
+    @Param({"1000"})
+    public int items;
+
+    @Param({"50"})
+    public int pageSize;
+
+    @Param({"20"})
+    public long serverLatencyMillis;
+
+    private StubServer server;
+    private TwitApiClient client;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        CatalogStub catalog = new CatalogStub(ApibSamples.load(), serverLatencyMillis).size(resource, items);
+        server = new StubServer(catalog, 32);
+        client = TwitApiClient.builder()
+                .appId("bench").appKey("bench").baseUrl(server.getBaseUrl())
+                .transport(TransportConfig.builder().maxConnectionsPerRoute(32).build())
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public long crawl() {
+        ResourceQuery query = client.query("/" + resource).pageSize(pageSize);
+        long count = window == 1 ? query.stream().count() : query.parallel(window).forEach(item -> { });
+        if (count != items) {
+            throw new IllegalStateException("Crawled " + count + " of " + items + " " + resource);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,152 @@
+package tv.twit.api;
+
+import org.apache.http.Header;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.message.BasicHeader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * URL and cache key construction for a typical filtered, paged list request.
+ * The request* benchmarks compare building a whole HttpGet the way makeRequest used to (URLEncoder,
+ * TreeMap cache key, URI parsing, headers set one by one) with UrlTemplate and shared default headers;
+ * run with -prof gc to compare allocation per request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UrlBuildBenchmark {
+
+    private static final String BASE_URL = "https://twit.tv/api/v1.0";
+
+    private Map<String, String> noParams;
+    private Map<String, String> listParams;
+    private UrlTemplate template;
+    private Header[] defaultHeaders;
+
+    @Setup
+    public void setUp() {
+        noParams = new LinkedHashMap<>();
+        listParams = new LinkedHashMap<>();
+        listParams.put("filter[shows]", "1635");
+        listParams.put("filter[airingDate][value]", "2015-05-01");
+        listParams.put("filter[airingDate][operator]", ">=");
+        listParams.put("range", "50");
+        listParams.put("page", "3");
+        listParams.put("sort", "-airingDate");
+        template = new UrlTemplate(BASE_URL);
+        defaultHeaders = new Header[]{
+                new BasicHeader("Accept", "application/json"),
+                new BasicHeader("app-id", "bench"),
+                new BasicHeader("app-key", "bench")
+        };
+    }
+
+    @Benchmark
+    public String buildUrlNoParams() {
+        return UrlTemplate.url(BASE_URL, "/episodes/52940", noParams);
+    }
+
+    @Benchmark
+    public String buildUrlListParams() {
+        return UrlTemplate.url(BASE_URL, "/episodes", listParams);
+    }
+
+    @Benchmark
+    public String cacheKeyListParams() {
+        return ResponseCacheLayer.key("/episodes", listParams);
+    }
+
+    @Benchmark
+    public HttpGet requestLegacyNoParams() throws URISyntaxException {
+        return legacyRequest("/episodes/52940", noParams);
+    }
+
+    @Benchmark
+    public HttpGet requestTemplateNoParams() throws URISyntaxException {
+        return templateRequest("/episodes/52940", noParams);
+    }
+
+    @Benchmark
+    public HttpGet requestLegacyListParams() throws URISyntaxException {
+        return legacyRequest("/episodes", listParams);
+    }
+
+    @Benchmark
+    public HttpGet requestTemplateListParams() throws URISyntaxException {
+        return templateRequest("/episodes", listParams);
+    }
+
+    private HttpGet templateRequest(String endpoint, Map<String, String> params) throws URISyntaxException {
+        ResponseCacheLayer.key(endpoint, params);
+        HttpGet request = new HttpGet(template.uri(endpoint, params));
+        request.setHeaders(defaultHeaders);
+        return request;
+    }
+
+    private static HttpGet legacyRequest(String endpoint, Map<String, String> params) throws URISyntaxException {
+        legacyKey(endpoint, params);
+        StringBuilder url = new StringBuilder(BASE_URL + endpoint);
+        if (!params.isEmpty()) {
+            url.append("?");
+            boolean first = true;
+            for (Map.Entry<String, String> entry : params.entrySet()) {
+                if (!first) {
+                    url.append("&");
+                }
+                url.append(legacyEncode(entry.getKey())).append("=").append(legacyEncode(entry.getValue()));
+                first = false;
+            }
+        }
+        HttpGet request = new HttpGet();
+        request.setURI(new URI(url.toString()));
+        request.setHeader("Accept", "application/json");
+        request.setHeader("app-id", "bench");
+        request.setHeader("app-key", "bench");
+        return request;
+    }
+
+    private static String legacyKey(String endpoint, Map<String, String> params) {
+        if (params.isEmpty()) {
+            return endpoint;
+        }
+        StringBuilder key = new StringBuilder(endpoint).append('?');
+        boolean first = true;
+        for (Map.Entry<String, String> entry : new TreeMap<>(params).entrySet()) {
+            if (!first) {
+                key.append('&');
+            }
+            key.append(entry.getKey()).append('=').append(entry.getValue());
+            first = false;
+        }
+        return key.toString();
+    }
+
+    private static String legacyEncode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package tv.twit.api;
+
+import org.json.JSONObject;
+
+/**
+ * A decoded API response together with the transport details the caching layer needs
+ */
+final class ApiResponse {
+    final int statusCode;
+    final JSONObject json;
+    // Decoded body bytes; 0 for a parsed body when neither a listener nor a cache needs the size
+    final int bodySize;
+    final String etag;
+    final String lastModified;
+    final byte[] raw;
+
+    ApiResponse(int statusCode, JSONObject json, int bodySize) {
+        this(statusCode, json, bodySize, null, null);
+    }
+
+    ApiResponse(int statusCode, JSONObject json, int bodySize, String etag, String lastModified) {
+        this(statusCode, json, bodySize, etag, lastModified, null);
+    }
+
+    private ApiResponse(int statusCode, JSONObject json, int bodySize, String etag, String lastModified, byte[] raw) {
+        this.statusCode = statusCode;
+        this.json = json;
+        this.bodySize = bodySize;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.raw = raw;
+    }
+
+    /**
+     * Successful response whose undecoded body is handed to the typed model decoder
+     */
+    static ApiResponse raw(byte[] body, String etag, String lastModified) {
+        return new ApiResponse(200, null, body.length, etag, lastModified, body);
+    }
+
+    /**
+     * Response for a request that failed before the server answered
+     */
+    static ApiResponse failed(JSONObject error) {
+        return new ApiResponse(0, error, 0);
+    }
+
+    boolean isSuccess() {
+        return statusCode == 200;
+    }
+
+    /**
+     * The server confirmed that the cached copy sent validators for is still current (304)
+     */
+    boolean isNotModified() {
+        return statusCode == 304;
+    }
+}
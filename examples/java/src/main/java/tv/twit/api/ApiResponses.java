@@ -0,0 +1,106 @@
+package tv.twit.api;
+
+import org.json.JSONObject;
+
+import java.util.logging.Logger;
+
+/**
+ * Shared request/response handling for the blocking and asynchronous clients
+ */
+final class ApiResponses {
+
+    /**
+     * Error message returned when 3scale reports that the plan's usage limits are exceeded
+     */
+    static final String USAGE_LIMIT_ERROR = "API usage limits exceeded";
+
+    private ApiResponses() {
+    }
+
+    /**
+     * Turn a non-200 response into the error object returned to callers
+     *
+     * @param statusCode   The HTTP status code
+     * @param responseBody The response body
+     * @param endpoint     The endpoint that was requested
+     * @param logger       Logger to report the error to
+     * @return JSON error object with "error" and "code"
+     */
+    static JSONObject errorFor(int statusCode, String responseBody, String endpoint, Logger logger) {
+        if (statusCode == 401 || statusCode == 403) {
+            logger.severe("Authentication error: Check your app-id and app-key");
+            JSONObject error = new JSONObject();
+            error.put("error", "Authentication failed");
+            error.put("code", statusCode);
+            return error;
+        } else if (statusCode == 404) {
+            logger.severe("Resource not found: " + endpoint);
+            JSONObject error = new JSONObject();
+            error.put("error", "Resource not found. Check that the API endpoint is correct.");
+            error.put("code", statusCode);
+            return error;
+        } else if (statusCode == 500) {
+            if (responseBody.contains("usage limits are exceeded")) {
+                logger.severe(USAGE_LIMIT_ERROR);
+                JSONObject error = new JSONObject();
+                error.put("error", USAGE_LIMIT_ERROR);
+                error.put("code", statusCode);
+                return error;
+            } else {
+                logger.severe("Server error: " + responseBody);
+                JSONObject error = new JSONObject();
+                error.put("error", "Server error");
+                error.put("code", statusCode);
+                return error;
+            }
+        } else {
+            logger.severe("Unexpected response: " + statusCode + " - " + responseBody);
+            JSONObject error = new JSONObject();
+            error.put("error", "Unexpected response");
+            error.put("code", statusCode);
+            error.put("body", responseBody);
+            return error;
+        }
+    }
+
+    /**
+     * Error object for a request that failed before a response was received
+     *
+     * @param message The failure message
+     * @return JSON error object with "error"
+     */
+    static JSONObject failure(String message) {
+        JSONObject error = new JSONObject();
+        error.put("error", message);
+        return error;
+    }
+
+    /**
+     * Check whether an error object reports that usage limits are exceeded
+     *
+     * @param json The decoded response, may be null
+     * @return true for the usage-limit error
+     */
+    static boolean isUsageLimit(JSONObject json) {
+        return json != null && USAGE_LIMIT_ERROR.equals(json.optString("error", null));
+    }
+
+    /**
+     * Error object for a request rejected locally because the circuit breaker is open
+     *
+     * @param quota Whether the circuit opened because usage limits were exceeded
+     * @return JSON error object with "error", "code" and "circuitOpen"
+     */
+    static JSONObject circuitOpen(boolean quota) {
+        JSONObject error = new JSONObject();
+        if (quota) {
+            error.put("error", USAGE_LIMIT_ERROR);
+            error.put("code", 500);
+        } else {
+            error.put("error", "Service unavailable");
+            error.put("code", 503);
+        }
+        error.put("circuitOpen", true);
+        return error;
+    }
+}
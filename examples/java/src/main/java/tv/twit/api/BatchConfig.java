@@ -0,0 +1,103 @@
+package tv.twit.api;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Batching Configuration
+ * Controls how single-item lookups (getShow, getEpisode, getPerson, getCredit) are collected
+ * into list requests: how long to wait for more ids, how many ids go into one request and
+ * which resources are batched.
+ */
+public final class BatchConfig {
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final Set<String> resources;
+
+    private BatchConfig(Builder builder) {
+        this.windowMillis = builder.windowMillis;
+        this.maxBatchSize = builder.maxBatchSize;
+        this.resources = Collections.unmodifiableSet(new LinkedHashSet<>(builder.resources));
+    }
+
+    /**
+     * Defaults: 3ms window, up to 25 ids per request, shows, episodes, people and credits batched
+     *
+     * @return The default configuration
+     */
+    public static BatchConfig defaults() {
+        return builder().build();
+    }
+
+    /**
+     * Create a builder initialised with the default settings
+     *
+     * @return A new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * @return Resource names whose item lookups are batched, e.g. "shows"
+     */
+    public Set<String> getResources() {
+        return resources;
+    }
+
+    /**
+     * Builder for BatchConfig
+     */
+    public static final class Builder {
+        private long windowMillis = 3;
+        private int maxBatchSize = 25;
+        private Set<String> resources = new LinkedHashSet<>(Arrays.asList("shows", "episodes", "people", "credits"));
+
+        private Builder() {
+        }
+
+        /**
+         * @param windowMillis How long the first lookup waits for others to join its batch
+         */
+        public Builder windowMillis(long windowMillis) {
+            if (windowMillis < 0) {
+                throw new IllegalArgumentException("windowMillis must not be negative: " + windowMillis);
+            }
+            this.windowMillis = windowMillis;
+            return this;
+        }
+
+        /**
+         * @param maxBatchSize Ids per list request; a full batch is sent without waiting for the window
+         */
+        public Builder maxBatchSize(int maxBatchSize) {
+            if (maxBatchSize < 1) {
+                throw new IllegalArgumentException("maxBatchSize must be at least 1: " + maxBatchSize);
+            }
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * @param resources Resource names to batch, replacing the defaults
+         */
+        public Builder resources(String... resources) {
+            this.resources = new LinkedHashSet<>(Arrays.asList(resources));
+            return this;
+        }
+
+        public BatchConfig build() {
+            return new BatchConfig(this);
+        }
+    }
+}
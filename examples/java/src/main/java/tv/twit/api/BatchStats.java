@@ -0,0 +1,71 @@
+package tv.twit.api;
+
+/**
+ * Batching Statistics
+ * A snapshot of the item lookup batching counters of a TwitApiClient
+ */
+public final class BatchStats {
+    private final long lookups;
+    private final long deduplicated;
+    private final long batchRequests;
+    private final long batchedItems;
+    private final long fallbacks;
+
+    BatchStats(long lookups, long deduplicated, long batchRequests, long batchedItems, long fallbacks) {
+        this.lookups = lookups;
+        this.deduplicated = deduplicated;
+        this.batchRequests = batchRequests;
+        this.batchedItems = batchedItems;
+        this.fallbacks = fallbacks;
+    }
+
+    /**
+     * @return Item lookups made through the batching layer
+     */
+    public long getLookups() {
+        return lookups;
+    }
+
+    /**
+     * @return Lookups that joined an identical lookup already pending or in flight
+     */
+    public long getDeduplicated() {
+        return deduplicated;
+    }
+
+    /**
+     * @return List requests sent for several ids at once
+     */
+    public long getBatchRequests() {
+        return batchRequests;
+    }
+
+    /**
+     * @return Items resolved from batch responses
+     */
+    public long getBatchedItems() {
+        return batchedItems;
+    }
+
+    /**
+     * @return Items fetched with their own item request: single-id batches, or all ids of a batch whose
+     * list endpoint rejected or ignored the id filter
+     */
+    public long getFallbacks() {
+        return fallbacks;
+    }
+
+    /**
+     * @return Lookups per HTTP request made by the batching layer
+     */
+    public double getLookupsPerRequest() {
+        long requests = batchRequests + fallbacks;
+        return requests == 0 ? 0.0 : (double) lookups / requests;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BatchStats{lookups=%d, deduplicated=%d, batchRequests=%d, batchedItems=%d, fallbacks=%d, lookupsPerRequest=%.2f}",
+                lookups, deduplicated, batchRequests, batchedItems, fallbacks, getLookupsPerRequest());
+    }
+}
@@ -0,0 +1,216 @@
+package tv.twit.api;
+
+import java.io.Closeable;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Bulk Executor
+ * Runs batches of blocking calls concurrently and returns their results in input order.
+ * In VIRTUAL mode every call gets its own virtual thread (JDK 21+) and a semaphore shared by all
+ * batches caps how many run at once; in PLATFORM mode a fixed pool of platform threads is used.
+ * Either way the cap holds across concurrent batches. A batch started from inside one of the calls
+ * would wait for a slot its own batch holds, so it runs on the calling thread instead, one call at a time.
+ */
+public final class BulkExecutor implements Closeable {
+
+    /**
+     * Thread model used to run bulk calls
+     */
+    public enum Mode {
+        PLATFORM,
+        VIRTUAL
+    }
+
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadFactory();
+
+    private final Mode mode;
+    private final int maxConcurrency;
+    private final ExecutorService platformPool;
+    private final Semaphore permits;
+    private final ThreadLocal<Boolean> inCall = new ThreadLocal<>();
+
+    private BulkExecutor(Mode mode, int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+        }
+        if (mode == Mode.VIRTUAL && !isVirtualThreadsSupported()) {
+            Logger.getLogger(BulkExecutor.class.getName()).warning(
+                    "Virtual threads require JDK 21+, falling back to platform threads");
+            mode = Mode.PLATFORM;
+        }
+        this.mode = mode;
+        this.maxConcurrency = maxConcurrency;
+        this.platformPool = mode == Mode.PLATFORM
+                ? Executors.newFixedThreadPool(maxConcurrency, daemonThreads())
+                : null;
+        // The platform pool caps concurrency by its size; virtual threads are unbounded
+        this.permits = mode == Mode.VIRTUAL ? new Semaphore(maxConcurrency) : null;
+    }
+
+    /**
+     * Create an executor that runs each call on its own virtual thread
+     *
+     * @param maxConcurrency Maximum number of calls running at once
+     * @return A new executor (platform threads if the JVM has no virtual threads)
+     */
+    public static BulkExecutor virtualThreads(int maxConcurrency) {
+        return new BulkExecutor(Mode.VIRTUAL, maxConcurrency);
+    }
+
+    /**
+     * Create an executor backed by a fixed pool of platform threads
+     *
+     * @param threads Number of pool threads, which is also the concurrency cap
+     * @return A new executor
+     */
+    public static BulkExecutor platformThreads(int threads) {
+        return new BulkExecutor(Mode.PLATFORM, threads);
+    }
+
+    /**
+     * Check whether the running JVM supports virtual threads
+     *
+     * @return true on JDK 21 and later
+     */
+    public static boolean isVirtualThreadsSupported() {
+        return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+    }
+
+    private static Method findVirtualThreadFactory() {
+        try {
+            // Looked up reflectively so the client still compiles and runs on JDK 11
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "twit-api-bulk-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Apply a blocking call to every id concurrently
+     *
+     * @param ids   The ids to fetch
+     * @param fetch The blocking call to run for each id
+     * @param <T>   The result type
+     * @return Results in the same order as the ids
+     */
+    public <T> List<T> fetchAll(Collection<String> ids, Function<String, T> fetch) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (inCall.get() != null) {
+            List<T> results = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                results.add(fetch.apply(id));
+            }
+            return results;
+        }
+        if (mode == Mode.VIRTUAL) {
+            try (ExecutorCloser closer = new ExecutorCloser(newVirtualThreadExecutor())) {
+                return run(closer.executor, ids, fetch);
+            }
+        }
+        return run(platformPool, ids, fetch);
+    }
+
+    private <T> List<T> run(ExecutorService executor, Collection<String> ids, Function<String, T> fetch) {
+        List<Future<T>> futures = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            futures.add(permits == null ? executor.submit(() -> call(fetch, id)) : executor.submit(() -> {
+                permits.acquire();
+                try {
+                    return call(fetch, id);
+                } finally {
+                    permits.release();
+                }
+            }));
+        }
+
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Bulk fetch interrupted", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Bulk fetch failed", cause);
+        }
+        return results;
+    }
+
+    private <T> T call(Function<String, T> fetch, String id) {
+        inCall.set(Boolean.TRUE);
+        try {
+            return fetch.apply(id);
+        } finally {
+            inCall.remove();
+        }
+    }
+
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create virtual thread executor", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (platformPool != null) {
+            platformPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Shuts down a per-batch executor; ExecutorService is only AutoCloseable from JDK 19
+     */
+    private static final class ExecutorCloser implements AutoCloseable {
+        final ExecutorService executor;
+
+        ExecutorCloser(ExecutorService executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void close() {
+            executor.shutdownNow();
+        }
+    }
+}
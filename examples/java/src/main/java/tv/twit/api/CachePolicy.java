@@ -0,0 +1,105 @@
+package tv.twit.api;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cache Policy
+ * Time-to-live for cached responses per API resource (the first path segment of the endpoint).
+ * Live data such as /streams expires quickly; reference data such as /shows is kept for longer.
+ */
+public final class CachePolicy {
+    private final Map<String, Long> ttlByResource;
+    private final long defaultTtlMillis;
+
+    private CachePolicy(Builder builder) {
+        this.ttlByResource = new HashMap<>(builder.ttlByResource);
+        this.defaultTtlMillis = builder.defaultTtlMillis;
+    }
+
+    /**
+     * Default TTLs: 15 seconds for streams and livestreams, 1 hour for shows, roles and categories,
+     * 5 minutes for everything else
+     *
+     * @return The default policy
+     */
+    public static CachePolicy defaults() {
+        return builder().build();
+    }
+
+    /**
+     * Create a builder initialised with the default TTLs
+     *
+     * @return A new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the TTL for an endpoint
+     *
+     * @param endpoint The API endpoint, e.g. "/shows/1635"
+     * @return TTL in milliseconds, 0 if responses should not be cached
+     */
+    public long ttlMillis(String endpoint) {
+        Long ttl = ttlByResource.get(resourceOf(endpoint));
+        return ttl != null ? ttl : defaultTtlMillis;
+    }
+
+    /**
+     * Extract the resource name from an endpoint ("/shows/1635" becomes "shows")
+     */
+    static String resourceOf(String endpoint) {
+        int start = endpoint.startsWith("/") ? 1 : 0;
+        int end = endpoint.indexOf('/', start);
+        int query = endpoint.indexOf('?', start);
+        if (end < 0 || (query >= 0 && query < end)) {
+            end = query;
+        }
+        return end < 0 ? endpoint.substring(start) : endpoint.substring(start, end);
+    }
+
+    /**
+     * Builder for CachePolicy
+     */
+    public static final class Builder {
+        private final Map<String, Long> ttlByResource = new HashMap<>();
+        private long defaultTtlMillis = 5 * 60 * 1000L;
+
+        private Builder() {
+            ttl("streams", 15 * 1000L);
+            ttl("livestreams", 15 * 1000L);
+            ttl("shows", 60 * 60 * 1000L);
+            ttl("roles", 60 * 60 * 1000L);
+            ttl("categories", 60 * 60 * 1000L);
+        }
+
+        /**
+         * @param resource  Resource name without slashes, e.g. "episodes"
+         * @param ttlMillis TTL in milliseconds, 0 to disable caching for the resource
+         */
+        public Builder ttl(String resource, long ttlMillis) {
+            if (ttlMillis < 0) {
+                throw new IllegalArgumentException("TTL must not be negative: " + ttlMillis);
+            }
+            ttlByResource.put(resourceOf(resource), ttlMillis);
+            return this;
+        }
+
+        /**
+         * @param ttlMillis TTL for resources without an explicit setting
+         */
+        public Builder defaultTtl(long ttlMillis) {
+            if (ttlMillis < 0) {
+                throw new IllegalArgumentException("TTL must not be negative: " + ttlMillis);
+            }
+            this.defaultTtlMillis = ttlMillis;
+            return this;
+        }
+
+        public CachePolicy build() {
+            return new CachePolicy(this);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package tv.twit.api;
+
+/**
+ * Cache Statistics
+ * A snapshot of the response cache counters of a TwitApiClient
+ */
+public final class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long coalesced;
+    private final long revalidated;
+    private final long evictions;
+    private final int size;
+    private final long weight;
+
+    CacheStats(long hits, long misses, long coalesced, long revalidated, long evictions, int size, long weight) {
+        this.hits = hits;
+        this.misses = misses;
+        this.coalesced = coalesced;
+        this.revalidated = revalidated;
+        this.evictions = evictions;
+        this.size = size;
+        this.weight = weight;
+    }
+
+    /**
+     * @return Requests answered from a fresh cache entry
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return Requests that went to the API
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return Misses that waited for an identical request already in flight instead of calling the API
+     */
+    public long getCoalesced() {
+        return coalesced;
+    }
+
+    /**
+     * @return Misses answered by a 304 Not Modified, so the cached body was reused without a download
+     */
+    public long getRevalidated() {
+        return revalidated;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return Fraction of requests served without an API call of their own
+     */
+    public double getHitRatio() {
+        long total = hits + misses + coalesced;
+        return total == 0 ? 0.0 : (double) (hits + coalesced) / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CacheStats{hits=%d, misses=%d, coalesced=%d, revalidated=%d, evictions=%d, size=%d, weight=%d, hitRatio=%.3f}",
+                hits, misses, coalesced, revalidated, evictions, size, weight, getHitRatio());
+    }
+}
@@ -0,0 +1,89 @@
+package tv.twit.api;
+
+import org.json.JSONObject;
+
+/**
+ * Cached Response
+ * A successful API response held by a ResponseCache together with its expiry time and the
+ * ETag/Last-Modified validators used to revalidate it once stale.
+ * The JSON body is shared between callers and must be treated as read-only.
+ */
+public final class CachedResponse {
+    private final JSONObject body;
+    private final int weight;
+    private final long storedAtMillis;
+    private final long expiresAtMillis;
+    private final String etag;
+    private final String lastModified;
+
+    /**
+     * @param body            The parsed response body
+     * @param weight          Approximate size of the response in bytes, used for size-bounded eviction
+     * @param storedAtMillis  Time the response was received
+     * @param expiresAtMillis Time after which the response is stale
+     */
+    public CachedResponse(JSONObject body, int weight, long storedAtMillis, long expiresAtMillis) {
+        this(body, weight, storedAtMillis, expiresAtMillis, null, null);
+    }
+
+    /**
+     * @param body            The parsed response body
+     * @param weight          Approximate size of the response in bytes, used for size-bounded eviction
+     * @param storedAtMillis  Time the response was received
+     * @param expiresAtMillis Time after which the response is stale
+     * @param etag            The ETag response header, may be null
+     * @param lastModified    The Last-Modified response header, may be null
+     */
+    public CachedResponse(JSONObject body, int weight, long storedAtMillis, long expiresAtMillis,
+                          String etag, String lastModified) {
+        this.body = body;
+        this.weight = weight;
+        this.storedAtMillis = storedAtMillis;
+        this.expiresAtMillis = expiresAtMillis;
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    public JSONObject getBody() {
+        return body;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public long getStoredAtMillis() {
+        return storedAtMillis;
+    }
+
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Check whether the response can be revalidated with a conditional request
+     *
+     * @return true if an ETag or Last-Modified validator is known
+     */
+    public boolean hasValidators() {
+        return etag != null || lastModified != null;
+    }
+
+    /**
+     * Check whether the response can still be served without contacting the API
+     *
+     * @param nowMillis The current time
+     * @return true if the response has not expired
+     */
+    public boolean isFresh(long nowMillis) {
+        return nowMillis < expiresAtMillis;
+    }
+}
@@ -0,0 +1,387 @@
+package tv.twit.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+
+/**
+ * Catalog Export
+ * Writes whole TWiT API resources to files for analytics jobs: {@code <resource>.jsonl.gz} (gzip-compressed
+ * JSON Lines) and optionally {@code <resource>.col.gz}, a compact columnar format read with
+ * {@link ColumnarReader}. Pages are fetched in parallel through {@link ParallelPageFetcher} and streamed
+ * to the files in page order, so memory is bounded by the fetch window and the checkpoint interval
+ * rather than the catalog size. Pages are never decoded into JSON trees: JSON Lines items are copied
+ * from the response bodies as they are, and columns are read with a streaming parser. Pages bypass
+ * the response cache, but the client's rate limiter, retries and circuit breaker apply.
+ *
+ * Every few pages the files are checkpointed: the current gzip member is finished and forced to disk and
+ * the file lengths and last page are saved to {@code export.properties}. If an export is interrupted,
+ * the next run with the same settings truncates the files to the checkpoint and continues with the
+ * following page; the checkpoint is deleted once every resource is complete. Items added to the API
+ * while an export is interrupted can shift page boundaries, so a resumed export may repeat or miss items
+ * at the boundary; use {@link Builder#resume(boolean)} for an exact snapshot.
+ *
+ * <pre>
+ * ExportReport report = CatalogExport.builder(Paths.get("export"), client)
+ *         .resources("shows", "episodes")
+ *         .formats(CatalogExport.Format.JSON_LINES, CatalogExport.Format.COLUMNAR)
+ *         .run();
+ * </pre>
+ */
+public final class CatalogExport {
+    private static final Logger logger = Logger.getLogger(CatalogExport.class.getName());
+
+    /**
+     * Output file formats
+     */
+    public enum Format {
+        /**
+         * Gzip-compressed JSON Lines, one item per line exactly as the API returned it
+         */
+        JSON_LINES("jsonl.gz"),
+        /**
+         * Gzip-compressed columns of the items' top-level fields with dictionary-encoded strings
+         */
+        COLUMNAR("col.gz");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private final TwitApiClient client;
+    private final Path directory;
+    private final Path checkpointFile;
+    private final List<String> resources;
+    private final Set<Format> formats;
+    private final int pageSize;
+    private final int window;
+    private final int checkpointPages;
+    private final int compressionLevel;
+    private final boolean resume;
+    private final Properties checkpoint = new Properties();
+
+    private CatalogExport(Builder builder) {
+        this.client = builder.client;
+        this.directory = builder.directory;
+        this.checkpointFile = builder.directory.resolve("export.properties");
+        this.resources = new ArrayList<>(builder.resources);
+        this.formats = EnumSet.copyOf(builder.formats);
+        this.pageSize = builder.pageSize;
+        this.window = builder.window;
+        this.checkpointPages = builder.checkpointPages;
+        this.compressionLevel = builder.compressionLevel;
+        this.resume = builder.resume;
+    }
+
+    /**
+     * Create a builder for an export into a directory
+     *
+     * @param directory Where the files and the checkpoint are written; created if missing
+     * @param client    The client used to fetch pages; its rate limiter and retry policy apply
+     * @return A new builder
+     */
+    public static Builder builder(Path directory, TwitApiClient client) {
+        return new Builder(directory, client);
+    }
+
+    /**
+     * Get the file a resource is exported to
+     *
+     * @param resource The resource name, e.g. "episodes"
+     * @param format   The file format
+     * @return The file path in the export directory
+     */
+    public Path fileFor(String resource, Format format) {
+        return directory.resolve(resource + "." + format.getExtension());
+    }
+
+    /**
+     * Export every resource, resuming from the checkpoint if an earlier run was interrupted
+     *
+     * @return What was written
+     * @throws TwitApiException if a page request fails; the checkpoint is kept for the next run
+     */
+    public ExportReport run() throws IOException {
+        Files.createDirectories(directory);
+        loadCheckpoint();
+        ExportReport report = new ExportReport();
+        for (String resource : resources) {
+            report.add(export(resource));
+        }
+        Files.deleteIfExists(checkpointFile);
+        return report;
+    }
+
+    private ExportReport.ResourceResult export(String resource) throws IOException {
+        long start = System.currentTimeMillis();
+        int resumedAfter = Integer.parseInt(checkpoint.getProperty(resource + ".page", "0"));
+        long[] progress = {resumedAfter, Long.parseLong(checkpoint.getProperty(resource + ".items", "0")), 0};
+        if (Boolean.parseBoolean(checkpoint.getProperty(resource + ".complete"))) {
+            return new ExportReport.ResourceResult(resource, progress[1], 0, resumedAfter, bytesOf(resource),
+                    System.currentTimeMillis() - start);
+        }
+        if (resumedAfter > 0) {
+            logger.info("Resuming " + resource + " export after page " + resumedAfter);
+        }
+
+        Map<Format, ExportFile> files = new EnumMap<>(Format.class);
+        try {
+            for (Format format : formats) {
+                long length = Long.parseLong(checkpoint.getProperty(lengthKey(resource, format), "0"));
+                files.put(format, ExportFile.open(format, fileFor(resource, format), length, compressionLevel));
+            }
+            int[] checkpointed = {resumedAfter};
+            client.query("/" + resource).pageSize(pageSize).parallel(window)
+                    .forEachRawPage(resumedAfter + 1, (page, body) -> {
+                        for (ExportFile file : files.values()) {
+                            file.write(body);
+                        }
+                        progress[0] = page;
+                        progress[1] += body.size();
+                        progress[2] += body.size();
+                        if (page - checkpointed[0] >= checkpointPages) {
+                            checkpoint(resource, files, page, progress[1], false);
+                            checkpointed[0] = page;
+                        }
+                    });
+            checkpoint(resource, files, (int) progress[0], progress[1], true);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (ExportFile file : files.values()) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Error closing export file", e);
+                }
+            }
+        }
+        return new ExportReport.ResourceResult(resource, progress[1], progress[2], resumedAfter, bytesOf(resource),
+                System.currentTimeMillis() - start);
+    }
+
+    private void checkpoint(String resource, Map<Format, ExportFile> files, int page, long items, boolean complete)
+            throws IOException {
+        for (Map.Entry<Format, ExportFile> entry : files.entrySet()) {
+            checkpoint.setProperty(lengthKey(resource, entry.getKey()), String.valueOf(entry.getValue().checkpoint()));
+        }
+        checkpoint.setProperty(resource + ".page", String.valueOf(page));
+        checkpoint.setProperty(resource + ".items", String.valueOf(items));
+        if (complete) {
+            checkpoint.setProperty(resource + ".complete", "true");
+        }
+        Path tmp = checkpointFile.resolveSibling("export.properties.tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            checkpoint.store(out, "TWiT API catalog export checkpoint");
+        }
+        Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Load the checkpoint of an interrupted run, or start over if there is none, resuming is off
+     * or it was written with different settings
+     */
+    private void loadCheckpoint() throws IOException {
+        checkpoint.clear();
+        if (resume && Files.exists(checkpointFile)) {
+            try (InputStream in = Files.newInputStream(checkpointFile)) {
+                checkpoint.load(in);
+            }
+            if (!settings().equals(checkpoint.getProperty("settings"))) {
+                logger.warning("Export settings changed since the checkpoint was written, starting over");
+                checkpoint.clear();
+            }
+        }
+        checkpoint.setProperty("settings", settings());
+    }
+
+    private String settings() {
+        return "pageSize=" + pageSize + ",formats=" + formats;
+    }
+
+    private static String lengthKey(String resource, Format format) {
+        return resource + "." + format.getExtension() + ".length";
+    }
+
+    private long bytesOf(String resource) throws IOException {
+        long bytes = 0;
+        for (Format format : formats) {
+            Path file = fileFor(resource, format);
+            if (Files.exists(file)) {
+                bytes += Files.size(file);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Builder for CatalogExport
+     */
+    public static final class Builder {
+        private final Path directory;
+        private final TwitApiClient client;
+        private List<String> resources = Arrays.asList("shows", "episodes", "people", "credits", "categories", "topics");
+        private Set<Format> formats = EnumSet.of(Format.JSON_LINES);
+        private int pageSize = 100;
+        private int window = 4;
+        private int checkpointPages = 20;
+        private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+        private boolean resume = true;
+
+        private Builder(Path directory, TwitApiClient client) {
+            this.directory = directory;
+            this.client = client;
+        }
+
+        /**
+         * @param resources Resource names to export, replacing the defaults
+         */
+        public Builder resources(String... resources) {
+            this.resources = Arrays.asList(resources);
+            return this;
+        }
+
+        /**
+         * @param formats File formats to write for every resource; JSON Lines only by default
+         */
+        public Builder formats(Format... formats) {
+            if (formats.length == 0) {
+                throw new IllegalArgumentException("At least one format is required");
+            }
+            this.formats = EnumSet.copyOf(Arrays.asList(formats));
+            return this;
+        }
+
+        /**
+         * @param pageSize Items per page requested from the API
+         */
+        public Builder pageSize(int pageSize) {
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        /**
+         * @param window Pages fetched in parallel
+         */
+        public Builder window(int window) {
+            this.window = window;
+            return this;
+        }
+
+        /**
+         * Set how often the files are checkpointed. Fewer checkpoints compress slightly better (each one
+         * starts a new gzip member) and buffer more rows for the columnar format; more lose less work
+         * when an export is interrupted.
+         *
+         * @param pages Pages written between checkpoints
+         */
+        public Builder checkpointPages(int pages) {
+            if (pages <= 0) {
+                throw new IllegalArgumentException("Checkpoint interval must be positive: " + pages);
+            }
+            this.checkpointPages = pages;
+            return this;
+        }
+
+        /**
+         * @param level Deflate level from 1 (fastest) to 9 (smallest), the gzip default (6) if not set
+         */
+        public Builder compressionLevel(int level) {
+            this.compressionLevel = level;
+            return this;
+        }
+
+        /**
+         * @param resume false to ignore any checkpoint and export every resource from scratch
+         */
+        public Builder resume(boolean resume) {
+            this.resume = resume;
+            return this;
+        }
+
+        public CatalogExport build() {
+            return new CatalogExport(this);
+        }
+
+        /**
+         * Build the export and run it
+         *
+         * @return What was written
+         */
+        public ExportReport run() throws IOException {
+            return build().run();
+        }
+    }
+
+    /**
+     * Export the catalog with the credentials from credentials.yml
+     *
+     * Usage: CatalogExport directory [--columnar] [--fresh] [--rate=requestsPerSecond] [--window=pages] [resource ...]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: CatalogExport directory [--columnar] [--fresh] [--rate=10] [--window=4] [resource ...]");
+            System.exit(2);
+        }
+        double rate = 10;
+        List<String> resources = new ArrayList<>();
+        List<Format> formats = new ArrayList<>(Arrays.asList(Format.JSON_LINES));
+        boolean fresh = false;
+        int window = 4;
+        for (String arg : Arrays.copyOfRange(args, 1, args.length)) {
+            if (arg.equals("--columnar")) {
+                formats.add(Format.COLUMNAR);
+            } else if (arg.equals("--fresh")) {
+                fresh = true;
+            } else if (arg.startsWith("--rate=")) {
+                rate = Double.parseDouble(arg.substring("--rate=".length()));
+            } else if (arg.startsWith("--window=")) {
+                window = Integer.parseInt(arg.substring("--window=".length()));
+            } else {
+                resources.add(arg);
+            }
+        }
+
+        try (TwitApiClient client = TwitApiClient.builder()
+                .credentials()
+                .rateLimiter(RateLimiter.create(rate, (int) Math.max(1, rate * 2)))
+                .retryPolicy(RetryPolicy.builder().build())
+                .circuitBreaker(new CircuitBreaker())
+                .build()) {
+            Builder export = builder(Paths.get(args[0]), client)
+                    .formats(formats.toArray(new Format[0]))
+                    .window(window)
+                    .resume(!fresh);
+            if (!resources.isEmpty()) {
+                export.resources(resources.toArray(new String[0]));
+            }
+            ExportReport report = export.run();
+            for (ExportReport.ResourceResult result : report.getResults()) {
+                System.out.println(result);
+            }
+        }
+    }
+}
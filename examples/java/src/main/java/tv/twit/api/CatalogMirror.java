@@ -0,0 +1,442 @@
+package tv.twit.api;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Catalog Mirror
+ * A persistent local copy of TWiT API resources (shows, episodes, people, credits, categories, topics),
+ * kept in an append-only log with memory-mapped reads under a directory of your choice.
+ * The first sync fetches every resource in full; later syncs fetch only records changed since the last
+ * one, newest first, using the sort parameter and the unix-timestamp date filters. Reads are served
+ * locally from the index and never call the API. Sync requests bypass the client's response cache, so a
+ * sync never applies a stale page.
+ *
+ * <pre>
+ * try (CatalogMirror mirror = CatalogMirror.builder(Paths.get("catalog"), client).open()) {
+ *     mirror.sync();
+ *     JSONObject episode = mirror.get("episodes", "52940");
+ * }
+ * </pre>
+ */
+public final class CatalogMirror implements Closeable {
+    private final TwitApiClient client;
+    private final MirrorLog log;
+    private final Path stateFile;
+    private final Properties syncState = new Properties();
+    private final List<String> resources;
+    private final Map<String, String> timestampFields;
+    private final int pageSize;
+    private final int window;
+    private final long fullSyncIntervalMillis;
+    private final List<MirrorListener> listeners = new CopyOnWriteArrayList<>();
+    private final Logger logger = Logger.getLogger(CatalogMirror.class.getName());
+    private final Object syncLock = new Object();
+
+    private CatalogMirror(Builder builder) throws IOException {
+        this.client = builder.client;
+        this.log = new MirrorLog(builder.directory);
+        this.stateFile = builder.directory.resolve("sync.properties");
+        this.resources = new ArrayList<>(builder.resources);
+        this.timestampFields = new HashMap<>(builder.timestampFields);
+        this.pageSize = builder.pageSize;
+        this.window = builder.window;
+        this.fullSyncIntervalMillis = builder.fullSyncIntervalMillis;
+        if (Files.exists(stateFile)) {
+            try (InputStream in = Files.newInputStream(stateFile)) {
+                syncState.load(in);
+            }
+        }
+    }
+
+    /**
+     * Create a builder for a mirror stored in a directory
+     *
+     * @param directory Where the log, index and sync state are kept; created if missing
+     * @param client    The client used to sync
+     * @return A new builder
+     */
+    public static Builder builder(Path directory, TwitApiClient client) {
+        return new Builder(directory, client);
+    }
+
+    public void addListener(MirrorListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(MirrorListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Sync every resource: in full if it was never synced or its last full sync is older than the
+     * full sync interval, incrementally otherwise
+     *
+     * @return What was fetched and written
+     * @throws TwitApiException if a request fails; records written so far are kept
+     */
+    public SyncReport sync() throws IOException {
+        synchronized (syncLock) {
+            SyncReport report = new SyncReport();
+            long now = System.currentTimeMillis();
+            for (String resource : resources) {
+                long lastFull = Long.parseLong(syncState.getProperty(resource + ".fullSync", "0"));
+                report.add(now - lastFull >= fullSyncIntervalMillis ? syncFull(resource) : syncIncremental(resource));
+            }
+            finish();
+            return report;
+        }
+    }
+
+    /**
+     * Fetch every resource in full, drop records the API no longer returns and compact the log.
+     * A record missing from the crawl is fetched on its own before it is dropped, since offset paging
+     * skips items when the list shifts during the crawl; it is only dropped if the API answers 404.
+     *
+     * @return What was fetched, written and removed
+     */
+    public SyncReport fullSync() throws IOException {
+        synchronized (syncLock) {
+            SyncReport report = new SyncReport();
+            for (String resource : resources) {
+                report.add(syncFull(resource));
+            }
+            finish();
+            log.compact();
+            return report;
+        }
+    }
+
+    /**
+     * Fetch only records changed since the last sync of each resource
+     *
+     * @return What was fetched and written
+     */
+    public SyncReport incrementalSync() throws IOException {
+        synchronized (syncLock) {
+            SyncReport report = new SyncReport();
+            for (String resource : resources) {
+                report.add(syncIncremental(resource));
+            }
+            finish();
+            return report;
+        }
+    }
+
+    private SyncReport.ResourceResult syncFull(String resource) throws IOException {
+        long start = System.currentTimeMillis();
+        String field = timestampField(resource);
+        Set<String> seen = new HashSet<>();
+        long[] counts = new long[2];
+        long[] newest = {watermark(resource)};
+        try {
+            client.uncachedQuery("/" + resource).pageSize(pageSize).parallel(window).forEachPage((page, items) -> {
+                for (int i = 0; i < items.length(); i++) {
+                    JSONObject item = items.getJSONObject(i);
+                    String id = item.optString("id", null);
+                    if (id == null) {
+                        continue;
+                    }
+                    seen.add(id);
+                    counts[0]++;
+                    long timestamp = timestampOf(item, field);
+                    newest[0] = Math.max(newest[0], timestamp);
+                    if (store(resource, id, timestamp, item)) {
+                        counts[1]++;
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        long removed = 0;
+        for (String id : new ArrayList<>(log.ids(resource))) {
+            if (seen.contains(id)) {
+                continue;
+            }
+            JSONObject response = client.fetchUncached("/" + resource + "/" + id, new HashMap<>());
+            JSONObject item = response.has("error") ? null : response.optJSONObject(resource);
+            if (item != null) {
+                // Skipped by the crawl because the list shifted under it
+                counts[0]++;
+                long timestamp = timestampOf(item, field);
+                newest[0] = Math.max(newest[0], timestamp);
+                if (store(resource, id, timestamp, item)) {
+                    counts[1]++;
+                }
+            } else if (response.optInt("code") == 404) {
+                log.remove(resource, id);
+                listeners.forEach(listener -> listener.onRemove(resource, id));
+                removed++;
+            } else {
+                logger.warning("Keeping " + resource + "/" + id + ", missing from the full sync but not confirmed"
+                        + " removed: " + response.optString("error"));
+            }
+        }
+        syncState.setProperty(resource + ".fullSync", String.valueOf(start));
+        syncState.setProperty(resource + ".watermark", String.valueOf(newest[0]));
+        return new SyncReport.ResourceResult(resource, true, counts[0], counts[1], removed,
+                System.currentTimeMillis() - start);
+    }
+
+    private SyncReport.ResourceResult syncIncremental(String resource) throws IOException {
+        long start = System.currentTimeMillis();
+        String field = timestampField(resource);
+        long watermark = watermark(resource);
+        long newest = watermark;
+        long fetched = 0;
+        long written = 0;
+
+        ResourceQuery query = client.uncachedQuery("/" + resource).pageSize(pageSize).sort("-" + field)
+                .param("filter[" + field + "][value]", String.valueOf(watermark / 1000))
+                .param("filter[" + field + "][operator]", ">=");
+        for (JSONObject item : query) {
+            long timestamp = timestampOf(item, field);
+            if (timestamp < watermark) {
+                // Sorted newest first, so everything after this was seen by an earlier sync
+                break;
+            }
+            String id = item.optString("id", null);
+            if (id == null) {
+                continue;
+            }
+            fetched++;
+            newest = Math.max(newest, timestamp);
+            if (store(resource, id, timestamp, item)) {
+                written++;
+            }
+        }
+        syncState.setProperty(resource + ".watermark", String.valueOf(newest));
+        return new SyncReport.ResourceResult(resource, false, fetched, written, 0, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Write an item unless the stored copy is identical
+     *
+     * @return Whether a record was written
+     */
+    private boolean store(String resource, String id, long timestamp, JSONObject item) throws IOException {
+        byte[] body = item.toString().getBytes(StandardCharsets.UTF_8);
+        MirrorLog.Entry existing = log.entry(resource, id);
+        if (existing != null && existing.timestamp == timestamp && existing.length == body.length
+                && Arrays.equals(log.get(resource, id), body)) {
+            return false;
+        }
+        log.put(resource, id, timestamp, body);
+        listeners.forEach(listener -> listener.onUpsert(resource, id, item));
+        return true;
+    }
+
+    private void finish() throws IOException {
+        log.commit();
+        if (log.garbageBytes() > 16L * 1024 * 1024) {
+            log.compact();
+        }
+        Path tmp = stateFile.resolveSibling("sync.properties.tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            syncState.store(out, "TWiT API catalog mirror sync state");
+        }
+        Files.move(tmp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private String timestampField(String resource) {
+        return timestampFields.getOrDefault(resource, "created");
+    }
+
+    /**
+     * @return Timestamp of the newest record seen for a resource, in epoch milliseconds
+     */
+    private long watermark(String resource) {
+        return Long.parseLong(syncState.getProperty(resource + ".watermark", "0"));
+    }
+
+    private long timestampOf(JSONObject item, String field) {
+        String value = item.optString(field, null);
+        if (value == null || value.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Instant.parse(value).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine("Unparseable " + field + ": " + value);
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Get a mirrored item
+     *
+     * @param resource The resource name, e.g. "episodes"
+     * @param id       The item id
+     * @return The item, or null if it is not in the mirror
+     */
+    public JSONObject get(String resource, String id) {
+        byte[] body = log.get(resource, id);
+        return body != null ? new JSONObject(new String(body, StandardCharsets.UTF_8)) : null;
+    }
+
+    /**
+     * Get a mirrored item as UTF-8 JSON, e.g. for ModelDecoder or to serve it as is
+     *
+     * @return The item bytes, or null if it is not in the mirror
+     */
+    public byte[] getBytes(String resource, String id) {
+        return log.get(resource, id);
+    }
+
+    public boolean contains(String resource, String id) {
+        return log.entry(resource, id) != null;
+    }
+
+    /**
+     * @return Ids of the mirrored items of a resource (a live view)
+     */
+    public Set<String> ids(String resource) {
+        return log.ids(resource);
+    }
+
+    public int size(String resource) {
+        return log.size(resource);
+    }
+
+    /**
+     * Pass every mirrored item of a resource to a consumer
+     */
+    public void forEach(String resource, Consumer<JSONObject> consumer) {
+        for (String id : log.ids(resource)) {
+            JSONObject item = get(resource, id);
+            if (item != null) {
+                consumer.accept(item);
+            }
+        }
+    }
+
+    /**
+     * Get the mirrored items of a resource as a JSON array, in no particular order
+     */
+    public JSONArray list(String resource) {
+        JSONArray items = new JSONArray();
+        forEach(resource, items::put);
+        return items;
+    }
+
+    /**
+     * @return Resources this mirror syncs
+     */
+    public List<String> getResources() {
+        return resources;
+    }
+
+    /**
+     * Rewrite the log with live records only
+     */
+    public void compact() throws IOException {
+        synchronized (syncLock) {
+            log.compact();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            log.close();
+        }
+    }
+
+    /**
+     * Builder for CatalogMirror
+     */
+    public static final class Builder {
+        private final Path directory;
+        private final TwitApiClient client;
+        private List<String> resources = Arrays.asList("shows", "episodes", "people", "credits", "categories", "topics");
+        private final Map<String, String> timestampFields = new HashMap<>();
+        private int pageSize = 100;
+        private int window = 4;
+        private long fullSyncIntervalMillis = 7 * 24 * 60 * 60 * 1000L;
+
+        private Builder(Path directory, TwitApiClient client) {
+            this.directory = directory;
+            this.client = client;
+            timestampFields.put("episodes", "changed");
+            timestampFields.put("people", "changed");
+            timestampFields.put("posts", "changed");
+        }
+
+        /**
+         * @param resources Resource names to mirror, replacing the defaults
+         */
+        public Builder resources(String... resources) {
+            this.resources = Arrays.asList(resources);
+            return this;
+        }
+
+        /**
+         * Set the field incremental syncs sort and filter on; "changed" for episodes, people and posts,
+         * "created" for everything else by default. Resources without a "changed" field only pick up
+         * edits on the next full sync.
+         */
+        public Builder timestampField(String resource, String field) {
+            timestampFields.put(resource, field);
+            return this;
+        }
+
+        /**
+         * @param pageSize Items per page requested while syncing
+         */
+        public Builder pageSize(int pageSize) {
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        /**
+         * @param window Pages fetched in parallel during a full sync
+         */
+        public Builder window(int window) {
+            this.window = window;
+            return this;
+        }
+
+        /**
+         * @param fullSyncIntervalMillis Age after which sync() does a full sync instead of an incremental one
+         */
+        public Builder fullSyncIntervalMillis(long fullSyncIntervalMillis) {
+            this.fullSyncIntervalMillis = fullSyncIntervalMillis;
+            return this;
+        }
+
+        /**
+         * Open the mirror, loading the saved index
+         */
+        public CatalogMirror open() throws IOException {
+            return new CatalogMirror(this);
+        }
+    }
+}
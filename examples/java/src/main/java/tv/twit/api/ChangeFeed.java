@@ -0,0 +1,217 @@
+package tv.twit.api;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One poller for a watched list endpoint, shared by all of its listeners.
+ * Polls with If-None-Match/If-Modified-Since once validators are known, diffs each new list against
+ * the previous one by item id and hands only the added, removed and changed items to the listeners.
+ * Polls, diffs and deliveries all run on the client's single watch thread, so listeners see changes in
+ * order and a late subscriber is sent the current items between two polls.
+ */
+final class ChangeFeed {
+
+    /**
+     * Performs one request, conditionally when given validators
+     */
+    @FunctionalInterface
+    interface Loader {
+        ApiResponse load(String endpoint, Map<String, String> params, CachedResponse validators);
+    }
+
+    private final String endpoint;
+    private final String resource;
+    private final Map<String, String> params;
+    private final PollingConfig config;
+    private final Loader loader;
+    private final ScheduledExecutorService scheduler;
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final Set<ChangeListener> subscribed = new HashSet<>();
+    private final Logger logger = Logger.getLogger(ChangeFeed.class.getName());
+
+    // Only touched on the watch thread
+    private Map<String, JSONObject> snapshot;
+    private CachedResponse validators;
+
+    // Guarded by this, as is subscribed
+    private long intervalMillis;
+    private int generation;
+    private ScheduledFuture<?> next;
+
+    ChangeFeed(String endpoint, Map<String, String> params, PollingConfig config, Loader loader,
+               ScheduledExecutorService scheduler) {
+        this.endpoint = endpoint;
+        this.resource = CachePolicy.resourceOf(endpoint);
+        this.params = new LinkedHashMap<>(params);
+        this.config = config;
+        this.loader = loader;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Add a listener. The first one starts polling; later ones are first sent the current items as ADDED.
+     */
+    synchronized void subscribe(ChangeListener listener) {
+        subscribed.add(listener);
+        // Admitted on the watch thread, so it joins between two polls and is never sent a change twice
+        scheduler.execute(() -> admit(listener));
+        if (next == null) {
+            int current = ++generation;
+            intervalMillis = config.getMinIntervalMillis();
+            next = scheduler.schedule(() -> poll(current), 0, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Remove a listener, stopping the poller when it was the last one
+     *
+     * @return Whether the feed is now idle
+     */
+    synchronized boolean unsubscribe(ChangeListener listener) {
+        subscribed.remove(listener);
+        listeners.remove(listener);
+        if (subscribed.isEmpty() && next != null) {
+            next.cancel(false);
+            next = null;
+            generation++;
+        }
+        return subscribed.isEmpty();
+    }
+
+    synchronized long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    private void poll(int scheduledGeneration) {
+        boolean changed = false;
+        boolean failed = false;
+        try {
+            ApiResponse response = loader.load(endpoint, params, validators);
+            if (response.isNotModified()) {
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.fine("Not modified: " + endpoint);
+                }
+            } else if (response.isSuccess()) {
+                changed = apply(items(response.json));
+                validators = response.etag != null || response.lastModified != null
+                        ? new CachedResponse(null, 0, 0, 0, response.etag, response.lastModified) : null;
+            } else {
+                failed = true;
+                notifyError(response.json);
+            }
+        } catch (RuntimeException e) {
+            failed = true;
+            logger.log(Level.WARNING, "Polling " + endpoint + " failed", e);
+            notifyError(ApiResponses.failure(e.getMessage()));
+        }
+        synchronized (this) {
+            if (generation == scheduledGeneration && next != null) {
+                intervalMillis = config.nextInterval(intervalMillis, changed, failed);
+                next = scheduler.schedule(() -> poll(scheduledGeneration), intervalMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Collect the items of every page, keyed by id in list order
+     */
+    private Map<String, JSONObject> items(JSONObject first) {
+        Map<String, JSONObject> items = new LinkedHashMap<>();
+        JSONObject page = first;
+        Map<String, String> pageParams = params;
+        while (true) {
+            JSONArray list = page.optJSONArray(resource);
+            for (int i = 0; list != null && i < list.length(); i++) {
+                JSONObject item = list.optJSONObject(i);
+                if (item != null && item.has("id")) {
+                    items.put(item.get("id").toString(), item);
+                }
+            }
+            pageParams = ResourceQuery.nextParams(page, pageParams);
+            if (pageParams == null || list == null || list.isEmpty()) {
+                return items;
+            }
+            ApiResponse response = loader.load(endpoint, pageParams, null);
+            if (!response.isSuccess()) {
+                throw new TwitApiException(response.json);
+            }
+            page = response.json;
+        }
+    }
+
+    /**
+     * Diff a new list against the snapshot and deliver the changes
+     *
+     * @return Whether anything changed
+     */
+    private boolean apply(Map<String, JSONObject> items) {
+        Map<String, JSONObject> previous = snapshot != null ? snapshot : new LinkedHashMap<>();
+        List<ItemChange> changes = new ArrayList<>();
+        for (Map.Entry<String, JSONObject> entry : previous.entrySet()) {
+            if (!items.containsKey(entry.getKey())) {
+                changes.add(new ItemChange(ItemChange.Type.REMOVED, resource, entry.getKey(), entry.getValue(), null));
+            }
+        }
+        for (Map.Entry<String, JSONObject> entry : items.entrySet()) {
+            JSONObject before = previous.get(entry.getKey());
+            if (before == null) {
+                changes.add(new ItemChange(ItemChange.Type.ADDED, resource, entry.getKey(), null, entry.getValue()));
+            } else if (!before.similar(entry.getValue())) {
+                changes.add(new ItemChange(ItemChange.Type.CHANGED, resource, entry.getKey(), before, entry.getValue()));
+            }
+        }
+        snapshot = items;
+        for (ItemChange change : changes) {
+            for (ChangeListener listener : listeners) {
+                deliver(listener, change);
+            }
+        }
+        return !changes.isEmpty();
+    }
+
+    private void admit(ChangeListener listener) {
+        synchronized (this) {
+            if (!subscribed.contains(listener)) {
+                return;
+            }
+            listeners.add(listener);
+        }
+        if (snapshot != null) {
+            for (Map.Entry<String, JSONObject> entry : snapshot.entrySet()) {
+                deliver(listener, new ItemChange(ItemChange.Type.ADDED, resource, entry.getKey(), null, entry.getValue()));
+            }
+        }
+    }
+
+    private void deliver(ChangeListener listener, ItemChange change) {
+        try {
+            listener.onChange(change);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Change listener failed on " + change, e);
+        }
+    }
+
+    private void notifyError(JSONObject error) {
+        for (ChangeListener listener : listeners) {
+            try {
+                listener.onError(error);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Change listener failed on error " + error, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package tv.twit.api;
+
+import org.json.JSONObject;
+
+/**
+ * Receives the changes a watched list endpoint reports, such as live streams going up or down
+ */
+public interface ChangeListener {
+
+    /**
+     * An item was added, removed or changed since the previous poll
+     *
+     * @param change The change
+     */
+    void onChange(ItemChange change);
+
+    /**
+     * A poll failed; the feed keeps polling at its longest interval
+     *
+     * @param error The error object, with "error" and usually "code"
+     */
+    default void onError(JSONObject error) {
+    }
+}
@@ -0,0 +1,40 @@
+package tv.twit.api;
+
+import java.util.concurrent.SubmissionPublisher;
+import java.util.logging.Logger;
+
+/**
+ * Change Publisher
+ * A {@link java.util.concurrent.Flow.Publisher} view of a change feed for reactive consumers. Each
+ * subscriber gets its own buffer (256 changes by default); a subscriber that falls that far behind
+ * misses changes rather than stalling the shared poller, and a warning is logged.
+ * Closing the publisher completes its subscribers and releases the feed.
+ */
+public final class ChangePublisher extends SubmissionPublisher<ItemChange> implements ChangeListener {
+    private final Logger logger = Logger.getLogger(ChangePublisher.class.getName());
+    private volatile ChangeSubscription subscription;
+
+    ChangePublisher() {
+    }
+
+    void attach(ChangeSubscription subscription) {
+        this.subscription = subscription;
+    }
+
+    @Override
+    public void onChange(ItemChange change) {
+        offer(change, (subscriber, dropped) -> {
+            logger.warning("Dropped " + dropped + " for a slow subscriber");
+            return false;
+        });
+    }
+
+    @Override
+    public void close() {
+        ChangeSubscription current = subscription;
+        if (current != null) {
+            current.close();
+        }
+        super.close();
+    }
+}
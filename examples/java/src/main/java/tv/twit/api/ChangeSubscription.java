@@ -0,0 +1,27 @@
+package tv.twit.api;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A listener's registration with a change feed; close it to stop receiving changes.
+ * The feed stops polling once its last subscription is closed.
+ */
+public final class ChangeSubscription implements AutoCloseable {
+    private final Runnable cancel;
+    private final AtomicBoolean active = new AtomicBoolean(true);
+
+    ChangeSubscription(Runnable cancel) {
+        this.cancel = cancel;
+    }
+
+    public boolean isActive() {
+        return active.get();
+    }
+
+    @Override
+    public void close() {
+        if (active.compareAndSet(true, false)) {
+            cancel.run();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package tv.twit.api;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Circuit Breaker
+ * Fails requests fast while the API is known to be unavailable instead of sending them and burning quota.
+ * The circuit opens immediately when the API reports that usage limits are exceeded, or after a number
+ * of consecutive failures. Once the open period has passed a single trial request is let through;
+ * its outcome closes the circuit again or re-opens it. Can be shared by several clients.
+ */
+public final class CircuitBreaker {
+
+    /**
+     * Circuit states
+     */
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final long quotaOpenMillis;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openUntilMillis;
+    private boolean openedForQuota;
+    private boolean trialInFlight;
+
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param failureThreshold Consecutive failures (I/O errors and 5xx) that open the circuit
+     * @param openMillis       How long the circuit stays open after repeated failures
+     * @param quotaOpenMillis  How long the circuit stays open after a usage-limit error
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis, long quotaOpenMillis) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold must be at least 1: " + failureThreshold);
+        }
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.quotaOpenMillis = quotaOpenMillis;
+    }
+
+    /**
+     * Create a breaker that opens after 5 consecutive failures for 30 seconds, or for 60 seconds on a usage-limit error
+     */
+    public CircuitBreaker() {
+        this(5, 30000, 60000);
+    }
+
+    /**
+     * Check whether a request may be sent
+     *
+     * @return false if the request should fail fast
+     */
+    synchronized boolean allowRequest() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() < openUntilMillis) {
+                rejected.increment();
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                rejected.increment();
+                return false;
+            }
+            trialInFlight = true;
+        }
+        return true;
+    }
+
+    /**
+     * Give up a permitted request that was never sent, so a half-open circuit can admit another trial
+     */
+    synchronized void cancelTrial() {
+        trialInFlight = false;
+    }
+
+    synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        state = State.CLOSED;
+    }
+
+    /**
+     * Record a failed request
+     *
+     * @param usageLimit Whether the API reported that usage limits are exceeded
+     */
+    synchronized void onFailure(boolean usageLimit) {
+        consecutiveFailures++;
+        trialInFlight = false;
+        if (usageLimit || state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            open(usageLimit);
+        }
+    }
+
+    private void open(boolean usageLimit) {
+        if (state != State.OPEN) {
+            opened.increment();
+        }
+        state = State.OPEN;
+        openedForQuota = usageLimit;
+        openUntilMillis = System.currentTimeMillis() + (usageLimit ? quotaOpenMillis : openMillis);
+    }
+
+    /**
+     * @return Whether the circuit was last opened because usage limits were exceeded
+     */
+    synchronized boolean isOpenedForQuota() {
+        return openedForQuota;
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() >= openUntilMillis) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     * @return Number of times the circuit has opened
+     */
+    public long getOpenedCount() {
+        return opened.sum();
+    }
+
+    /**
+     * @return Number of requests failed fast while the circuit was open
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,222 @@
+package tv.twit.api;
+
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Columnar Reader
+ * Reads the columnar files written by {@link CatalogExport} ({@code <resource>.col.gz}), either as whole
+ * rows or one column at a time. Reading a single column skips the bytes of all others.
+ *
+ * <pre>
+ * List&lt;Object&gt; labels = ColumnarReader.readColumn(Paths.get("export/episodes.col.gz"), "label");
+ * ColumnarReader.forEachRow(Paths.get("export/shows.col.gz"), show -&gt; System.out.println(show.get("label")));
+ * </pre>
+ */
+public final class ColumnarReader {
+
+    private ColumnarReader() {
+    }
+
+    /**
+     * Read every row of a columnar file as a JSON object
+     *
+     * @param file     The file to read
+     * @param consumer Receives each row in export order; missing and null fields are left out
+     * @return Number of rows read
+     */
+    public static long forEachRow(Path file, Consumer<JSONObject> consumer) throws IOException {
+        long count = 0;
+        try (DataInputStream in = open(file)) {
+            int rows;
+            while ((rows = nextRowGroup(in)) >= 0) {
+                int columns = (int) readVarLong(in);
+                JSONObject[] group = new JSONObject[rows];
+                for (int row = 0; row < rows; row++) {
+                    group[row] = new JSONObject();
+                }
+                for (int column = 0; column < columns; column++) {
+                    String name = readString(in);
+                    byte type = in.readByte();
+                    readVarLong(in);
+                    Object[] values = readValues(in, type, rows);
+                    for (int row = 0; row < rows; row++) {
+                        if (values[row] != null) {
+                            group[row].put(name, values[row]);
+                        }
+                    }
+                }
+                for (JSONObject row : group) {
+                    consumer.accept(row);
+                }
+                count += rows;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Read one column of a columnar file
+     *
+     * @param file The file to read
+     * @param name The top-level field name
+     * @return One value per row in export order, null where the field is missing or null
+     */
+    public static List<Object> readColumn(Path file, String name) throws IOException {
+        List<Object> result = new ArrayList<>();
+        try (DataInputStream in = open(file)) {
+            int rows;
+            while ((rows = nextRowGroup(in)) >= 0) {
+                int columns = (int) readVarLong(in);
+                Object[] values = null;
+                for (int column = 0; column < columns; column++) {
+                    String columnName = readString(in);
+                    byte type = in.readByte();
+                    long length = readVarLong(in);
+                    if (values == null && columnName.equals(name)) {
+                        values = readValues(in, type, rows);
+                    } else {
+                        skipFully(in, length);
+                    }
+                }
+                for (int row = 0; row < rows; row++) {
+                    result.add(values != null ? values[row] : null);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static DataInputStream open(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        try {
+            return new DataInputStream(new BufferedInputStream(new GZIPInputStream(in, 64 * 1024), 64 * 1024));
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Rows in the next row group, or -1 at the end of the file
+     */
+    private static int nextRowGroup(DataInputStream in) throws IOException {
+        int magic;
+        try {
+            magic = in.readInt();
+        } catch (EOFException e) {
+            return -1;
+        }
+        if (magic != ColumnarWriter.MAGIC) {
+            throw new IOException("Not a columnar export file (bad row group header)");
+        }
+        return (int) readVarLong(in);
+    }
+
+    private static Object[] readValues(DataInputStream in, byte type, int rows) throws IOException {
+        Object[] values = new Object[rows];
+        switch (type) {
+            case ColumnarWriter.NULL:
+                break;
+            case ColumnarWriter.BOOLEAN: {
+                byte[] present = readBitmap(in, rows);
+                byte[] bits = readBitmap(in, rows);
+                for (int row = 0; row < rows; row++) {
+                    if (isSet(present, row)) {
+                        values[row] = isSet(bits, row);
+                    }
+                }
+                break;
+            }
+            case ColumnarWriter.LONG: {
+                byte[] present = readBitmap(in, rows);
+                long previous = 0;
+                for (int row = 0; row < rows; row++) {
+                    if (isSet(present, row)) {
+                        long zigzag = readVarLong(in);
+                        previous += (zigzag >>> 1) ^ -(zigzag & 1);
+                        values[row] = previous;
+                    }
+                }
+                break;
+            }
+            case ColumnarWriter.DOUBLE: {
+                byte[] present = readBitmap(in, rows);
+                for (int row = 0; row < rows; row++) {
+                    if (isSet(present, row)) {
+                        values[row] = in.readDouble();
+                    }
+                }
+                break;
+            }
+            case ColumnarWriter.STRING:
+            case ColumnarWriter.JSON: {
+                Object[] dictionary = new Object[(int) readVarLong(in)];
+                for (int i = 0; i < dictionary.length; i++) {
+                    String text = readString(in);
+                    dictionary[i] = type == ColumnarWriter.STRING ? text : new JSONTokener(text).nextValue();
+                }
+                for (int row = 0; row < rows; row++) {
+                    int index = (int) readVarLong(in);
+                    values[row] = index == 0 ? null : dictionary[index - 1];
+                }
+                break;
+            }
+            default:
+                throw new IOException("Unknown column type: " + type);
+        }
+        return values;
+    }
+
+    private static void skipFully(DataInputStream in, long length) throws IOException {
+        while (length > 0) {
+            long skipped = in.skip(length);
+            if (skipped <= 0) {
+                in.readByte();
+                skipped = 1;
+            }
+            length -= skipped;
+        }
+    }
+
+    private static byte[] readBitmap(DataInputStream in, int rows) throws IOException {
+        byte[] bitmap = new byte[(rows + 7) / 8];
+        in.readFully(bitmap);
+        return bitmap;
+    }
+
+    private static boolean isSet(byte[] bitmap, int row) {
+        return (bitmap[row >> 3] & (1 << (row & 7))) != 0;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
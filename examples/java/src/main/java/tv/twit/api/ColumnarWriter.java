@@ -0,0 +1,262 @@
+package tv.twit.api;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Columnar export file: each checkpoint writes the rows buffered since the previous one as a row group
+ * in its own gzip member, so memory is bounded by the checkpoint interval.
+ *
+ * A row group is [int magic][varint rows][varint columns] followed by each column, in name order, as
+ * [varint nameLength][name][byte type][varint valuesLength][values], so readers can skip columns. Columns are the top-level fields of the items:
+ * <ul>
+ * <li>NULL: no values, the field is missing or null in every row</li>
+ * <li>BOOLEAN: presence bitmap, then a bitmap of the values</li>
+ * <li>LONG: presence bitmap, then the present values as zigzag varint deltas from the previous one</li>
+ * <li>DOUBLE: presence bitmap, then 8 bytes per present value</li>
+ * <li>STRING and JSON: a dictionary of [varint length][UTF-8] entries, then one varint per row holding
+ * the dictionary index + 1, or 0 if missing. JSON columns hold nested objects, arrays and fields whose
+ * type differs between rows, as JSON text.</li>
+ * </ul>
+ * Bitmaps hold one bit per row, lowest bit first. Use {@link ColumnarReader} to read the file back.
+ */
+final class ColumnarWriter extends ExportFile {
+    static final int MAGIC = 0x54574331;
+    static final byte NULL = 0;
+    static final byte BOOLEAN = 1;
+    static final byte LONG = 2;
+    static final byte DOUBLE = 3;
+    static final byte STRING = 4;
+    static final byte JSON = 5;
+
+    private final List<Map<String, Object>> rows = new ArrayList<>();
+
+    ColumnarWriter(Path file, long resumeAt, int level) throws IOException {
+        super(file, resumeAt, level);
+    }
+
+    @Override
+    void write(RawPage page) throws IOException {
+        byte[] body = page.body();
+        for (int i = 0; i < page.size(); i++) {
+            Map<String, Object> row = new HashMap<>();
+            try (JsonParser parser = RawPage.FACTORY.createParser(body, page.start(i), page.end(i) - page.start(i))) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new JsonParseException(parser, "Expected a JSON object");
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    row.put(name, valueOf(parser, parser.nextToken(), body, page.start(i)));
+                }
+            }
+            rows.add(row);
+        }
+    }
+
+    /**
+     * Read a top-level field value: scalars as Java values, objects, arrays and out-of-range integers as
+     * their JSON text
+     */
+    private static Object valueOf(JsonParser parser, JsonToken token, byte[] body, int base) throws IOException {
+        switch (token) {
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+                return parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER
+                        ? new JsonText(parser.getText()) : (Object) parser.getLongValue();
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDoubleValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NULL:
+                return null;
+            default:
+                int start = base + (int) parser.getTokenLocation().getByteOffset();
+                parser.skipChildren();
+                int end = base + (int) parser.getCurrentLocation().getByteOffset();
+                return new JsonText(new String(body, start, end - start, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    void flushMember() throws IOException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        TreeSet<String> names = new TreeSet<>();
+        for (Map<String, Object> row : rows) {
+            names.addAll(row.keySet());
+        }
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(member(), 16 * 1024));
+        out.writeInt(MAGIC);
+        writeVarLong(out, rows.size());
+        writeVarLong(out, names.size());
+        Object[] values = new Object[rows.size()];
+        ByteArrayOutputStream column = new ByteArrayOutputStream(4096);
+        DataOutputStream columnOut = new DataOutputStream(column);
+        for (String name : names) {
+            byte type = NULL;
+            for (int row = 0; row < values.length; row++) {
+                values[row] = rows.get(row).get(name);
+                type = merge(type, typeOf(values[row]));
+            }
+            column.reset();
+            writeColumn(columnOut, type, values);
+            writeString(out, name);
+            out.writeByte(type);
+            writeVarLong(out, column.size());
+            column.writeTo(out);
+        }
+        out.flush();
+        rows.clear();
+    }
+
+    private static void writeColumn(DataOutputStream out, byte type, Object[] values) throws IOException {
+        switch (type) {
+            case NULL:
+                return;
+            case BOOLEAN:
+                writeBitmap(out, values, false);
+                writeBitmap(out, values, true);
+                return;
+            case LONG:
+                writeBitmap(out, values, false);
+                long previous = 0;
+                for (Object value : values) {
+                    if (value != null) {
+                        long current = ((Number) value).longValue();
+                        long delta = current - previous;
+                        writeVarLong(out, (delta << 1) ^ (delta >> 63));
+                        previous = current;
+                    }
+                }
+                return;
+            case DOUBLE:
+                writeBitmap(out, values, false);
+                for (Object value : values) {
+                    if (value != null) {
+                        out.writeDouble(((Number) value).doubleValue());
+                    }
+                }
+                return;
+            default:
+                writeDictionary(out, type, values);
+        }
+    }
+
+    private static void writeDictionary(DataOutputStream out, byte type, Object[] values) throws IOException {
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> entries = new ArrayList<>();
+        int[] indexes = new int[values.length];
+        for (int row = 0; row < values.length; row++) {
+            if (values[row] == null) {
+                continue;
+            }
+            String text = type == STRING ? (String) values[row] : jsonOf(values[row]);
+            Integer index = dictionary.get(text);
+            if (index == null) {
+                index = entries.size();
+                dictionary.put(text, index);
+                entries.add(text);
+            }
+            indexes[row] = index + 1;
+        }
+        writeVarLong(out, entries.size());
+        for (String entry : entries) {
+            writeString(out, entry);
+        }
+        for (int index : indexes) {
+            writeVarLong(out, index);
+        }
+    }
+
+    /**
+     * Write a bitmap of which values are present, or with {@code bits} set, which are true
+     */
+    private static void writeBitmap(DataOutputStream out, Object[] values, boolean bits) throws IOException {
+        for (int start = 0; start < values.length; start += 8) {
+            int b = 0;
+            for (int bit = 0; bit < 8 && start + bit < values.length; bit++) {
+                Object value = values[start + bit];
+                if (value != null && (!bits || Boolean.TRUE.equals(value))) {
+                    b |= 1 << bit;
+                }
+            }
+            out.writeByte(b);
+        }
+    }
+
+    private static byte typeOf(Object value) {
+        if (value == null) {
+            return NULL;
+        }
+        if (value instanceof Boolean) {
+            return BOOLEAN;
+        }
+        if (value instanceof Long) {
+            return LONG;
+        }
+        if (value instanceof Double) {
+            return DOUBLE;
+        }
+        return value instanceof String ? STRING : JSON;
+    }
+
+    private static String jsonOf(Object value) {
+        return value instanceof JsonText ? ((JsonText) value).text : JSONObject.valueToString(value);
+    }
+
+    private static byte merge(byte column, byte value) {
+        if (column == value || value == NULL) {
+            return column;
+        }
+        if (column == NULL) {
+            return value;
+        }
+        if ((column == LONG && value == DOUBLE) || (column == DOUBLE && value == LONG)) {
+            return DOUBLE;
+        }
+        return JSON;
+    }
+
+    /**
+     * A value kept as JSON text
+     */
+    private static final class JsonText {
+        final String text;
+
+        JsonText(String text) {
+            this.text = text;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}
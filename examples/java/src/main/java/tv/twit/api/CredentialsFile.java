@@ -0,0 +1,183 @@
+package tv.twit.api;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Credentials File
+ * A small reader for credentials.yml, in the spirit of SimpleTestConnection.parseCredentialsFile.
+ * It understands the subset of YAML the file uses: mappings nested by indentation, scalar values
+ * (plain or quoted, with numbers and booleans converted), comments, and block sequences of scalars or
+ * mappings (such as a list of credential pairs).
+ * Reading the file this way avoids loading a full YAML library, which dominated the startup of
+ * short-lived tools.
+ */
+final class CredentialsFile {
+
+    private CredentialsFile() {
+    }
+
+    /**
+     * Parse a credentials file
+     *
+     * @param file The file to read
+     * @return The top-level mapping; nested mappings are {@code Map<String, Object>}, sequences {@code List<Object>}
+     */
+    static Map<String, Object> parse(Path file) throws IOException {
+        Map<String, Object> root = new LinkedHashMap<>();
+        Deque<Section> sections = new ArrayDeque<>();
+        sections.push(new Section(-1, root, null, null, false));
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                String content = stripComment(line);
+                if (content.trim().isEmpty()) {
+                    continue;
+                }
+                int indent = 0;
+                while (content.charAt(indent) == ' ') {
+                    indent++;
+                }
+                String entry = content.trim();
+                if (entry.equals("-") || entry.startsWith("- ")) {
+                    // A sequence item belongs to the key above it, indented or at the key's own indentation
+                    while (sections.peek().item ? sections.peek().indent >= indent : sections.peek().indent > indent) {
+                        sections.pop();
+                    }
+                    Section owner = sections.peek();
+                    if (owner.parent == null || !(owner.values.isEmpty() || owner.list != null)) {
+                        throw new IOException("Invalid line " + number + " in " + file + ": " + line.trim());
+                    }
+                    if (owner.list == null) {
+                        owner.list = new ArrayList<>();
+                        owner.parent.put(owner.key, owner.list);
+                    }
+                    String value = entry.substring(1).trim();
+                    if (value.isEmpty() || !isMapping(value)) {
+                        owner.list.add(value.isEmpty() ? null : scalar(value));
+                        continue;
+                    }
+                    Map<String, Object> item = new LinkedHashMap<>();
+                    owner.list.add(item);
+                    sections.push(new Section(indent, item, null, null, true));
+                    indent = content.indexOf(value, indent + 1);
+                    entry = value;
+                }
+                int colon = entry.indexOf(':');
+                if (colon <= 0) {
+                    throw new IOException("Invalid line " + number + " in " + file + ": " + line.trim());
+                }
+                while (indent <= sections.peek().indent) {
+                    sections.pop();
+                }
+                Section section = sections.peek();
+                String key = unquote(entry.substring(0, colon).trim());
+                String value = entry.substring(colon + 1).trim();
+                if (value.isEmpty()) {
+                    Map<String, Object> nested = new LinkedHashMap<>();
+                    section.values.put(key, nested);
+                    sections.push(new Section(indent, nested, section.values, key, false));
+                } else {
+                    section.values.put(key, scalar(value));
+                }
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Drop a comment: a # at the start of the line or after whitespace, outside quotes
+     */
+    private static String stripComment(String line) {
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '#' && (i == 0 || Character.isWhitespace(line.charAt(i - 1)))) {
+                return line.substring(0, i);
+            }
+        }
+        return line;
+    }
+
+    /**
+     * Whether a sequence item is a mapping entry ("app_id: abc") rather than a scalar
+     */
+    private static boolean isMapping(String value) {
+        if (value.startsWith("\"") || value.startsWith("'")) {
+            return false;
+        }
+        int colon = value.indexOf(':');
+        return colon > 0 && (colon == value.length() - 1 || value.charAt(colon + 1) == ' ');
+    }
+
+    private static Object scalar(String value) {
+        if (value.startsWith("\"") || value.startsWith("'")) {
+            return unquote(value);
+        }
+        switch (value) {
+            case "true":
+                return Boolean.TRUE;
+            case "false":
+                return Boolean.FALSE;
+            case "~":
+            case "null":
+                return null;
+            default:
+                break;
+        }
+        if (value.matches("[-+]?\\d{1,18}")) {
+            long number = Long.parseLong(value);
+            return number == (int) number ? (Object) (int) number : (Object) number;
+        }
+        return value;
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && (value.charAt(0) == '"' || value.charAt(0) == '\'')
+                && value.charAt(value.length() - 1) == value.charAt(0)) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    /**
+     * A mapping being filled: the root, the value of a key, or an item of a sequence
+     */
+    private static final class Section {
+        final int indent;
+        final Map<String, Object> values;
+        final Map<String, Object> parent;
+        final String key;
+        final boolean item;
+        List<Object> list;
+
+        /**
+         * @param indent Indentation of the key that owns the mapping, or of the item's dash
+         * @param parent The mapping holding the key, so an empty value can become a sequence; null for items
+         */
+        Section(int indent, Map<String, Object> values, Map<String, Object> parent, String key, boolean item) {
+            this.indent = indent;
+            this.values = values;
+            this.parent = parent;
+            this.key = key;
+            this.item = item;
+        }
+    }
+}
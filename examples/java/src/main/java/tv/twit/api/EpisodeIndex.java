@@ -0,0 +1,630 @@
+package tv.twit.api;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Episode Index
+ * In-memory secondary indexes over the episodes of a {@link CatalogMirror}, answering the filters the
+ * /episodes endpoint accepts without calling the API: filter[shows], filter[topics], filter[categories]
+ * (or filter[category]), filter[credits], filter[episodeNumber], filter[featured], filter[airingDate]
+ * ranges, filter[id], credits_people and credits_role, with sort=[-]airingDate, page and range.
+ * <p>
+ * Every episode gets a dense int ordinal. Id attributes are primitive posting lists (id to ordinals),
+ * airing dates are one sorted long array for range scans, and featured is a BitSet. The index follows
+ * the mirror's syncs as a {@link MirrorListener}; replaced episodes get a new ordinal and the old one
+ * is reclaimed once enough have piled up.
+ *
+ * <pre>
+ * EpisodeIndex index = EpisodeIndex.attach(mirror);
+ * Map&lt;String, String&gt; params = new HashMap&lt;&gt;();
+ * params.put("filter[shows]", "1642");
+ * params.put("filter[airingDate][value][0]", "1420070400");
+ * params.put("filter[airingDate][operator][0]", "&gt;=");
+ * JSONObject page = index.list(params);   // {"count": ..., "episodes": [...]}
+ * </pre>
+ */
+public final class EpisodeIndex implements MirrorListener {
+    private static final String RESOURCE = "episodes";
+    /**
+     * Page size when no range is given, the Drupal RESTful default
+     */
+    private static final int DEFAULT_RANGE = 50;
+    private static final int ORDINAL_BITS = 30;
+    private static final long ORDINAL_MASK = (1L << ORDINAL_BITS) - 1;
+    private static final long MAX_DATE = Long.MAX_VALUE >> ORDINAL_BITS;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private final CatalogMirror mirror;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final IntIntMap ordinals = new IntIntMap(1024);
+    private int[] episodeIds = new int[1024];
+    private long[] airingDates = new long[1024];
+    private int nextOrdinal;
+    private final BitSet live = new BitSet();
+    private final BitSet featured = new BitSet();
+    private final Map<String, IntPostings> postings = new HashMap<>();
+
+    /**
+     * (airingDate << 30 | ordinal) for every live episode with a date, sorted; rebuilt lazily
+     */
+    private long[] byDate = new long[0];
+    private boolean byDateStale;
+
+    private EpisodeIndex(CatalogMirror mirror) {
+        this.mirror = mirror;
+        for (String attribute : new String[]{"shows", "topics", "categories", "credits", "episodeNumber",
+                "credits_people", "credits_role"}) {
+            postings.put(attribute, new IntPostings());
+        }
+    }
+
+    /**
+     * Index the episodes already in a mirror and keep the index current as the mirror syncs
+     *
+     * @param mirror A mirror that syncs "episodes"
+     * @return The index
+     */
+    public static EpisodeIndex attach(CatalogMirror mirror) {
+        EpisodeIndex index = new EpisodeIndex(mirror);
+        mirror.addListener(index);
+        mirror.forEach(RESOURCE, item -> index.onUpsert(RESOURCE, item.optString("id"), item));
+        return index;
+    }
+
+    /**
+     * Stop following the mirror
+     */
+    public void detach() {
+        mirror.removeListener(this);
+    }
+
+    @Override
+    public void onUpsert(String resource, String id, JSONObject item) {
+        int episodeId = parseId(id);
+        if (!RESOURCE.equals(resource) || episodeId < 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            retire(ordinals.get(episodeId));
+            int ordinal = nextOrdinal++;
+            if (ordinal == episodeIds.length) {
+                episodeIds = Arrays.copyOf(episodeIds, ordinal * 2);
+                airingDates = Arrays.copyOf(airingDates, ordinal * 2);
+            }
+            ordinals.put(episodeId, ordinal);
+            episodeIds[ordinal] = episodeId;
+            airingDates[ordinal] = epochSeconds(item.optString("airingDate", null));
+            live.set(ordinal);
+            featured.set(ordinal, item.optBoolean("featured"));
+
+            JSONObject embedded = item.optJSONObject("_embedded");
+            post("shows", ordinal, related(item, embedded, "shows"));
+            post("topics", ordinal, related(item, embedded, "topics"));
+            post("categories", ordinal, related(item, embedded, "categories"));
+            JSONArray credits = related(item, embedded, "credits");
+            post("credits", ordinal, credits);
+            for (int i = 0; credits != null && i < credits.length(); i++) {
+                JSONObject credit = credits.optJSONObject(i);
+                if (credit != null) {
+                    post("credits_people", ordinal, parseId(idOf(credit.opt("people"))));
+                    post("credits_role", ordinal, parseId(idOf(credit.opt("roles"))));
+                }
+            }
+            post("episodeNumber", ordinal, parseId(item.optString("episodeNumber", null)));
+            byDateStale = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onRemove(String resource, String id) {
+        int episodeId = parseId(id);
+        if (!RESOURCE.equals(resource) || episodeId < 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            retire(ordinals.remove(episodeId));
+            byDateStale = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find the episodes matching /episodes query parameters
+     *
+     * @param params Filter, sort, page and range parameters as they would be sent to /episodes
+     * @return The total match count and the ids on the requested page
+     * @throws IllegalArgumentException for a filter, operator or sort the index cannot answer locally
+     */
+    public Result search(Map<String, String> params) {
+        Query query = Query.parse(params);
+        if (query.empty) {
+            return new Result(0, new int[0]);
+        }
+        readLockWithDateOrder();
+        try {
+            BitSet matches = (BitSet) live.clone();
+            for (Condition condition : query.conditions) {
+                apply(condition, matches);
+            }
+            int low = lowerBound(query.fromDate << ORDINAL_BITS);
+            int high = query.toDate == MAX_DATE ? byDate.length : lowerBound((query.toDate + 1) << ORDINAL_BITS);
+            if (query.hasDateRange() && !query.conditions.isEmpty() && matches.cardinality() < high - low) {
+                // Fewer candidates than dated episodes in range: check each candidate's date instead
+                for (int ordinal = matches.nextSetBit(0); ordinal >= 0; ordinal = matches.nextSetBit(ordinal + 1)) {
+                    long date = airingDates[ordinal];
+                    if (date == NO_DATE || date < query.fromDate || date > query.toDate) {
+                        matches.clear(ordinal);
+                    }
+                }
+            } else if (query.hasDateRange()) {
+                BitSet inRange = new BitSet(nextOrdinal);
+                for (int i = low; i < high; i++) {
+                    inRange.set((int) (byDate[i] & ORDINAL_MASK));
+                }
+                matches.and(inRange);
+            }
+            int count = matches.cardinality();
+            int from = (query.page - 1) * query.range;
+            int[] page = new int[Math.max(0, Math.min(query.range, count - from))];
+
+            // Walk the date order, newest first unless ascending was asked for
+            int seen = 0;
+            int filled = 0;
+            for (int i = 0; i < high - low && filled < page.length; i++) {
+                long key = byDate[query.ascending ? low + i : high - 1 - i];
+                int ordinal = (int) (key & ORDINAL_MASK);
+                if (matches.get(ordinal)) {
+                    matches.clear(ordinal);
+                    if (seen++ >= from) {
+                        page[filled++] = episodeIds[ordinal];
+                    }
+                }
+            }
+            // Episodes without an airing date sort last
+            for (int ordinal = matches.nextSetBit(0); ordinal >= 0 && filled < page.length;
+                 ordinal = matches.nextSetBit(ordinal + 1)) {
+                if (airingDates[ordinal] == NO_DATE && seen++ >= from) {
+                    page[filled++] = episodeIds[ordinal];
+                }
+            }
+            return new Result(count, filled == page.length ? page : Arrays.copyOf(page, filled));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Answer /episodes query parameters from the mirror, shaped like the API's list response
+     *
+     * @param params Filter, sort, page and range parameters as they would be sent to /episodes
+     * @return JSON object with "count" and the "episodes" on the requested page
+     * @throws IllegalArgumentException for a filter, operator or sort the index cannot answer locally
+     */
+    public JSONObject list(Map<String, String> params) {
+        Result result = search(params);
+        JSONArray episodes = new JSONArray();
+        for (int id : result.getIds()) {
+            byte[] body = mirror.getBytes(RESOURCE, String.valueOf(id));
+            if (body != null) {
+                episodes.put(new JSONObject(new String(body, StandardCharsets.UTF_8)));
+            }
+        }
+        JSONObject response = new JSONObject();
+        response.put("count", result.getCount());
+        response.put(RESOURCE, episodes);
+        return response;
+    }
+
+    /**
+     * @return Number of indexed episodes
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Approximate heap held by the index structures, in bytes
+     */
+    public long heapBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = episodeIds.length * 4L + airingDates.length * 8L + byDate.length * 8L
+                    + ordinals.size() * 16L + (live.size() + featured.size()) / 8;
+            for (IntPostings list : postings.values()) {
+                bytes += list.heapBytes();
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void apply(Condition condition, BitSet matches) {
+        if ("featured".equals(condition.attribute)) {
+            boolean wanted = Boolean.parseBoolean(condition.values.get(0)) || "1".equals(condition.values.get(0));
+            if (wanted != condition.negated) {
+                matches.and(featured);
+            } else {
+                matches.andNot(featured);
+            }
+            return;
+        }
+        BitSet selected = new BitSet(nextOrdinal);
+        for (String value : condition.values) {
+            int key = parseId(value);
+            if (key < 0) {
+                continue;
+            }
+            if ("id".equals(condition.attribute)) {
+                int ordinal = ordinals.get(key);
+                if (ordinal >= 0) {
+                    selected.set(ordinal);
+                }
+            } else {
+                postings.get(condition.attribute).collect(key, selected);
+            }
+        }
+        if (condition.negated) {
+            matches.andNot(selected);
+        } else {
+            matches.and(selected);
+        }
+    }
+
+    private void retire(int ordinal) {
+        if (ordinal < 0) {
+            return;
+        }
+        live.clear(ordinal);
+        featured.clear(ordinal);
+        int dead = nextOrdinal - ordinals.size();
+        if (dead > 1024 && dead > ordinals.size() / 2) {
+            renumber();
+        }
+    }
+
+    /**
+     * Drop retired ordinals from every structure
+     */
+    private void renumber() {
+        int[] renumbered = new int[nextOrdinal];
+        int kept = 0;
+        for (int ordinal = 0; ordinal < nextOrdinal; ordinal++) {
+            if (live.get(ordinal)) {
+                int target = kept++;
+                renumbered[ordinal] = target;
+                episodeIds[target] = episodeIds[ordinal];
+                airingDates[target] = airingDates[ordinal];
+                featured.set(target, featured.get(ordinal));
+                ordinals.put(episodeIds[target], target);
+            } else {
+                renumbered[ordinal] = -1;
+            }
+        }
+        live.clear();
+        live.set(0, kept);
+        featured.clear(kept, nextOrdinal);
+        for (IntPostings list : postings.values()) {
+            list.renumber(renumbered);
+        }
+        nextOrdinal = kept;
+        byDateStale = true;
+    }
+
+    /**
+     * Take the read lock with the date order current, rebuilding it first if episodes changed
+     */
+    private void readLockWithDateOrder() {
+        while (true) {
+            lock.readLock().lock();
+            if (!byDateStale) {
+                return;
+            }
+            lock.readLock().unlock();
+            refreshDateOrder();
+        }
+    }
+
+    private void refreshDateOrder() {
+        lock.writeLock().lock();
+        try {
+            if (byDateStale) {
+                long[] keys = new long[live.cardinality()];
+                int n = 0;
+                for (int ordinal = live.nextSetBit(0); ordinal >= 0; ordinal = live.nextSetBit(ordinal + 1)) {
+                    if (airingDates[ordinal] != NO_DATE) {
+                        keys[n++] = airingDates[ordinal] << ORDINAL_BITS | ordinal;
+                    }
+                }
+                byDate = Arrays.copyOf(keys, n);
+                Arrays.sort(byDate);
+                byDateStale = false;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int lowerBound(long key) {
+        int index = Arrays.binarySearch(byDate, key);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private void post(String attribute, int ordinal, JSONArray related) {
+        for (int i = 0; related != null && i < related.length(); i++) {
+            post(attribute, ordinal, parseId(idOf(related.opt(i))));
+        }
+    }
+
+    private void post(String attribute, int ordinal, int key) {
+        if (key >= 0) {
+            postings.get(attribute).add(key, ordinal);
+        }
+    }
+
+    /**
+     * Related resources of an episode, embedded either as an array or a single object
+     */
+    static JSONArray related(JSONObject item, JSONObject embedded, String name) {
+        Object value = embedded != null && embedded.has(name) ? embedded.opt(name) : item.opt(name);
+        if (value instanceof JSONArray) {
+            return (JSONArray) value;
+        }
+        if (value instanceof JSONObject) {
+            return new JSONArray().put(value);
+        }
+        return null;
+    }
+
+    static String idOf(Object related) {
+        if (related instanceof JSONObject) {
+            return ((JSONObject) related).optString("id", null);
+        }
+        return related != null && related != JSONObject.NULL ? related.toString() : null;
+    }
+
+    static int parseId(String value) {
+        if (value == null || value.isEmpty() || value.length() > 9) {
+            return -1;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return -1;
+            }
+        }
+        return Integer.parseInt(value);
+    }
+
+    private static long epochSeconds(String value) {
+        if (value == null || value.isEmpty()) {
+            return NO_DATE;
+        }
+        try {
+            long seconds = Instant.parse(value).getEpochSecond();
+            return seconds >= 0 && seconds <= MAX_DATE ? seconds : NO_DATE;
+        } catch (DateTimeParseException e) {
+            return NO_DATE;
+        }
+    }
+
+    /**
+     * Result of a local query
+     */
+    public static final class Result {
+        private final int count;
+        private final int[] ids;
+
+        Result(int count, int[] ids) {
+            this.count = count;
+            this.ids = ids;
+        }
+
+        /**
+         * @return Number of episodes matching the filters, across all pages
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @return Episode ids on the requested page, in sort order
+         */
+        public int[] getIds() {
+            return ids;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{count=" + count + ", ids=" + Arrays.toString(ids) + '}';
+        }
+    }
+
+    /**
+     * One filter on an id-valued attribute or featured: the record matches any of the values,
+     * or none of them when negated
+     */
+    private static final class Condition {
+        final String attribute;
+        final List<String> values;
+        final boolean negated;
+
+        Condition(String attribute, List<String> values, boolean negated) {
+            this.attribute = attribute;
+            this.values = values;
+            this.negated = negated;
+        }
+    }
+
+    /**
+     * /episodes parameters parsed in the Drupal RESTful filter syntax: filter[a]=v, filter[a][value]=v
+     * with filter[a][operator]=op, and filter[a][value][i] with one shared or per-index operators
+     */
+    private static final class Query {
+        final List<Condition> conditions = new ArrayList<>();
+        long fromDate = 0;
+        long toDate = MAX_DATE;
+        boolean empty;
+        boolean ascending;
+        int page = 1;
+        int range = DEFAULT_RANGE;
+
+        static Query parse(Map<String, String> params) {
+            Query query = new Query();
+            Map<String, TreeMap<Integer, String>> values = new HashMap<>();
+            Map<String, TreeMap<Integer, String>> operators = new HashMap<>();
+            for (Map.Entry<String, String> param : params.entrySet()) {
+                String name = param.getKey();
+                switch (name) {
+                    case "page":
+                        query.page = Math.max(1, Integer.parseInt(param.getValue()));
+                        continue;
+                    case "range":
+                        query.range = Math.max(1, Integer.parseInt(param.getValue()));
+                        continue;
+                    case "sort":
+                        if ("airingDate".equals(param.getValue())) {
+                            query.ascending = true;
+                        } else if (!"-airingDate".equals(param.getValue())) {
+                            throw new IllegalArgumentException("Unsupported sort: " + param.getValue());
+                        }
+                        continue;
+                    case "credits_people":
+                    case "credits_role":
+                        query.conditions.add(new Condition(name, Arrays.asList(param.getValue().split(",")), false));
+                        continue;
+                    default:
+                        break;
+                }
+                if (!name.startsWith("filter[")) {
+                    throw new IllegalArgumentException("Unsupported parameter: " + name);
+                }
+                String[] parts = name.substring("filter[".length(), name.length() - 1).split("]\\[", -1);
+                String attribute = "category".equals(parts[0]) ? "categories" : parts[0];
+                int index = parts.length > 2 ? Integer.parseInt(parts[2]) : -1;
+                if (parts.length == 1 || "value".equals(parts[1])) {
+                    values.computeIfAbsent(attribute, a -> new TreeMap<>()).put(index, param.getValue());
+                } else if ("operator".equals(parts[1])) {
+                    operators.computeIfAbsent(attribute, a -> new TreeMap<>()).put(index, unquote(param.getValue()));
+                } else {
+                    throw new IllegalArgumentException("Unsupported parameter: " + name);
+                }
+            }
+            for (Map.Entry<String, TreeMap<Integer, String>> entry : values.entrySet()) {
+                query.add(entry.getKey(), entry.getValue(), operators.getOrDefault(entry.getKey(), new TreeMap<>()));
+            }
+            return query;
+        }
+
+        private void add(String attribute, TreeMap<Integer, String> values, TreeMap<Integer, String> operators) {
+            String shared = operators.get(-1);
+            if (shared != null && (shared.equalsIgnoreCase("IN") || shared.equalsIgnoreCase("NOT IN")
+                    || shared.equalsIgnoreCase("BETWEEN"))) {
+                add(attribute, shared.toUpperCase(), new ArrayList<>(values.values()));
+                return;
+            }
+            // Otherwise every value is its own condition, all of which must hold
+            for (Map.Entry<Integer, String> value : values.entrySet()) {
+                String operator = operators.getOrDefault(value.getKey(), shared != null ? shared : "=");
+                add(attribute, operator.toUpperCase(), split(value.getValue()));
+            }
+        }
+
+        private void add(String attribute, String operator, List<String> operands) {
+            if ("airingDate".equals(attribute)) {
+                addDateRange(operator, operands);
+                return;
+            }
+            if (!"id".equals(attribute) && !"featured".equals(attribute) && !"shows".equals(attribute)
+                    && !"topics".equals(attribute) && !"categories".equals(attribute)
+                    && !"credits".equals(attribute) && !"episodeNumber".equals(attribute)) {
+                throw new IllegalArgumentException("Unsupported filter: " + attribute);
+            }
+            switch (operator) {
+                case "=":
+                case "IN":
+                    conditions.add(new Condition(attribute, operands, false));
+                    break;
+                case "<>":
+                case "!=":
+                case "NOT IN":
+                    conditions.add(new Condition(attribute, operands, true));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported operator for " + attribute + ": " + operator);
+            }
+        }
+
+        private void addDateRange(String operator, List<String> operands) {
+            long first = Long.parseLong(operands.get(0));
+            switch (operator) {
+                case "=":
+                    narrow(first, first);
+                    break;
+                case ">":
+                    narrow(first + 1, Long.MAX_VALUE);
+                    break;
+                case ">=":
+                    narrow(first, Long.MAX_VALUE);
+                    break;
+                case "<":
+                    narrow(0, first - 1);
+                    break;
+                case "<=":
+                    narrow(0, first);
+                    break;
+                case "BETWEEN":
+                    if (operands.size() != 2) {
+                        throw new IllegalArgumentException("BETWEEN needs two airingDate values");
+                    }
+                    narrow(first, Long.parseLong(operands.get(1)));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported operator for airingDate: " + operator);
+            }
+        }
+
+        private void narrow(long from, long to) {
+            fromDate = Math.max(fromDate, from);
+            toDate = Math.min(toDate, to);
+            empty |= fromDate > toDate;
+        }
+
+        boolean hasDateRange() {
+            return fromDate > 0 || toDate < MAX_DATE;
+        }
+
+        private static List<String> split(String value) {
+            return Arrays.asList(value.split(","));
+        }
+
+        private static String unquote(String operator) {
+            String trimmed = operator.trim();
+            return trimmed.length() > 1 && trimmed.startsWith("\"") && trimmed.endsWith("\"")
+                    ? trimmed.substring(1, trimmed.length() - 1) : trimmed;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package tv.twit.api;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * One output file of a CatalogExport, written as a series of gzip members.
+ *
+ * A checkpoint finishes the current member and forces it to disk, so the file length at that point
+ * is a valid gzip stream (readers such as GZIPInputStream and zcat read concatenated members as one).
+ * Resuming truncates the file to the length recorded at the last checkpoint and appends new members,
+ * which drops anything written after it.
+ */
+abstract class ExportFile implements Closeable {
+    private static final int BUFFER = 64 * 1024;
+
+    private final FileChannel channel;
+    private final OutputStream out;
+    private final int level;
+    private GZIPOutputStream member;
+
+    /**
+     * @param file     The file to write
+     * @param resumeAt Length of the file at the last checkpoint, or 0 to start over
+     * @param level    Deflate compression level, 1 (fastest) to 9 (smallest)
+     */
+    ExportFile(Path file, long resumeAt, int level) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() < resumeAt) {
+            channel.close();
+            throw new IOException("Export file is shorter than its checkpoint: " + file);
+        }
+        channel.truncate(resumeAt);
+        channel.position(resumeAt);
+        this.out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER);
+        this.level = level;
+    }
+
+    /**
+     * Open an export file in the given format
+     */
+    static ExportFile open(CatalogExport.Format format, Path file, long resumeAt, int level) throws IOException {
+        return format == CatalogExport.Format.COLUMNAR
+                ? new ColumnarWriter(file, resumeAt, level)
+                : new JsonLines(file, resumeAt, level);
+    }
+
+    /**
+     * Append the items of one page
+     */
+    abstract void write(RawPage page) throws IOException;
+
+    /**
+     * Write out everything buffered for the current member
+     */
+    abstract void flushMember() throws IOException;
+
+    /**
+     * Finish the current member and force the file to disk
+     *
+     * @return The file length, to resume from
+     */
+    long checkpoint() throws IOException {
+        flushMember();
+        if (member != null) {
+            member.close();
+            member = null;
+        }
+        out.flush();
+        channel.force(false);
+        return channel.position();
+    }
+
+    /**
+     * @return The current gzip member, started on first use after a checkpoint
+     */
+    OutputStream member() throws IOException {
+        if (member == null) {
+            member = new GZIPOutputStream(new FilterOutputStream(out) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            }, BUFFER) {
+                {
+                    def.setLevel(level);
+                }
+            };
+        }
+        return member;
+    }
+
+    /**
+     * Close the file without a checkpoint; anything written since the last one is dropped on resume
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (member != null) {
+                member.close();
+            }
+            out.flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Gzip-compressed JSON Lines: each item's bytes copied from the response body, one item per line
+     */
+    private static final class JsonLines extends ExportFile {
+        private static final byte[] NEWLINE = {'\n'};
+
+        JsonLines(Path file, long resumeAt, int level) throws IOException {
+            super(file, resumeAt, level);
+        }
+
+        @Override
+        void write(RawPage page) throws IOException {
+            OutputStream out = member();
+            byte[] body = page.body();
+            for (int i = 0; i < page.size(); i++) {
+                // Line breaks can only be whitespace between tokens (strings escape them), so drop them
+                int from = page.start(i);
+                for (int at = from; at < page.end(i); at++) {
+                    if (body[at] == '\n' || body[at] == '\r') {
+                        out.write(body, from, at - from);
+                        from = at + 1;
+                    }
+                }
+                out.write(body, from, page.end(i) - from);
+                out.write(NEWLINE, 0, 1);
+            }
+        }
+
+        @Override
+        void flushMember() {
+        }
+    }
+}
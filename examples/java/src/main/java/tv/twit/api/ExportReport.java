@@ -0,0 +1,111 @@
+package tv.twit.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Export Report
+ * What a CatalogExport run wrote, per resource
+ */
+public final class ExportReport {
+    private final List<ResourceResult> results = new ArrayList<>();
+
+    ExportReport() {
+    }
+
+    void add(ResourceResult result) {
+        results.add(result);
+    }
+
+    public List<ResourceResult> getResults() {
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * @return Items in the exported files across all resources
+     */
+    public long getItems() {
+        return results.stream().mapToLong(ResourceResult::getItems).sum();
+    }
+
+    /**
+     * @return Items fetched from the API by this run across all resources
+     */
+    public long getFetched() {
+        return results.stream().mapToLong(ResourceResult::getFetched).sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("ExportReport{");
+        for (int i = 0; i < results.size(); i++) {
+            text.append(i == 0 ? "" : ", ").append(results.get(i));
+        }
+        return text.append('}').toString();
+    }
+
+    /**
+     * Outcome of exporting one resource
+     */
+    public static final class ResourceResult {
+        private final String resource;
+        private final long items;
+        private final long fetched;
+        private final int resumedAfterPage;
+        private final long bytes;
+        private final long millis;
+
+        ResourceResult(String resource, long items, long fetched, int resumedAfterPage, long bytes, long millis) {
+            this.resource = resource;
+            this.items = items;
+            this.fetched = fetched;
+            this.resumedAfterPage = resumedAfterPage;
+            this.bytes = bytes;
+            this.millis = millis;
+        }
+
+        public String getResource() {
+            return resource;
+        }
+
+        /**
+         * @return Items in the exported files, including those written before a resume
+         */
+        public long getItems() {
+            return items;
+        }
+
+        /**
+         * @return Items fetched by this run; 0 if the resource was already complete at the checkpoint
+         */
+        public long getFetched() {
+            return fetched;
+        }
+
+        /**
+         * @return The last page written before this run resumed the resource, 0 if it started from scratch
+         */
+        public int getResumedAfterPage() {
+            return resumedAfterPage;
+        }
+
+        /**
+         * @return Total size of the resource's files in bytes, all formats
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        @Override
+        public String toString() {
+            return resource + ": items=" + items + ", fetched=" + fetched
+                    + (resumedAfterPage > 0 ? ", resumed after page " + resumedAfterPage : "")
+                    + ", " + bytes + " bytes, " + millis + "ms";
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package tv.twit.api;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Graph Fetcher
+ * Fetches an item together with the related resources a {@link GraphShape} asks for, in as few round
+ * trips as the graph allows. Every request carries the API's fields parameter for its shape, and
+ * relations already present in a response (under {@code _embedded} or inline, as credits hold their
+ * people) are used as they are. Only relations that are missing, or embedded items that lack a
+ * requested field, are fetched: through the item's {@code _links} or the embedded item's self link.
+ * Those requests are collected level by level and each level is sent concurrently on the bulk
+ * executor, so a graph costs one round trip per level that needs fetching, and identical requests
+ * within a level are sent once.
+ *
+ * The result holds the projected fields of each item and its relations as plain properties
+ * ({@code show.credits[0].people.label}), without {@code _links} or {@code _embedded}.
+ */
+final class GraphFetcher {
+    private final String basePath;
+    private final BiFunction<String, Map<String, String>, JSONObject> fetch;
+    private final BulkExecutor executor;
+
+    /**
+     * @param baseUrl  The client's base URL, used to turn link hrefs into endpoints
+     * @param fetch    Makes a request through the client's cache and request guard
+     * @param executor Runs the requests of one level concurrently
+     */
+    GraphFetcher(String baseUrl, BiFunction<String, Map<String, String>, JSONObject> fetch, BulkExecutor executor) {
+        this.basePath = pathOf(baseUrl);
+        this.fetch = fetch;
+        this.executor = executor;
+    }
+
+    /**
+     * Fetch an item and its related resources
+     *
+     * @param resource The resource name, e.g. "shows"
+     * @param id       The item ID
+     * @param shape    The fields and relations to fetch
+     * @return The projected item, or the error object of the first request that failed
+     */
+    JSONObject fetch(String resource, String id, GraphShape shape) {
+        JSONObject[] root = new JSONObject[1];
+        Map<String, Request> pending = new LinkedHashMap<>();
+        enqueue(pending, "/" + resource + "/" + id, new LinkedHashMap<>(), shape, value -> {
+            if (value instanceof JSONObject) {
+                root[0] = (JSONObject) value;
+            }
+        });
+
+        while (!pending.isEmpty()) {
+            Map<String, Request> level = pending;
+            pending = new LinkedHashMap<>();
+            List<String> keys = new ArrayList<>(level.keySet());
+            List<JSONObject> responses = executor.fetchAll(keys,
+                    key -> fetch.apply(level.get(key).endpoint, level.get(key).params));
+            for (int i = 0; i < keys.size(); i++) {
+                JSONObject response = responses.get(i);
+                if (response.has("error")) {
+                    return response;
+                }
+                Request request = level.get(keys.get(i));
+                Object value = response.opt(resourceOf(request.endpoint));
+                for (Placement placement : request.placements) {
+                    place(value, placement.shape, placement.target, pending, false);
+                }
+            }
+        }
+        return root[0] != null ? root[0]
+                : ApiResponses.failure("Unexpected response: no " + resource + " item " + id);
+    }
+
+    /**
+     * Project a value from a response into the result, queueing requests for anything missing
+     *
+     * @param embedded true if the value is an embedded copy, which is fetched through its self link if incomplete
+     */
+    private void place(Object value, GraphShape shape, Consumer<Object> target, Map<String, Request> pending,
+                       boolean embedded) {
+        if (value instanceof JSONArray) {
+            JSONArray items = (JSONArray) value;
+            int size = shape.getLimit() > 0 ? Math.min(shape.getLimit(), items.length()) : items.length();
+            JSONArray out = new JSONArray();
+            for (int i = 0; i < size; i++) {
+                int index = i;
+                out.put(JSONObject.NULL);
+                place(items.opt(i), shape, item -> out.put(index, item), pending, embedded);
+            }
+            target.accept(out);
+        } else if (value instanceof JSONObject) {
+            JSONObject item = (JSONObject) value;
+            String self = embedded && !isComplete(item, shape) ? selfHref(item) : null;
+            if (self != null) {
+                enqueue(pending, self, shape, target);
+            } else {
+                target.accept(project(item, shape, pending));
+            }
+        }
+    }
+
+    private JSONObject project(JSONObject item, GraphShape shape, Map<String, Request> pending) {
+        JSONObject out = new JSONObject();
+        if (shape.getFields().isEmpty()) {
+            for (String name : item.keySet()) {
+                if (!name.startsWith("_")) {
+                    out.put(name, item.get(name));
+                }
+            }
+        } else {
+            for (String name : shape.getFields()) {
+                if (item.has(name)) {
+                    out.put(name, item.get(name));
+                }
+            }
+        }
+        for (Map.Entry<String, GraphShape> relation : shape.getRelations().entrySet()) {
+            String name = relation.getKey();
+            Object related = embedded(item, name);
+            if (related != null) {
+                place(related, relation.getValue(), value -> out.put(name, value), pending, true);
+            } else {
+                String href = linkHref(item, name);
+                if (href != null) {
+                    enqueue(pending, href, relation.getValue(), value -> out.put(name, value));
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * An embedded item is complete if it has every requested field and holds or links every relation
+     */
+    private static boolean isComplete(JSONObject item, GraphShape shape) {
+        for (String name : shape.getFields()) {
+            if (!item.has(name)) {
+                return false;
+            }
+        }
+        for (String name : shape.getRelations().keySet()) {
+            if (embedded(item, name) == null && linkHref(item, name) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The related items held by an item, under _embedded or inline, or null
+     */
+    private static Object embedded(JSONObject item, String name) {
+        JSONObject embedded = item.optJSONObject("_embedded");
+        Object related = embedded != null ? embedded.opt(name) : null;
+        if (related == null) {
+            related = item.opt(name);
+        }
+        return related instanceof JSONObject || related instanceof JSONArray ? related : null;
+    }
+
+    private static String linkHref(JSONObject item, String name) {
+        JSONObject links = item.optJSONObject("_links");
+        JSONObject link = links != null ? links.optJSONObject(name) : null;
+        String href = link != null ? link.optString("href", null) : null;
+        return href != null && !href.isEmpty() ? href : null;
+    }
+
+    private static String selfHref(JSONObject item) {
+        String self = item.optString("self", null);
+        return self != null && !self.isEmpty() ? self : linkHref(item, "self");
+    }
+
+    /**
+     * Queue a request for a link, adding the shape's parameters, range and fields
+     */
+    private void enqueue(Map<String, Request> pending, String href, GraphShape shape, Consumer<Object> target) {
+        Map<String, String> params = ResourceQuery.parseQuery(href);
+        enqueue(pending, endpointOf(href), params, shape, target);
+    }
+
+    private static void enqueue(Map<String, Request> pending, String endpoint, Map<String, String> params,
+                                GraphShape shape, Consumer<Object> target) {
+        params.putAll(shape.getParams());
+        if (shape.getLimit() > 0) {
+            params.put("range", String.valueOf(shape.getLimit()));
+        }
+        String fields = shape.fieldsParam();
+        if (fields != null) {
+            params.put("fields", fields);
+        }
+        pending.computeIfAbsent(UrlTemplate.key(endpoint, params), key -> new Request(endpoint, params))
+                .placements.add(new Placement(shape, target));
+    }
+
+    /**
+     * Turn a link href into an endpoint of this client: the path without the base URL's path
+     */
+    String endpointOf(String href) {
+        String path = href.replace("\\/", "/");
+        int scheme = path.indexOf("://");
+        if (scheme >= 0) {
+            int slash = path.indexOf('/', scheme + 3);
+            path = slash >= 0 ? path.substring(slash) : "/";
+        }
+        int end = path.length();
+        for (char c : new char[]{'?', '#'}) {
+            int at = path.indexOf(c);
+            if (at >= 0 && at < end) {
+                end = at;
+            }
+        }
+        path = path.substring(0, end);
+        return path.startsWith(basePath + "/") ? path.substring(basePath.length()) : path;
+    }
+
+    private static String pathOf(String baseUrl) {
+        int scheme = baseUrl.indexOf("://");
+        int slash = baseUrl.indexOf('/', scheme >= 0 ? scheme + 3 : 0);
+        String path = slash >= 0 ? baseUrl.substring(slash) : "";
+        return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    /**
+     * @return The first path segment of an endpoint, which names the response's item or items field
+     */
+    private static String resourceOf(String endpoint) {
+        int slash = endpoint.indexOf('/', 1);
+        return endpoint.substring(1, slash > 0 ? slash : endpoint.length());
+    }
+
+    private static final class Request {
+        final String endpoint;
+        final Map<String, String> params;
+        final List<Placement> placements = new ArrayList<>(1);
+
+        Request(String endpoint, Map<String, String> params) {
+            this.endpoint = endpoint;
+            this.params = params;
+        }
+    }
+
+    /**
+     * Where a fetched value goes in the result, and what to take from it
+     */
+    private static final class Placement {
+        final GraphShape shape;
+        final Consumer<Object> target;
+
+        Placement(GraphShape shape, Consumer<Object> target) {
+            this.shape = shape;
+            this.target = target;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package tv.twit.api;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Graph Shape
+ * Declares the part of a resource graph a caller needs: which fields of an item, which related
+ * resources and, recursively, what to take from each of them. Relations are named as in the API's
+ * HAL responses ("credits", "people", "episodes") and are resolved from {@code _embedded} data when
+ * the response already holds it, or by following the item's {@code _links} otherwise.
+ *
+ * <pre>
+ * GraphShape showPage = GraphShape.builder()
+ *         .fields("id", "label", "tagLine", "coverArt")
+ *         .relation("credits", GraphShape.builder().fields("id", "label")
+ *                 .relation("people", GraphShape.builder().fields("id", "label", "picture").build())
+ *                 .build())
+ *         .relation("episodes", GraphShape.builder().fields("id", "label", "airingDate").limit(5).build())
+ *         .build();
+ * </pre>
+ */
+public final class GraphShape {
+    private final Set<String> fields;
+    private final Map<String, GraphShape> relations;
+    private final Map<String, String> params;
+    private final int limit;
+
+    private GraphShape(Builder builder) {
+        this.fields = Collections.unmodifiableSet(new LinkedHashSet<>(builder.fields));
+        this.relations = Collections.unmodifiableMap(new LinkedHashMap<>(builder.relations));
+        this.params = Collections.unmodifiableMap(new LinkedHashMap<>(builder.params));
+        this.limit = builder.limit;
+    }
+
+    /**
+     * Create a builder for a shape that keeps every field and follows no relations
+     *
+     * @return A new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return Fields to keep, empty to keep every field
+     */
+    public Set<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * @return Related resources to include, by relation name
+     */
+    public Map<String, GraphShape> getRelations() {
+        return relations;
+    }
+
+    /**
+     * @return Query parameters added when the relation is fetched through a link
+     */
+    public Map<String, String> getParams() {
+        return params;
+    }
+
+    /**
+     * @return Maximum number of items kept for a list relation, 0 for no limit
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return Depth of the graph: 1 for a shape without relations
+     */
+    public int getDepth() {
+        int depth = 0;
+        for (GraphShape relation : relations.values()) {
+            depth = Math.max(depth, relation.getDepth());
+        }
+        return depth + 1;
+    }
+
+    /**
+     * The value of the API's fields parameter for this shape: the fields and the relation names, so
+     * embedded relations stay in the response. Null when every field is kept.
+     */
+    String fieldsParam() {
+        if (fields.isEmpty()) {
+            return null;
+        }
+        Set<String> names = new LinkedHashSet<>(fields);
+        names.addAll(relations.keySet());
+        return String.join(",", names);
+    }
+
+    /**
+     * Builder for GraphShape
+     */
+    public static final class Builder {
+        private final Set<String> fields = new LinkedHashSet<>();
+        private final Map<String, GraphShape> relations = new LinkedHashMap<>();
+        private final Map<String, String> params = new LinkedHashMap<>();
+        private int limit;
+
+        private Builder() {
+        }
+
+        /**
+         * @param fields Fields to keep; without any, every field is kept and no projection is requested
+         */
+        public Builder fields(String... fields) {
+            this.fields.addAll(Arrays.asList(fields));
+            return this;
+        }
+
+        /**
+         * @param name  The relation name, e.g. "credits"
+         * @param shape What to take from the related items
+         */
+        public Builder relation(String name, GraphShape shape) {
+            if (name.startsWith("_") || "self".equals(name)) {
+                throw new IllegalArgumentException("Not a relation: " + name);
+            }
+            relations.put(name, shape);
+            return this;
+        }
+
+        /**
+         * Add a query parameter for when the relation is fetched through its link, e.g. sort=-airingDate.
+         * Relations already embedded in the parent response are used as they are.
+         */
+        public Builder param(String name, String value) {
+            params.put(name, value);
+            return this;
+        }
+
+        /**
+         * @param limit Maximum number of items to keep for a list relation, sent as range when it is fetched
+         */
+        public Builder limit(int limit) {
+            if (limit < 0) {
+                throw new IllegalArgumentException("limit must not be negative: " + limit);
+            }
+            this.limit = limit;
+            return this;
+        }
+
+        public GraphShape build() {
+            return new GraphShape(this);
+        }
+    }
+}
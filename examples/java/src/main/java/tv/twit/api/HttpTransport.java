@@ -0,0 +1,216 @@
+package tv.twit.api;
+
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.conn.util.PublicSuffixMatcher;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pooled HTTP transport
+ * Owns the connection manager and the HttpClient built on top of it.
+ * The default TLS context (trust store, cipher suites) is only set up for the first https connection,
+ * so clients of a plain-http endpoint such as a local TwitApiProxy never pay for it.
+ */
+final class HttpTransport implements Closeable {
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+
+    HttpTransport(TransportConfig config) {
+        this(config, false);
+    }
+
+    /**
+     * @param timePoolWaits Measure how long each request waits for a pooled connection,
+     *                      see {@link #takePoolWaitNanos()}
+     */
+    HttpTransport(TransportConfig config, boolean timePoolWaits) {
+        long ttl = config.getConnectionTtlMillis();
+        Registry<ConnectionSocketFactory> sockets = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", new LazyTlsSocketFactory())
+                .build();
+        this.connectionManager = timePoolWaits
+                ? new TimedConnectionManager(sockets, ttl)
+                // A TTL of -1 keeps connections until they are closed
+                : new PoolingHttpClientConnectionManager(sockets, null, null, null, ttl > 0 ? ttl : -1,
+                TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(config.getMaxTotalConnections());
+        connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+        connectionManager.setValidateAfterInactivity(config.getValidateAfterInactivityMillis());
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(config.getConnectTimeoutMillis())
+                .setSocketTimeout(config.getSocketTimeoutMillis())
+                .setConnectionRequestTimeout(config.getConnectionRequestTimeoutMillis())
+                .build();
+
+        HttpClientBuilder builder = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy(config.getKeepAliveMillis()))
+                .evictExpiredConnections()
+                .evictIdleConnections(config.getIdleEvictionMillis(), TimeUnit.MILLISECONDS);
+        if (!config.isCompression()) {
+            // By default the builder negotiates gzip/deflate and wraps entities in streaming decompressors
+            builder.disableContentCompression();
+        }
+        if (!config.isCookies()) {
+            // The builder parses the public suffix list for cookie domain checks unless given a matcher
+            builder.disableCookieManagement()
+                    .setPublicSuffixMatcher(new PublicSuffixMatcher(Collections.emptyList(), Collections.emptyList()));
+        }
+        this.httpClient = builder.build();
+    }
+
+    /**
+     * Honour the server's Keep-Alive timeout if present, otherwise keep the connection for the configured time
+     */
+    private static ConnectionKeepAliveStrategy keepAliveStrategy(long defaultMillis) {
+        return (HttpResponse response, HttpContext context) -> {
+            HeaderElementIterator it = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+            while (it.hasNext()) {
+                HeaderElement element = it.nextElement();
+                if ("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+                    try {
+                        return Math.min(defaultMillis, Long.parseLong(element.getValue()) * 1000L);
+                    } catch (NumberFormatException ignored) {
+                        // Fall through to the configured default
+                    }
+                }
+            }
+            return defaultMillis;
+        };
+    }
+
+    CloseableHttpClient client() {
+        return httpClient;
+    }
+
+    /**
+     * Current pool statistics (leased, pending, available and max connections)
+     */
+    PoolStats poolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * Get and clear the time the current thread has waited for pooled connections since the last call
+     *
+     * @return Wait in nanoseconds, always 0 unless the transport was created to time pool waits
+     */
+    long takePoolWaitNanos() {
+        if (!(connectionManager instanceof TimedConnectionManager)) {
+            return 0;
+        }
+        long[] waited = ((TimedConnectionManager) connectionManager).waited.get();
+        long nanos = waited[0];
+        waited[0] = 0;
+        return nanos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    /**
+     * Connection manager that adds the time spent leasing each connection to a per-thread total.
+     * The client requests and leases the connection on the calling thread, before connecting.
+     */
+    private static final class TimedConnectionManager extends PoolingHttpClientConnectionManager {
+        final ThreadLocal<long[]> waited = ThreadLocal.withInitial(() -> new long[1]);
+
+        TimedConnectionManager(Registry<ConnectionSocketFactory> sockets, long ttlMillis) {
+            // A TTL of -1 keeps connections until they are closed, as the default constructor does
+            super(sockets, null, null, null, ttlMillis > 0 ? ttlMillis : -1, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+            ConnectionRequest request = super.requestConnection(route, state);
+            return new ConnectionRequest() {
+                @Override
+                public HttpClientConnection get(long timeout, TimeUnit unit)
+                        throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                    long start = System.nanoTime();
+                    try {
+                        return request.get(timeout, unit);
+                    } finally {
+                        waited.get()[0] += System.nanoTime() - start;
+                    }
+                }
+
+                @Override
+                public boolean cancel() {
+                    return request.cancel();
+                }
+            };
+        }
+    }
+
+    /**
+     * The default TLS socket factory, created on first use
+     */
+    private static final class LazyTlsSocketFactory implements LayeredConnectionSocketFactory {
+        private volatile LayeredConnectionSocketFactory delegate;
+
+        private LayeredConnectionSocketFactory delegate() throws IOException {
+            LayeredConnectionSocketFactory factory = delegate;
+            if (factory == null) {
+                try {
+                    factory = SSLConnectionSocketFactory.getSocketFactory();
+                } catch (RuntimeException e) {
+                    throw new IOException("Unable to initialise TLS: " + e.getMessage(), e);
+                }
+                delegate = factory;
+            }
+            return factory;
+        }
+
+        @Override
+        public Socket createSocket(HttpContext context) throws IOException {
+            return delegate().createSocket(context);
+        }
+
+        @Override
+        public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+                                    InetSocketAddress localAddress, HttpContext context) throws IOException {
+            return delegate().connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+        }
+
+        @Override
+        public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context)
+                throws IOException {
+            return delegate().createLayeredSocket(socket, target, port, context);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package tv.twit.api;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Posting lists for one indexed attribute: each key (a show, topic, person, ... id) maps to the
+ * ordinals of the records carrying it, held in growable int arrays rather than boxed collections
+ */
+final class IntPostings {
+    private final IntIntMap slots = new IntIntMap(64);
+    private int[][] lists = new int[64][];
+    private int[] sizes = new int[64];
+    private int keyCount;
+
+    void add(int key, int ordinal) {
+        int slot = slots.get(key);
+        if (slot < 0) {
+            slot = keyCount++;
+            slots.put(key, slot);
+            if (slot == lists.length) {
+                lists = Arrays.copyOf(lists, slot * 2);
+                sizes = Arrays.copyOf(sizes, slot * 2);
+            }
+            lists[slot] = new int[4];
+        }
+        int[] list = lists[slot];
+        if (sizes[slot] == list.length) {
+            list = lists[slot] = Arrays.copyOf(list, list.length * 2);
+        }
+        list[sizes[slot]++] = ordinal;
+    }
+
+    /**
+     * Set the bits of every ordinal posted under a key
+     */
+    void collect(int key, BitSet target) {
+        int slot = slots.get(key);
+        if (slot >= 0) {
+            int[] list = lists[slot];
+            for (int i = 0, n = sizes[slot]; i < n; i++) {
+                target.set(list[i]);
+            }
+        }
+    }
+
+    /**
+     * Renumber the postings after a compaction, dropping ordinals that map to -1
+     *
+     * @param renumbered New ordinal for each old ordinal
+     */
+    void renumber(int[] renumbered) {
+        for (int slot = 0; slot < keyCount; slot++) {
+            int[] list = lists[slot];
+            int kept = 0;
+            for (int i = 0; i < sizes[slot]; i++) {
+                int ordinal = renumbered[list[i]];
+                if (ordinal >= 0) {
+                    list[kept++] = ordinal;
+                }
+            }
+            sizes[slot] = kept;
+            if (kept < list.length / 4) {
+                lists[slot] = Arrays.copyOf(list, Math.max(4, kept));
+            }
+        }
+    }
+
+    int keyCount() {
+        return keyCount;
+    }
+
+    /**
+     * @return Approximate heap held by the posting arrays, in bytes
+     */
+    long heapBytes() {
+        long bytes = (long) lists.length * 8 + sizes.length * 4L + slots.size() * 16L;
+        for (int slot = 0; slot < keyCount; slot++) {
+            bytes += 16 + lists[slot].length * 4L;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,107 @@
+package tv.twit.api;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * One structural change to a watched list, keyed by item id
+ */
+public final class ItemChange {
+
+    /**
+     * Kind of change
+     */
+    public enum Type {
+        ADDED,
+        REMOVED,
+        CHANGED
+    }
+
+    private final Type type;
+    private final String resource;
+    private final String id;
+    private final JSONObject previous;
+    private final JSONObject current;
+    private final Set<String> changedFields;
+
+    ItemChange(Type type, String resource, String id, JSONObject previous, JSONObject current) {
+        this.type = type;
+        this.resource = resource;
+        this.id = id;
+        this.previous = previous;
+        this.current = current;
+        this.changedFields = type == Type.CHANGED ? changedFields(previous, current) : Collections.emptySet();
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The resource name, e.g. "streams"
+     */
+    public String getResource() {
+        return resource;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return The item before the change, null when it was added
+     */
+    public JSONObject getPrevious() {
+        return previous;
+    }
+
+    /**
+     * @return The item after the change, null when it was removed
+     */
+    public JSONObject getCurrent() {
+        return current;
+    }
+
+    /**
+     * @return Top-level fields whose values differ, for CHANGED
+     */
+    public Set<String> getChangedFields() {
+        return changedFields;
+    }
+
+    private static Set<String> changedFields(JSONObject previous, JSONObject current) {
+        Set<String> fields = new LinkedHashSet<>();
+        for (String key : current.keySet()) {
+            Object before = previous.opt(key);
+            Object after = current.opt(key);
+            if (before == null || !same(before, after)) {
+                fields.add(key);
+            }
+        }
+        for (String key : previous.keySet()) {
+            if (!current.has(key)) {
+                fields.add(key);
+            }
+        }
+        return Collections.unmodifiableSet(fields);
+    }
+
+    static boolean same(Object before, Object after) {
+        if (before instanceof JSONObject) {
+            return after instanceof JSONObject && ((JSONObject) before).similar(after);
+        }
+        if (before instanceof JSONArray) {
+            return after instanceof JSONArray && ((JSONArray) before).similar(after);
+        }
+        return before.equals(after);
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + resource + "/" + id + (type == Type.CHANGED ? " " + changedFields : "");
+    }
+}
@@ -0,0 +1,487 @@
+package tv.twit.api;
+
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Key Pool
+ * Spreads requests over several app-id/app-key pairs, each with its own 3scale plan, so the combined
+ * rate can exceed what one plan allows. Every key has a token bucket sized to its plan; each request
+ * goes to the key with the most tokens left, and waits for that key's next token if none has one.
+ *
+ * A key that the API reports as over its usage limits, or whose credentials are rejected (401/403),
+ * cools down: it gets no requests until its cool-down ends, and the request is sent again with another
+ * key. After the cool-down the key is tried again; each further failure doubles its cool-down, up to a
+ * maximum, and a success resets it. When every key is cooling down, requests fail fast.
+ *
+ * <pre>
+ * KeyPool keys = KeyPool.builder()
+ *         .key("id-1", "key-1")
+ *         .key("id-2", "key-2")
+ *         .rate(5, 10)
+ *         .build();
+ * TwitApiClient client = TwitApiClient.builder().keyPool(keys).build();
+ * </pre>
+ */
+public final class KeyPool {
+
+    /**
+     * Whether a key takes requests
+     */
+    public enum State {
+        AVAILABLE,
+        COOLING_DOWN
+    }
+
+    private final List<Key> keys;
+    private final long cooldownNanos;
+    private final long maxCooldownNanos;
+    private long failovers;
+    private long exhausted;
+
+    private KeyPool(Builder builder) {
+        if (builder.keys.isEmpty()) {
+            throw new IllegalArgumentException("A key pool needs at least one key");
+        }
+        this.keys = new ArrayList<>(builder.keys.size());
+        for (String[] pair : builder.keys) {
+            keys.add(new Key(pair[0], pair[1], builder.rate, builder.burst));
+        }
+        this.cooldownNanos = TimeUnit.MILLISECONDS.toNanos(builder.cooldownMillis);
+        this.maxCooldownNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(builder.cooldownMillis, builder.maxCooldownMillis));
+    }
+
+    /**
+     * Create a builder for a key pool
+     *
+     * @return A new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Create a pool from the keys list and optional key_pool section of credentials.yml
+     *
+     * @param keys     Mappings with app_id and app_key
+     * @param settings The key_pool mapping (rate, burst, cooldown_ms, max_cooldown_ms), may be null
+     * @return A new pool
+     */
+    @SuppressWarnings("unchecked")
+    static KeyPool fromMap(List<Object> keys, Map<String, Object> settings) {
+        Builder builder = new Builder();
+        for (Object entry : keys) {
+            if (!(entry instanceof Map)) {
+                throw new IllegalArgumentException("Each entry of keys needs app_id and app_key: " + entry);
+            }
+            Map<String, Object> pair = (Map<String, Object>) entry;
+            if (pair.get("app_id") == null || pair.get("app_key") == null) {
+                throw new IllegalArgumentException("Each entry of keys needs app_id and app_key: " + pair.keySet());
+            }
+            builder.key(String.valueOf(pair.get("app_id")), String.valueOf(pair.get("app_key")));
+        }
+        if (settings != null) {
+            if (settings.containsKey("rate")) {
+                double rate = Double.parseDouble(String.valueOf(settings.get("rate")).trim());
+                int burst = settings.containsKey("burst")
+                        ? (int) Double.parseDouble(String.valueOf(settings.get("burst")).trim())
+                        : (int) Math.max(1, Math.ceil(rate));
+                builder.rate(rate, burst);
+            }
+            if (settings.containsKey("cooldown_ms") || settings.containsKey("max_cooldown_ms")) {
+                long cooldown = settings.containsKey("cooldown_ms")
+                        ? Long.parseLong(String.valueOf(settings.get("cooldown_ms")).trim()) : builder.cooldownMillis;
+                long maxCooldown = settings.containsKey("max_cooldown_ms")
+                        ? Long.parseLong(String.valueOf(settings.get("max_cooldown_ms")).trim()) : builder.maxCooldownMillis;
+                builder.cooldown(cooldown, maxCooldown);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return Number of keys in the pool
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * @return The first key added, whose app-id names the client in logs
+     */
+    Key first() {
+        return keys.get(0);
+    }
+
+    /**
+     * Take a token from the available key with the most budget left, waiting for it if needed
+     *
+     * @return The key to send the request with, or null if every key is cooling down or the thread was interrupted
+     */
+    Key acquire() {
+        Key best = null;
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (Key key : keys) {
+                if (key.coolingUntil - now > 0) {
+                    continue;
+                }
+                key.refill(now);
+                // Without a plan rate every key has the same budget: take the one used least
+                if (best == null || key.tokens > best.tokens
+                        || (key.tokens == best.tokens && key.assigned < best.assigned)) {
+                    best = key;
+                }
+            }
+            if (best == null) {
+                exhausted++;
+                return null;
+            }
+            best.assigned++;
+            wait = best.reserve();
+        }
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Record the outcome of a request sent with a key
+     *
+     * @param key        The key the request was sent with
+     * @param statusCode The HTTP status, 0 if no response was received
+     * @param usageLimit Whether the API reported that the key's usage limits are exceeded
+     * @return true if the key was put to cool down and another key is available to send the request again
+     */
+    synchronized boolean onResponse(Key key, int statusCode, boolean usageLimit) {
+        key.requests++;
+        boolean auth = statusCode == 401 || statusCode == 403;
+        if (!usageLimit && !auth) {
+            if (statusCode == 200 || statusCode == 304) {
+                key.strikes = 0;
+            }
+            return false;
+        }
+        if (usageLimit) {
+            key.usageLimitErrors++;
+        } else {
+            key.authFailures++;
+        }
+        long now = System.nanoTime();
+        // Requests already in flight when the key was put to cool down do not extend it
+        if (key.coolingUntil - now <= 0) {
+            key.strikes++;
+            key.cooldowns++;
+            key.coolingForQuota = usageLimit;
+            long cooldown = cooldownNanos << Math.min(key.strikes - 1, 20);
+            key.coolingUntil = now + Math.min(maxCooldownNanos, cooldown > 0 ? cooldown : maxCooldownNanos);
+        }
+        for (Key other : keys) {
+            if (other.coolingUntil - now <= 0) {
+                failovers++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Error for a request that found every key cooling down: the usage-limit error if any key is over its
+     * limits, otherwise an authentication failure
+     */
+    synchronized JSONObject exhaustedError() {
+        for (Key key : keys) {
+            if (key.coolingForQuota) {
+                return ApiResponses.circuitOpen(true);
+            }
+        }
+        JSONObject error = new JSONObject();
+        error.put("error", "Authentication failed");
+        error.put("code", 401);
+        return error;
+    }
+
+    /**
+     * Snapshot the state and counters of every key
+     *
+     * @return One entry per key, in the order they were added
+     */
+    public synchronized List<KeyStats> getStats() {
+        long now = System.nanoTime();
+        List<KeyStats> stats = new ArrayList<>(keys.size());
+        for (Key key : keys) {
+            key.refill(now);
+            long cooling = Math.max(0, key.coolingUntil - now);
+            String reason = cooling == 0 ? null : key.coolingForQuota ? "usage limits exceeded" : "authentication failed";
+            stats.add(new KeyStats(key.appId, cooling > 0 ? State.COOLING_DOWN : State.AVAILABLE,
+                    key.requests, key.usageLimitErrors, key.authFailures, key.cooldowns,
+                    reason, TimeUnit.NANOSECONDS.toMillis(cooling), Math.max(0, key.tokens)));
+        }
+        return Collections.unmodifiableList(stats);
+    }
+
+    /**
+     * @return Requests sent again with another key after a key was put to cool down
+     */
+    public synchronized long getFailovers() {
+        return failovers;
+    }
+
+    /**
+     * @return Requests failed fast because every key was cooling down
+     */
+    public synchronized long getExhaustedCount() {
+        return exhausted;
+    }
+
+    /**
+     * @return JSON object with "keys" (the stats of each key), "failovers" and "exhausted"
+     */
+    public JSONObject toJson() {
+        JSONArray stats = new JSONArray();
+        for (KeyStats key : getStats()) {
+            stats.put(key.toJson());
+        }
+        return new JSONObject()
+                .put("keys", stats)
+                .put("failovers", getFailovers())
+                .put("exhausted", getExhaustedCount());
+    }
+
+    @Override
+    public String toString() {
+        return toJson().toString();
+    }
+
+    /**
+     * One credential pair and its budget. Guarded by the pool's lock.
+     */
+    static final class Key {
+        final String appId;
+        final String appKey;
+        final Header[] headers;
+        private final double rate;
+        private final double capacity;
+        private double tokens;
+        private long refilledAt;
+        private long coolingUntil;
+        private int strikes;
+        private boolean coolingForQuota;
+        private long assigned;
+        private long requests;
+        private long usageLimitErrors;
+        private long authFailures;
+        private long cooldowns;
+
+        Key(String appId, String appKey, double rate, int burst) {
+            this.appId = appId;
+            this.appKey = appKey;
+            this.headers = new Header[]{
+                    new BasicHeader("Accept", "application/json"),
+                    new BasicHeader("app-id", appId),
+                    new BasicHeader("app-key", appKey)
+            };
+            this.rate = rate;
+            this.capacity = burst;
+            this.tokens = burst;
+            this.refilledAt = System.nanoTime();
+            this.coolingUntil = refilledAt;
+        }
+
+        void refill(long now) {
+            if (rate > 0) {
+                tokens = Math.min(capacity, tokens + (now - refilledAt) / 1e9 * rate);
+            }
+            refilledAt = now;
+        }
+
+        /**
+         * Take a token, going into debt if there is none
+         *
+         * @return Nanoseconds until the token is due
+         */
+        long reserve() {
+            if (rate <= 0) {
+                return 0;
+            }
+            tokens -= 1;
+            return tokens >= 0 ? 0 : (long) (-tokens / rate * 1e9);
+        }
+    }
+
+    /**
+     * State and counters of one key
+     */
+    public static final class KeyStats {
+        private final String appId;
+        private final State state;
+        private final long requests;
+        private final long usageLimitErrors;
+        private final long authFailures;
+        private final long cooldowns;
+        private final String cooldownReason;
+        private final long cooldownRemainingMillis;
+        private final double tokens;
+
+        KeyStats(String appId, State state, long requests, long usageLimitErrors, long authFailures, long cooldowns,
+                 String cooldownReason, long cooldownRemainingMillis, double tokens) {
+            this.appId = appId;
+            this.state = state;
+            this.requests = requests;
+            this.usageLimitErrors = usageLimitErrors;
+            this.authFailures = authFailures;
+            this.cooldowns = cooldowns;
+            this.cooldownReason = cooldownReason;
+            this.cooldownRemainingMillis = cooldownRemainingMillis;
+            this.tokens = tokens;
+        }
+
+        public String getAppId() {
+            return appId;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        /**
+         * @return Requests sent with the key
+         */
+        public long getRequests() {
+            return requests;
+        }
+
+        /**
+         * @return Responses reporting that the key's usage limits are exceeded
+         */
+        public long getUsageLimitErrors() {
+            return usageLimitErrors;
+        }
+
+        /**
+         * @return Responses rejecting the key's credentials (401/403)
+         */
+        public long getAuthFailures() {
+            return authFailures;
+        }
+
+        /**
+         * @return Times the key was put to cool down
+         */
+        public long getCooldowns() {
+            return cooldowns;
+        }
+
+        /**
+         * @return Why the key is cooling down, or null if it is available
+         */
+        public String getCooldownReason() {
+            return cooldownReason;
+        }
+
+        /**
+         * @return Time until the key takes requests again, 0 if it is available
+         */
+        public long getCooldownRemainingMillis() {
+            return cooldownRemainingMillis;
+        }
+
+        /**
+         * @return Requests the key can take right now without waiting
+         */
+        public double getTokens() {
+            return tokens;
+        }
+
+        JSONObject toJson() {
+            JSONObject json = new JSONObject()
+                    .put("appId", appId)
+                    .put("state", state.name())
+                    .put("requests", requests)
+                    .put("usageLimitErrors", usageLimitErrors)
+                    .put("authFailures", authFailures)
+                    .put("cooldowns", cooldowns)
+                    .put("tokens", Math.floor(tokens * 10) / 10);
+            if (cooldownReason != null) {
+                json.put("cooldownReason", cooldownReason).put("cooldownRemainingMillis", cooldownRemainingMillis);
+            }
+            return json;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("KeyStats{appId=%s, state=%s, requests=%d, usageLimitErrors=%d, authFailures=%d, cooldowns=%d%s}",
+                    appId, state, requests, usageLimitErrors, authFailures, cooldowns,
+                    cooldownReason != null ? ", cooling down " + cooldownRemainingMillis + "ms (" + cooldownReason + ")" : "");
+        }
+    }
+
+    public static final class Builder {
+        private final List<String[]> keys = new ArrayList<>();
+        private double rate;
+        private int burst = 1;
+        private long cooldownMillis = 60_000;
+        private long maxCooldownMillis = 3_600_000;
+
+        private Builder() {
+        }
+
+        /**
+         * Add a credential pair
+         */
+        public Builder key(String appId, String appKey) {
+            if (appId == null || appKey == null) {
+                throw new IllegalArgumentException("appId and appKey are required");
+            }
+            keys.add(new String[]{appId, appKey});
+            return this;
+        }
+
+        /**
+         * The plan's limit for each key (default: no limit, requests are only spread evenly)
+         *
+         * @param requestsPerSecond Sustained requests per second per key
+         * @param burst             Requests a key may send back to back after an idle period
+         */
+        public Builder rate(double requestsPerSecond, int burst) {
+            if (requestsPerSecond <= 0 || burst <= 0) {
+                throw new IllegalArgumentException("Rate and burst must be positive");
+            }
+            this.rate = requestsPerSecond;
+            this.burst = burst;
+            return this;
+        }
+
+        /**
+         * How long a key over its usage limits or with rejected credentials is left out (default 1 minute,
+         * doubling with each further failure up to 1 hour)
+         *
+         * @param cooldownMillis    Cool-down after the first failure
+         * @param maxCooldownMillis Longest cool-down
+         */
+        public Builder cooldown(long cooldownMillis, long maxCooldownMillis) {
+            this.cooldownMillis = cooldownMillis;
+            this.maxCooldownMillis = maxCooldownMillis;
+            return this;
+        }
+
+        public KeyPool build() {
+            return new KeyPool(this);
+        }
+    }
+}
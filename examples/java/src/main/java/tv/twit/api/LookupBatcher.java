@@ -0,0 +1,277 @@
+package tv.twit.api;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.logging.Logger;
+
+/**
+ * Collects single-item lookups for a short window and resolves them with one list request per batch,
+ * using filter[id][value][n]=id with the IN operator. Results are split back to the waiting callers
+ * as single-item responses ({"shows": {...}}). Identical lookups that are pending or in flight share
+ * one future. Ids missing from a batch response get the same not-found error an item request would.
+ * A resource whose list endpoint rejects (4xx) or ignores the id filter falls back to item requests
+ * and is not batched again; any other failure (5xx, usage limits, 429, no response) is returned to
+ * every caller in the batch rather than retried as one request per id.
+ * The list requests bypass the response cache, since their id sets rarely repeat; instead each item
+ * split out of a batch is stored in the cache under its own /resource/id key.
+ */
+final class LookupBatcher implements Closeable {
+    // Batch and fallback requests in flight at once; further work queues
+    private static final int WORKERS = 8;
+
+    private final BatchConfig config;
+    private final BiFunction<String, Map<String, String>, JSONObject> fetcher;
+    private final BiFunction<String, Map<String, String>, ApiResponse> listFetcher;
+    private final ResponseCacheLayer cache;
+    private final Logger logger = Logger.getLogger(LookupBatcher.class.getName());
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(daemonThreads("timer"));
+    private final ExecutorService workers = Executors.newFixedThreadPool(WORKERS, daemonThreads("worker"));
+    private final ConcurrentHashMap<String, CompletableFuture<JSONObject>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> pending = new HashMap<>();
+    private final Set<String> unsupported = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder batchRequests = new LongAdder();
+    private final LongAdder batchedItems = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    /**
+     * @param config      Window, batch size and batched resources
+     * @param fetcher     Makes an item request, e.g. the client's cached, rate-limited path
+     * @param listFetcher Makes a batch list request without going through the response cache
+     * @param cache       Where items split out of a batch are stored, or null without a response cache
+     */
+    LookupBatcher(BatchConfig config, BiFunction<String, Map<String, String>, JSONObject> fetcher,
+                  BiFunction<String, Map<String, String>, ApiResponse> listFetcher, ResponseCacheLayer cache) {
+        this.config = config;
+        this.fetcher = fetcher;
+        this.listFetcher = listFetcher;
+        this.cache = cache;
+    }
+
+    private static ThreadFactory daemonThreads(String role) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "twit-api-batch-" + role + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * @param resource Resource name, e.g. "shows"
+     * @return Whether lookups for the resource are batched
+     */
+    boolean handles(String resource) {
+        return config.getResources().contains(resource);
+    }
+
+    /**
+     * Look up one item, waiting for its batch to complete
+     *
+     * @param resource Resource name, e.g. "shows"
+     * @param id       The item id
+     * @return The single-item response, or an error object
+     */
+    JSONObject get(String resource, String id) {
+        try {
+            return load(resource, id).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Queue a lookup, joining an identical pending or in-flight one
+     */
+    CompletableFuture<JSONObject> load(String resource, String id) {
+        lookups.increment();
+        String key = resource + "/" + id;
+        CompletableFuture<JSONObject> mine = new CompletableFuture<>();
+        CompletableFuture<JSONObject> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            deduplicated.increment();
+            return existing;
+        }
+        mine.whenComplete((json, error) -> inFlight.remove(key, mine));
+
+        if (config.getMaxBatchSize() == 1 || unsupported.contains(resource)) {
+            workers.execute(() -> fetchSingle(resource, id, mine));
+            return mine;
+        }
+
+        List<String> full = null;
+        List<String> started = null;
+        synchronized (pending) {
+            List<String> ids = pending.get(resource);
+            if (ids == null) {
+                ids = new ArrayList<>();
+                pending.put(resource, ids);
+                started = ids;
+            }
+            ids.add(id);
+            if (ids.size() >= config.getMaxBatchSize()) {
+                pending.remove(resource);
+                full = ids;
+            }
+        }
+        if (full != null) {
+            List<String> batch = full;
+            workers.execute(() -> fetchBatch(resource, batch));
+        } else if (started != null) {
+            List<String> batch = started;
+            timer.schedule(() -> flush(resource, batch), config.getWindowMillis(), TimeUnit.MILLISECONDS);
+        }
+        return mine;
+    }
+
+    /**
+     * Send a batch when its window closes, unless it was already sent because it filled up
+     */
+    private void flush(String resource, List<String> batch) {
+        synchronized (pending) {
+            if (pending.get(resource) != batch) {
+                return;
+            }
+            pending.remove(resource);
+        }
+        workers.execute(() -> fetchBatch(resource, batch));
+    }
+
+    private void fetchBatch(String resource, List<String> ids) {
+        if (ids.size() == 1) {
+            fetchSingle(resource, ids.get(0), inFlight.get(resource + "/" + ids.get(0)));
+            return;
+        }
+        Map<String, String> params = new LinkedHashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            params.put("filter[id][value][" + i + "]", ids.get(i));
+        }
+        params.put("filter[id][operator]", "IN");
+        params.put("range", String.valueOf(ids.size()));
+
+        ApiResponse response;
+        try {
+            batchRequests.increment();
+            response = listFetcher.apply("/" + resource, params);
+        } catch (RuntimeException e) {
+            response = ApiResponse.failed(ApiResponses.failure(e.getMessage()));
+        }
+
+        JSONArray items = response.json.has("error") ? null : response.json.optJSONArray(resource);
+        if (items == null) {
+            int code = response.json.optInt("code", 0);
+            if (code >= 400 && code < 500 && code != 429) {
+                disable(resource, "HTTP " + code);
+                fetchEach(resource, ids);
+            } else {
+                // Splitting an overloaded or rate-limited batch into item requests would only add load
+                for (String id : ids) {
+                    CompletableFuture<JSONObject> future = inFlight.get(resource + "/" + id);
+                    if (future != null) {
+                        future.complete(response.json);
+                    }
+                }
+            }
+            return;
+        }
+
+        Map<String, JSONObject> byId = new HashMap<>();
+        for (int i = 0; i < items.length(); i++) {
+            JSONObject item = items.optJSONObject(i);
+            if (item != null) {
+                byId.put(item.optString("id"), item);
+            }
+        }
+        if (items.length() > 0 && ids.stream().noneMatch(byId::containsKey)) {
+            // The filter was ignored and we got an arbitrary page of the list
+            disable(resource, "id filter ignored");
+            fetchEach(resource, ids);
+            return;
+        }
+        int weight = Math.max(1, response.bodySize / Math.max(1, items.length()));
+        for (String id : ids) {
+            CompletableFuture<JSONObject> future = inFlight.get(resource + "/" + id);
+            JSONObject item = byId.get(id);
+            if (item == null) {
+                // The filter was applied, so the id does not exist
+                if (future != null) {
+                    future.complete(ApiResponses.errorFor(404, "", "/" + resource + "/" + id, logger));
+                }
+            } else {
+                JSONObject single = new JSONObject();
+                single.put(resource, item);
+                if (cache != null) {
+                    cache.put("/" + resource + "/" + id, single, weight);
+                }
+                if (future != null) {
+                    batchedItems.increment();
+                    future.complete(single);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fetch each id of a batch with its own item request, spread over the workers
+     */
+    private void fetchEach(String resource, List<String> ids) {
+        for (String id : ids) {
+            CompletableFuture<JSONObject> future = inFlight.get(resource + "/" + id);
+            workers.execute(() -> fetchSingle(resource, id, future));
+        }
+    }
+
+    private void disable(String resource, String reason) {
+        if (unsupported.add(resource)) {
+            logger.warning("Batched lookups are not supported by /" + resource + " (" + reason
+                    + "), using item requests");
+        }
+    }
+
+    private void fetchSingle(String resource, String id, CompletableFuture<JSONObject> future) {
+        if (future == null) {
+            return;
+        }
+        fallbacks.increment();
+        try {
+            future.complete(fetcher.apply("/" + resource + "/" + id, new HashMap<>()));
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    BatchStats stats() {
+        return new BatchStats(lookups.sum(), deduplicated.sum(), batchRequests.sum(), batchedItems.sum(),
+                fallbacks.sum());
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        workers.shutdownNow();
+    }
+}
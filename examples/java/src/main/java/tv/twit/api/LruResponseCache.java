@@ -0,0 +1,96 @@
+package tv.twit.api;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU Response Cache
+ * An in-memory ResponseCache bounded by entry count and total weight (approximate bytes).
+ * The least recently used entries are evicted first.
+ */
+public class LruResponseCache implements ResponseCache {
+    private final int maxEntries;
+    private final long maxWeight;
+    private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalWeight;
+    private long evictions;
+
+    /**
+     * @param maxEntries Maximum number of responses to keep
+     * @param maxWeight  Maximum total weight (approximate bytes) of the responses to keep
+     */
+    public LruResponseCache(int maxEntries, long maxWeight) {
+        if (maxEntries <= 0 || maxWeight <= 0) {
+            throw new IllegalArgumentException("Cache bounds must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Create a cache holding up to 1000 responses and 32 MB
+     */
+    public LruResponseCache() {
+        this(1000, 32L * 1024 * 1024);
+    }
+
+    @Override
+    public synchronized CachedResponse get(String key) {
+        return entries.get(key);
+    }
+
+    @Override
+    public synchronized void put(String key, CachedResponse response) {
+        if (response.getWeight() > maxWeight) {
+            // Larger than the whole cache, storing it would only flush everything else
+            invalidate(key);
+            return;
+        }
+        CachedResponse previous = entries.put(key, response);
+        if (previous != null) {
+            totalWeight -= previous.getWeight();
+        }
+        totalWeight += response.getWeight();
+
+        Iterator<Map.Entry<String, CachedResponse>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || totalWeight > maxWeight) && eldest.hasNext()) {
+            Map.Entry<String, CachedResponse> entry = eldest.next();
+            if (entry.getKey().equals(key)) {
+                continue;
+            }
+            totalWeight -= entry.getValue().getWeight();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    @Override
+    public synchronized void invalidate(String key) {
+        CachedResponse removed = entries.remove(key);
+        if (removed != null) {
+            totalWeight -= removed.getWeight();
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        entries.clear();
+        totalWeight = 0;
+    }
+
+    @Override
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized long weight() {
+        return totalWeight;
+    }
+
+    @Override
+    public synchronized long evictionCount() {
+        return evictions;
+    }
+}
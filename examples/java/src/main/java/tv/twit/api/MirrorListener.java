@@ -0,0 +1,28 @@
+package tv.twit.api;
+
+import org.json.JSONObject;
+
+/**
+ * Receives the records a CatalogMirror stores or drops while it syncs, so derived views such as
+ * local indexes can be kept up to date incrementally
+ */
+public interface MirrorListener {
+
+    /**
+     * A record was added or replaced
+     *
+     * @param resource The resource name, e.g. "episodes"
+     * @param id       The item id
+     * @param item     The item as returned by the list endpoint
+     */
+    void onUpsert(String resource, String id, JSONObject item);
+
+    /**
+     * A record was dropped because a full sync no longer returned it
+     *
+     * @param resource The resource name
+     * @param id       The item id
+     */
+    default void onRemove(String resource, String id) {
+    }
+}
@@ -0,0 +1,347 @@
+package tv.twit.api;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only record log with an in-memory index and memory-mapped reads, used by CatalogMirror.
+ *
+ * Each record is [int payloadLength][int crc32][payload] where the payload is
+ * [byte resourceLength][resource][short idLength][id][long timestamp][body]. A later record for the
+ * same resource and id replaces the earlier one. The index is saved next to the log with the log
+ * length it covers, so opening only scans records appended after it; a torn record at the end of
+ * the log (crash during a write) is truncated. Compaction rewrites the log with the live records only.
+ */
+final class MirrorLog implements Closeable {
+    private static final long INDEX_MAGIC = 0x5457695449445831L;
+    private static final int HEADER = 8;
+
+    /**
+     * Location of a record body in the log
+     */
+    static final class Entry {
+        final long offset;
+        final int length;
+        final long timestamp;
+
+        Entry(long offset, int length, long timestamp) {
+            this.offset = offset;
+            this.length = length;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * An open log file with its mapping and index; replaced as a whole by compaction
+     */
+    private static final class State {
+        final FileChannel channel;
+        final Map<String, Map<String, Entry>> index;
+        volatile MappedByteBuffer map;
+        long size;
+
+        State(FileChannel channel, Map<String, Map<String, Entry>> index, long size) throws IOException {
+            this.channel = channel;
+            this.index = index;
+            this.size = size;
+            this.map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    private final Path logFile;
+    private final Path indexFile;
+    private final Logger logger = Logger.getLogger(MirrorLog.class.getName());
+    private volatile State state;
+    private long liveBytes;
+
+    MirrorLog(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.logFile = directory.resolve("records.log");
+        this.indexFile = directory.resolve("records.idx");
+        FileChannel channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        Map<String, Map<String, Entry>> index = new ConcurrentHashMap<>();
+        long covered = loadIndex(index, channel.size());
+        long size = scan(channel, covered, index);
+        if (size < channel.size()) {
+            logger.warning("Truncating " + (channel.size() - size) + " bytes of incomplete records from " + logFile);
+            channel.truncate(size);
+        }
+        this.state = new State(channel, index, size);
+        index.forEach((resource, entries) -> entries.forEach((id, entry) -> liveBytes += recordSize(resource, id, entry)));
+    }
+
+    private static long recordSize(String resource, String id, Entry entry) {
+        return HEADER + 1 + resource.getBytes(StandardCharsets.UTF_8).length
+                + 2 + id.getBytes(StandardCharsets.UTF_8).length + 8 + entry.length;
+    }
+
+    /**
+     * Append a record, replacing any earlier record for the same resource and id
+     */
+    synchronized void put(String resource, String id, long timestamp, byte[] body) throws IOException {
+        byte[] resourceBytes = resource.getBytes(StandardCharsets.UTF_8);
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        int payloadLength = 1 + resourceBytes.length + 2 + idBytes.length + 8 + body.length;
+        ByteBuffer record = ByteBuffer.allocate(HEADER + payloadLength);
+        record.putInt(payloadLength).putInt(0);
+        record.put((byte) resourceBytes.length).put(resourceBytes);
+        record.putShort((short) idBytes.length).put(idBytes);
+        record.putLong(timestamp).put(body);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), HEADER, payloadLength);
+        record.putInt(4, (int) crc.getValue());
+        record.flip();
+
+        State current = state;
+        long position = current.size;
+        while (record.hasRemaining()) {
+            position += current.channel.write(record, position);
+        }
+        long bodyOffset = current.size + HEADER + payloadLength - body.length;
+        current.size = position;
+        Entry previous = current.index.computeIfAbsent(resource, r -> new ConcurrentHashMap<>())
+                .put(id, new Entry(bodyOffset, body.length, timestamp));
+        liveBytes += HEADER + payloadLength - (previous != null ? recordSize(resource, id, previous) : 0);
+    }
+
+    /**
+     * Drop a record from the index; its bytes are reclaimed by the next compaction
+     */
+    synchronized void remove(String resource, String id) {
+        Map<String, Entry> entries = state.index.get(resource);
+        Entry removed = entries != null ? entries.remove(id) : null;
+        if (removed != null) {
+            liveBytes -= recordSize(resource, id, removed);
+        }
+    }
+
+    Entry entry(String resource, String id) {
+        Map<String, Entry> entries = state.index.get(resource);
+        return entries != null ? entries.get(id) : null;
+    }
+
+    /**
+     * Read a record body through the memory mapping
+     *
+     * @return The body, or null if there is no record
+     */
+    byte[] get(String resource, String id) {
+        State current = state;
+        Map<String, Entry> entries = current.index.get(resource);
+        Entry entry = entries != null ? entries.get(id) : null;
+        if (entry == null) {
+            return null;
+        }
+        MappedByteBuffer map = current.map;
+        if (entry.offset + entry.length > map.capacity()) {
+            map = remap(current);
+        }
+        byte[] body = new byte[entry.length];
+        ByteBuffer view = map.duplicate();
+        view.position((int) entry.offset);
+        view.get(body);
+        return body;
+    }
+
+    private static synchronized MappedByteBuffer remap(State current) {
+        try {
+            long size = current.channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Mirror log exceeds 2GB, compact it");
+            }
+            if (current.map.capacity() < size) {
+                current.map = current.channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            return current.map;
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to map mirror log", e);
+        }
+    }
+
+    Set<String> ids(String resource) {
+        Map<String, Entry> entries = state.index.get(resource);
+        return entries != null ? Collections.unmodifiableSet(entries.keySet()) : Collections.emptySet();
+    }
+
+    int size(String resource) {
+        Map<String, Entry> entries = state.index.get(resource);
+        return entries != null ? entries.size() : 0;
+    }
+
+    /**
+     * @return Bytes in the log that belong to replaced or removed records
+     */
+    synchronized long garbageBytes() {
+        return state.size - liveBytes;
+    }
+
+    /**
+     * Flush appended records to disk and save the index
+     */
+    synchronized void commit() throws IOException {
+        State current = state;
+        current.channel.force(false);
+        saveIndex(current);
+    }
+
+    /**
+     * Rewrite the log with live records only and switch readers to it
+     */
+    synchronized void compact() throws IOException {
+        State current = state;
+        Path compacted = logFile.resolveSibling("records.log.compact");
+        Map<String, Map<String, Entry>> index = new ConcurrentHashMap<>();
+        long size = 0;
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Map.Entry<String, Map<String, Entry>> resource : current.index.entrySet()) {
+                Map<String, Entry> entries = new ConcurrentHashMap<>();
+                for (Map.Entry<String, Entry> record : resource.getValue().entrySet()) {
+                    Entry entry = record.getValue();
+                    int prefix = 1 + resource.getKey().getBytes(StandardCharsets.UTF_8).length
+                            + 2 + record.getKey().getBytes(StandardCharsets.UTF_8).length + 8;
+                    long start = entry.offset - prefix - HEADER;
+                    long length = HEADER + prefix + entry.length;
+                    long copied = 0;
+                    while (copied < length) {
+                        copied += current.channel.transferTo(start + copied, length - copied, out);
+                    }
+                    entries.put(record.getKey(), new Entry(size + HEADER + prefix, entry.length, entry.timestamp));
+                    size += length;
+                }
+                index.put(resource.getKey(), entries);
+            }
+            out.force(false);
+        }
+        Files.move(compacted, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        State next = new State(channel, index, size);
+        saveIndex(next);
+        state = next;
+        liveBytes = size;
+        current.channel.close();
+    }
+
+    private void saveIndex(State current) throws IOException {
+        Path tmp = indexFile.resolveSibling("records.idx.tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeLong(INDEX_MAGIC);
+            out.writeLong(current.size);
+            out.writeInt(current.index.size());
+            for (Map.Entry<String, Map<String, Entry>> resource : current.index.entrySet()) {
+                out.writeUTF(resource.getKey());
+                out.writeInt(resource.getValue().size());
+                for (Map.Entry<String, Entry> record : resource.getValue().entrySet()) {
+                    out.writeUTF(record.getKey());
+                    out.writeLong(record.getValue().offset);
+                    out.writeInt(record.getValue().length);
+                    out.writeLong(record.getValue().timestamp);
+                }
+            }
+        }
+        Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Load the saved index if it matches the log
+     *
+     * @return The log length the loaded index covers, 0 if the log must be scanned from the start
+     */
+    private long loadIndex(Map<String, Map<String, Entry>> index, long logSize) {
+        if (!Files.exists(indexFile)) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readLong() != INDEX_MAGIC) {
+                return 0;
+            }
+            long covered = in.readLong();
+            if (covered > logSize) {
+                return 0;
+            }
+            int resources = in.readInt();
+            for (int r = 0; r < resources; r++) {
+                String resource = in.readUTF();
+                int count = in.readInt();
+                Map<String, Entry> entries = new ConcurrentHashMap<>(count * 2);
+                for (int i = 0; i < count; i++) {
+                    entries.put(in.readUTF(), new Entry(in.readLong(), in.readInt(), in.readLong()));
+                }
+                index.put(resource, entries);
+            }
+            return covered;
+        } catch (IOException e) {
+            logger.warning("Ignoring unreadable mirror index " + indexFile + ": " + e.getMessage());
+            index.clear();
+            return 0;
+        }
+    }
+
+    /**
+     * Add the records from a position to the end of the log to the index
+     *
+     * @return Length of the log up to the last complete record
+     */
+    private static long scan(FileChannel channel, long from, Map<String, Map<String, Entry>> index)
+            throws IOException {
+        long size = channel.size();
+        if (from >= size) {
+            return from;
+        }
+        MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, from, size - from);
+        CRC32 crc = new CRC32();
+        long position = from;
+        while (map.remaining() >= HEADER) {
+            int start = map.position();
+            int payloadLength = map.getInt();
+            int checksum = map.getInt();
+            if (payloadLength < 11 || payloadLength > map.remaining()) {
+                break;
+            }
+            crc.reset();
+            ByteBuffer payload = map.slice();
+            payload.limit(payloadLength);
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            byte[] resource = new byte[map.get() & 0xff];
+            map.get(resource);
+            byte[] id = new byte[map.getShort() & 0xffff];
+            map.get(id);
+            long timestamp = map.getLong();
+            int bodyLength = payloadLength - 1 - resource.length - 2 - id.length - 8;
+            long bodyOffset = from + map.position();
+            map.position(start + HEADER + payloadLength);
+            index.computeIfAbsent(new String(resource, StandardCharsets.UTF_8), r -> new ConcurrentHashMap<>())
+                    .put(new String(id, StandardCharsets.UTF_8), new Entry(bodyOffset, bodyLength, timestamp));
+            position = from + map.position();
+        }
+        return position;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        commit();
+        state.channel.close();
+    }
+}
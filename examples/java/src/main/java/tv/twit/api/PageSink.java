@@ -0,0 +1,22 @@
+package tv.twit.api;
+
+import org.json.JSONArray;
+
+import java.io.IOException;
+
+/**
+ * Page Sink
+ * Receives the pages of a parallel fetch, in page order, as they become available
+ */
+@FunctionalInterface
+public interface PageSink {
+
+    /**
+     * Accept one page of items
+     *
+     * @param page  The page number, starting at 1
+     * @param items The items on the page
+     * @throws IOException if the sink cannot write the page; this aborts the fetch
+     */
+    void accept(int page, JSONArray items) throws IOException;
+}
@@ -0,0 +1,290 @@
+package tv.twit.api;
+
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Parallel Page Fetcher
+ * Bulk export of a list endpoint. Reads the total count from page 1, works out the page range and
+ * fetches the remaining pages concurrently with at most {@code window} pages in flight. Pages are
+ * handed to the sink in page order as soon as they and all earlier pages have arrived, so memory
+ * stays bounded by the window. Requests go through the client's normal request path, so caching
+ * and any request limits configured on the client apply to every page.
+ */
+public final class ParallelPageFetcher {
+    private final ResourceQuery query;
+    private final int window;
+
+    ParallelPageFetcher(ResourceQuery query, int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Window must be positive: " + window);
+        }
+        this.query = query;
+        this.window = window;
+    }
+
+    /**
+     * Fetch all pages and pass them to the sink in page order
+     *
+     * @param sink Receives each page
+     * @return Total number of items delivered
+     * @throws TwitApiException if a page request fails
+     * @throws UncheckedIOException if the sink fails
+     */
+    public long forEachPage(PageSink sink) {
+        return forEachPage(1, sink);
+    }
+
+    /**
+     * Fetch the pages from a given page on and pass them to the sink in page order, e.g. to resume an
+     * interrupted export. Page 1 is always fetched to plan the page range, but only delivered if
+     * {@code firstPage} is 1.
+     *
+     * @param firstPage The first page to deliver, starting at 1
+     * @param sink      Receives each page
+     * @return Total number of items delivered
+     * @throws TwitApiException if a page request fails
+     * @throws UncheckedIOException if the sink fails
+     */
+    public long forEachPage(int firstPage, PageSink sink) {
+        return fetch(firstPage, new Pages<JSONObject>() {
+            @Override
+            public JSONObject fetch(Map<String, String> params) {
+                return query.fetchPage(params);
+            }
+
+            @Override
+            public int size(JSONObject page) {
+                return query.itemsOf(page).length();
+            }
+
+            @Override
+            public int count(JSONObject page) {
+                return page.optInt("count", -1);
+            }
+
+            @Override
+            public Map<String, String> next(JSONObject page, Map<String, String> params) {
+                return ResourceQuery.nextParams(page, params);
+            }
+
+            @Override
+            public void deliver(int number, JSONObject page) throws IOException {
+                sink.accept(number, query.itemsOf(page));
+            }
+        });
+    }
+
+    /**
+     * Like {@link #forEachPage(int, PageSink)}, but pages are handed over as undecoded response bodies
+     */
+    long forEachRawPage(int firstPage, RawPageSink sink) {
+        return fetch(firstPage, new Pages<RawPage>() {
+            @Override
+            public RawPage fetch(Map<String, String> params) {
+                return query.fetchRawPage(params);
+            }
+
+            @Override
+            public int size(RawPage page) {
+                return page.size();
+            }
+
+            @Override
+            public int count(RawPage page) {
+                return page.count();
+            }
+
+            @Override
+            public Map<String, String> next(RawPage page, Map<String, String> params) {
+                return ResourceQuery.nextParams(page.next(), params);
+            }
+
+            @Override
+            public void deliver(int number, RawPage page) throws IOException {
+                sink.accept(number, page);
+            }
+        });
+    }
+
+    /**
+     * Fetch all pages and pass the items to a consumer in order
+     *
+     * @param consumer Receives each item
+     * @return Total number of items delivered
+     */
+    public long forEach(Consumer<JSONObject> consumer) {
+        return forEachPage((page, items) -> {
+            for (int i = 0; i < items.length(); i++) {
+                consumer.accept(items.getJSONObject(i));
+            }
+        });
+    }
+
+    /**
+     * Fetch all pages and write the items to a file, one JSON object per line
+     *
+     * @param file The file to write, replaced if it exists
+     * @return Total number of items written
+     */
+    public long writeJsonLines(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            return forEachPage((page, items) -> {
+                for (int i = 0; i < items.length(); i++) {
+                    items.getJSONObject(i).write(writer);
+                    writer.write('\n');
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private <P> long fetch(int firstPage, Pages<P> pages) {
+        if (firstPage <= 0) {
+            throw new IllegalArgumentException("First page must be positive: " + firstPage);
+        }
+        Map<String, String> firstParams = query.getParams();
+        firstParams.put("page", "1");
+        P first = pages.fetch(firstParams);
+        int perPage = pages.size(first);
+        long delivered = 0;
+        if (firstPage == 1) {
+            deliver(pages, 1, first);
+            delivered = perPage;
+        }
+
+        int total = pages.count(first);
+        if (perPage == 0) {
+            return delivered;
+        }
+        if (total < 0) {
+            // No count to plan with: fall back to following the next links one page at a time
+            return delivered + followNextLinks(pages, first, firstParams, firstPage);
+        }
+
+        int lastPage = (total + perPage - 1) / perPage;
+        int from = Math.max(2, firstPage);
+        if (from > lastPage) {
+            return delivered;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(window, lastPage - from + 1), daemonThreads());
+        Deque<Future<P>> inFlight = new ArrayDeque<>(window);
+        try {
+            int nextToSubmit = from;
+            while (nextToSubmit <= lastPage && inFlight.size() < window) {
+                inFlight.add(submit(executor, pages, nextToSubmit++));
+            }
+            for (int number = from; number <= lastPage; number++) {
+                P page = await(inFlight.poll());
+                if (nextToSubmit <= lastPage) {
+                    inFlight.add(submit(executor, pages, nextToSubmit++));
+                }
+                deliver(pages, number, page);
+                delivered += pages.size(page);
+            }
+        } finally {
+            inFlight.forEach(future -> future.cancel(true));
+            executor.shutdownNow();
+        }
+        return delivered;
+    }
+
+    private <P> Future<P> submit(ExecutorService executor, Pages<P> pages, int page) {
+        Map<String, String> params = query.getParams();
+        params.put("page", String.valueOf(page));
+        return executor.submit(() -> pages.fetch(params));
+    }
+
+    private <P> long followNextLinks(Pages<P> pages, P page, Map<String, String> params, int firstPage) {
+        long delivered = 0;
+        int number = 1;
+        Map<String, String> next = pages.next(page, params);
+        while (next != null) {
+            P current = pages.fetch(next);
+            int size = pages.size(current);
+            if (size == 0) {
+                break;
+            }
+            if (++number >= firstPage) {
+                deliver(pages, number, current);
+                delivered += size;
+            }
+            next = pages.next(current, next);
+        }
+        return delivered;
+    }
+
+    private static <P> void deliver(Pages<P> pages, int number, P page) {
+        try {
+            pages.deliver(number, page);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static <P> P await(Future<P> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Page fetch interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Page fetch failed", e.getCause());
+        }
+    }
+
+    /**
+     * How pages of one representation are fetched, inspected and handed to the caller
+     */
+    private interface Pages<P> {
+        P fetch(Map<String, String> params);
+
+        int size(P page);
+
+        /**
+         * @return The total item count reported by the API, -1 if absent
+         */
+        int count(P page);
+
+        Map<String, String> next(P page, Map<String, String> params);
+
+        void deliver(int number, P page) throws IOException;
+    }
+
+    /**
+     * Receives undecoded pages in page order
+     */
+    @FunctionalInterface
+    interface RawPageSink {
+        void accept(int page, RawPage body) throws IOException;
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "twit-api-pages-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
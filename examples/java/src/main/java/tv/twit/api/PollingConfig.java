@@ -0,0 +1,114 @@
+package tv.twit.api;
+
+/**
+ * Polling Configuration
+ * Controls the adaptive schedule of change feeds: poll at the minimum interval while items change,
+ * stretch the interval by the backoff factor after every poll that finds nothing new, up to the maximum,
+ * and wait the maximum interval after a failed poll.
+ */
+public final class PollingConfig {
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+    private final double backoffFactor;
+
+    private PollingConfig(Builder builder) {
+        this.minIntervalMillis = builder.minIntervalMillis;
+        this.maxIntervalMillis = builder.maxIntervalMillis;
+        this.backoffFactor = builder.backoffFactor;
+    }
+
+    /**
+     * Defaults: every 5 seconds while streams change, stretching by 1.5x up to once a minute
+     *
+     * @return The default configuration
+     */
+    public static PollingConfig defaults() {
+        return builder().build();
+    }
+
+    /**
+     * Create a builder initialised with the default settings
+     *
+     * @return A new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public long getMinIntervalMillis() {
+        return minIntervalMillis;
+    }
+
+    public long getMaxIntervalMillis() {
+        return maxIntervalMillis;
+    }
+
+    public double getBackoffFactor() {
+        return backoffFactor;
+    }
+
+    /**
+     * @return The delay before the next poll
+     */
+    long nextInterval(long current, boolean changed, boolean failed) {
+        if (failed) {
+            return maxIntervalMillis;
+        }
+        if (changed) {
+            return minIntervalMillis;
+        }
+        return Math.min(maxIntervalMillis, Math.max(minIntervalMillis, (long) (current * backoffFactor)));
+    }
+
+    /**
+     * Builder for PollingConfig
+     */
+    public static final class Builder {
+        private long minIntervalMillis = 5000;
+        private long maxIntervalMillis = 60000;
+        private double backoffFactor = 1.5;
+
+        private Builder() {
+        }
+
+        /**
+         * @param minIntervalMillis Interval while items keep changing, and before the first backoff
+         */
+        public Builder minIntervalMillis(long minIntervalMillis) {
+            if (minIntervalMillis <= 0) {
+                throw new IllegalArgumentException("minIntervalMillis must be positive: " + minIntervalMillis);
+            }
+            this.minIntervalMillis = minIntervalMillis;
+            return this;
+        }
+
+        /**
+         * @param maxIntervalMillis Longest interval between polls, also used after a failed poll
+         */
+        public Builder maxIntervalMillis(long maxIntervalMillis) {
+            if (maxIntervalMillis <= 0) {
+                throw new IllegalArgumentException("maxIntervalMillis must be positive: " + maxIntervalMillis);
+            }
+            this.maxIntervalMillis = maxIntervalMillis;
+            return this;
+        }
+
+        /**
+         * @param backoffFactor Multiplier applied to the interval after a poll without changes
+         */
+        public Builder backoffFactor(double backoffFactor) {
+            if (backoffFactor < 1) {
+                throw new IllegalArgumentException("backoffFactor must be at least 1: " + backoffFactor);
+            }
+            this.backoffFactor = backoffFactor;
+            return this;
+        }
+
+        public PollingConfig build() {
+            if (maxIntervalMillis < minIntervalMillis) {
+                throw new IllegalArgumentException("maxIntervalMillis must not be below minIntervalMillis");
+            }
+            return new PollingConfig(this);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package tv.twit.api;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rate Limiter
+ * A thread-safe token bucket that can be shared by several TwitApiClient instances to keep their
+ * combined request rate within a 3scale plan. Callers reserve a token and sleep until it is due, so
+ * waiting callers are served in arrival order. The rate adapts: it is halved each time the API reports
+ * that usage limits are exceeded and recovers gradually with successful requests.
+ */
+public final class RateLimiter {
+    private final double configuredRate;
+    private final double minRate;
+    private final double capacity;
+    private double rate;
+    private double tokens;
+    private long lastRefillNanos;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final LongAdder rateReductions = new LongAdder();
+
+    private RateLimiter(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.configuredRate = permitsPerSecond;
+        this.minRate = permitsPerSecond / 10;
+        this.capacity = burst;
+        this.rate = permitsPerSecond;
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Create a limiter
+     *
+     * @param permitsPerSecond Sustained requests per second
+     * @param burst            Requests that may be made back to back after an idle period
+     * @return A new limiter
+     */
+    public static RateLimiter create(double permitsPerSecond, int burst) {
+        return new RateLimiter(permitsPerSecond, burst);
+    }
+
+    /**
+     * Wait until a request may be made
+     *
+     * @return false if the thread was interrupted while waiting
+     */
+    public boolean acquire() {
+        long wait = reserve();
+        acquired.increment();
+        if (wait <= 0) {
+            return true;
+        }
+        throttled.increment();
+        waitNanos.addAndGet(wait);
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Take a token only if one is available right now
+     *
+     * @return true if a request may be made immediately
+     */
+    public synchronized boolean tryAcquire() {
+        refill(System.nanoTime());
+        if (tokens >= 1) {
+            tokens -= 1;
+            acquired.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reserve a token and return how long the caller has to wait for it
+     */
+    private synchronized long reserve() {
+        long now = System.nanoTime();
+        refill(now);
+        tokens -= 1;
+        if (tokens >= 0) {
+            return 0;
+        }
+        return (long) (-tokens / rate * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private void refill(long now) {
+        double elapsedSeconds = (now - lastRefillNanos) / 1e9;
+        tokens = Math.min(capacity, tokens + elapsedSeconds * rate);
+        lastRefillNanos = now;
+    }
+
+    /**
+     * Halve the rate after the API reported that usage limits are exceeded (not below 10% of the configured rate)
+     */
+    public synchronized void onThrottled() {
+        refill(System.nanoTime());
+        rate = Math.max(minRate, rate / 2);
+        tokens = Math.min(tokens, 0);
+        rateReductions.increment();
+    }
+
+    /**
+     * Recover 1% of the configured rate after a successful request
+     */
+    public synchronized void onSuccess() {
+        if (rate < configuredRate) {
+            refill(System.nanoTime());
+            rate = Math.min(configuredRate, rate + configuredRate / 100);
+        }
+    }
+
+    /**
+     * @return The rate currently enforced, in requests per second
+     */
+    public synchronized double getCurrentRate() {
+        return rate;
+    }
+
+    public double getConfiguredRate() {
+        return configuredRate;
+    }
+
+    /**
+     * @return Total number of tokens handed out
+     */
+    public long getAcquiredCount() {
+        return acquired.sum();
+    }
+
+    /**
+     * @return Number of acquisitions that had to wait
+     */
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    /**
+     * @return Total time callers spent waiting for tokens, in milliseconds
+     */
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos.get());
+    }
+
+    /**
+     * @return Number of times the rate was halved because of usage-limit errors
+     */
+    public long getRateReductions() {
+        return rateReductions.sum();
+    }
+}
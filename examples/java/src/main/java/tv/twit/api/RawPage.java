@@ -0,0 +1,150 @@
+package tv.twit.api;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * One page of a list endpoint kept as the undecoded response body, with the byte range of each item.
+ * Scanning the page with a streaming parser finds the items, the total count and the next link without
+ * building a JSON tree, so bulk exports can copy items to their files as they came over the wire.
+ */
+final class RawPage {
+    static final JsonFactory FACTORY = new JsonFactory();
+
+    private final byte[] body;
+    private int[] starts = new int[32];
+    private int[] ends = new int[32];
+    private int size;
+    private int count = -1;
+    private String next;
+
+    private RawPage(byte[] body) {
+        this.body = body;
+    }
+
+    /**
+     * Scan a response body
+     *
+     * @param body      The UTF-8 response body
+     * @param itemsName The field holding the array of items
+     * @return The page; without an items array it holds no items
+     */
+    static RawPage parse(byte[] body, String itemsName) throws IOException {
+        RawPage page = new RawPage(body);
+        try (JsonParser parser = FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if (itemsName.equals(name) && token == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        int start = (int) parser.getTokenLocation().getByteOffset();
+                        parser.skipChildren();
+                        page.add(start, (int) parser.getCurrentLocation().getByteOffset());
+                    }
+                } else if ("count".equals(name) && token.isScalarValue()) {
+                    page.count = countOf(parser);
+                } else if ("_links".equals(name) && token == JsonToken.START_OBJECT) {
+                    page.next = nextHref(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return page;
+    }
+
+    byte[] body() {
+        return body;
+    }
+
+    /**
+     * @return Number of items on the page
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return Offset of the first byte of an item in the body
+     */
+    int start(int item) {
+        return starts[item];
+    }
+
+    /**
+     * @return Offset just past the last byte of an item in the body
+     */
+    int end(int item) {
+        return ends[item];
+    }
+
+    /**
+     * @return The total count reported by the API, -1 if absent
+     */
+    int count() {
+        return count;
+    }
+
+    /**
+     * @return The href of the next link, null on the last page
+     */
+    String next() {
+        return next;
+    }
+
+    private void add(int start, int end) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+
+    /**
+     * Read the count, which the API may send as a number or a string
+     */
+    private static int countOf(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getIntValue();
+        }
+        try {
+            return Integer.parseInt(parser.getText().trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Read _links.next.href, leaving the parser at the end of _links
+     */
+    private static String nextHref(JsonParser parser) throws IOException {
+        String href = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            if (parser.nextToken() == JsonToken.START_OBJECT && "next".equals(name)) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken token = parser.nextToken();
+                    if ("href".equals(field) && token == JsonToken.VALUE_STRING) {
+                        href = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return href;
+    }
+}
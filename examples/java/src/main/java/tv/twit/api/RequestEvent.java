@@ -0,0 +1,107 @@
+package tv.twit.api;
+
+/**
+ * One HTTP exchange with the API, as reported to a {@link RequestListener}
+ */
+public final class RequestEvent {
+    private final String endpoint;
+    private final String appId;
+    private final int statusCode;
+    private final String errorClass;
+    private final long durationNanos;
+    private final long poolWaitNanos;
+    private final long bytesIn;
+    private final long bytesOut;
+    private final boolean conditional;
+
+    RequestEvent(String endpoint, String appId, int statusCode, String errorClass, long durationNanos, long poolWaitNanos,
+                 long bytesIn, long bytesOut, boolean conditional) {
+        this.endpoint = endpoint;
+        this.appId = appId;
+        this.statusCode = statusCode;
+        this.errorClass = errorClass;
+        this.durationNanos = durationNanos;
+        this.poolWaitNanos = poolWaitNanos;
+        this.bytesIn = bytesIn;
+        this.bytesOut = bytesOut;
+        this.conditional = conditional;
+    }
+
+    /**
+     * @return The API endpoint, e.g. "/shows/1635"
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * @return The resource the endpoint belongs to, e.g. "shows"; use this rather than the endpoint as a metric tag
+     */
+    public String getResource() {
+        return CachePolicy.resourceOf(endpoint);
+    }
+
+    /**
+     * @return The app-id the request was sent with; differs between requests when the client has a {@link KeyPool}
+     */
+    public String getAppId() {
+        return appId;
+    }
+
+    /**
+     * @return The HTTP status, or 0 if no response was received
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return Simple class name of the exception that failed the request, or null if a response was received
+     */
+    public String getErrorClass() {
+        return errorClass;
+    }
+
+    /**
+     * @return Time from sending the request to decoding the response, including the pool wait
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return Time spent waiting for a pooled connection (TwitApiClient) or an in-flight slot (TwitApiAsyncClient)
+     */
+    public long getPoolWaitNanos() {
+        return poolWaitNanos;
+    }
+
+    /**
+     * @return Response body bytes; TwitApiClient counts them after decompression, TwitApiAsyncClient as received
+     */
+    public long getBytesIn() {
+        return bytesIn;
+    }
+
+    /**
+     * @return Request line and header bytes sent
+     */
+    public long getBytesOut() {
+        return bytesOut;
+    }
+
+    /**
+     * @return Whether the request carried If-None-Match or If-Modified-Since validators
+     */
+    public boolean isConditional() {
+        return conditional;
+    }
+
+    @Override
+    public String toString() {
+        return "RequestEvent{endpoint=" + endpoint + ", appId=" + appId + ", status=" + statusCode
+                + (errorClass != null ? ", error=" + errorClass : "")
+                + String.format(", duration=%.2fms, poolWait=%.2fms", durationNanos / 1e6, poolWaitNanos / 1e6)
+                + ", bytesIn=" + bytesIn + ", bytesOut=" + bytesOut + (conditional ? ", conditional" : "") + "}";
+    }
+}
@@ -0,0 +1,130 @@
+package tv.twit.api;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Wraps each API call with the optional rate limiter, circuit breaker, retry policy and key pool of a client.
+ * Sits below the response cache, so cache hits and coalesced requests never consume a token, while
+ * paged queries, parallel exports and bulk fetches all go through it.
+ */
+final class RequestGuard {
+    private final RateLimiter rateLimiter;
+    private final CircuitBreaker circuitBreaker;
+    private final RetryPolicy retryPolicy;
+    private final KeyPool keyPool;
+    private final RequestListener listener;
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder usageLimitErrors = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    RequestGuard(RateLimiter rateLimiter, CircuitBreaker circuitBreaker, RetryPolicy retryPolicy,
+                 KeyPool keyPool, RequestListener listener) {
+        this.rateLimiter = rateLimiter;
+        this.circuitBreaker = circuitBreaker;
+        this.retryPolicy = retryPolicy != null ? retryPolicy : RetryPolicy.none();
+        this.keyPool = keyPool;
+        this.listener = listener;
+    }
+
+    /**
+     * Run a request, waiting for a token before every attempt and retrying transient failures. With a key
+     * pool, each attempt is sent with the key that has the most budget left, and a request whose key is put
+     * to cool down is sent again with another key straight away, without counting as an attempt.
+     *
+     * @param request Performs one HTTP exchange with the given key, or with the client's credentials if null
+     * @return The last response, or a circuit-open error if the request was failed fast
+     */
+    ApiResponse execute(Function<KeyPool.Key, ApiResponse> request) {
+        int attempt = 0;
+        while (true) {
+            if (circuitBreaker != null && !circuitBreaker.allowRequest()) {
+                rejected.increment();
+                return ApiResponse.failed(ApiResponses.circuitOpen(circuitBreaker.isOpenedForQuota()));
+            }
+            if (rateLimiter != null && !rateLimiter.acquire()) {
+                if (circuitBreaker != null) {
+                    circuitBreaker.cancelTrial();
+                }
+                return ApiResponse.failed(ApiResponses.failure("Interrupted while waiting for rate limiter"));
+            }
+            KeyPool.Key key = null;
+            if (keyPool != null) {
+                key = keyPool.acquire();
+                if (key == null) {
+                    if (circuitBreaker != null) {
+                        circuitBreaker.cancelTrial();
+                    }
+                    if (Thread.currentThread().isInterrupted()) {
+                        return ApiResponse.failed(ApiResponses.failure("Interrupted while waiting for a key"));
+                    }
+                    rejected.increment();
+                    return ApiResponse.failed(keyPool.exhaustedError());
+                }
+            }
+
+            ApiResponse response = request.apply(key);
+            boolean usageLimit = response.statusCode == 500 && ApiResponses.isUsageLimit(response.json);
+            if (key != null && keyPool.onResponse(key, response.statusCode, usageLimit)) {
+                // The key's own budget is spent, not the API's: neither throttle nor trip the breaker
+                if (usageLimit) {
+                    usageLimitErrors.increment();
+                }
+                if (circuitBreaker != null) {
+                    circuitBreaker.cancelTrial();
+                }
+                continue;
+            }
+            attempt++;
+            boolean retryable = retryPolicy.isRetryable(response.statusCode, usageLimit);
+            record(response, usageLimit, retryable);
+
+            if (!retryable || attempt >= retryPolicy.getMaxAttempts()) {
+                return response;
+            }
+            long delayMillis = retryPolicy.delayMillis(attempt);
+            if (listener != null) {
+                listener.onRetry(attempt, delayMillis);
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return response;
+            }
+            retries.increment();
+        }
+    }
+
+    private void record(ApiResponse response, boolean usageLimit, boolean transientFailure) {
+        if (usageLimit) {
+            usageLimitErrors.increment();
+            if (rateLimiter != null) {
+                rateLimiter.onThrottled();
+            }
+        } else if (rateLimiter != null && (response.isSuccess() || response.isNotModified())) {
+            rateLimiter.onSuccess();
+        }
+        if (circuitBreaker != null) {
+            if (usageLimit || transientFailure) {
+                circuitBreaker.onFailure(usageLimit);
+            } else {
+                // 4xx answers prove the API is reachable, they are the caller's problem
+                circuitBreaker.onSuccess();
+            }
+        }
+    }
+
+    ResilienceStats stats() {
+        return new ResilienceStats(
+                rateLimiter != null ? rateLimiter.getThrottledCount() : 0,
+                rateLimiter != null ? rateLimiter.getTotalWaitMillis() : 0,
+                rateLimiter != null ? rateLimiter.getCurrentRate() : 0.0,
+                retries.sum(),
+                usageLimitErrors.sum(),
+                rejected.sum(),
+                circuitBreaker != null ? circuitBreaker.getOpenedCount() : 0,
+                circuitBreaker != null ? circuitBreaker.getState() : CircuitBreaker.State.CLOSED);
+    }
+}
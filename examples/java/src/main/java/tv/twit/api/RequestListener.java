@@ -0,0 +1,52 @@
+package tv.twit.api;
+
+/**
+ * Request Listener
+ * Instrumentation hooks called by TwitApiClient and TwitApiAsyncClient, to export request metrics and
+ * traces to a monitoring system. {@link RequestMetrics} is a ready-made implementation.
+ *
+ * Listeners are called synchronously on the requesting thread and must be thread-safe and quick.
+ * Without a listener the clients create no events and take no timings.
+ */
+public interface RequestListener {
+
+    /**
+     * How a request was answered by the response cache
+     */
+    enum CacheOutcome {
+        /** Served from a fresh cache entry */
+        HIT,
+        /** Not cached or stale; the API was called */
+        MISS,
+        /** Waited for an identical request already on the wire */
+        COALESCED,
+        /** A stale entry was confirmed current with a 304 */
+        REVALIDATED
+    }
+
+    /**
+     * Called after every HTTP exchange, including each retry attempt and each failed connection
+     *
+     * @param event What was requested and how it went
+     */
+    default void onRequest(RequestEvent event) {
+    }
+
+    /**
+     * Called for every request answered through the response cache
+     *
+     * @param endpoint The API endpoint, e.g. "/shows/1635"
+     * @param outcome  How the cache answered it
+     */
+    default void onCacheLookup(String endpoint, CacheOutcome outcome) {
+    }
+
+    /**
+     * Called before a failed request is retried
+     *
+     * @param attempt     The number of the attempt that failed, starting at 1
+     * @param delayMillis Backoff before the next attempt
+     */
+    default void onRetry(int attempt, long delayMillis) {
+    }
+}
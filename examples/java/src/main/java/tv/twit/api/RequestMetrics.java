@@ -0,0 +1,195 @@
+package tv.twit.api;
+
+import org.json.JSONObject;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request Metrics
+ * A {@link RequestListener} that aggregates what the clients report: latency histograms per resource,
+ * request counts by status code, by error class and by app-id, bytes in and out, connection pool wait times,
+ * cache outcomes and retries. Read it directly, or poll {@link #toJson()} from a metrics exporter.
+ *
+ * <pre>
+ * RequestMetrics metrics = new RequestMetrics();
+ * TwitApiClient client = TwitApiClient.builder().credentialsFile().listener(metrics).build();
+ * ...
+ * System.out.println(metrics.getLatency("episodes").getValueAtPercentile(99) / 1e6 + "ms");
+ * </pre>
+ */
+public final class RequestMetrics implements RequestListener {
+    private final ConcurrentHashMap<String, LatencyHistogram> latencyByResource = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, LongAdder> byStatus = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> byErrorClass = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> byAppId = new ConcurrentHashMap<>();
+    private final LatencyHistogram poolWait = new LatencyHistogram();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final EnumMap<CacheOutcome, LongAdder> cacheOutcomes = new EnumMap<>(CacheOutcome.class);
+    private final LongAdder retries = new LongAdder();
+
+    public RequestMetrics() {
+        for (CacheOutcome outcome : CacheOutcome.values()) {
+            cacheOutcomes.put(outcome, new LongAdder());
+        }
+    }
+
+    @Override
+    public void onRequest(RequestEvent event) {
+        histogram(event.getResource()).record(event.getDurationNanos());
+        poolWait.record(event.getPoolWaitNanos());
+        if (event.getErrorClass() != null) {
+            counter(byErrorClass, event.getErrorClass()).increment();
+        } else {
+            counter(byStatus, event.getStatusCode()).increment();
+        }
+        if (event.getAppId() != null) {
+            counter(byAppId, event.getAppId()).increment();
+        }
+        bytesIn.add(event.getBytesIn());
+        bytesOut.add(event.getBytesOut());
+    }
+
+    @Override
+    public void onCacheLookup(String endpoint, CacheOutcome outcome) {
+        cacheOutcomes.get(outcome).increment();
+    }
+
+    @Override
+    public void onRetry(int attempt, long delayMillis) {
+        retries.increment();
+    }
+
+    /**
+     * Get the latency histogram of HTTP exchanges for a resource
+     *
+     * @param resource The resource name, e.g. "episodes"
+     * @return The histogram, empty if nothing was requested from the resource yet
+     */
+    public LatencyHistogram getLatency(String resource) {
+        LatencyHistogram histogram = latencyByResource.get(resource);
+        return histogram != null ? histogram : new LatencyHistogram();
+    }
+
+    /**
+     * @return Time spent waiting for a pooled connection or in-flight slot, one value per request
+     */
+    public LatencyHistogram getPoolWait() {
+        return poolWait;
+    }
+
+    /**
+     * @return Request counts by HTTP status, for requests that received a response
+     */
+    public Map<Integer, Long> getStatusCounts() {
+        return snapshot(byStatus);
+    }
+
+    /**
+     * @return Request counts by exception class, for requests that received no response
+     */
+    public Map<String, Long> getErrorCounts() {
+        return snapshot(byErrorClass);
+    }
+
+    /**
+     * @return Request counts by the app-id they were sent with, showing how a {@link KeyPool} spreads them
+     */
+    public Map<String, Long> getKeyCounts() {
+        return snapshot(byAppId);
+    }
+
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    /**
+     * @param outcome A cache outcome
+     * @return Number of requests the cache answered that way
+     */
+    public long getCacheCount(CacheOutcome outcome) {
+        return cacheOutcomes.get(outcome).sum();
+    }
+
+    /**
+     * @return Share of cached requests answered without calling the API (hits and coalesced), 0 if none
+     */
+    public double getCacheHitRatio() {
+        long hits = getCacheCount(CacheOutcome.HIT) + getCacheCount(CacheOutcome.COALESCED);
+        long total = hits + getCacheCount(CacheOutcome.MISS) + getCacheCount(CacheOutcome.REVALIDATED);
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * Snapshot all metrics, with durations in milliseconds
+     *
+     * @return JSON object with "latency" (per resource), "poolWait", "status", "errors", "keys", "bytesIn",
+     * "bytesOut", "cache" and "retries"
+     */
+    public JSONObject toJson() {
+        JSONObject latency = new JSONObject();
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(latencyByResource).entrySet()) {
+            latency.put(entry.getKey(), toJson(entry.getValue()));
+        }
+        JSONObject cache = new JSONObject();
+        for (CacheOutcome outcome : CacheOutcome.values()) {
+            cache.put(outcome.name().toLowerCase(), getCacheCount(outcome));
+        }
+        cache.put("hitRatio", getCacheHitRatio());
+
+        JSONObject json = new JSONObject();
+        json.put("latency", latency);
+        json.put("poolWait", toJson(poolWait));
+        json.put("status", new JSONObject(getStatusCounts()));
+        json.put("errors", new JSONObject(getErrorCounts()));
+        json.put("keys", new JSONObject(getKeyCounts()));
+        json.put("bytesIn", getBytesIn());
+        json.put("bytesOut", getBytesOut());
+        json.put("cache", cache);
+        json.put("retries", getRetries());
+        return json;
+    }
+
+    private static JSONObject toJson(LatencyHistogram histogram) {
+        return new JSONObject()
+                .put("count", histogram.getCount())
+                .put("mean", histogram.getMean() / 1e6)
+                .put("p50", histogram.getValueAtPercentile(50) / 1e6)
+                .put("p90", histogram.getValueAtPercentile(90) / 1e6)
+                .put("p99", histogram.getValueAtPercentile(99) / 1e6)
+                .put("max", histogram.getMax() / 1e6);
+    }
+
+    private LatencyHistogram histogram(String resource) {
+        LatencyHistogram histogram = latencyByResource.get(resource);
+        return histogram != null ? histogram : latencyByResource.computeIfAbsent(resource, r -> new LatencyHistogram());
+    }
+
+    private static <K> LongAdder counter(ConcurrentHashMap<K, LongAdder> counters, K key) {
+        LongAdder counter = counters.get(key);
+        return counter != null ? counter : counters.computeIfAbsent(key, k -> new LongAdder());
+    }
+
+    private static <K extends Comparable<K>> Map<K, Long> snapshot(ConcurrentHashMap<K, LongAdder> counters) {
+        Map<K, Long> snapshot = new TreeMap<>();
+        counters.forEach((key, counter) -> snapshot.put(key, counter.sum()));
+        return snapshot;
+    }
+
+    @Override
+    public String toString() {
+        return toJson().toString();
+    }
+}
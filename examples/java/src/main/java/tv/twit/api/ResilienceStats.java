@@ -0,0 +1,85 @@
+package tv.twit.api;
+
+/**
+ * Resilience Statistics
+ * A snapshot of the rate limiter, retry and circuit breaker counters of a TwitApiClient.
+ * Limiter and breaker counters are those of the shared instances, so they include other clients using them.
+ */
+public final class ResilienceStats {
+    private final long throttled;
+    private final long throttleWaitMillis;
+    private final double currentRate;
+    private final long retries;
+    private final long usageLimitErrors;
+    private final long rejected;
+    private final long circuitOpened;
+    private final CircuitBreaker.State circuitState;
+
+    ResilienceStats(long throttled, long throttleWaitMillis, double currentRate, long retries,
+                    long usageLimitErrors, long rejected, long circuitOpened, CircuitBreaker.State circuitState) {
+        this.throttled = throttled;
+        this.throttleWaitMillis = throttleWaitMillis;
+        this.currentRate = currentRate;
+        this.retries = retries;
+        this.usageLimitErrors = usageLimitErrors;
+        this.rejected = rejected;
+        this.circuitOpened = circuitOpened;
+        this.circuitState = circuitState;
+    }
+
+    /**
+     * @return Requests that had to wait for a rate limiter token
+     */
+    public long getThrottled() {
+        return throttled;
+    }
+
+    /**
+     * @return Total time spent waiting for rate limiter tokens
+     */
+    public long getThrottleWaitMillis() {
+        return throttleWaitMillis;
+    }
+
+    /**
+     * @return Requests per second currently allowed by the rate limiter, 0 if there is none
+     */
+    public double getCurrentRate() {
+        return currentRate;
+    }
+
+    /**
+     * @return Attempts repeated after an I/O error or a 5xx/429 response
+     */
+    public long getRetries() {
+        return retries;
+    }
+
+    /**
+     * @return Responses reporting that API usage limits are exceeded
+     */
+    public long getUsageLimitErrors() {
+        return usageLimitErrors;
+    }
+
+    /**
+     * @return Requests failed fast by this client because the circuit was open
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getCircuitOpened() {
+        return circuitOpened;
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitState;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ResilienceStats{throttled=%d, throttleWait=%dms, rate=%.1f/s, retries=%d, usageLimitErrors=%d, rejected=%d, circuitOpened=%d, circuit=%s}",
+                throttled, throttleWaitMillis, currentRate, retries, usageLimitErrors, rejected, circuitOpened, circuitState);
+    }
+}
@@ -0,0 +1,297 @@
+package tv.twit.api;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Resource Query
+ * A lazily evaluated query over a paged list endpoint such as /episodes or /people.
+ * Iterating follows the HAL _links.next link page by page and yields one item at a time,
+ * keeping only the current page in memory, so the full catalog can be walked with constant heap.
+ *
+ * <pre>
+ * client.episodes().filter("shows", "1635").pageSize(50).stream()
+ *         .map(episode -&gt; episode.getString("label"))
+ *         .forEach(System.out::println);
+ * </pre>
+ */
+public final class ResourceQuery implements Iterable<JSONObject> {
+    private final String endpoint;
+    private final String itemsName;
+    private final Function<Map<String, String>, JSONObject> fetcher;
+    private final Function<Map<String, String>, byte[]> rawFetcher;
+    private final Map<String, String> params = new LinkedHashMap<>();
+
+    ResourceQuery(String endpoint, String itemsName, Function<Map<String, String>, JSONObject> fetcher) {
+        this(endpoint, itemsName, fetcher, null);
+    }
+
+    /**
+     * @param rawFetcher Fetches a page body undecoded, for bulk exports; null to serialize decoded pages instead
+     */
+    ResourceQuery(String endpoint, String itemsName, Function<Map<String, String>, JSONObject> fetcher,
+                  Function<Map<String, String>, byte[]> rawFetcher) {
+        this.endpoint = endpoint;
+        this.itemsName = itemsName;
+        this.fetcher = fetcher;
+        this.rawFetcher = rawFetcher;
+    }
+
+    /**
+     * Filter by an attribute, e.g. filter("shows", "1635") sends filter[shows]=1635
+     *
+     * @param attribute The attribute name
+     * @param value     The value to match
+     * @return This query
+     */
+    public ResourceQuery filter(String attribute, String value) {
+        params.put("filter[" + attribute + "]", value);
+        return this;
+    }
+
+    /**
+     * Add any other query parameter
+     *
+     * @param name  The parameter name
+     * @param value The parameter value
+     * @return This query
+     */
+    public ResourceQuery param(String name, String value) {
+        params.put(name, value);
+        return this;
+    }
+
+    /**
+     * Set the number of items requested per page (the "range" parameter)
+     *
+     * @param size Items per page
+     * @return This query
+     */
+    public ResourceQuery pageSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + size);
+        }
+        params.put("range", String.valueOf(size));
+        return this;
+    }
+
+    /**
+     * Sort by a field, prefix with "-" for descending order
+     *
+     * @param field The field to sort by, e.g. "-airingDate"
+     * @return This query
+     */
+    public ResourceQuery sort(String field) {
+        params.put("sort", field);
+        return this;
+    }
+
+    /**
+     * Start at a given page instead of the first one
+     *
+     * @param page The page number
+     * @return This query
+     */
+    public ResourceQuery startPage(int page) {
+        params.put("page", String.valueOf(page));
+        return this;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Get a copy of the query parameters for the first page
+     *
+     * @return The query parameters
+     */
+    public Map<String, String> getParams() {
+        return new LinkedHashMap<>(params);
+    }
+
+    /**
+     * Fetch all pages concurrently for bulk export, see {@link ParallelPageFetcher}
+     *
+     * @param window Maximum number of pages in flight at once
+     * @return A parallel fetcher over this query
+     */
+    public ParallelPageFetcher parallel(int window) {
+        return new ParallelPageFetcher(this, window);
+    }
+
+    /**
+     * Fetch only the first page
+     *
+     * @return The JSON response for the first page
+     * @throws TwitApiException if the API returns an error
+     */
+    public JSONObject firstPage() {
+        return fetchPage(new LinkedHashMap<>(params));
+    }
+
+    /**
+     * Iterate over all items of all pages. Pages are fetched on demand.
+     *
+     * @return A lazy iterator over the items
+     * @throws TwitApiException from hasNext/next if the API returns an error
+     */
+    @Override
+    public Iterator<JSONObject> iterator() {
+        return new ItemIterator(new LinkedHashMap<>(params));
+    }
+
+    /**
+     * Stream all items of all pages. Pages are fetched as the stream is consumed,
+     * so short-circuiting operations such as limit or findFirst stop paging early.
+     *
+     * @return A lazy sequential stream over the items
+     */
+    public Stream<JSONObject> stream() {
+        Spliterator<JSONObject> spliterator = Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    JSONObject fetchPage(Map<String, String> pageParams) {
+        JSONObject page = fetcher.apply(pageParams);
+        if (page.has("error")) {
+            throw new TwitApiException(page);
+        }
+        return page;
+    }
+
+    /**
+     * Fetch a page without decoding it into a JSON tree
+     *
+     * @throws TwitApiException if the API returns an error or a malformed body
+     */
+    RawPage fetchRawPage(Map<String, String> pageParams) {
+        byte[] body = rawFetcher != null
+                ? rawFetcher.apply(pageParams)
+                : fetchPage(pageParams).toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            return RawPage.parse(body, itemsName);
+        } catch (IOException e) {
+            throw new TwitApiException(ApiResponses.failure("Malformed response: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Get the items array of a page
+     */
+    JSONArray itemsOf(JSONObject page) {
+        JSONArray items = page.optJSONArray(itemsName);
+        return items != null ? items : new JSONArray();
+    }
+
+    /**
+     * Work out the parameters for the page after the given one from its _links.next link.
+     * The query of the next link is merged over the current parameters, because the API
+     * does not always repeat path segments or filters in it (e.g. /search/{keywords}).
+     *
+     * @return Parameters for the next page, or null if this is the last page
+     */
+    static Map<String, String> nextParams(JSONObject page, Map<String, String> current) {
+        JSONObject links = page.optJSONObject("_links");
+        JSONObject next = links != null ? links.optJSONObject("next") : null;
+        return nextParams(next != null ? next.optString("href", null) : null, current);
+    }
+
+    /**
+     * Work out the parameters for the next page from the href of a next link
+     *
+     * @return Parameters for the next page, or null if there is no next link
+     */
+    static Map<String, String> nextParams(String href, Map<String, String> current) {
+        if (href == null || href.isEmpty()) {
+            return null;
+        }
+        Map<String, String> params = new LinkedHashMap<>(current);
+        params.putAll(parseQuery(href));
+        if (params.equals(current)) {
+            // A next link pointing at the same page would loop forever
+            return null;
+        }
+        return params;
+    }
+
+    static Map<String, String> parseQuery(String href) {
+        Map<String, String> query = new LinkedHashMap<>();
+        // Some sample payloads double-escape slashes in links
+        String cleaned = href.replace("\\\\/", "/").replace("\\/", "/");
+        int start = cleaned.indexOf('?');
+        if (start < 0) {
+            return query;
+        }
+        for (String pair : cleaned.substring(start + 1).split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int eq = pair.indexOf('=');
+            String name = eq >= 0 ? pair.substring(0, eq) : pair;
+            String value = eq >= 0 ? pair.substring(eq + 1) : "";
+            query.put(decode(name), decode(value));
+        }
+        return query;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Yields the items of one page at a time; the previous page is released when the next is fetched
+     */
+    private final class ItemIterator implements Iterator<JSONObject> {
+        private Map<String, String> nextPageParams;
+        private JSONArray items;
+        private int index;
+
+        ItemIterator(Map<String, String> firstPageParams) {
+            this.nextPageParams = firstPageParams;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (items == null || index >= items.length()) {
+                if (nextPageParams == null) {
+                    items = null;
+                    return false;
+                }
+                Map<String, String> pageParams = nextPageParams;
+                JSONObject page = fetchPage(pageParams);
+                items = itemsOf(page);
+                index = 0;
+                nextPageParams = items.isEmpty() ? null : nextParams(page, pageParams);
+            }
+            return true;
+        }
+
+        @Override
+        public JSONObject next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return items.getJSONObject(index++);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package tv.twit.api;
+
+/**
+ * Response Cache
+ * Storage for cached API responses, keyed on the normalized endpoint and query parameters.
+ * Implementations must be thread-safe. TwitApiClient takes care of TTLs, statistics and
+ * collapsing concurrent misses; the cache only stores and evicts entries.
+ */
+public interface ResponseCache {
+
+    /**
+     * Look up a response
+     *
+     * @param key The normalized request key
+     * @return The cached response (fresh or stale), or null if absent
+     */
+    CachedResponse get(String key);
+
+    /**
+     * Store a response, evicting other entries if the cache is full
+     *
+     * @param key      The normalized request key
+     * @param response The response to store
+     */
+    void put(String key, CachedResponse response);
+
+    /**
+     * Remove a single entry
+     *
+     * @param key The normalized request key
+     */
+    void invalidate(String key);
+
+    /**
+     * Remove all entries
+     */
+    void clear();
+
+    /**
+     * @return Number of entries currently stored
+     */
+    int size();
+
+    /**
+     * @return Total weight of the entries currently stored
+     */
+    long weight();
+
+    /**
+     * @return Number of entries evicted to make room since the cache was created
+     */
+    long evictionCount();
+}
@@ -0,0 +1,169 @@
+package tv.twit.api;
+
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Read-through cache in front of the request path.
+ * Applies the per-resource TTLs, counts hits and misses, and lets only one of several
+ * concurrent misses for the same key call the API while the others wait for its result.
+ * Stale entries with an ETag or Last-Modified validator are revalidated with a conditional
+ * request, and a 304 answer refreshes the entry without downloading the body again.
+ */
+final class ResponseCacheLayer {
+    private final ResponseCache cache;
+    private final CachePolicy policy;
+    private final RequestListener listener;
+    private final ConcurrentHashMap<String, CompletableFuture<JSONObject>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder revalidated = new LongAdder();
+
+    ResponseCacheLayer(ResponseCache cache, CachePolicy policy, RequestListener listener) {
+        this.cache = cache;
+        this.policy = policy;
+        this.listener = listener;
+    }
+
+    /**
+     * Normalize an endpoint and its parameters into a cache key with parameters in sorted order
+     */
+    static String key(String endpoint, Map<String, String> params) {
+        return UrlTemplate.key(endpoint, params);
+    }
+
+    /**
+     * Serve a request from the cache, or load it once for all concurrent callers
+     *
+     * @param endpoint The API endpoint
+     * @param params   Query parameters
+     * @param loader   Performs the actual API request, conditionally if given a stale entry with validators
+     * @return JSON response (shared, read-only when served from the cache)
+     */
+    JSONObject get(String endpoint, Map<String, String> params, Function<CachedResponse, ApiResponse> loader) {
+        long ttl = policy.ttlMillis(endpoint);
+        if (ttl == 0) {
+            return loader.apply(null).json;
+        }
+
+        String key = key(endpoint, params);
+        CachedResponse cached = cache.get(key);
+        if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+            hits.increment();
+            report(endpoint, RequestListener.CacheOutcome.HIT);
+            return cached.getBody();
+        }
+
+        CompletableFuture<JSONObject> mine = new CompletableFuture<>();
+        CompletableFuture<JSONObject> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.increment();
+            report(endpoint, RequestListener.CacheOutcome.COALESCED);
+            return await(existing);
+        }
+
+        try {
+            // Another caller may have stored the response between our lookup and registering
+            cached = cache.get(key);
+            if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+                hits.increment();
+                report(endpoint, RequestListener.CacheOutcome.HIT);
+                mine.complete(cached.getBody());
+                return cached.getBody();
+            }
+
+            misses.increment();
+            CachedResponse stale = cached != null && cached.hasValidators() ? cached : null;
+            ApiResponse response = loader.apply(stale);
+            long now = System.currentTimeMillis();
+            if (response.isNotModified() && stale != null) {
+                revalidated.increment();
+                report(endpoint, RequestListener.CacheOutcome.REVALIDATED);
+                cache.put(key, new CachedResponse(stale.getBody(), stale.getWeight(), now, now + ttl,
+                        response.etag != null ? response.etag : stale.getEtag(),
+                        response.lastModified != null ? response.lastModified : stale.getLastModified()));
+                mine.complete(stale.getBody());
+                return stale.getBody();
+            }
+            report(endpoint, RequestListener.CacheOutcome.MISS);
+            if (response.isSuccess()) {
+                cache.put(key, new CachedResponse(response.json, response.bodySize, now, now + ttl,
+                        response.etag, response.lastModified));
+            }
+            mine.complete(response.json);
+            return response.json;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Return a fresh cached response without loading anything on a miss
+     *
+     * @return The cached JSON, or null if there is no fresh entry
+     */
+    JSONObject getIfFresh(String endpoint, Map<String, String> params) {
+        if (policy.ttlMillis(endpoint) == 0) {
+            return null;
+        }
+        CachedResponse cached = cache.get(key(endpoint, params));
+        if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+            hits.increment();
+            report(endpoint, RequestListener.CacheOutcome.HIT);
+            return cached.getBody();
+        }
+        return null;
+    }
+
+    /**
+     * Store a response that was loaded outside the read-through path, e.g. an item split out of a
+     * batched list response, under the key of its own endpoint without parameters
+     *
+     * @param weight Approximate size of the response in bytes
+     */
+    void put(String endpoint, JSONObject json, int weight) {
+        long ttl = policy.ttlMillis(endpoint);
+        if (ttl == 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        cache.put(key(endpoint, Collections.emptyMap()), new CachedResponse(json, weight, now, now + ttl));
+    }
+
+    private void report(String endpoint, RequestListener.CacheOutcome outcome) {
+        if (listener != null) {
+            listener.onCacheLookup(endpoint, outcome);
+        }
+    }
+
+    private static JSONObject await(CompletableFuture<JSONObject> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    void clear() {
+        cache.clear();
+    }
+
+    CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), coalesced.sum(), revalidated.sum(), cache.evictionCount(),
+                cache.size(), cache.weight());
+    }
+}
@@ -0,0 +1,108 @@
+package tv.twit.api;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry Policy
+ * Retries requests that failed with an I/O error, a 5xx status other than the usage-limit error,
+ * or 429, using exponential backoff with full jitter.
+ */
+public final class RetryPolicy {
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    private RetryPolicy(Builder builder) {
+        this.maxAttempts = builder.maxAttempts;
+        this.baseDelayMillis = builder.baseDelayMillis;
+        this.maxDelayMillis = builder.maxDelayMillis;
+    }
+
+    /**
+     * Create a builder: 3 attempts, 200ms base delay, 10s maximum delay
+     *
+     * @return A new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * A policy that never retries
+     *
+     * @return The policy
+     */
+    public static RetryPolicy none() {
+        return builder().maxAttempts(1).build();
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Check whether a failed response should be retried
+     *
+     * @param statusCode The HTTP status, 0 if no response was received
+     * @param usageLimit Whether the API reported that usage limits are exceeded
+     * @return true if another attempt may succeed
+     */
+    boolean isRetryable(int statusCode, boolean usageLimit) {
+        if (usageLimit) {
+            // Quota exhaustion lasts until the plan period resets, retrying only burns more quota
+            return false;
+        }
+        return statusCode == 0 || statusCode == 429 || statusCode >= 500;
+    }
+
+    /**
+     * Delay before the next attempt: a random time between 0 and base * 2^(attempt - 1), capped at the maximum
+     *
+     * @param attempt Number of attempts made so far (1 after the first failure)
+     * @return Delay in milliseconds
+     */
+    long delayMillis(int attempt) {
+        long ceiling = baseDelayMillis << Math.min(30, attempt - 1);
+        if (ceiling <= 0 || ceiling > maxDelayMillis) {
+            ceiling = maxDelayMillis;
+        }
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * Builder for RetryPolicy
+     */
+    public static final class Builder {
+        private int maxAttempts = 3;
+        private long baseDelayMillis = 200;
+        private long maxDelayMillis = 10000;
+
+        private Builder() {
+        }
+
+        /**
+         * @param maxAttempts Total attempts including the first request
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("maxAttempts must be at least 1: " + maxAttempts);
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        public Builder baseDelayMillis(long baseDelayMillis) {
+            this.baseDelayMillis = baseDelayMillis;
+            return this;
+        }
+
+        public Builder maxDelayMillis(long maxDelayMillis) {
+            this.maxDelayMillis = maxDelayMillis;
+            return this;
+        }
+
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
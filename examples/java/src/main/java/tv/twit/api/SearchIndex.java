@@ -0,0 +1,615 @@
+package tv.twit.api;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Search Index
+ * A local full-text index over the episodes, posts and people of a {@link CatalogMirror}, answering
+ * /search/{keywords} queries without calling the API. Indexed text is the label of every item, episode
+ * teasers and show notes, and post bodies, with HTML stripped. Keywords match as terms, all of which
+ * must appear, or as "quoted phrases"; results are ranked with BM25, labels counting three times as
+ * much as body text, and can be narrowed with the same filter[tid] taxonomy filter (topics, categories,
+ * roles and post types). Responses have the API's shape: count, tid facets and the "search" results.
+ * <p>
+ * Posting lists are varint-encoded byte arrays holding document ordinals, weighted term frequencies and
+ * positions. The index follows the mirror's syncs as a {@link MirrorListener}: a changed item is
+ * indexed under a new ordinal and the old one is dropped from the postings once enough have piled up.
+ *
+ * <pre>
+ * SearchIndex search = SearchIndex.attach(mirror);
+ * JSONObject results = search.search("\"security now\" passkeys", Collections.emptyMap());
+ * </pre>
+ */
+public final class SearchIndex implements MirrorListener {
+    private static final String[] RESOURCES = {"episodes", "posts", "people"};
+    private static final String[] TYPES = {"episode", "post", "people"};
+    private static final int DEFAULT_RANGE = 50;
+    private static final int LABEL_WEIGHT = 3;
+    /**
+     * Position gap between fields, so phrases never match across a field boundary
+     */
+    private static final int FIELD_GAP = 64;
+    private static final int SNIPPET_LENGTH = 200;
+    private static final int MAX_FACETS = 50;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final CatalogMirror mirror;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, TermPostings> terms = new HashMap<>();
+    private final IntPostings tidPostings = new IntPostings();
+    private final IntIntMap[] ordinals = {new IntIntMap(1024), new IntIntMap(256), new IntIntMap(256)};
+    private byte[] types = new byte[1024];
+    private int[] ids = new int[1024];
+    private int[] lengths = new int[1024];
+    private int[][] tids = new int[1024][];
+    private final BitSet live = new BitSet();
+    private int nextOrdinal;
+    private long liveLength;
+
+    private SearchIndex(CatalogMirror mirror) {
+        this.mirror = mirror;
+    }
+
+    /**
+     * Index the episodes, posts and people already in a mirror and keep the index current as it syncs
+     *
+     * @param mirror The mirror; add "posts" to its resources to search posts
+     * @return The index
+     */
+    public static SearchIndex attach(CatalogMirror mirror) {
+        SearchIndex index = new SearchIndex(mirror);
+        mirror.addListener(index);
+        for (String resource : RESOURCES) {
+            mirror.forEach(resource, item -> index.onUpsert(resource, item.optString("id"), item));
+        }
+        return index;
+    }
+
+    /**
+     * Stop following the mirror
+     */
+    public void detach() {
+        mirror.removeListener(this);
+    }
+
+    @Override
+    public void onUpsert(String resource, String id, JSONObject item) {
+        int type = typeOf(resource);
+        int itemId = EpisodeIndex.parseId(id);
+        if (type < 0 || itemId < 0) {
+            return;
+        }
+        // Analyze outside the lock; only the postings update needs it
+        Map<String, Occurrences> occurrences = new LinkedHashMap<>();
+        int[] position = {0};
+        analyze(item.optString("label", ""), LABEL_WEIGHT, occurrences, position);
+        if (type == 0) {
+            analyze(TextAnalyzer.stripHtml(item.optString("teaser", "")), 1, occurrences, position);
+            analyze(TextAnalyzer.stripHtml(item.optString("showNotes", "")), 1, occurrences, position);
+        } else if (type == 1) {
+            analyze(TextAnalyzer.stripHtml(item.optString("body", "")), 1, occurrences, position);
+        }
+        int[] itemTids = taxonomyIds(item);
+
+        lock.writeLock().lock();
+        try {
+            retire(ordinals[type].get(itemId));
+            int ordinal = nextOrdinal++;
+            if (ordinal == ids.length) {
+                types = Arrays.copyOf(types, ordinal * 2);
+                ids = Arrays.copyOf(ids, ordinal * 2);
+                lengths = Arrays.copyOf(lengths, ordinal * 2);
+                tids = Arrays.copyOf(tids, ordinal * 2);
+            }
+            ordinals[type].put(itemId, ordinal);
+            types[ordinal] = (byte) type;
+            ids[ordinal] = itemId;
+            tids[ordinal] = itemTids;
+            live.set(ordinal);
+            int length = 0;
+            for (Map.Entry<String, Occurrences> entry : occurrences.entrySet()) {
+                Occurrences term = entry.getValue();
+                terms.computeIfAbsent(entry.getKey(), t -> new TermPostings())
+                        .add(ordinal, term.frequency, term.positions, term.count);
+                length += term.frequency;
+            }
+            lengths[ordinal] = length;
+            liveLength += length;
+            for (int tid : itemTids) {
+                tidPostings.add(tid, ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onRemove(String resource, String id) {
+        int type = typeOf(resource);
+        int itemId = EpisodeIndex.parseId(id);
+        if (type < 0 || itemId < 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            retire(ordinals[type].remove(itemId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Search the indexed items, like /search/{keywords}
+     *
+     * @param keywords Terms and "quoted phrases", all of which must match; empty matches everything
+     * @param params   filter[tid] (one id, a comma-separated list or filter[tid][value][n] values), page and range
+     * @return JSON object with "count", "facets" and the "search" results on the requested page
+     */
+    public JSONObject search(String keywords, Map<String, String> params) {
+        Result result = find(keywords, params);
+        JSONArray results = new JSONArray();
+        for (int i = 0; i < result.ids.length; i++) {
+            JSONObject item = result(result.types[i], result.ids[i]);
+            if (item != null) {
+                results.put(item);
+            }
+        }
+        JSONArray facets = new JSONArray();
+        for (Map.Entry<Integer, Integer> facet : result.facets.entrySet()) {
+            facets.put(new JSONObject().put("filter", "\"" + facet.getKey() + "\"").put("count", facet.getValue()));
+        }
+        JSONObject response = new JSONObject();
+        response.put("count", result.count);
+        response.put("facets", new JSONObject().put("tid", facets));
+        response.put("search", results);
+        return response;
+    }
+
+    /**
+     * Search the indexed items without loading them from the mirror
+     *
+     * @param keywords Terms and "quoted phrases", all of which must match; empty matches everything
+     * @param params   filter[tid], page and range
+     * @return The match count, tid facets and the ranked items on the requested page
+     */
+    public Result find(String keywords, Map<String, String> params) {
+        List<List<String>> clauses = parseKeywords(keywords);
+        int page = Math.max(1, Integer.parseInt(params.getOrDefault("page", "1")));
+        int range = Math.max(1, Integer.parseInt(params.getOrDefault("range", String.valueOf(DEFAULT_RANGE))));
+
+        lock.readLock().lock();
+        try {
+            BitSet allowed = (BitSet) live.clone();
+            List<String> tidValues = tidFilter(params);
+            if (!tidValues.isEmpty()) {
+                BitSet tagged = new BitSet(nextOrdinal);
+                for (String tid : tidValues) {
+                    tidPostings.collect(EpisodeIndex.parseId(tid), tagged);
+                }
+                allowed.and(tagged);
+            }
+            long[] hits = clauses.isEmpty() ? all(allowed) : match(clauses, allowed);
+            // Ascending by (score, ordinal); read from the end for best first, newest first on ties
+            Arrays.sort(hits);
+
+            int from = Math.min((page - 1) * range, hits.length);
+            int pageSize = Math.min(range, hits.length - from);
+            int[] pageTypes = new int[pageSize];
+            int[] pageIds = new int[pageSize];
+            IntIntMap facetCounts = new IntIntMap(64);
+            for (int i = 0; i < hits.length; i++) {
+                int ordinal = (int) hits[hits.length - 1 - i];
+                for (int tid : tids[ordinal]) {
+                    int current = facetCounts.get(tid);
+                    facetCounts.put(tid, current < 0 ? 1 : current + 1);
+                }
+                if (i >= from && i < from + pageSize) {
+                    pageTypes[i - from] = types[ordinal];
+                    pageIds[i - from] = ids[ordinal];
+                }
+            }
+            return new Result(hits.length, pageTypes, pageIds, facets(facetCounts));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Number of indexed items
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return live.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Number of distinct terms
+     */
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Approximate heap held by the index, in bytes
+     */
+    public long heapBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = ids.length * 21L + tidPostings.heapBytes();
+            for (int ordinal = 0; ordinal < nextOrdinal; ordinal++) {
+                bytes += 16 + tids[ordinal].length * 4L;
+            }
+            for (Map.Entry<String, TermPostings> entry : terms.entrySet()) {
+                // Map entry, key string and postings object overheads plus the encoded bytes
+                bytes += 96 + entry.getKey().length() + entry.getValue().byteLength();
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Every allowed item, unscored
+     */
+    private static long[] all(BitSet allowed) {
+        long[] hits = new long[allowed.cardinality()];
+        int count = 0;
+        for (int ordinal = allowed.nextSetBit(0); ordinal >= 0; ordinal = allowed.nextSetBit(ordinal + 1)) {
+            hits[count++] = ordinal;
+        }
+        return hits;
+    }
+
+    /**
+     * Intersect the posting lists of every keyword term, check phrases and score the matches
+     *
+     * @return (score bits << 32 | ordinal) per match
+     */
+    private long[] match(List<List<String>> clauses, BitSet allowed) {
+        Map<String, TermPostings.Cursor> cursors = new LinkedHashMap<>();
+        for (List<String> clause : clauses) {
+            for (String term : clause) {
+                TermPostings postings = terms.get(term);
+                if (postings == null) {
+                    return new long[0];
+                }
+                cursors.putIfAbsent(term, postings.cursor());
+            }
+        }
+        List<TermPostings.Cursor> all = new ArrayList<>(cursors.values());
+        double[] idf = new double[all.size()];
+        int documents = Math.max(1, live.cardinality());
+        double averageLength = Math.max(1, (double) liveLength / documents);
+        int i = 0;
+        for (String term : cursors.keySet()) {
+            int frequency = terms.get(term).documentCount();
+            idf[i++] = Math.log(1 + (documents - frequency + 0.5) / (frequency + 0.5));
+        }
+
+        long[] hits = new long[64];
+        int[][] buffers = new int[clauses.stream().mapToInt(List::size).max().orElse(0)][0];
+        int count = 0;
+        int document = 0;
+        for (TermPostings.Cursor cursor : all) {
+            cursor.next();
+        }
+        while (true) {
+            // Leapfrog: move every cursor to the largest current document until they agree
+            int target = document;
+            for (TermPostings.Cursor cursor : all) {
+                target = Math.max(target, cursor.advance(target));
+            }
+            if (target == Integer.MAX_VALUE) {
+                break;
+            }
+            boolean aligned = true;
+            for (TermPostings.Cursor cursor : all) {
+                aligned &= cursor.advance(target) == target;
+            }
+            if (!aligned) {
+                document = target;
+                continue;
+            }
+            if (allowed.get(target) && phrasesMatch(clauses, cursors, buffers)) {
+                double score = 0;
+                double norm = K1 * (1 - B + B * lengths[target] / averageLength);
+                for (int t = 0; t < all.size(); t++) {
+                    int frequency = all.get(t).frequency();
+                    score += idf[t] * frequency * (K1 + 1) / (frequency + norm);
+                }
+                if (count == hits.length) {
+                    hits = Arrays.copyOf(hits, hits.length * 2);
+                }
+                hits[count++] = (long) Float.floatToIntBits((float) score) << 32 | target;
+            }
+            document = target + 1;
+        }
+        return Arrays.copyOf(hits, count);
+    }
+
+    private boolean phrasesMatch(List<List<String>> clauses, Map<String, TermPostings.Cursor> cursors,
+                                 int[][] buffers) {
+        for (List<String> clause : clauses) {
+            if (clause.size() < 2) {
+                continue;
+            }
+            int[] counts = new int[clause.size()];
+            for (int i = 0; i < clause.size(); i++) {
+                TermPostings.Cursor cursor = cursors.get(clause.get(i));
+                if (buffers[i].length < cursor.maxPositions()) {
+                    buffers[i] = new int[cursor.maxPositions() * 2];
+                }
+                counts[i] = cursor.positions(buffers[i]);
+            }
+            // Merge the ascending position lists: term i must sit at start + i
+            int[] next = new int[clause.size()];
+            boolean found = false;
+            for (int p = 0; p < counts[0] && !found; p++) {
+                boolean all = true;
+                for (int i = 1; i < clause.size() && all; i++) {
+                    int wanted = buffers[0][p] + i;
+                    while (next[i] < counts[i] && buffers[i][next[i]] < wanted) {
+                        next[i]++;
+                    }
+                    all = next[i] < counts[i] && buffers[i][next[i]] == wanted;
+                }
+                found = all;
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void retire(int ordinal) {
+        if (ordinal < 0) {
+            return;
+        }
+        live.clear(ordinal);
+        liveLength -= lengths[ordinal];
+        int liveCount = live.cardinality();
+        int dead = nextOrdinal - liveCount;
+        if (dead > 1024 && dead > liveCount / 2) {
+            renumber();
+        }
+    }
+
+    /**
+     * Drop retired ordinals from the postings and document arrays
+     */
+    private void renumber() {
+        int[] renumbered = new int[nextOrdinal];
+        int kept = 0;
+        for (int ordinal = 0; ordinal < nextOrdinal; ordinal++) {
+            if (live.get(ordinal)) {
+                int target = kept++;
+                renumbered[ordinal] = target;
+                types[target] = types[ordinal];
+                ids[target] = ids[ordinal];
+                lengths[target] = lengths[ordinal];
+                tids[target] = tids[ordinal];
+                ordinals[types[target]].put(ids[target], target);
+            } else {
+                renumbered[ordinal] = -1;
+            }
+        }
+        Arrays.fill(tids, kept, nextOrdinal, null);
+        terms.values().removeIf(postings -> !postings.renumber(renumbered));
+        tidPostings.renumber(renumbered);
+        live.clear();
+        live.set(0, kept);
+        nextOrdinal = kept;
+    }
+
+    private JSONObject result(int type, int id) {
+        JSONObject item = mirror.get(RESOURCES[type], String.valueOf(id));
+        if (item == null) {
+            return null;
+        }
+        String text = type == 0 ? TextAnalyzer.stripHtml(item.optString("showNotes", ""))
+                : type == 1 ? TextAnalyzer.stripHtml(item.optString("body", "")) : "";
+        if (text.isEmpty() && type == 0) {
+            text = TextAnalyzer.stripHtml(item.optString("teaser", ""));
+        }
+        JSONObject result = new JSONObject();
+        result.put("id", String.valueOf(id));
+        result.put("label", item.optString("label", ""));
+        result.put("body", snippet(text));
+        result.put("type", TYPES[type]);
+        result.put("cleanPath", item.optString("cleanPath", ""));
+        result.put("ttl", item.optString("ttl", "600"));
+        return result;
+    }
+
+    private static String snippet(String text) {
+        if (text.length() <= SNIPPET_LENGTH) {
+            return text;
+        }
+        int end = text.lastIndexOf(' ', SNIPPET_LENGTH);
+        return text.substring(0, end > 0 ? end : SNIPPET_LENGTH) + "...";
+    }
+
+    /**
+     * The most frequent tids, most frequent first
+     */
+    private static Map<Integer, Integer> facets(IntIntMap counts) {
+        int[] tids = counts.keys();
+        long[] ranked = new long[tids.length];
+        for (int i = 0; i < tids.length; i++) {
+            // Descending count, then ascending tid
+            ranked[i] = (long) -counts.get(tids[i]) << 32 | tids[i];
+        }
+        Arrays.sort(ranked);
+        Map<Integer, Integer> facets = new LinkedHashMap<>();
+        for (int i = 0; i < Math.min(MAX_FACETS, ranked.length); i++) {
+            facets.put((int) ranked[i], (int) -(ranked[i] >> 32));
+        }
+        return facets;
+    }
+
+    private static void analyze(String text, int weight, Map<String, Occurrences> occurrences, int[] position) {
+        TextAnalyzer.tokens(text, token -> occurrences.computeIfAbsent(token, t -> new Occurrences())
+                .add(position[0]++, weight));
+        position[0] += FIELD_GAP;
+    }
+
+    /**
+     * Taxonomy term ids of an item: topics, categories, post types and credit roles
+     */
+    private static int[] taxonomyIds(JSONObject item) {
+        JSONObject embedded = item.optJSONObject("_embedded");
+        int[] found = new int[8];
+        int count = 0;
+        for (String name : new String[]{"topics", "categories", "types", "credits"}) {
+            JSONArray related = EpisodeIndex.related(item, embedded, name);
+            for (int i = 0; related != null && i < related.length(); i++) {
+                Object value = related.opt(i);
+                if ("credits".equals(name)) {
+                    value = value instanceof JSONObject ? ((JSONObject) value).opt("roles") : null;
+                }
+                int tid = EpisodeIndex.parseId(EpisodeIndex.idOf(value));
+                if (tid >= 0) {
+                    if (count == found.length) {
+                        found = Arrays.copyOf(found, count * 2);
+                    }
+                    found[count++] = tid;
+                }
+            }
+        }
+        return Arrays.stream(found, 0, count).distinct().toArray();
+    }
+
+    private static List<String> tidFilter(Map<String, String> params) {
+        List<String> values = new ArrayList<>();
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            if (param.getKey().equals("filter[tid]") || param.getKey().startsWith("filter[tid][value]")) {
+                values.addAll(Arrays.asList(param.getValue().split(",")));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Split keywords into clauses: one term each, or the terms of a quoted phrase
+     */
+    static List<List<String>> parseKeywords(String keywords) {
+        List<List<String>> clauses = new ArrayList<>();
+        if (keywords == null) {
+            return clauses;
+        }
+        String[] parts = keywords.split("\"", -1);
+        for (int i = 0; i < parts.length; i++) {
+            List<String> tokens = TextAnalyzer.tokens(parts[i]);
+            if (i % 2 == 1 && i < parts.length - 1) {
+                if (!tokens.isEmpty()) {
+                    clauses.add(tokens);
+                }
+            } else {
+                for (String token : tokens) {
+                    clauses.add(Collections.singletonList(token));
+                }
+            }
+        }
+        return clauses;
+    }
+
+    private static int typeOf(String resource) {
+        for (int i = 0; i < RESOURCES.length; i++) {
+            if (RESOURCES[i].equals(resource)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Result of a local search
+     */
+    public static final class Result {
+        private final int count;
+        private final int[] types;
+        private final int[] ids;
+        private final Map<Integer, Integer> facets;
+
+        Result(int count, int[] types, int[] ids, Map<Integer, Integer> facets) {
+            this.count = count;
+            this.types = types;
+            this.ids = ids;
+            this.facets = facets;
+        }
+
+        /**
+         * @return Number of matching items, across all pages
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @return Ids of the items on the requested page, best match first
+         */
+        public int[] getIds() {
+            return ids;
+        }
+
+        /**
+         * @return Result type of the item at an index of {@link #getIds()}: "episode", "post" or "people"
+         */
+        public String getType(int index) {
+            return TYPES[types[index]];
+        }
+
+        /**
+         * @return Match counts per tid, most frequent first
+         */
+        public Map<Integer, Integer> getFacets() {
+            return facets;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{count=" + count + ", ids=" + Arrays.toString(ids) + '}';
+        }
+    }
+
+    /**
+     * Weighted frequency and positions of one term within the document being indexed
+     */
+    private static final class Occurrences {
+        int frequency;
+        int[] positions = new int[4];
+        int count;
+
+        void add(int position, int weight) {
+            frequency += weight;
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+            }
+            positions[count++] = position;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package tv.twit.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sync Report
+ * What a CatalogMirror sync fetched and changed, per resource
+ */
+public final class SyncReport {
+    private final List<ResourceResult> results = new ArrayList<>();
+
+    SyncReport() {
+    }
+
+    void add(ResourceResult result) {
+        results.add(result);
+    }
+
+    public List<ResourceResult> getResults() {
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * @return Items fetched from the API across all resources
+     */
+    public long getFetched() {
+        return results.stream().mapToLong(ResourceResult::getFetched).sum();
+    }
+
+    /**
+     * @return Records added or replaced across all resources
+     */
+    public long getWritten() {
+        return results.stream().mapToLong(ResourceResult::getWritten).sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("SyncReport{");
+        for (int i = 0; i < results.size(); i++) {
+            text.append(i == 0 ? "" : ", ").append(results.get(i));
+        }
+        return text.append('}').toString();
+    }
+
+    /**
+     * Outcome of syncing one resource
+     */
+    public static final class ResourceResult {
+        private final String resource;
+        private final boolean full;
+        private final long fetched;
+        private final long written;
+        private final long removed;
+        private final long millis;
+
+        ResourceResult(String resource, boolean full, long fetched, long written, long removed, long millis) {
+            this.resource = resource;
+            this.full = full;
+            this.fetched = fetched;
+            this.written = written;
+            this.removed = removed;
+            this.millis = millis;
+        }
+
+        public String getResource() {
+            return resource;
+        }
+
+        /**
+         * @return true for a full sync, false for an incremental one
+         */
+        public boolean isFull() {
+            return full;
+        }
+
+        public long getFetched() {
+            return fetched;
+        }
+
+        /**
+         * @return Records added or replaced; unchanged items are not rewritten
+         */
+        public long getWritten() {
+            return written;
+        }
+
+        /**
+         * @return Records dropped because a full sync no longer returned them
+         */
+        public long getRemoved() {
+            return removed;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        @Override
+        public String toString() {
+            return resource + (full ? " full" : " incremental") + ": fetched=" + fetched + ", written=" + written
+                    + ", removed=" + removed + ", " + millis + "ms";
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package tv.twit.api;
+
+import java.util.Arrays;
+
+/**
+ * Posting list of one term in the search index, varint-encoded in a growable byte array.
+ * Each entry is [document delta][weighted term frequency][position byte count][position deltas...],
+ * with documents in increasing ordinal order, so positions can be skipped when only frequencies are needed.
+ */
+final class TermPostings {
+    private byte[] bytes = new byte[16];
+    private int length;
+    private int lastDocument = -1;
+    private int documentCount;
+
+    void add(int document, int frequency, int[] positions, int positionCount) {
+        byte[] encoded = new byte[positionCount * 5];
+        int encodedLength = 0;
+        int previous = 0;
+        for (int i = 0; i < positionCount; i++) {
+            encodedLength = writeVarInt(encoded, encodedLength, positions[i] - previous);
+            previous = positions[i];
+        }
+        ensure(15 + encodedLength);
+        length = writeVarInt(bytes, length, document - lastDocument);
+        length = writeVarInt(bytes, length, frequency);
+        length = writeVarInt(bytes, length, encodedLength);
+        System.arraycopy(encoded, 0, bytes, length, encodedLength);
+        length += encodedLength;
+        lastDocument = document;
+        documentCount++;
+    }
+
+    int documentCount() {
+        return documentCount;
+    }
+
+    int byteLength() {
+        return length;
+    }
+
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Rewrite the list after a compaction, dropping documents that map to -1
+     *
+     * @return Whether any documents remain
+     */
+    boolean renumber(int[] renumbered) {
+        byte[] old = bytes;
+        int oldLength = length;
+        bytes = new byte[Math.max(16, oldLength)];
+        length = 0;
+        lastDocument = -1;
+        documentCount = 0;
+        int offset = 0;
+        int document = -1;
+        int[] cursor = new int[1];
+        while (offset < oldLength) {
+            cursor[0] = offset;
+            document += readVarInt(old, cursor);
+            int frequency = readVarInt(old, cursor);
+            int positionBytes = readVarInt(old, cursor);
+            int target = renumbered[document];
+            if (target >= 0) {
+                ensure(15 + positionBytes);
+                length = writeVarInt(bytes, length, target - lastDocument);
+                length = writeVarInt(bytes, length, frequency);
+                length = writeVarInt(bytes, length, positionBytes);
+                System.arraycopy(old, cursor[0], bytes, length, positionBytes);
+                length += positionBytes;
+                lastDocument = target;
+                documentCount++;
+            }
+            offset = cursor[0] + positionBytes;
+        }
+        if (length < bytes.length / 2) {
+            bytes = Arrays.copyOf(bytes, Math.max(16, length));
+        }
+        return documentCount > 0;
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+        }
+    }
+
+    private static int writeVarInt(byte[] target, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            target[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        target[offset++] = (byte) value;
+        return offset;
+    }
+
+    private static int readVarInt(byte[] source, int[] offset) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = source[offset[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Forward-only reader over the entries
+     */
+    final class Cursor {
+        private final int[] offset = {0};
+        private int document = -1;
+        private int frequency;
+        private int positionStart;
+        private int positionBytes;
+
+        /**
+         * @return The next document ordinal, or Integer.MAX_VALUE at the end
+         */
+        int next() {
+            offset[0] = positionStart + positionBytes;
+            if (offset[0] >= length) {
+                return document = Integer.MAX_VALUE;
+            }
+            document += readVarInt(bytes, offset);
+            frequency = readVarInt(bytes, offset);
+            positionBytes = readVarInt(bytes, offset);
+            positionStart = offset[0];
+            return document;
+        }
+
+        /**
+         * Advance to the first document at or after a target
+         *
+         * @return That document, or Integer.MAX_VALUE at the end
+         */
+        int advance(int target) {
+            while (document < target) {
+                next();
+            }
+            return document;
+        }
+
+        int document() {
+            return document;
+        }
+
+        int frequency() {
+            return frequency;
+        }
+
+        /**
+         * @return Upper bound on the number of positions in the current document
+         */
+        int maxPositions() {
+            return positionBytes;
+        }
+
+        /**
+         * Decode the positions of the term in the current document, ascending
+         *
+         * @param buffer Receives the positions; at least {@link #maxPositions()} long
+         * @return Number of positions
+         */
+        int positions(int[] buffer) {
+            int count = 0;
+            int[] cursor = {positionStart};
+            int position = 0;
+            while (cursor[0] < positionStart + positionBytes) {
+                position += readVarInt(bytes, cursor);
+                buffer[count++] = position;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package tv.twit.api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Text handling for the local search index: strips HTML from show notes and post bodies, decodes the
+ * common entities and splits text into lower-case letter/digit tokens
+ */
+final class TextAnalyzer {
+
+    private TextAnalyzer() {
+    }
+
+    /**
+     * Remove tags, script/style contents and entities from HTML, collapsing whitespace
+     *
+     * @param html HTML text, may be null
+     * @return Plain text
+     */
+    static String stripHtml(String html) {
+        if (html == null || html.isEmpty()) {
+            return "";
+        }
+        StringBuilder text = new StringBuilder(html.length());
+        int i = 0;
+        int length = html.length();
+        while (i < length) {
+            char c = html.charAt(i);
+            if (c == '<') {
+                int end = html.indexOf('>', i);
+                if (end < 0) {
+                    break;
+                }
+                String tag = html.substring(i + 1, Math.min(end, i + 8)).toLowerCase();
+                if (tag.startsWith("script") || tag.startsWith("style")) {
+                    int close = html.toLowerCase().indexOf("</" + (tag.startsWith("script") ? "script" : "style"), end);
+                    end = close < 0 ? length - 1 : html.indexOf('>', close);
+                    end = end < 0 ? length - 1 : end;
+                }
+                appendSpace(text);
+                i = end + 1;
+            } else if (c == '&') {
+                int end = html.indexOf(';', i);
+                String decoded = end > i && end - i <= 10 ? entity(html.substring(i + 1, end)) : null;
+                if (decoded != null) {
+                    text.append(decoded);
+                    i = end + 1;
+                } else {
+                    text.append(c);
+                    i++;
+                }
+            } else if (Character.isWhitespace(c)) {
+                appendSpace(text);
+                i++;
+            } else {
+                text.append(c);
+                i++;
+            }
+        }
+        return text.toString().trim();
+    }
+
+    /**
+     * Pass each token of a text to a consumer, in order
+     */
+    static void tokens(String text, Consumer<String> consumer) {
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean word = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (word && start < 0) {
+                start = i;
+            } else if (!word && start >= 0) {
+                consumer.accept(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+    }
+
+    static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        tokens(text, tokens::add);
+        return tokens;
+    }
+
+    private static void appendSpace(StringBuilder text) {
+        if (text.length() > 0 && text.charAt(text.length() - 1) != ' ') {
+            text.append(' ');
+        }
+    }
+
+    private static String entity(String name) {
+        switch (name) {
+            case "amp":
+                return "&";
+            case "lt":
+                return "<";
+            case "gt":
+                return ">";
+            case "quot":
+                return "\"";
+            case "apos":
+                return "'";
+            case "nbsp":
+                return " ";
+            default:
+                break;
+        }
+        try {
+            if (name.startsWith("#x") || name.startsWith("#X")) {
+                return new String(Character.toChars(Integer.parseInt(name.substring(2), 16)));
+            }
+            if (name.startsWith("#")) {
+                return new String(Character.toChars(Integer.parseInt(name.substring(1))));
+            }
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return null;
+    }
+}
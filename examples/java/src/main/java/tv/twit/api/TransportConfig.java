@@ -0,0 +1,309 @@
+package tv.twit.api;
+
+import java.util.Map;
+
+/**
+ * HTTP Transport Configuration
+ * Connection pool limits, timeouts and keep-alive settings used by TwitApiClient
+ */
+public final class TransportConfig {
+    private final int maxTotalConnections;
+    private final int maxConnectionsPerRoute;
+    private final int connectTimeoutMillis;
+    private final int socketTimeoutMillis;
+    private final int connectionRequestTimeoutMillis;
+    private final long connectionTtlMillis;
+    private final long idleEvictionMillis;
+    private final long keepAliveMillis;
+    private final int validateAfterInactivityMillis;
+    private final boolean compression;
+    private final boolean cookies;
+
+    private TransportConfig(Builder builder) {
+        this.maxTotalConnections = builder.maxTotalConnections;
+        this.maxConnectionsPerRoute = builder.maxConnectionsPerRoute;
+        this.connectTimeoutMillis = builder.connectTimeoutMillis;
+        this.socketTimeoutMillis = builder.socketTimeoutMillis;
+        this.connectionRequestTimeoutMillis = builder.connectionRequestTimeoutMillis;
+        this.connectionTtlMillis = builder.connectionTtlMillis;
+        this.idleEvictionMillis = builder.idleEvictionMillis;
+        this.keepAliveMillis = builder.keepAliveMillis;
+        this.validateAfterInactivityMillis = builder.validateAfterInactivityMillis;
+        this.compression = builder.compression;
+        this.cookies = builder.cookies;
+    }
+
+    /**
+     * Create a builder initialised with the default settings
+     *
+     * @return A new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the default transport configuration
+     *
+     * @return The default configuration
+     */
+    public static TransportConfig defaults() {
+        return new Builder().build();
+    }
+
+    /**
+     * Build a configuration from the optional "http" section of credentials.yml
+     * Missing keys keep their default values.
+     *
+     * @param http The parsed "http" section, may be null
+     * @return The transport configuration
+     */
+    public static TransportConfig fromMap(Map<String, Object> http) {
+        Builder builder = new Builder();
+        if (http == null) {
+            return builder.build();
+        }
+        if (http.containsKey("max_total_connections")) {
+            builder.maxTotalConnections(intValue(http, "max_total_connections"));
+        }
+        if (http.containsKey("max_connections_per_route")) {
+            builder.maxConnectionsPerRoute(intValue(http, "max_connections_per_route"));
+        }
+        if (http.containsKey("connect_timeout_ms")) {
+            builder.connectTimeoutMillis(intValue(http, "connect_timeout_ms"));
+        }
+        if (http.containsKey("socket_timeout_ms")) {
+            builder.socketTimeoutMillis(intValue(http, "socket_timeout_ms"));
+        }
+        if (http.containsKey("connection_request_timeout_ms")) {
+            builder.connectionRequestTimeoutMillis(intValue(http, "connection_request_timeout_ms"));
+        }
+        if (http.containsKey("connection_ttl_ms")) {
+            builder.connectionTtlMillis(intValue(http, "connection_ttl_ms"));
+        }
+        if (http.containsKey("idle_eviction_ms")) {
+            builder.idleEvictionMillis(intValue(http, "idle_eviction_ms"));
+        }
+        if (http.containsKey("keep_alive_ms")) {
+            builder.keepAliveMillis(intValue(http, "keep_alive_ms"));
+        }
+        if (http.containsKey("validate_after_inactivity_ms")) {
+            builder.validateAfterInactivityMillis(intValue(http, "validate_after_inactivity_ms"));
+        }
+        if (http.containsKey("compression")) {
+            builder.compression(Boolean.parseBoolean(String.valueOf(http.get("compression")).trim()));
+        }
+        if (http.containsKey("cookies")) {
+            builder.cookies(Boolean.parseBoolean(String.valueOf(http.get("cookies")).trim()));
+        }
+        return builder.build();
+    }
+
+    private static int intValue(Map<String, Object> map, String key) {
+        Object value = map.get(key);
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        try {
+            return Integer.parseInt(String.valueOf(value).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for http." + key + ": " + value);
+        }
+    }
+
+    public int getMaxTotalConnections() {
+        return maxTotalConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public int getSocketTimeoutMillis() {
+        return socketTimeoutMillis;
+    }
+
+    public int getConnectionRequestTimeoutMillis() {
+        return connectionRequestTimeoutMillis;
+    }
+
+    public long getConnectionTtlMillis() {
+        return connectionTtlMillis;
+    }
+
+    public long getIdleEvictionMillis() {
+        return idleEvictionMillis;
+    }
+
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    public int getValidateAfterInactivityMillis() {
+        return validateAfterInactivityMillis;
+    }
+
+    public boolean isCompression() {
+        return compression;
+    }
+
+    public boolean isCookies() {
+        return cookies;
+    }
+
+    @Override
+    public String toString() {
+        return "TransportConfig{maxTotal=" + maxTotalConnections
+                + ", maxPerRoute=" + maxConnectionsPerRoute
+                + ", connectTimeout=" + connectTimeoutMillis + "ms"
+                + ", socketTimeout=" + socketTimeoutMillis + "ms"
+                + ", connectionRequestTimeout=" + connectionRequestTimeoutMillis + "ms"
+                + ", ttl=" + connectionTtlMillis + "ms"
+                + ", idleEviction=" + idleEvictionMillis + "ms"
+                + ", keepAlive=" + keepAliveMillis + "ms"
+                + ", compression=" + compression
+                + ", cookies=" + cookies + "}";
+    }
+
+    /**
+     * Builder for TransportConfig
+     */
+    public static final class Builder {
+        private int maxTotalConnections = 64;
+        private int maxConnectionsPerRoute = 32;
+        private int connectTimeoutMillis = 5000;
+        private int socketTimeoutMillis = 30000;
+        private int connectionRequestTimeoutMillis = 5000;
+        private long connectionTtlMillis = 5 * 60 * 1000L;
+        private long idleEvictionMillis = 30000;
+        private long keepAliveMillis = 30000;
+        private int validateAfterInactivityMillis = 2000;
+        private boolean compression = true;
+        private boolean cookies = true;
+
+        private Builder() {
+        }
+
+        /**
+         * @param value Maximum number of pooled connections across all routes
+         */
+        public Builder maxTotalConnections(int value) {
+            this.maxTotalConnections = positive("maxTotalConnections", value);
+            return this;
+        }
+
+        /**
+         * @param value Maximum number of pooled connections to a single host
+         */
+        public Builder maxConnectionsPerRoute(int value) {
+            this.maxConnectionsPerRoute = positive("maxConnectionsPerRoute", value);
+            return this;
+        }
+
+        /**
+         * @param value Timeout for establishing a TCP/TLS connection
+         */
+        public Builder connectTimeoutMillis(int value) {
+            this.connectTimeoutMillis = nonNegative("connectTimeoutMillis", value);
+            return this;
+        }
+
+        /**
+         * @param value Maximum inactivity between two data packets while reading a response
+         */
+        public Builder socketTimeoutMillis(int value) {
+            this.socketTimeoutMillis = nonNegative("socketTimeoutMillis", value);
+            return this;
+        }
+
+        /**
+         * @param value Maximum time to wait for a free connection from the pool
+         */
+        public Builder connectionRequestTimeoutMillis(int value) {
+            this.connectionRequestTimeoutMillis = nonNegative("connectionRequestTimeoutMillis", value);
+            return this;
+        }
+
+        /**
+         * @param value Total time to live of a pooled connection, 0 or less for no limit
+         */
+        public Builder connectionTtlMillis(long value) {
+            this.connectionTtlMillis = value;
+            return this;
+        }
+
+        /**
+         * @param value Idle time after which a pooled connection is closed in the background
+         */
+        public Builder idleEvictionMillis(long value) {
+            this.idleEvictionMillis = positive("idleEvictionMillis", value);
+            return this;
+        }
+
+        /**
+         * @param value Keep-alive duration used when the server does not send a Keep-Alive header
+         */
+        public Builder keepAliveMillis(long value) {
+            this.keepAliveMillis = positive("keepAliveMillis", value);
+            return this;
+        }
+
+        /**
+         * @param value Idle time after which a connection is re-validated before being leased
+         */
+        public Builder validateAfterInactivityMillis(int value) {
+            this.validateAfterInactivityMillis = value;
+            return this;
+        }
+
+        /**
+         * @param value Send Accept-Encoding: gzip,deflate and decompress responses while they are parsed
+         */
+        public Builder compression(boolean value) {
+            this.compression = value;
+            return this;
+        }
+
+        /**
+         * @param value Keep cookies the API sets. The API authenticates with headers and does not need them;
+         *              without cookie handling the client skips parsing the public suffix list at startup.
+         */
+        public Builder cookies(boolean value) {
+            this.cookies = value;
+            return this;
+        }
+
+        public TransportConfig build() {
+            if (maxConnectionsPerRoute > maxTotalConnections) {
+                throw new IllegalArgumentException("maxConnectionsPerRoute (" + maxConnectionsPerRoute
+                        + ") must not exceed maxTotalConnections (" + maxTotalConnections + ")");
+            }
+            return new TransportConfig(this);
+        }
+
+        private static int positive(String name, int value) {
+            if (value <= 0) {
+                throw new IllegalArgumentException(name + " must be positive: " + value);
+            }
+            return value;
+        }
+
+        private static long positive(String name, long value) {
+            if (value <= 0) {
+                throw new IllegalArgumentException(name + " must be positive: " + value);
+            }
+            return value;
+        }
+
+        private static int nonNegative(String name, int value) {
+            if (value < 0) {
+                throw new IllegalArgumentException(name + " must not be negative: " + value);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,537 @@
+package tv.twit.api;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * TWiT API Async Client
+ * A non-blocking client for the TWiT.tv API built on java.net.http.HttpClient.
+ * Every method returns immediately with a CompletableFuture; at most maxInFlight requests are
+ * on the wire at once and the rest wait in a queue without holding a thread.
+ */
+public class TwitApiAsyncClient implements Closeable {
+    private final String appId;
+    private final String appKey;
+    private final String baseUrl;
+    private final UrlTemplate urls;
+    private final String[] defaultHeaders;
+    private final Duration requestTimeout;
+    private final Logger logger;
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+    private final int maxInFlight;
+    private final Semaphore permits;
+    private final Queue<PendingRequest> queue = new ConcurrentLinkedQueue<>();
+    private final Set<PendingRequest> inFlight = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+    private final RequestListener listener;
+
+    private TwitApiAsyncClient(Builder builder) {
+        if (builder.appId == null || builder.appKey == null) {
+            throw new IllegalStateException("appId and appKey are required");
+        }
+        this.appId = builder.appId;
+        this.appKey = builder.appKey;
+        this.baseUrl = builder.baseUrl;
+        this.urls = new UrlTemplate(baseUrl);
+        this.defaultHeaders = new String[]{
+                "Accept", "application/json",
+                "Accept-Encoding", "gzip",
+                "app-id", appId,
+                "app-key", appKey
+        };
+        this.requestTimeout = Duration.ofMillis(builder.requestTimeoutMillis);
+        this.logger = Logger.getLogger(TwitApiAsyncClient.class.getName());
+        this.executor = Executors.newFixedThreadPool(builder.ioThreads, daemonThreads());
+        this.httpClient = HttpClient.newBuilder()
+                .executor(executor)
+                .connectTimeout(Duration.ofMillis(builder.connectTimeoutMillis))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.maxInFlight = builder.maxInFlight;
+        this.permits = new Semaphore(builder.maxInFlight);
+        this.listener = builder.listener;
+    }
+
+    /**
+     * Create a builder for the async client
+     *
+     * @return A new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "twit-api-async-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Get the base URL for the API
+     *
+     * @return The base URL
+     */
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Get a list of all shows
+     *
+     * @param params Optional query parameters
+     * @return Future JSON response from the API
+     */
+    public CompletableFuture<JSONObject> getShows(Map<String, String> params) {
+        return submit("/shows", params);
+    }
+
+    /**
+     * Get a list of all shows with default parameters
+     *
+     * @return Future JSON response from the API
+     */
+    public CompletableFuture<JSONObject> getShows() {
+        return getShows(new HashMap<>());
+    }
+
+    /**
+     * Get a specific show by ID
+     *
+     * @param id     The show ID
+     * @param params Optional query parameters
+     * @return Future JSON response from the API
+     */
+    public CompletableFuture<JSONObject> getShow(String id, Map<String, String> params) {
+        return submit("/shows/" + id, params);
+    }
+
+    /**
+     * Get a specific show by ID with default parameters
+     *
+     * @param id The show ID
+     * @return Future JSON response from the API
+     */
+    public CompletableFuture<JSONObject> getShow(String id) {
+        return getShow(id, new HashMap<>());
+    }
+
+    /**
+     * Get a list of all episodes
+     *
+     * @param params Optional query parameters
+     * @return Future JSON response from the API
+     */
+    public CompletableFuture<JSONObject> getEpisodes(Map<String, String> params) {
+        return submit("/episodes", params);
+    }
+
+    /**
+     * Get a list of all episodes with default parameters
+     *
+     * @return Future JSON response from the API
+     */
+    public CompletableFuture<JSONObject> getEpisodes() {
+        return getEpisodes(new HashMap<>());
+    }
+
+    /**
+     * Get a specific episode by ID
+     *
+     * @param id     The episode ID
+     * @param params Optional query parameters
+     * @return Future JSON response from the API
+     */
+    public CompletableFuture<JSONObject> getEpisode(String id, Map<String, String> params) {
+        return submit("/episodes/" + id, params);
+    }
+
+    /**
+     * Get a specific episode by ID with default parameters
+     *
+     * @param id The episode ID
+     * @return Future JSON response from the API
+     */
+    public CompletableFuture<JSONObject> getEpisode(String id) {
+        return getEpisode(id, new HashMap<>());
+    }
+
+    /**
+     * Get live streams information
+     *
+     * @param params Optional query parameters
+     * @return Future JSON response from the API
+     */
+    public CompletableFuture<JSONObject> getStreams(Map<String, String> params) {
+        return submit("/streams", params);
+    }
+
+    /**
+     * Get live streams information with default parameters
+     *
+     * @return Future JSON response from the API
+     */
+    public CompletableFuture<JSONObject> getStreams() {
+        return getStreams(new HashMap<>());
+    }
+
+    /**
+     * Get people information
+     *
+     * @param params Optional query parameters
+     * @return Future JSON response from the API
+     */
+    public CompletableFuture<JSONObject> getPeople(Map<String, String> params) {
+        return submit("/people", params);
+    }
+
+    /**
+     * Get people information with default parameters
+     *
+     * @return Future JSON response from the API
+     */
+    public CompletableFuture<JSONObject> getPeople() {
+        return getPeople(new HashMap<>());
+    }
+
+    /**
+     * Get the number of requests currently on the wire
+     *
+     * @return In-flight request count
+     */
+    public int getInFlightCount() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    /**
+     * Get the number of requests waiting for an in-flight slot
+     *
+     * @return Queued request count
+     */
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * Queue a request and dispatch it as soon as an in-flight slot is free.
+     * Cancelling the returned future removes a queued request, or aborts one on the wire.
+     */
+    private CompletableFuture<JSONObject> submit(String endpoint, Map<String, String> params) {
+        CompletableFuture<JSONObject> result = new CompletableFuture<>();
+        if (closed) {
+            result.complete(ApiResponses.failure("Client is closed"));
+            return result;
+        }
+        HttpRequest request;
+        try {
+            URI uri = urls.uri(endpoint, params);
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine("Queueing request to: " + uri);
+            }
+            request = HttpRequest.newBuilder(uri)
+                    .timeout(requestTimeout)
+                    .headers(defaultHeaders)
+                    .GET()
+                    .build();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            logger.log(Level.SEVERE, "Request failed", e);
+            result.complete(ApiResponses.failure(e.getMessage()));
+            return result;
+        }
+        queue.add(new PendingRequest(endpoint, request, result, listener != null ? System.nanoTime() : 0L));
+        drain();
+        return result;
+    }
+
+    /**
+     * Dispatch queued requests while in-flight slots are available. Never blocks.
+     */
+    private void drain() {
+        if (closed) {
+            cancelQueued();
+            return;
+        }
+        while (!queue.isEmpty() && permits.tryAcquire()) {
+            PendingRequest pending = queue.poll();
+            if (pending == null || pending.result.isDone()) {
+                // Queue emptied by another thread, or the caller cancelled while waiting
+                permits.release();
+                continue;
+            }
+            dispatch(pending);
+        }
+    }
+
+    private void dispatch(PendingRequest pending) {
+        CompletableFuture<HttpResponse<byte[]>> call;
+        if (listener != null) {
+            pending.dispatchedNanos = System.nanoTime();
+        }
+        inFlight.add(pending);
+        if (closed) {
+            // close() may have cancelled the in-flight requests before this one was added
+            inFlight.remove(pending);
+            permits.release();
+            pending.result.cancel(false);
+            return;
+        }
+        try {
+            call = httpClient.sendAsync(pending.request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (RuntimeException e) {
+            inFlight.remove(pending);
+            permits.release();
+            if (listener != null) {
+                report(pending, null, e);
+            }
+            pending.result.complete(ApiResponses.failure(e.getMessage()));
+            drain();
+            return;
+        }
+
+        // Propagate caller cancellation to the exchange (aborts the request on JDK 16+)
+        pending.result.whenComplete((value, error) -> {
+            if (pending.result.isCancelled()) {
+                call.cancel(true);
+            }
+        });
+
+        call.whenComplete((response, error) -> {
+            inFlight.remove(pending);
+            permits.release();
+            if (listener != null) {
+                report(pending, response, error);
+            }
+            try {
+                if (pending.result.isDone()) {
+                    // Cancelled by the caller or by close(), nobody waits for the outcome
+                    return;
+                }
+                if (error != null) {
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    logger.log(Level.SEVERE, "Request failed", cause);
+                    pending.result.complete(ApiResponses.failure(String.valueOf(cause.getMessage())));
+                } else {
+                    pending.result.complete(toJson(pending.endpoint, response));
+                }
+            } catch (IOException | JSONException e) {
+                logger.log(Level.SEVERE, "Request failed", e);
+                pending.result.complete(ApiResponses.failure(e.getMessage()));
+            } catch (RuntimeException e) {
+                pending.result.completeExceptionally(e);
+            } finally {
+                drain();
+            }
+        });
+    }
+
+    private void report(PendingRequest pending, HttpResponse<byte[]> response, Throwable error) {
+        Throwable cause = error != null && error.getCause() != null ? error.getCause() : error;
+        long bytesOut = pending.request.method().length() + pending.request.uri().toString().length() + 11;
+        for (Map.Entry<String, List<String>> header : pending.request.headers().map().entrySet()) {
+            for (String value : header.getValue()) {
+                bytesOut += header.getKey().length() + value.length() + 4;
+            }
+        }
+        listener.onRequest(new RequestEvent(pending.endpoint, appId, response != null ? response.statusCode() : 0,
+                cause != null ? cause.getClass().getSimpleName() : null, System.nanoTime() - pending.queuedNanos,
+                pending.dispatchedNanos - pending.queuedNanos, response != null ? response.body().length : 0,
+                bytesOut, false));
+    }
+
+    private JSONObject toJson(String endpoint, HttpResponse<byte[]> response) throws IOException {
+        InputStream content = new ByteArrayInputStream(response.body());
+        boolean gzip = response.headers().firstValue("Content-Encoding")
+                .map(encoding -> encoding.equalsIgnoreCase("gzip"))
+                .orElse(false);
+        if (gzip) {
+            content = new GZIPInputStream(content, 8192);
+        }
+        try (Reader reader = new InputStreamReader(content, StandardCharsets.UTF_8)) {
+            if (response.statusCode() == 200) {
+                // Decode straight from the (decompressed) bytes, no intermediate String
+                return new JSONObject(new JSONTokener(reader));
+            }
+            StringBuilder body = new StringBuilder();
+            char[] buffer = new char[4096];
+            int n;
+            while ((n = reader.read(buffer)) > 0) {
+                body.append(buffer, 0, n);
+            }
+            return ApiResponses.errorFor(response.statusCode(), body.toString(), endpoint, logger);
+        }
+    }
+
+    /**
+     * Cancel queued and in-flight requests and stop the I/O threads. Their futures complete with a
+     * CancellationException, since the responses of in-flight requests would never be delivered once the
+     * I/O threads are gone. Requests made after closing complete with an error object.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        cancelQueued();
+        for (PendingRequest pending : inFlight) {
+            pending.result.cancel(true);
+        }
+        inFlight.clear();
+        executor.shutdownNow();
+    }
+
+    private void cancelQueued() {
+        PendingRequest pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result.cancel(false);
+        }
+    }
+
+    private static final class PendingRequest {
+        final String endpoint;
+        final HttpRequest request;
+        final CompletableFuture<JSONObject> result;
+        final long queuedNanos;
+        long dispatchedNanos;
+
+        PendingRequest(String endpoint, HttpRequest request, CompletableFuture<JSONObject> result, long queuedNanos) {
+            this.endpoint = endpoint;
+            this.request = request;
+            this.result = result;
+            this.queuedNanos = queuedNanos;
+        }
+    }
+
+    /**
+     * Builder for TwitApiAsyncClient
+     */
+    public static final class Builder {
+        private String appId;
+        private String appKey;
+        private String baseUrl = "https://twit.tv/api/v1.0";
+        private int maxInFlight = 64;
+        private int ioThreads = 2;
+        private long connectTimeoutMillis = 5000;
+        private long requestTimeoutMillis = 30000;
+        private RequestListener listener;
+
+        private Builder() {
+        }
+
+        /**
+         * Load app_id, app_key and base_url from ../credentials.yml. The async client has no key pool:
+         * without app_id and app_key, it uses the first entry of the keys list.
+         */
+        @SuppressWarnings("unchecked")
+        public Builder credentialsFile() {
+            Map<String, Object> credentials = TwitApiClient.loadCredentialsFromFile();
+            Map<String, Object> twitApi = (Map<String, Object>) credentials.get("twit_api");
+
+            this.appId = (String) twitApi.get("app_id");
+            this.appKey = (String) twitApi.get("app_key");
+            if ((appId == null || appKey == null) && twitApi.get("keys") instanceof List) {
+                KeyPool.Key first = KeyPool.fromMap((List<Object>) twitApi.get("keys"), null).first();
+                this.appId = first.appId;
+                this.appKey = first.appKey;
+            }
+            if (twitApi.containsKey("base_url")) {
+                this.baseUrl = (String) twitApi.get("base_url");
+            }
+            return this;
+        }
+
+        public Builder appId(String appId) {
+            this.appId = appId;
+            return this;
+        }
+
+        public Builder appKey(String appKey) {
+            this.appKey = appKey;
+            return this;
+        }
+
+        public Builder baseUrl(String baseUrl) {
+            this.baseUrl = baseUrl;
+            return this;
+        }
+
+        /**
+         * @param maxInFlight Maximum number of requests on the wire at once; the rest are queued
+         */
+        public Builder maxInFlight(int maxInFlight) {
+            if (maxInFlight <= 0) {
+                throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+            }
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * @param ioThreads Number of threads used for I/O callbacks and response decoding
+         */
+        public Builder ioThreads(int ioThreads) {
+            if (ioThreads <= 0) {
+                throw new IllegalArgumentException("ioThreads must be positive: " + ioThreads);
+            }
+            this.ioThreads = ioThreads;
+            return this;
+        }
+
+        public Builder connectTimeoutMillis(long connectTimeoutMillis) {
+            this.connectTimeoutMillis = connectTimeoutMillis;
+            return this;
+        }
+
+        public Builder requestTimeoutMillis(long requestTimeoutMillis) {
+            this.requestTimeoutMillis = requestTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * Report every HTTP exchange, e.g. to a {@link RequestMetrics}. The pool wait of an event is the
+         * time the request queued for an in-flight slot.
+         *
+         * @param listener The instrumentation hooks, or null for none
+         */
+        public Builder listener(RequestListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        public TwitApiAsyncClient build() {
+            return new TwitApiAsyncClient(this);
+        }
+    }
+}
@@ -1,22 +1,44 @@
 package tv.twit.api;
 
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicHeader;
 import org.apache.http.util.EntityUtils;
+import org.json.JSONException;
 import org.json.JSONObject;
-import org.yaml.snakeyaml.Yaml;
+import org.json.JSONTokener;
+import tv.twit.api.model.Credit;
+import tv.twit.api.model.Episode;
+import tv.twit.api.model.ModelDecoder;
+import tv.twit.api.model.Page;
+import tv.twit.api.model.Person;
+import tv.twit.api.model.Show;
+import tv.twit.api.model.Stream;
 
-import java.io.File;
-import java.io.FileInputStream;
+import java.io.Closeable;
 import java.io.IOException;
-import java.net.URI;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -24,12 +46,25 @@ import java.util.logging.Logger;
  * TWiT API Client
  * A client for interacting with the TWiT.tv API
  */
-public class TwitApiClient {
+public class TwitApiClient implements Closeable {
     private final String appId;
     private final String appKey;
     private final String baseUrl;
+    private final UrlTemplate urls;
+    private final Header[] defaultHeaders;
     private final Logger logger;
-    private final HttpClient httpClient;
+    private final HttpTransport transport;
+    private final CloseableHttpClient httpClient;
+    private final BulkExecutor bulkExecutor;
+    private final ResponseCacheLayer cacheLayer;
+    private final RequestGuard guard;
+    private final KeyPool keyPool;
+    private final LookupBatcher batcher;
+    private final GraphFetcher graphs;
+    private final PollingConfig polling;
+    private final RequestListener listener;
+    private final Map<String, ChangeFeed> feeds = new HashMap<>();
+    private ScheduledExecutorService watchScheduler;
 
     /**
      * Constructor with explicit credentials
@@ -39,29 +74,59 @@ public class TwitApiClient {
      * @param baseUrl The base URL for the TWiT API
      */
     public TwitApiClient(String appId, String appKey, String baseUrl) {
-        this.appId = appId;
-        this.appKey = appKey;
-        this.baseUrl = baseUrl;
-        this.logger = Logger.getLogger(TwitApiClient.class.getName());
-        this.httpClient = HttpClients.createDefault();
+        this(builder().appId(appId).appKey(appKey).baseUrl(baseUrl));
     }
 
     /**
-     * Default constructor that loads credentials from file
+     * Default constructor that takes credentials from the environment if TWIT_APP_ID and TWIT_APP_KEY
+     * are set, and from the credentials file otherwise
      */
     public TwitApiClient() {
-        Map<String, Object> credentials = loadCredentialsFromFile();
-        Map<String, Object> twitApi = (Map<String, Object>) credentials.get("twit_api");
-        
-        this.appId = (String) twitApi.get("app_id");
-        this.appKey = (String) twitApi.get("app_key");
-        this.baseUrl = twitApi.containsKey("base_url") ? (String) twitApi.get("base_url") : "https://twit.tv/api/v1.0";
-        this.logger = Logger.getLogger(TwitApiClient.class.getName());
-        this.httpClient = HttpClients.createDefault();
-        
+        this(builder().credentials());
         logger.info("Loaded credentials - APP_ID: " + appId + ", BASE_URL: " + baseUrl);
     }
 
+    private TwitApiClient(Builder builder) {
+        this.keyPool = builder.keyPool;
+        // Without a complete app_id/app_key pair, the pool's first key names the client and fills the default headers
+        boolean single = builder.appId != null && builder.appKey != null;
+        if (!single && keyPool == null) {
+            throw new IllegalStateException("appId and appKey, or a key pool, are required");
+        }
+        this.appId = single ? builder.appId : keyPool.first().appId;
+        this.appKey = single ? builder.appKey : keyPool.first().appKey;
+        this.baseUrl = builder.baseUrl;
+        this.urls = new UrlTemplate(baseUrl);
+        this.defaultHeaders = new Header[]{
+                new BasicHeader("Accept", "application/json"),
+                new BasicHeader("app-id", appId),
+                new BasicHeader("app-key", appKey)
+        };
+        this.logger = Logger.getLogger(TwitApiClient.class.getName());
+        this.listener = builder.listener;
+        this.transport = new HttpTransport(builder.transport, listener != null);
+        this.httpClient = transport.client();
+        this.bulkExecutor = builder.bulkMode == BulkExecutor.Mode.VIRTUAL
+                ? BulkExecutor.virtualThreads(builder.bulkConcurrency)
+                : BulkExecutor.platformThreads(builder.bulkConcurrency);
+        this.cacheLayer = builder.cache != null ? new ResponseCacheLayer(builder.cache, builder.cachePolicy, listener) : null;
+        this.guard = new RequestGuard(builder.rateLimiter, builder.circuitBreaker, builder.retryPolicy, keyPool, listener);
+        this.batcher = builder.batching != null ? new LookupBatcher(builder.batching, this::makeRequest,
+                (endpoint, params) -> guard.execute(key -> execute(endpoint, params, null, false, key)), cacheLayer)
+                : null;
+        this.graphs = new GraphFetcher(baseUrl, this::makeRequest, bulkExecutor);
+        this.polling = builder.polling;
+    }
+
+    /**
+     * Create a builder for a client with custom transport settings
+     *
+     * @return A new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
     /**
      * Get the base URL for the API
      *
@@ -98,7 +163,7 @@ public class TwitApiClient {
      * @return JSON response from the API
      */
     public JSONObject getShow(String id, Map<String, String> params) {
-        return makeRequest("/shows/" + id, params);
+        return lookup("shows", id, params);
     }
 
     /**
@@ -138,7 +203,7 @@ public class TwitApiClient {
      * @return JSON response from the API
      */
     public JSONObject getEpisode(String id, Map<String, String> params) {
-        return makeRequest("/episodes/" + id, params);
+        return lookup("episodes", id, params);
     }
 
     /**
@@ -190,121 +255,829 @@ public class TwitApiClient {
     }
 
     /**
-     * Make an HTTP request to the TWiT API
+     * Get a specific person by ID
+     *
+     * @param id     The person ID
+     * @param params Optional query parameters
+     * @return JSON response from the API
+     */
+    public JSONObject getPerson(String id, Map<String, String> params) {
+        return lookup("people", id, params);
+    }
+
+    /**
+     * Get a specific person by ID with default parameters
+     *
+     * @param id The person ID
+     * @return JSON response from the API
+     */
+    public JSONObject getPerson(String id) {
+        return getPerson(id, new HashMap<>());
+    }
+
+    /**
+     * Get a specific credit by ID
+     *
+     * @param id     The credit ID
+     * @param params Optional query parameters
+     * @return JSON response from the API
+     */
+    public JSONObject getCredit(String id, Map<String, String> params) {
+        return lookup("credits", id, params);
+    }
+
+    /**
+     * Get a specific credit by ID with default parameters
+     *
+     * @param id The credit ID
+     * @return JSON response from the API
+     */
+    public JSONObject getCredit(String id) {
+        return getCredit(id, new HashMap<>());
+    }
+
+    /**
+     * Get a page of shows as typed models
+     *
+     * @param params Optional query parameters
+     * @return The decoded page
+     * @throws TwitApiException if the API returns an error
+     */
+    public Page<Show> listShows(Map<String, String> params) {
+        return decode(fetchRaw("/shows", params), ModelDecoder::shows);
+    }
+
+    /**
+     * Get a specific show by ID as a typed model
+     *
+     * @param id The show ID
+     * @return The show, or null if the response holds none
+     * @throws TwitApiException if the API returns an error
+     */
+    public Show loadShow(String id) {
+        return decode(fetchRaw("/shows/" + id, new HashMap<>()), ModelDecoder::shows).first();
+    }
+
+    /**
+     * Get a page of episodes as typed models
+     *
+     * @param params Optional query parameters, e.g. filter[shows]
+     * @return The decoded page
+     * @throws TwitApiException if the API returns an error
+     */
+    public Page<Episode> listEpisodes(Map<String, String> params) {
+        return decode(fetchRaw("/episodes", params), ModelDecoder::episodes);
+    }
+
+    /**
+     * Get a specific episode by ID as a typed model
+     *
+     * @param id The episode ID
+     * @return The episode, or null if the response holds none
+     * @throws TwitApiException if the API returns an error
+     */
+    public Episode loadEpisode(String id) {
+        return decode(fetchRaw("/episodes/" + id, new HashMap<>()), ModelDecoder::episodes).first();
+    }
+
+    /**
+     * Get live streams as typed models
+     *
+     * @return The decoded page
+     * @throws TwitApiException if the API returns an error
+     */
+    public Page<Stream> listStreams() {
+        return decode(fetchRaw("/streams", new HashMap<>()), ModelDecoder::streams);
+    }
+
+    /**
+     * Get a page of people as typed models
+     *
+     * @param params Optional query parameters
+     * @return The decoded page
+     * @throws TwitApiException if the API returns an error
+     */
+    public Page<Person> listPeople(Map<String, String> params) {
+        return decode(fetchRaw("/people", params), ModelDecoder::people);
+    }
+
+    /**
+     * Get a page of credits as typed models
+     *
+     * @param params Optional query parameters
+     * @return The decoded page
+     * @throws TwitApiException if the API returns an error
+     */
+    public Page<Credit> listCredits(Map<String, String> params) {
+        return decode(fetchRaw("/credits", params), ModelDecoder::credits);
+    }
+
+    /**
+     * Query all shows, following pagination links lazily
+     *
+     * @return A query over /shows
+     */
+    public ResourceQuery shows() {
+        return query("/shows");
+    }
+
+    /**
+     * Query all episodes, following pagination links lazily
+     *
+     * @return A query over /episodes
+     */
+    public ResourceQuery episodes() {
+        return query("/episodes");
+    }
+
+    /**
+     * Query all people, following pagination links lazily
+     *
+     * @return A query over /people
+     */
+    public ResourceQuery people() {
+        return query("/people");
+    }
+
+    /**
+     * Query all credits, following pagination links lazily
+     *
+     * @return A query over /credits
+     */
+    public ResourceQuery credits() {
+        return query("/credits");
+    }
+
+    /**
+     * Query all posts, following pagination links lazily
+     *
+     * @return A query over /posts
+     */
+    public ResourceQuery posts() {
+        return query("/posts");
+    }
+
+    /**
+     * Query search results for keywords, following pagination links lazily
+     *
+     * @param keywords The keywords to search for
+     * @return A query over /search/{keywords}
+     */
+    public ResourceQuery search(String keywords) {
+        String endpoint = "/search/" + UrlTemplate.encode(keywords);
+        return new ResourceQuery(endpoint, "search", params -> makeRequest(endpoint, params),
+                params -> fetchRaw(endpoint, params));
+    }
+
+    /**
+     * Query any list endpoint, following pagination links lazily
+     *
+     * @param endpoint The list endpoint, e.g. "/categories"; items are read from the array named after it
+     * @return A query over the endpoint
+     */
+    public ResourceQuery query(String endpoint) {
+        return new ResourceQuery(endpoint, CachePolicy.resourceOf(endpoint), params -> makeRequest(endpoint, params),
+                params -> fetchRaw(endpoint, params));
+    }
+
+    /**
+     * Query a list endpoint without the response cache, for callers that must see the current data
+     * such as a mirror sync; requests still go through the rate limiter, retries and key pool
+     */
+    ResourceQuery uncachedQuery(String endpoint) {
+        return new ResourceQuery(endpoint, CachePolicy.resourceOf(endpoint), params -> fetchUncached(endpoint, params),
+                params -> fetchRaw(endpoint, params));
+    }
+
+    /**
+     * Get several shows by ID concurrently
+     *
+     * @param ids The show IDs
+     * @return JSON responses in the same order as the IDs
+     */
+    public List<JSONObject> fetchShows(Collection<String> ids) {
+        return fetchAll(ids, this::getShow);
+    }
+
+    /**
+     * Get several episodes by ID concurrently
+     *
+     * @param ids The episode IDs
+     * @return JSON responses in the same order as the IDs
+     */
+    public List<JSONObject> fetchEpisodes(Collection<String> ids) {
+        return fetchAll(ids, this::getEpisode);
+    }
+
+    /**
+     * Run a blocking call for each ID on the client's bulk executor
+     * (virtual threads or a platform pool, see {@link Builder#bulk})
+     *
+     * @param ids   The IDs to fetch
+     * @param fetch The call to make for each ID, e.g. {@code client::getShow}
+     * @return JSON responses in the same order as the IDs
+     */
+    public List<JSONObject> fetchAll(Collection<String> ids, Function<String, JSONObject> fetch) {
+        return bulkExecutor.fetchAll(ids, fetch);
+    }
+
+    /**
+     * Get an item together with the related resources a shape asks for, e.g. a show with its credits,
+     * their people and the latest episodes. Only the shape's fields are requested, embedded relations
+     * are used instead of following their links, and the links that remain are fetched concurrently,
+     * one round trip per level of the graph. See {@link GraphFetcher}.
+     *
+     * @param resource The resource name, e.g. "shows"
+     * @param id       The item ID
+     * @param shape    The fields and relations to fetch
+     * @return The item with its relations as properties, or the error object of the first failed request
+     */
+    public JSONObject fetchGraph(String resource, String id, GraphShape shape) {
+        return graphs.fetch(resource, id, shape);
+    }
+
+    /**
+     * Watch the live streams: the listener is told when streams are added, removed or changed.
+     * All watchers of /streams share one poller, so any number of listeners cost one request per interval.
+     *
+     * @param listener Receives the changes, starting with every current stream as ADDED
+     * @return The subscription; close it to stop watching
+     */
+    public ChangeSubscription watchStreams(ChangeListener listener) {
+        return watch("/streams", new HashMap<>(), listener);
+    }
+
+    /**
+     * Watch any list endpoint for items added, removed or changed, diffed by item id.
+     * Polls on the adaptive schedule of the client's {@link PollingConfig} with conditional requests,
+     * through the rate limiter, retries and circuit breaker. Watchers of the same endpoint and
+     * parameters share one poller; it stops when the last subscription is closed.
+     *
+     * @param endpoint The list endpoint, e.g. "/streams"
+     * @param params   Query parameters, e.g. filter[streamType]
+     * @param listener Receives the changes, starting with every current item as ADDED
+     * @return The subscription; close it to stop watching
+     */
+    public ChangeSubscription watch(String endpoint, Map<String, String> params, ChangeListener listener) {
+        String key = ResponseCacheLayer.key(endpoint, params);
+        synchronized (feeds) {
+            if (watchScheduler == null) {
+                watchScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "twit-api-watch");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            ChangeFeed feed = feeds.computeIfAbsent(key, k -> new ChangeFeed(endpoint, params, polling,
+                    (e, p, validators) -> guard.execute(poolKey -> execute(e, p, validators, false, poolKey)), watchScheduler));
+            feed.subscribe(listener);
+            return new ChangeSubscription(() -> {
+                synchronized (feeds) {
+                    if (feed.unsubscribe(listener)) {
+                        feeds.remove(key, feed);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Watch the live streams as a {@link java.util.concurrent.Flow.Publisher}
+     *
+     * @return The publisher; close it to stop watching
+     */
+    public ChangePublisher publishStreams() {
+        ChangePublisher publisher = new ChangePublisher();
+        publisher.attach(watchStreams(publisher));
+        return publisher;
+    }
+
+    /**
+     * Get a snapshot of the response cache counters
+     *
+     * @return Cache statistics, all zero if no cache is configured
+     */
+    public CacheStats getCacheStats() {
+        return cacheLayer != null ? cacheLayer.stats() : new CacheStats(0, 0, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Drop all cached responses
+     */
+    public void clearCache() {
+        if (cacheLayer != null) {
+            cacheLayer.clear();
+        }
+    }
+
+    /**
+     * Get a snapshot of the rate limiter, retry and circuit breaker counters
+     *
+     * @return Resilience statistics
+     */
+    public ResilienceStats getResilienceStats() {
+        return guard.stats();
+    }
+
+    /**
+     * Get the state and request counts of each key in the key pool
+     *
+     * @return One entry per key, empty if no key pool is configured
+     */
+    public List<KeyPool.KeyStats> getKeyStats() {
+        return keyPool != null ? keyPool.getStats() : Collections.emptyList();
+    }
+
+    /**
+     * @return The key pool, or null if the client sends every request with one app-id/app-key pair
+     */
+    public KeyPool getKeyPool() {
+        return keyPool;
+    }
+
+    /**
+     * Get a snapshot of the item lookup batching counters
+     *
+     * @return Batching statistics, all zero if batching is not configured
+     */
+    public BatchStats getBatchStats() {
+        return batcher != null ? batcher.stats() : new BatchStats(0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Look up a single item, through the batching layer if it is configured for the resource.
+     * Lookups with query parameters and lookups already in the cache are not batched.
+     *
+     * @param resource The resource name, e.g. "shows"
+     * @param id       The item ID
+     * @param params   Optional query parameters
+     * @return JSON response from the API
+     */
+    private JSONObject lookup(String resource, String id, Map<String, String> params) {
+        String endpoint = "/" + resource + "/" + id;
+        if (batcher == null || !params.isEmpty() || !batcher.handles(resource)) {
+            return makeRequest(endpoint, params);
+        }
+        if (cacheLayer != null) {
+            JSONObject cached = cacheLayer.getIfFresh(endpoint, params);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        return batcher.get(resource, id);
+    }
+
+    /**
+     * Make a request on behalf of a {@link TwitApiProxy} caller. Single-item lookups such as
+     * /episodes/123 go through the batching layer, so lookups from many callers share list requests.
+     *
+     * @param endpoint The API endpoint as sent by the caller, path segments still percent-encoded
+     * @param params   Query parameters
+     * @return JSON response from the API, or an error object with "error" and "code"
+     */
+    JSONObject forward(String endpoint, Map<String, String> params) {
+        int slash = endpoint.indexOf('/', 1);
+        if (slash > 0 && slash < endpoint.length() - 1 && endpoint.indexOf('/', slash + 1) < 0) {
+            return lookup(endpoint.substring(1, slash), endpoint.substring(slash + 1), params);
+        }
+        return makeRequest(endpoint, params);
+    }
+
+    /**
+     * Make a request to the TWiT API, through the response cache if one is configured
      *
      * @param endpoint The API endpoint to request
      * @param params   Optional query parameters
      * @return JSON response from the API
      */
     private JSONObject makeRequest(String endpoint, Map<String, String> params) {
+        if (cacheLayer == null) {
+            return fetchUncached(endpoint, params);
+        }
+        return cacheLayer.get(endpoint, params, stale -> guard.execute(key -> execute(endpoint, params, stale, false, key)));
+    }
+
+    /**
+     * Make a request to the TWiT API that bypasses the response cache
+     *
+     * @param endpoint The API endpoint to request
+     * @param params   Optional query parameters
+     * @return JSON response from the API
+     */
+    JSONObject fetchUncached(String endpoint, Map<String, String> params) {
+        return guard.execute(key -> execute(endpoint, params, null, false, key)).json;
+    }
+
+    /**
+     * Make a request whose body is decoded into typed models.
+     * Goes through the rate limiter, retries and circuit breaker but not the response cache,
+     * which holds org.json trees.
+     */
+    private byte[] fetchRaw(String endpoint, Map<String, String> params) {
+        ApiResponse response = guard.execute(key -> execute(endpoint, params, null, true, key));
+        if (response.raw == null) {
+            throw new TwitApiException(response.json);
+        }
+        return response.raw;
+    }
+
+    private <T> Page<T> decode(byte[] body, ModelDecoding<T> decoder) {
         try {
-            // Build URL with query parameters if any
-            StringBuilder urlBuilder = new StringBuilder(baseUrl + endpoint);
-            
-            if (!params.isEmpty()) {
-                urlBuilder.append("?");
-                boolean first = true;
-                for (Map.Entry<String, String> entry : params.entrySet()) {
-                    if (!first) {
-                        urlBuilder.append("&");
-                    }
-                    urlBuilder.append(entry.getKey()).append("=").append(entry.getValue());
-                    first = false;
-                }
+            return decoder.decode(body);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Malformed response", e);
+            throw new TwitApiException(ApiResponses.failure(e.getMessage()));
+        }
+    }
+
+    @FunctionalInterface
+    private interface ModelDecoding<T> {
+        Page<T> decode(byte[] body) throws IOException;
+    }
+
+    /**
+     * Make an HTTP request to the TWiT API, reporting it to the request listener if there is one
+     *
+     * @param endpoint The API endpoint to request
+     * @param params   Optional query parameters
+     * @param stale    Cached response to revalidate with If-None-Match/If-Modified-Since, may be null
+     * @param raw      Return a successful body undecoded for the typed model decoder
+     * @param key      Key from the key pool to send the request with, or null for the client's credentials
+     * @return The decoded response, status 304 if the cached response is still current
+     */
+    private ApiResponse execute(String endpoint, Map<String, String> params, CachedResponse stale, boolean raw,
+                                KeyPool.Key key) {
+        long start = listener != null ? System.nanoTime() : 0L;
+        HttpGet request = null;
+        Exception failure = null;
+        ApiResponse response;
+        try {
+            request = newRequest(endpoint, params, stale, key != null ? key.headers : defaultHeaders);
+            response = send(request, endpoint, stale, raw);
+        } catch (IOException | URISyntaxException | JSONException e) {
+            logger.log(Level.SEVERE, "Request failed", e);
+            failure = e;
+            response = ApiResponse.failed(ApiResponses.failure(e.getMessage()));
+        }
+        if (listener != null) {
+            listener.onRequest(new RequestEvent(endpoint, key != null ? key.appId : appId, response.statusCode,
+                    failure != null ? failure.getClass().getSimpleName() : null, System.nanoTime() - start,
+                    transport.takePoolWaitNanos(), response.bodySize, request != null ? headerBytes(request) : 0,
+                    stale != null));
+        }
+        return response;
+    }
+
+    private HttpGet newRequest(String endpoint, Map<String, String> params, CachedResponse stale, Header[] headers)
+            throws URISyntaxException {
+        HttpGet request = new HttpGet(urls.uri(endpoint, params));
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Making request to: " + request.getURI());
+        }
+        request.setHeaders(headers);
+        if (stale != null) {
+            if (stale.getEtag() != null) {
+                request.addHeader("If-None-Match", stale.getEtag());
             }
-            
-            String url = urlBuilder.toString();
-            logger.fine("Making request to: " + url);
-            
-            HttpGet request = new HttpGet();
-            request.setURI(new URI(url));
-            request.setHeader("Accept", "application/json");
-            request.setHeader("app-id", appId);
-            request.setHeader("app-key", appKey);
-            
-            HttpResponse response = httpClient.execute(request);
+            if (stale.getLastModified() != null) {
+                request.addHeader("If-Modified-Since", stale.getLastModified());
+            }
+        }
+        return request;
+    }
+
+    private ApiResponse send(HttpGet request, String endpoint, CachedResponse stale, boolean raw) throws IOException {
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
             int statusCode = response.getStatusLine().getStatusCode();
+            String etag = headerValue(response, "ETag");
+            String lastModified = headerValue(response, "Last-Modified");
             HttpEntity entity = response.getEntity();
-            String responseBody = entity != null ? EntityUtils.toString(entity) : "";
-            
-            if (statusCode == 200) {
-                return new JSONObject(responseBody);
-            } else if (statusCode == 401 || statusCode == 403) {
-                logger.severe("Authentication error: Check your app-id and app-key");
-                JSONObject error = new JSONObject();
-                error.put("error", "Authentication failed");
-                error.put("code", statusCode);
-                return error;
-            } else if (statusCode == 404) {
-                logger.severe("Resource not found: " + endpoint);
-                JSONObject error = new JSONObject();
-                error.put("error", "Resource not found. Check that the API endpoint is correct.");
-                error.put("code", statusCode);
-                return error;
-            } else if (statusCode == 500) {
-                if (responseBody.contains("usage limits are exceeded")) {
-                    logger.severe("API usage limits exceeded");
-                    JSONObject error = new JSONObject();
-                    error.put("error", "API usage limits exceeded");
-                    error.put("code", statusCode);
-                    return error;
-                } else {
-                    logger.severe("Server error: " + responseBody);
-                    JSONObject error = new JSONObject();
-                    error.put("error", "Server error");
-                    error.put("code", statusCode);
-                    return error;
-                }
-            } else {
-                logger.severe("Unexpected response: " + statusCode + " - " + responseBody);
-                JSONObject error = new JSONObject();
-                error.put("error", "Unexpected response");
-                error.put("code", statusCode);
-                error.put("body", responseBody);
-                return error;
+
+            if (statusCode == 304 && stale != null) {
+                EntityUtils.consume(entity);
+                return new ApiResponse(statusCode, null, 0, etag, lastModified);
             }
-        } catch (IOException | URISyntaxException e) {
-            logger.log(Level.SEVERE, "Request failed", e);
-            JSONObject error = new JSONObject();
-            error.put("error", e.getMessage());
-            return error;
+            if (statusCode == 200 && entity != null && raw) {
+                return ApiResponse.raw(EntityUtils.toByteArray(entity), etag, lastModified);
+            }
+            if (statusCode == 200 && entity != null) {
+                // Parse straight from the (decompressed) socket stream, no intermediate String. The body
+                // size is only counted for the listener's events and the cache's weights.
+                InputStream stream = entity.getContent();
+                CountingInputStream counted = listener != null || cacheLayer != null
+                        ? new CountingInputStream(stream) : null;
+                JSONObject json = new JSONObject(new JSONTokener(
+                        new InputStreamReader(counted != null ? counted : stream, charsetOf(entity))));
+                EntityUtils.consume(entity);
+                int bodySize = counted != null ? (int) Math.min(Integer.MAX_VALUE, counted.getCount()) : 0;
+                return new ApiResponse(statusCode, json, bodySize, etag, lastModified);
+            }
+
+            String responseBody = entity != null ? EntityUtils.toString(entity) : "";
+            return new ApiResponse(statusCode, ApiResponses.errorFor(statusCode, responseBody, endpoint, logger),
+                    responseBody.length());
         }
     }
 
+    /**
+     * Approximate size of the request line and headers as sent
+     */
+    private static long headerBytes(HttpGet request) {
+        long bytes = request.getRequestLine().toString().length() + 2;
+        for (Header header : request.getAllHeaders()) {
+            bytes += header.getName().length() + header.getValue().length() + 4;
+        }
+        return bytes + 2;
+    }
+
+    private static Charset charsetOf(HttpEntity entity) {
+        ContentType contentType = ContentType.get(entity);
+        Charset charset = contentType != null ? contentType.getCharset() : null;
+        return charset != null ? charset : StandardCharsets.UTF_8;
+    }
+
+    private static String headerValue(HttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
     /**
      * Load credentials from the shared credentials file
      *
      * @return Map containing the credentials
      */
-    private Map<String, Object> loadCredentialsFromFile() {
+    static Map<String, Object> loadCredentialsFromFile() {
         try {
             // Find the credentials file (../credentials.yml)
-            String currentDir = System.getProperty("user.dir");
-            File credentialsFile = Paths.get(currentDir, "..", "credentials.yml").toFile();
-            
-            if (!credentialsFile.exists()) {
-                throw new IOException("Credentials file not found: " + credentialsFile.getAbsolutePath() + 
+            Path credentialsFile = Paths.get(System.getProperty("user.dir"), "..", "credentials.yml");
+
+            if (!Files.exists(credentialsFile)) {
+                throw new IOException("Credentials file not found: " + credentialsFile.toAbsolutePath() +
                         ". Please copy credentials.yml.sample to credentials.yml and update with your actual credentials.");
             }
-            
-            // Load and parse the YAML file
-            Yaml yaml = new Yaml();
-            try (FileInputStream inputStream = new FileInputStream(credentialsFile)) {
-                return yaml.load(inputStream);
-            }
+            return CredentialsFile.parse(credentialsFile);
         } catch (IOException e) {
-            logger.log(Level.SEVERE, "Error loading credentials", e);
-            throw new RuntimeException("Failed to load credentials: " + e.getMessage() + 
+            Logger.getLogger(TwitApiClient.class.getName()).log(Level.SEVERE, "Error loading credentials", e);
+            throw new RuntimeException("Failed to load credentials: " + e.getMessage() +
                     ". Please make sure your credentials.yml file is properly formatted.");
         }
     }
 
+    /**
+     * Close the client and release all pooled connections
+     */
+    @Override
+    public void close() throws IOException {
+        if (batcher != null) {
+            batcher.close();
+        }
+        synchronized (feeds) {
+            if (watchScheduler != null) {
+                watchScheduler.shutdownNow();
+            }
+            feeds.clear();
+        }
+        bulkExecutor.close();
+        transport.close();
+    }
+
+    /**
+     * Builder for TwitApiClient
+     */
+    public static final class Builder {
+        private static final String ENV_APP_ID = "TWIT_APP_ID";
+        private static final String ENV_APP_KEY = "TWIT_APP_KEY";
+        private static final String ENV_BASE_URL = "TWIT_BASE_URL";
+
+        private String appId;
+        private String appKey;
+        private String baseUrl = "https://twit.tv/api/v1.0";
+        private TransportConfig transport = TransportConfig.defaults();
+        private BulkExecutor.Mode bulkMode = BulkExecutor.Mode.PLATFORM;
+        private int bulkConcurrency = 16;
+        private ResponseCache cache;
+        private CachePolicy cachePolicy = CachePolicy.defaults();
+        private RateLimiter rateLimiter;
+        private RetryPolicy retryPolicy;
+        private CircuitBreaker circuitBreaker;
+        private KeyPool keyPool;
+        private BatchConfig batching;
+        private PollingConfig polling = PollingConfig.defaults();
+        private RequestListener listener;
+
+        private Builder() {
+        }
+
+        /**
+         * Take credentials from the environment (see {@link #environment()}) if TWIT_APP_ID and TWIT_APP_KEY
+         * are set, otherwise from ../credentials.yml (see {@link #credentialsFile()})
+         */
+        public Builder credentials() {
+            if (System.getenv(ENV_APP_ID) != null && System.getenv(ENV_APP_KEY) != null) {
+                return environment();
+            }
+            return credentialsFile();
+        }
+
+        /**
+         * Read app_id, app_key and base_url from the TWIT_APP_ID, TWIT_APP_KEY and TWIT_BASE_URL
+         * environment variables, without touching the credentials file. TWIT_BASE_URL is optional.
+         *
+         * @throws IllegalStateException if TWIT_APP_ID or TWIT_APP_KEY is not set
+         */
+        public Builder environment() {
+            String appId = System.getenv(ENV_APP_ID);
+            String appKey = System.getenv(ENV_APP_KEY);
+            if (appId == null || appKey == null) {
+                throw new IllegalStateException(ENV_APP_ID + " and " + ENV_APP_KEY + " must be set");
+            }
+            this.appId = appId;
+            this.appKey = appKey;
+            String baseUrl = System.getenv(ENV_BASE_URL);
+            if (baseUrl != null && !baseUrl.isEmpty()) {
+                this.baseUrl = baseUrl;
+            }
+            return this;
+        }
+
+        /**
+         * Load app_id, app_key, base_url and the optional http, keys and key_pool sections from ../credentials.yml
+         */
+        public Builder credentialsFile() {
+            return fromCredentials(loadCredentialsFromFile());
+        }
+
+        /**
+         * Load app_id, app_key, base_url and the optional http, keys and key_pool sections from a credentials file
+         *
+         * @param file Path to a file laid out like credentials.yml.sample
+         */
+        public Builder credentialsFile(Path file) {
+            try {
+                return fromCredentials(CredentialsFile.parse(file));
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to load credentials from " + file + ": " + e.getMessage(), e);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Builder fromCredentials(Map<String, Object> credentials) {
+            Map<String, Object> twitApi = (Map<String, Object>) credentials.get("twit_api");
+
+            this.appId = (String) twitApi.get("app_id");
+            this.appKey = (String) twitApi.get("app_key");
+            if (twitApi.containsKey("base_url")) {
+                this.baseUrl = (String) twitApi.get("base_url");
+            }
+            if (twitApi.containsKey("http")) {
+                this.transport = TransportConfig.fromMap((Map<String, Object>) twitApi.get("http"));
+            }
+            if (twitApi.get("keys") instanceof List) {
+                // app_id/app_key, if present, join the pool as its first key
+                List<Object> keys = new ArrayList<>();
+                if (appId != null && appKey != null && ((List<Object>) twitApi.get("keys")).stream()
+                        .noneMatch(key -> key instanceof Map && appId.equals(((Map<String, Object>) key).get("app_id")))) {
+                    Map<String, Object> primary = new HashMap<>();
+                    primary.put("app_id", appId);
+                    primary.put("app_key", appKey);
+                    keys.add(primary);
+                }
+                keys.addAll((List<Object>) twitApi.get("keys"));
+                this.keyPool = KeyPool.fromMap(keys, (Map<String, Object>) twitApi.get("key_pool"));
+            }
+            return this;
+        }
+
+        public Builder appId(String appId) {
+            this.appId = appId;
+            return this;
+        }
+
+        public Builder appKey(String appKey) {
+            this.appKey = appKey;
+            return this;
+        }
+
+        public Builder baseUrl(String baseUrl) {
+            this.baseUrl = baseUrl;
+            return this;
+        }
+
+        public Builder transport(TransportConfig transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * Configure how fetchShows/fetchEpisodes/fetchAll run their calls
+         *
+         * @param mode           PLATFORM for a fixed thread pool, VIRTUAL for a virtual thread per call (JDK 21+)
+         * @param maxConcurrency Maximum number of calls running at once
+         */
+        public Builder bulk(BulkExecutor.Mode mode, int maxConcurrency) {
+            this.bulkMode = mode;
+            this.bulkConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * Serve repeated requests from a local cache, e.g. {@code new LruResponseCache()}
+         *
+         * @param cache The cache to use, or null to disable caching
+         */
+        public Builder cache(ResponseCache cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        /**
+         * @param cachePolicy Per-resource TTLs for cached responses
+         */
+        public Builder cachePolicy(CachePolicy cachePolicy) {
+            this.cachePolicy = cachePolicy;
+            return this;
+        }
+
+        /**
+         * Limit the request rate; pass the same limiter to several clients to share one budget
+         *
+         * @param rateLimiter The limiter, e.g. {@code RateLimiter.create(5, 10)}, or null for no limit
+         */
+        public Builder rateLimiter(RateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+
+        /**
+         * Retry I/O errors and 5xx/429 responses with jittered exponential backoff
+         *
+         * @param retryPolicy The policy, or null to never retry
+         */
+        public Builder retryPolicy(RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * Fail requests fast while usage limits are exceeded or the API keeps failing
+         *
+         * @param circuitBreaker The breaker, e.g. {@code new CircuitBreaker()}, or null to always send requests
+         */
+        public Builder circuitBreaker(CircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+            return this;
+        }
+
+        /**
+         * Spread requests over several app-id/app-key pairs, each with its own usage limits. Takes the place
+         * of appId/appKey, which are then only used for logging.
+         *
+         * @param keyPool The keys, e.g. {@code KeyPool.builder().key(id1, key1).key(id2, key2).build()}, or null
+         */
+        public Builder keyPool(KeyPool keyPool) {
+            this.keyPool = keyPool;
+            return this;
+        }
+
+        /**
+         * Collect concurrent getShow/getEpisode/getPerson/getCredit lookups into list requests
+         *
+         * @param batching Window and batch size, e.g. {@code BatchConfig.defaults()}, or null to disable
+         */
+        public Builder batching(BatchConfig batching) {
+            this.batching = batching;
+            return this;
+        }
+
+        /**
+         * @param polling Schedule for watchStreams and watch, e.g. {@code PollingConfig.defaults()}
+         */
+        public Builder polling(PollingConfig polling) {
+            this.polling = polling;
+            return this;
+        }
+
+        /**
+         * Report every HTTP exchange, cache lookup and retry, e.g. to a {@link RequestMetrics}.
+         * Without a listener the client takes no timings and creates no events.
+         *
+         * @param listener The instrumentation hooks, or null for none
+         */
+        public Builder listener(RequestListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        public TwitApiClient build() {
+            return new TwitApiClient(this);
+        }
+    }
+
     /**
      * Main method for testing the client directly
      */
     public static void main(String[] args) {
-        try {
-            TwitApiClient client = new TwitApiClient();
+        try (TwitApiClient client = new TwitApiClient()) {
             
             System.out.println("Testing connection to TWiT API...");
             
@@ -0,0 +1,46 @@
+package tv.twit.api;
+
+import org.json.JSONObject;
+
+/**
+ * TWiT API Exception
+ * Thrown by APIs that cannot return an error object in place of a result, such as iterators
+ */
+public class TwitApiException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int code;
+    // JSONObject is not serializable; a deserialized exception rebuilds it from the message and code
+    private final transient JSONObject error;
+
+    /**
+     * @param error The error object returned by the client ("error" and optional "code")
+     */
+    public TwitApiException(JSONObject error) {
+        super(error.optString("error", "Request failed"));
+        this.code = error.optInt("code", 0);
+        this.error = error;
+    }
+
+    /**
+     * Get the HTTP status code of the failed request
+     *
+     * @return The status code, or 0 if no response was received
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Get the error object as returned by the client
+     *
+     * @return JSON error object
+     */
+    public JSONObject getError() {
+        if (error == null) {
+            JSONObject rebuilt = new JSONObject().put("error", getMessage());
+            return code != 0 ? rebuilt.put("code", code) : rebuilt;
+        }
+        return error;
+    }
+}
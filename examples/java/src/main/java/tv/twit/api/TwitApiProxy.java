@@ -0,0 +1,432 @@
+package tv.twit.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * TWiT API Caching Proxy
+ * A local HTTP server that serves the /api/v1.0/... paths of the TWiT API for many client processes.
+ * It holds the credentials and forwards requests through one TwitApiClient, so all callers share its
+ * response cache, its coalescing of concurrent identical requests, its item lookup batching and its
+ * rate limiter. Point other clients' base_url at it, e.g. http://127.0.0.1:8088/api/v1.0.
+ *
+ * Responses carry an ETag; a caller revalidating with If-None-Match is answered 304 while the cached
+ * response is unchanged. Bodies of 1KB or more are gzipped for callers that accept it; the gzipped
+ * body has its own ETag and responses carry Vary: Accept-Encoding, so shared caches keep the two apart.
+ * Errors are returned as the client's {"error", "code"} objects with the status from "code". Counters
+ * are served as JSON at /proxy/stats.
+ *
+ * The JDK HTTP server only sets TCP_NODELAY with -Dsun.net.httpserver.nodelay=true; without it,
+ * responses on reused connections stall about 40ms on Nagle and delayed ACKs. {@link #main} sets it,
+ * an application embedding the proxy should set it before the first server starts.
+ */
+public final class TwitApiProxy implements Closeable {
+    private static final Logger logger = Logger.getLogger(TwitApiProxy.class.getName());
+    private static final int GZIP_MIN_BYTES = 1024;
+
+    private final TwitApiClient client;
+    private final String basePath;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final EncodedResponses encoded;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    private TwitApiProxy(Builder builder) throws IOException {
+        this.client = builder.client;
+        this.basePath = builder.basePath;
+        this.encoded = new EncodedResponses(builder.maxEncodedResponses);
+        this.executor = builder.mode == BulkExecutor.Mode.VIRTUAL && BulkExecutor.isVirtualThreadsSupported()
+                ? BulkExecutor.newVirtualThreadExecutor()
+                : Executors.newFixedThreadPool(builder.threads, workerThreads());
+        this.server = HttpServer.create(new InetSocketAddress(builder.host, builder.port), builder.backlog);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Create a builder for a proxy that forwards through the given client
+     *
+     * @param client The client holding the credentials, cache and rate limiter; not closed by the proxy
+     * @return A new builder
+     */
+    public static Builder builder(TwitApiClient client) {
+        return new Builder(client);
+    }
+
+    /**
+     * Get the base URL other clients should be configured with
+     *
+     * @return Base URL including the API version path
+     */
+    public String getBaseUrl() {
+        InetSocketAddress address = server.getAddress();
+        return "http://" + address.getHostString() + ":" + address.getPort() + basePath;
+    }
+
+    /**
+     * Get the number of requests served so far
+     *
+     * @return Request count, including 304 answers and errors
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * Get the proxy, cache and rate limiter counters, as served at /proxy/stats
+     *
+     * @return JSON object with "requests", "notModified", "errors", "cache", "resilience" and, if the client
+     * has a key pool, "keys"
+     */
+    public JSONObject getStats() {
+        CacheStats cache = client.getCacheStats();
+        ResilienceStats resilience = client.getResilienceStats();
+        JSONObject stats = new JSONObject();
+        stats.put("requests", requests.sum());
+        stats.put("notModified", notModified.sum());
+        stats.put("errors", errors.sum());
+        stats.put("cache", new JSONObject()
+                .put("hits", cache.getHits())
+                .put("misses", cache.getMisses())
+                .put("coalesced", cache.getCoalesced())
+                .put("revalidated", cache.getRevalidated())
+                .put("size", cache.getSize())
+                .put("hitRatio", cache.getHitRatio()));
+        stats.put("resilience", new JSONObject()
+                .put("throttled", resilience.getThrottled())
+                .put("throttleWaitMillis", resilience.getThrottleWaitMillis())
+                .put("currentRate", resilience.getCurrentRate())
+                .put("retries", resilience.getRetries())
+                .put("usageLimitErrors", resilience.getUsageLimitErrors())
+                .put("circuitState", resilience.getCircuitState().name()));
+        if (client.getKeyPool() != null) {
+            stats.put("keys", client.getKeyPool().toJson());
+        }
+        return stats;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.increment();
+        try {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getRawPath();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                sendError(exchange, 405, "Method not allowed");
+            } else if ("/proxy/stats".equals(path)) {
+                send(exchange, 200, getStats().toString().getBytes(StandardCharsets.UTF_8), false);
+            } else if (!path.startsWith(basePath + "/") || path.length() == basePath.length() + 1) {
+                sendError(exchange, 404, "Resource not found. Check that the API endpoint is correct.");
+            } else {
+                forward(exchange, path.substring(basePath.length()));
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Proxy request failed", e);
+            sendError(exchange, 502, e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void forward(HttpExchange exchange, String endpoint) throws IOException {
+        String query = exchange.getRequestURI().getRawQuery();
+        Map<String, String> params = query != null
+                ? ResourceQuery.parseQuery("?" + query)
+                : new LinkedHashMap<>();
+        JSONObject json;
+        try {
+            json = client.forward(endpoint, params);
+        } catch (TwitApiException e) {
+            json = e.getError();
+        }
+
+        if (json.has("error")) {
+            errors.increment();
+            int code = json.optInt("code", 502);
+            send(exchange, code >= 400 && code < 600 ? code : 502,
+                    json.toString().getBytes(StandardCharsets.UTF_8), false);
+            return;
+        }
+
+        Encoded body = encoded.get(ResponseCacheLayer.key(endpoint, params), json);
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip") && body.plain.length >= GZIP_MIN_BYTES;
+        String etag = gzip ? body.gzipEtag : body.etag;
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+            notModified.increment();
+            // The JDK server drops the connection after a 304, so tell the caller not to reuse it
+            exchange.getResponseHeaders().set("Connection", "close");
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+        send(exchange, 200, gzip ? body.gzipped() : body.plain, gzip);
+    }
+
+    /**
+     * Check an If-None-Match header against the ETag of the representation that would be sent, using
+     * the weak comparison the header calls for
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] bytes, boolean gzip)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        if (gzip) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        boolean head = "HEAD".equals(exchange.getRequestMethod());
+        exchange.sendResponseHeaders(status, head || bytes.length == 0 ? -1 : bytes.length);
+        if (!head) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        JSONObject error = new JSONObject();
+        error.put("error", message != null ? message : "Proxy error");
+        error.put("code", status);
+        send(exchange, status, error.toString().getBytes(StandardCharsets.UTF_8), false);
+    }
+
+    private static ThreadFactory workerThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "twit-api-proxy-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Stop accepting requests and wait up to a second for requests in progress to finish
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Serialized response bodies, reused while the client's cache keeps returning the same JSON object.
+     * Cached responses are shared read-only objects, so identity means the body has not changed.
+     */
+    private static final class EncodedResponses {
+        private final LinkedHashMap<String, Encoded> entries;
+
+        EncodedResponses(int maxEntries) {
+            this.entries = new LinkedHashMap<String, Encoded>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Encoded> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        Encoded get(String key, JSONObject json) {
+            synchronized (this) {
+                Encoded existing = entries.get(key);
+                if (existing != null && existing.json == json) {
+                    return existing;
+                }
+            }
+            // Serialize outside the lock; a racing caller at worst encodes the same object twice
+            Encoded created = new Encoded(json);
+            synchronized (this) {
+                entries.put(key, created);
+            }
+            return created;
+        }
+    }
+
+    private static final class Encoded {
+        final JSONObject json;
+        final byte[] plain;
+        final String etag;
+        final String gzipEtag;
+        private volatile byte[] gzipped;
+
+        Encoded(JSONObject json) {
+            this.json = json;
+            this.plain = json.toString().getBytes(StandardCharsets.UTF_8);
+            CRC32 crc = new CRC32();
+            crc.update(plain, 0, plain.length);
+            String tag = Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(plain.length);
+            this.etag = "\"" + tag + "\"";
+            this.gzipEtag = "\"" + tag + "-gzip\"";
+        }
+
+        byte[] gzipped() throws IOException {
+            byte[] compressed = gzipped;
+            if (compressed == null) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(64, plain.length / 4));
+                try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+                    out.write(plain);
+                }
+                compressed = buffer.toByteArray();
+                gzipped = compressed;
+            }
+            return compressed;
+        }
+    }
+
+    /**
+     * Builder for TwitApiProxy
+     */
+    public static final class Builder {
+        private final TwitApiClient client;
+        private String host = "127.0.0.1";
+        private int port = 8088;
+        private String basePath = "/api/v1.0";
+        private BulkExecutor.Mode mode = BulkExecutor.Mode.VIRTUAL;
+        private int threads = 64;
+        private int backlog = 1024;
+        private int maxEncodedResponses = 1000;
+
+        private Builder(TwitApiClient client) {
+            if (client == null) {
+                throw new IllegalArgumentException("client is required");
+            }
+            this.client = client;
+        }
+
+        /**
+         * @param host Address to listen on; the default 127.0.0.1 only accepts local connections
+         */
+        public Builder host(String host) {
+            this.host = host;
+            return this;
+        }
+
+        /**
+         * @param port Port to listen on, 0 for any free port
+         */
+        public Builder port(int port) {
+            if (port < 0 || port > 65535) {
+                throw new IllegalArgumentException("Invalid port: " + port);
+            }
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * @param basePath Path prefix of the API, "/api/v1.0" as on twit.tv
+         */
+        public Builder basePath(String basePath) {
+            this.basePath = basePath.endsWith("/") ? basePath.substring(0, basePath.length() - 1) : basePath;
+            return this;
+        }
+
+        /**
+         * Choose how requests are handled: a virtual thread per request (JDK 21+, the default) or a
+         * fixed pool of platform threads. Without virtual threads the pool is used.
+         *
+         * @param mode    Thread model
+         * @param threads Pool size for PLATFORM mode
+         */
+        public Builder threads(BulkExecutor.Mode mode, int threads) {
+            if (threads <= 0) {
+                throw new IllegalArgumentException("threads must be positive: " + threads);
+            }
+            this.mode = mode;
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * @param maxEncodedResponses Number of serialized response bodies to keep for reuse
+         */
+        public Builder maxEncodedResponses(int maxEncodedResponses) {
+            if (maxEncodedResponses <= 0) {
+                throw new IllegalArgumentException("maxEncodedResponses must be positive: " + maxEncodedResponses);
+            }
+            this.maxEncodedResponses = maxEncodedResponses;
+            return this;
+        }
+
+        /**
+         * Start the proxy
+         *
+         * @return The running proxy; close it to stop
+         */
+        public TwitApiProxy start() throws IOException {
+            return new TwitApiProxy(this);
+        }
+    }
+
+    /**
+     * Run the proxy with the credentials from credentials.yml
+     *
+     * @param args Optional port (default 8088) and sustained requests per second to the API (default 10)
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8088;
+        double rate = args.length > 1 ? Double.parseDouble(args[1]) : 10;
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+
+        TwitApiClient client = TwitApiClient.builder()
+                .credentials()
+                .cache(new LruResponseCache(10_000, 256L * 1024 * 1024))
+                .rateLimiter(RateLimiter.create(rate, (int) Math.max(1, rate * 2)))
+                .retryPolicy(RetryPolicy.builder().build())
+                .circuitBreaker(new CircuitBreaker())
+                .batching(BatchConfig.defaults())
+                .build();
+        TwitApiProxy proxy = builder(client).port(port).start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            proxy.close();
+            try {
+                client.close();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Error closing client", e);
+            }
+        }));
+        System.out.println("TWiT API proxy listening on " + proxy.getBaseUrl() + " (stats at /proxy/stats)");
+    }
+}
@@ -0,0 +1,203 @@
+package tv.twit.api;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * URL Template
+ * Builds request URLs for one API base URL. Query parameters are percent-encoded as RFC 3986 requires
+ * and sorted by name, so the same request always produces the same URL and cache key whatever map it
+ * was built from. Parameters with a null value are left out. The URIs of requests without parameters
+ * and the encoded form of parameter names are compiled once and reused; the rest is built in a
+ * per-thread buffer.
+ */
+final class UrlTemplate {
+    private static final int MAX_CACHED = 1024;
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+    private static final ConcurrentHashMap<String, String> ENCODED_NAMES = new ConcurrentHashMap<>();
+
+    private final String baseUrl;
+    private final ConcurrentHashMap<String, URI> plainUris = new ConcurrentHashMap<>();
+
+    UrlTemplate(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    /**
+     * Get the request URI for an endpoint and its query parameters
+     *
+     * @param endpoint The API endpoint, path segments already encoded, e.g. "/episodes"
+     * @param params   Query parameters, in any order; null values are left out
+     * @return The URI, shared between calls for endpoints without parameters
+     */
+    URI uri(String endpoint, Map<String, String> params) throws URISyntaxException {
+        if (!params.isEmpty()) {
+            return new URI(url(baseUrl, endpoint, params));
+        }
+        URI uri = plainUris.get(endpoint);
+        if (uri == null) {
+            uri = new URI(baseUrl + endpoint);
+            if (plainUris.size() < MAX_CACHED) {
+                plainUris.putIfAbsent(endpoint, uri);
+            }
+        }
+        return uri;
+    }
+
+    /**
+     * Build the full request URL for an endpoint and its query parameters
+     *
+     * @param baseUrl  The base URL for the API
+     * @param endpoint The API endpoint, path segments already encoded
+     * @param params   Query parameters, in any order; null values are left out
+     * @return The URL with parameters sorted by name and percent-encoded
+     */
+    static String url(String baseUrl, String endpoint, Map<String, String> params) {
+        StringBuilder url = SCRATCH.get().buffer();
+        url.append(baseUrl).append(endpoint);
+        appendQuery(url, params);
+        return url.toString();
+    }
+
+    /**
+     * Build the canonical cache key of a request: the endpoint and its sorted, encoded query
+     *
+     * @param endpoint The API endpoint
+     * @param params   Query parameters, in any order; null values are left out
+     * @return The endpoint alone if there are no parameters
+     */
+    static String key(String endpoint, Map<String, String> params) {
+        if (params.isEmpty()) {
+            return endpoint;
+        }
+        StringBuilder key = SCRATCH.get().buffer();
+        key.append(endpoint);
+        appendQuery(key, params);
+        return key.toString();
+    }
+
+    /**
+     * Percent-encode a string so it can be used as a query value or a path segment
+     *
+     * @param value Any string
+     * @return The value with everything but unreserved characters (A-Z a-z 0-9 - . _ ~) encoded as UTF-8
+     */
+    static String encode(String value) {
+        StringBuilder encoded = SCRATCH.get().buffer();
+        appendEncoded(encoded, value);
+        return encoded.toString();
+    }
+
+    private static void appendQuery(StringBuilder url, Map<String, String> params) {
+        if (params.isEmpty()) {
+            return;
+        }
+        char separator = '?';
+        if (params.size() == 1 || (params instanceof SortedMap && ((SortedMap<?, ?>) params).comparator() == null)) {
+            for (Map.Entry<String, String> entry : params.entrySet()) {
+                if (entry.getValue() != null) {
+                    appendParam(url.append(separator), entry.getKey(), entry.getValue());
+                    separator = '&';
+                }
+            }
+            return;
+        }
+        Scratch scratch = SCRATCH.get();
+        Map.Entry<String, String>[] sorted = scratch.entries(params.size());
+        int count = 0;
+        try {
+            for (Map.Entry<String, String> entry : params.entrySet()) {
+                if (entry.getValue() == null) {
+                    continue;
+                }
+                // Insertion sort: queries have a handful of parameters
+                int i = count++;
+                while (i > 0 && sorted[i - 1].getKey().compareTo(entry.getKey()) > 0) {
+                    sorted[i] = sorted[i - 1];
+                    i--;
+                }
+                sorted[i] = entry;
+            }
+            for (int i = 0; i < count; i++) {
+                appendParam(url.append(separator), sorted[i].getKey(), sorted[i].getValue());
+                separator = '&';
+            }
+        } finally {
+            // Don't keep the caller's entries reachable from the thread, even if building the query failed
+            Arrays.fill(sorted, 0, count, null);
+        }
+    }
+
+    private static void appendParam(StringBuilder url, String name, String value) {
+        String encodedName = ENCODED_NAMES.get(name);
+        if (encodedName == null) {
+            StringBuilder encoded = new StringBuilder(name.length() + 8);
+            appendEncoded(encoded, name);
+            encodedName = encoded.toString();
+            if (ENCODED_NAMES.size() < MAX_CACHED) {
+                ENCODED_NAMES.putIfAbsent(name, encodedName);
+            }
+        }
+        url.append(encodedName).append('=');
+        appendEncoded(url, value);
+    }
+
+    private static void appendEncoded(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (isUnreserved(c)) {
+                out.append(c);
+            } else if (c < 0x80) {
+                appendByte(out, c);
+            } else {
+                int codePoint = value.codePointAt(i);
+                if (Character.isSupplementaryCodePoint(codePoint)) {
+                    i++;
+                }
+                for (byte b : new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8)) {
+                    appendByte(out, b & 0xFF);
+                }
+            }
+        }
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    private static void appendByte(StringBuilder out, int b) {
+        out.append('%').append(HEX[b >> 4]).append(HEX[b & 0xF]);
+    }
+
+    /**
+     * Per-thread buffers reused across calls
+     */
+    private static final class Scratch {
+        private final StringBuilder buffer = new StringBuilder(256);
+        private Map.Entry<String, String>[] entries = newEntries(16);
+
+        StringBuilder buffer() {
+            buffer.setLength(0);
+            return buffer;
+        }
+
+        Map.Entry<String, String>[] entries(int size) {
+            if (entries.length < size) {
+                entries = newEntries(size);
+            }
+            return entries;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Map.Entry<String, String>[] newEntries(int size) {
+            return (Map.Entry<String, String>[]) new Map.Entry<?, ?>[size];
+        }
+    }
+}
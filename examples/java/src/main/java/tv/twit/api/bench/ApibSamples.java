@@ -0,0 +1,136 @@
+package tv.twit.api.bench;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * API Blueprint Samples
+ * Extracts the example response bodies from documentation/twittv.apib, keyed by resource path
+ * ("/episodes", "/episodes/{id}", ...), so benchmarks and mock servers can serve realistic payloads.
+ */
+public final class ApibSamples {
+
+    private static final Pattern RESOURCE = Pattern.compile("^##\\s+[^\\[]*\\[([^\\]]+)\\]\\s*$");
+
+    private ApibSamples() {
+    }
+
+    /**
+     * Locate twittv.apib: the twit.apib system property if set, otherwise documentation/twittv.apib
+     * in the working directory or one of its parents (repository root, examples/java, examples/java/benchmarks)
+     *
+     * @return Path to the API blueprint
+     */
+    public static Path defaultLocation() {
+        String configured = System.getProperty("twit.apib");
+        if (configured != null) {
+            return Paths.get(configured);
+        }
+        Path dir = Paths.get("").toAbsolutePath();
+        for (int i = 0; i < 4 && dir != null; i++, dir = dir.getParent()) {
+            Path candidate = dir.resolve("documentation").resolve("twittv.apib");
+            if (Files.exists(candidate)) {
+                return candidate;
+            }
+        }
+        return Paths.get("documentation", "twittv.apib");
+    }
+
+    /**
+     * Load the sample bodies from the default blueprint location
+     *
+     * @return Response bodies keyed by resource path
+     */
+    public static Map<String, String> load() throws IOException {
+        return load(defaultLocation());
+    }
+
+    /**
+     * Load the sample bodies from a blueprint file
+     *
+     * @param apib Path to the API blueprint
+     * @return Response bodies keyed by resource path, in document order
+     */
+    public static Map<String, String> load(Path apib) throws IOException {
+        if (!Files.exists(apib)) {
+            throw new IOException("API blueprint not found: " + apib.toAbsolutePath()
+                    + ". Run from examples/java or pass the path to documentation/twittv.apib.");
+        }
+        List<String> lines = Files.readAllLines(apib, StandardCharsets.UTF_8);
+        Map<String, String> samples = new LinkedHashMap<>();
+        String resource = null;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            Matcher matcher = RESOURCE.matcher(line);
+            if (matcher.matches()) {
+                resource = pathOf(matcher.group(1));
+                continue;
+            }
+            if (resource != null && line.trim().equals("+ Body")) {
+                StringBuilder body = new StringBuilder();
+                int j = i + 1;
+                for (; j < lines.size(); j++) {
+                    String bodyLine = lines.get(j);
+                    if (!bodyLine.trim().isEmpty() && indentation(bodyLine) < 8) {
+                        break;
+                    }
+                    body.append(bodyLine.trim()).append('\n');
+                }
+                samples.putIfAbsent(resource, body.toString().trim());
+                i = j - 1;
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Build a large list page by repeating the items of a sample list response
+     *
+     * @param sampleBody A sample list body, e.g. the "/episodes" sample
+     * @param arrayName  The name of the item array, e.g. "episodes"
+     * @param items      Number of items the page should contain
+     * @return JSON text of the enlarged page
+     */
+    public static String enlargePage(String sampleBody, String arrayName, int items) {
+        JSONObject page = new JSONObject(sampleBody);
+        JSONArray source = page.getJSONArray(arrayName);
+        JSONArray enlarged = new JSONArray();
+        for (int i = 0; i < items; i++) {
+            enlarged.put(source.get(i % source.length()));
+        }
+        page.put(arrayName, enlarged);
+        return page.toString();
+    }
+
+    private static String pathOf(String template) {
+        int query = template.indexOf("{?");
+        if (query < 0) {
+            query = template.indexOf("?{");
+        }
+        String path = query >= 0 ? template.substring(0, query) : template;
+        if (path.startsWith("/steams")) {
+            // The blueprint misspells the stream item resource
+            path = "/streams" + path.substring("/steams".length());
+        }
+        return path;
+    }
+
+    private static int indentation(String line) {
+        int count = 0;
+        while (count < line.length() && line.charAt(count) == ' ') {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,61 @@
+package tv.twit.api.bench;
+
+import org.json.JSONObject;
+import tv.twit.api.TwitApiAsyncClient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Async Benchmark
+ * Drives hundreds of concurrent requests through TwitApiAsyncClient with a handful of I/O threads
+ * against a local replay server and reports throughput for increasing in-flight limits.
+ *
+ * Usage: AsyncBenchmark [requests] [serverLatencyMillis] [ioThreads]
+ */
+public class AsyncBenchmark {
+
+    private static final int[] IN_FLIGHT_LIMITS = {8, 32, 128, 256};
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        long serverLatency = args.length > 1 ? Long.parseLong(args[1]) : 20;
+        int ioThreads = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+
+        String body = "{\"count\":1,\"shows\":[{\"id\":\"1635\",\"label\":\"This Week in Tech\"}]}";
+
+        try (ReplayServer server = ReplayServer.builder().samples(Collections.singletonMap("/shows", body))
+                .latency(ReplayServer.Latency.fixed(serverLatency)).threads(512).start()) {
+            System.out.println("Replay server: " + server.getBaseUrl() + " (latency " + serverLatency + "ms, "
+                    + ioThreads + " client I/O threads)");
+            System.out.printf("%-12s %12s %12s%n", "in-flight", "req/s", "errors");
+            for (int limit : IN_FLIGHT_LIMITS) {
+                try (TwitApiAsyncClient client = TwitApiAsyncClient.builder()
+                        .appId("bench").appKey("bench").baseUrl(server.getBaseUrl())
+                        .maxInFlight(limit).ioThreads(ioThreads).build()) {
+                    runBatch(client, Math.min(requests, 500));
+                    long start = System.nanoTime();
+                    int errors = runBatch(client, requests);
+                    double seconds = (System.nanoTime() - start) / 1e9;
+                    System.out.printf("%-12d %12.0f %12d%n", limit, requests / seconds, errors);
+                }
+            }
+        }
+    }
+
+    private static int runBatch(TwitApiAsyncClient client, int requests) {
+        List<CompletableFuture<JSONObject>> futures = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            futures.add(client.getShows());
+        }
+        int errors = 0;
+        for (CompletableFuture<JSONObject> future : futures) {
+            if (future.join().has("error")) {
+                errors++;
+            }
+        }
+        return errors;
+    }
+}
@@ -0,0 +1,430 @@
+package tv.twit.api.bench;
+
+import org.json.JSONObject;
+import tv.twit.api.LatencyHistogram;
+import tv.twit.api.LruResponseCache;
+import tv.twit.api.RetryPolicy;
+import tv.twit.api.TransportConfig;
+import tv.twit.api.TwitApiClient;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Load Generator
+ * Drives a TwitApiClient at a target request rate with a weighted mix of operations and reports the
+ * throughput, latency percentiles and outcomes. The load is open-loop: requests are started on a fixed
+ * schedule whether or not earlier ones have finished, and response times are measured from the time a
+ * request was scheduled, so a client that falls behind shows its queueing delay rather than hiding it.
+ * Service times (from the moment a worker starts the request) are reported separately.
+ *
+ * Operations pick their IDs from a random generator seeded with the request number, so every run with
+ * the same seed sends the same sequence of requests.
+ *
+ * Usage: LoadGenerator [requestsPerSecond] [seconds] [--concurrency=64] [--connections=64] [--cache]
+ * [--retries=attempts] [--base-url=url] [--latency=lognormal:20,200] [--error=500:0.01 ...]
+ * [--rate-limit=rate,burst] [--recordings=file] [--seed=n]
+ *
+ * Without --base-url the client is pointed at an in-process {@link ReplayServer} serving the samples of
+ * documentation/twittv.apib with the given latency, errors and rate limit.
+ */
+public final class LoadGenerator {
+    private static final Logger clientLogger = Logger.getLogger("tv.twit.api");
+
+    private final TwitApiClient client;
+    private final double rate;
+    private final long durationNanos;
+    private final long warmupNanos;
+    private final int concurrency;
+    private final long seed;
+    private final List<Operation> operations;
+    private final double totalWeight;
+
+    private LoadGenerator(Builder builder) {
+        this.client = builder.client;
+        this.rate = builder.rate;
+        this.durationNanos = builder.durationNanos;
+        this.warmupNanos = builder.warmupNanos;
+        this.concurrency = builder.concurrency;
+        this.seed = builder.seed;
+        this.operations = builder.operations.isEmpty() ? defaultWorkload() : new ArrayList<>(builder.operations);
+        this.totalWeight = operations.stream().mapToDouble(operation -> operation.weight).sum();
+    }
+
+    /**
+     * Create a builder for a load run
+     *
+     * @param client The client to drive
+     * @return A new builder
+     */
+    public static Builder builder(TwitApiClient client) {
+        return new Builder(client);
+    }
+
+    /**
+     * Run the load: the warm-up, then the measured duration, then wait for requests in flight
+     *
+     * @return Throughput, latencies and outcomes of the measured requests
+     */
+    public Report run() throws InterruptedException {
+        long warmupRequests = (long) (rate * warmupNanos / 1e9);
+        long totalRequests = warmupRequests + (long) (rate * durationNanos / 1e9);
+        double intervalNanos = 1e9 / rate;
+        Report report = new Report(rate, operations);
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "load-generator-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long start = System.nanoTime();
+        long measuredFrom = start + (long) (warmupRequests * intervalNanos);
+        try {
+            for (long i = 0; i < totalRequests; i++) {
+                long scheduled = start + (long) (i * intervalNanos);
+                long wait;
+                while ((wait = scheduled - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                long number = i;
+                boolean measured = i >= warmupRequests;
+                workers.execute(() -> {
+                    SplittableRandom random = new SplittableRandom(seed + number * 0x9E3779B97F4A7C15L);
+                    Operation operation = pick(random);
+                    long begin = System.nanoTime();
+                    JSONObject response;
+                    try {
+                        response = operation.request.apply(client, random);
+                    } catch (RuntimeException e) {
+                        response = new JSONObject().put("error", String.valueOf(e));
+                    }
+                    long end = System.nanoTime();
+                    if (measured) {
+                        report.record(operation, response, end - scheduled, end - begin, end);
+                    }
+                });
+            }
+        } finally {
+            workers.shutdown();
+            if (!workers.awaitTermination(60, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        }
+        report.elapsedNanos = Math.max(1, report.lastCompletion.get() - measuredFrom);
+        return report;
+    }
+
+    private Operation pick(SplittableRandom random) {
+        double draw = random.nextDouble() * totalWeight;
+        for (Operation operation : operations) {
+            draw -= operation.weight;
+            if (draw < 0) {
+                return operation;
+            }
+        }
+        return operations.get(operations.size() - 1);
+    }
+
+    /**
+     * A mix of item lookups and list pages in which a few items are much more popular than the rest,
+     * so caching has something to gain
+     */
+    static List<Operation> defaultWorkload() {
+        List<Operation> operations = new ArrayList<>();
+        operations.add(new Operation("episodes/{id}", 35,
+                (client, random) -> client.getEpisode(String.valueOf(52000 + skewed(random, 500)))));
+        operations.add(new Operation("shows/{id}", 20,
+                (client, random) -> client.getShow(String.valueOf(1600 + skewed(random, 50)))));
+        operations.add(new Operation("episodes", 15,
+                (client, random) -> client.getEpisodes(Collections.singletonMap("page",
+                        String.valueOf(1 + skewed(random, 20))))));
+        operations.add(new Operation("shows", 10, (client, random) -> client.getShows()));
+        operations.add(new Operation("people/{id}", 10,
+                (client, random) -> client.getPerson(String.valueOf(skewed(random, 200)))));
+        operations.add(new Operation("streams", 10, (client, random) -> client.getStreams()));
+        return operations;
+    }
+
+    /**
+     * @return A value from 0 to count - 1, low values much more often than high ones
+     */
+    private static int skewed(SplittableRandom random, int count) {
+        double u = random.nextDouble();
+        return (int) (count * u * u * u);
+    }
+
+    /**
+     * A named request of the workload and its share of the load
+     */
+    public static final class Operation {
+        final String name;
+        final double weight;
+        final BiFunction<TwitApiClient, SplittableRandom, JSONObject> request;
+
+        /**
+         * @param name    Name to report the operation's latencies under
+         * @param weight  Relative share of the requests
+         * @param request Makes the request; the random generator is seeded per request
+         */
+        public Operation(String name, double weight, BiFunction<TwitApiClient, SplittableRandom, JSONObject> request) {
+            this.name = name;
+            this.weight = weight;
+            this.request = request;
+        }
+    }
+
+    /**
+     * Results of a load run
+     */
+    public static final class Report {
+        private final double targetRate;
+        private final LatencyHistogram responseTime = new LatencyHistogram();
+        private final LatencyHistogram serviceTime = new LatencyHistogram();
+        private final Map<String, LatencyHistogram> byOperation = new LinkedHashMap<>();
+        private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+        private final AtomicLong lastCompletion = new AtomicLong();
+        private long elapsedNanos;
+
+        Report(double targetRate, List<Operation> operations) {
+            this.targetRate = targetRate;
+            for (Operation operation : operations) {
+                byOperation.put(operation.name, new LatencyHistogram());
+            }
+        }
+
+        void record(Operation operation, JSONObject response, long responseNanos, long serviceNanos, long end) {
+            responseTime.record(responseNanos);
+            serviceTime.record(serviceNanos);
+            byOperation.get(operation.name).record(responseNanos);
+            String outcome = !response.has("error") ? "ok"
+                    : response.has("code") ? String.valueOf(response.opt("code")) : "failed";
+            outcomes.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+            lastCompletion.accumulateAndGet(end, Math::max);
+        }
+
+        /**
+         * @return Completed requests per second over the measured period
+         */
+        public double getThroughput() {
+            return responseTime.getCount() / (elapsedNanos / 1e9);
+        }
+
+        /**
+         * @return Latencies from the time each request was scheduled to its completion
+         */
+        public LatencyHistogram getResponseTime() {
+            return responseTime;
+        }
+
+        /**
+         * @return Latencies from the time a worker started each request to its completion
+         */
+        public LatencyHistogram getServiceTime() {
+            return serviceTime;
+        }
+
+        /**
+         * @return Response times per operation name
+         */
+        public Map<String, LatencyHistogram> getByOperation() {
+            return Collections.unmodifiableMap(byOperation);
+        }
+
+        /**
+         * @return Request counts by outcome: "ok", the error's status code, or "failed" without one
+         */
+        public Map<String, Long> getOutcomes() {
+            Map<String, Long> counts = new TreeMap<>();
+            outcomes.forEach((outcome, count) -> counts.put(outcome, count.sum()));
+            return counts;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format("target %.0f req/s, achieved %.1f req/s, %d requests, outcomes %s%n",
+                    targetRate, getThroughput(), responseTime.getCount(), getOutcomes()));
+            out.append(String.format("%-16s %8s %9s %9s %9s %9s %9s%n",
+                    "", "count", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+            row(out, "response time", responseTime);
+            row(out, "service time", serviceTime);
+            for (Map.Entry<String, LatencyHistogram> operation : byOperation.entrySet()) {
+                row(out, operation.getKey(), operation.getValue());
+            }
+            return out.toString();
+        }
+
+        private static void row(StringBuilder out, String name, LatencyHistogram histogram) {
+            out.append(String.format("%-16s %8d %9.2f %9.2f %9.2f %9.2f %9.2f%n", name, histogram.getCount(),
+                    histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(90) / 1e6,
+                    histogram.getValueAtPercentile(99) / 1e6, histogram.getValueAtPercentile(99.9) / 1e6,
+                    histogram.getMax() / 1e6));
+        }
+    }
+
+    public static final class Builder {
+        private final TwitApiClient client;
+        private double rate = 100;
+        private long durationNanos = TimeUnit.SECONDS.toNanos(10);
+        private long warmupNanos = TimeUnit.SECONDS.toNanos(2);
+        private int concurrency = 64;
+        private long seed = 1;
+        private final List<Operation> operations = new ArrayList<>();
+
+        private Builder(TwitApiClient client) {
+            this.client = client;
+        }
+
+        /**
+         * Requests started per second (default 100)
+         */
+        public Builder rate(double requestsPerSecond) {
+            if (requestsPerSecond <= 0) {
+                throw new IllegalArgumentException("Rate must be positive: " + requestsPerSecond);
+            }
+            this.rate = requestsPerSecond;
+            return this;
+        }
+
+        /**
+         * Length of the measured period (default 10 seconds)
+         */
+        public Builder duration(long amount, TimeUnit unit) {
+            this.durationNanos = unit.toNanos(amount);
+            return this;
+        }
+
+        /**
+         * Load applied before measuring, to warm up connections, caches and the JIT (default 2 seconds)
+         */
+        public Builder warmup(long amount, TimeUnit unit) {
+            this.warmupNanos = unit.toNanos(amount);
+            return this;
+        }
+
+        /**
+         * Maximum requests in flight; further scheduled requests wait and the wait counts as latency (default 64)
+         */
+        public Builder concurrency(int concurrency) {
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        /**
+         * Seed for the operation mix and IDs (default 1)
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Add an operation to the workload; without any, a default mix of shows, episodes, people and
+         * streams requests is used
+         */
+        public Builder operation(String name, double weight,
+                                 BiFunction<TwitApiClient, SplittableRandom, JSONObject> request) {
+            operations.add(new Operation(name, weight, request));
+            return this;
+        }
+
+        /**
+         * @return The load generator; call {@link #run()} to apply the load
+         */
+        public LoadGenerator build() {
+            return new LoadGenerator(this);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> positional = new ArrayList<>();
+        ReplayServer.Builder replay = ReplayServer.builder();
+        TransportConfig.Builder transport = TransportConfig.builder();
+        String baseUrl = null;
+        int concurrency = 64;
+        boolean cache = false;
+        int retries = 0;
+        long seed = 1;
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--concurrency=")) {
+                concurrency = Integer.parseInt(value);
+            } else if (arg.startsWith("--connections=")) {
+                transport.maxTotalConnections(Integer.parseInt(value)).maxConnectionsPerRoute(Integer.parseInt(value));
+            } else if (arg.equals("--cache")) {
+                cache = true;
+            } else if (arg.startsWith("--retries=")) {
+                retries = Integer.parseInt(value);
+            } else if (arg.startsWith("--base-url=")) {
+                baseUrl = value;
+            } else if (arg.startsWith("--latency=")) {
+                replay.latency(ReplayServer.Latency.parse(value));
+            } else if (arg.startsWith("--error=")) {
+                String[] parts = value.split(":");
+                replay.error(Integer.parseInt(parts[0]), Double.parseDouble(parts[1]));
+            } else if (arg.startsWith("--rate-limit=")) {
+                String[] parts = value.split(",");
+                replay.rateLimit(Double.parseDouble(parts[0]), Integer.parseInt(parts[1]));
+            } else if (arg.startsWith("--recordings=")) {
+                replay.recordings(Paths.get(value));
+            } else if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(value);
+            } else {
+                positional.add(arg);
+            }
+        }
+        // Errors are counted in the report; logging each one would flood the output and load the client
+        clientLogger.setLevel(Level.OFF);
+        double rate = positional.size() > 0 ? Double.parseDouble(positional.get(0)) : 100;
+        long seconds = positional.size() > 1 ? Long.parseLong(positional.get(1)) : 10;
+
+        ReplayServer server = baseUrl == null ? replay.apibSamples().seed(seed).start() : null;
+        TwitApiClient.Builder builder = baseUrl == null
+                ? TwitApiClient.builder().appId("load").appKey("load").baseUrl(server.getBaseUrl())
+                : TwitApiClient.builder().credentials().baseUrl(baseUrl);
+        builder.transport(transport.build());
+        if (cache) {
+            builder.cache(new LruResponseCache());
+        }
+        if (retries > 1) {
+            builder.retryPolicy(RetryPolicy.builder().maxAttempts(retries).build());
+        }
+        try (TwitApiClient client = builder.build()) {
+            System.out.println("Load against " + (server != null ? server.getBaseUrl() + " (replay)" : baseUrl));
+            Report report = LoadGenerator.builder(client).rate(rate).duration(seconds, TimeUnit.SECONDS)
+                    .concurrency(concurrency).seed(seed).build().run();
+            System.out.print(report);
+            if (cache) {
+                System.out.println(client.getCacheStats());
+            }
+            if (retries > 1) {
+                System.out.println(client.getResilienceStats());
+            }
+            if (server != null) {
+                System.out.println("server " + server.getStats());
+            }
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+}
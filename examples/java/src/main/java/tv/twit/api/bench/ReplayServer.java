@@ -0,0 +1,802 @@
+package tv.twit.api.bench;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Replay Server
+ * A mock of the TWiT API for load tests that cannot use the real API: it serves recorded responses and
+ * the example payloads from documentation/twittv.apib, with a configurable latency distribution,
+ * injected errors and an emulation of the 3scale rate limit.
+ *
+ * Responses are looked up by endpoint and query: a recording of the same request, then a recording of
+ * the same endpoint, then the blueprint sample for the endpoint's template. Item samples are served with
+ * the requested ID. In record mode, requests without a recording are forwarded to an upstream API with
+ * the caller's credentials, and the responses are appended to the recordings file (without credentials)
+ * for later runs.
+ *
+ * Injected errors and latencies are drawn from a random generator seeded with the request's sequence
+ * number, so the n-th request of a run gets the same outcome in every run with the same seed.
+ * Requests over the rate limit or quota of their app-id are answered like an exhausted 3scale plan:
+ * {@code 500 "usage limits are exceeded"}.
+ */
+public final class ReplayServer implements AutoCloseable {
+    private static final String USAGE_LIMIT_BODY = "{\"error\":\"Authorization failed: usage limits are exceeded\"}";
+    private static final int MAX_RESOLVED = 10_000;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String basePath;
+    private final List<Template> templates = new ArrayList<>();
+    private final Map<String, Recording> recordings = new ConcurrentHashMap<>();
+    private final Map<String, Response> resolved = new ConcurrentHashMap<>();
+    private final Latency latency;
+    private final List<InjectedError> errors;
+    private final double rate;
+    private final int burst;
+    private final long quota;
+    private final Map<String, String> credentials;
+    private final long seed;
+    private final String upstream;
+    private final Path recordTo;
+    private final Map<String, KeyUsage> usage = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+    private final LongAdder injected = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder unmatched = new LongAdder();
+    private final LongAdder recorded = new LongAdder();
+
+    static {
+        // Without TCP_NODELAY responses on reused connections stall on Nagle + delayed ACK (~40ms each)
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private ReplayServer(Builder builder) throws IOException {
+        this.basePath = builder.basePath;
+        this.latency = builder.latency;
+        this.errors = new ArrayList<>(builder.errors);
+        this.rate = builder.rate;
+        this.burst = builder.burst;
+        this.quota = builder.quota;
+        this.credentials = new LinkedHashMap<>(builder.credentials);
+        this.seed = builder.seed;
+        this.upstream = builder.upstream;
+        this.recordTo = builder.recordTo;
+        for (Map.Entry<String, String> sample : builder.samples.entrySet()) {
+            templates.add(new Template(sample.getKey(), sample.getValue()));
+        }
+        for (Path file : builder.recordingFiles) {
+            loadRecordings(file);
+        }
+
+        this.server = HttpServer.create(new InetSocketAddress(builder.host, builder.port), 1024);
+        this.executor = Executors.newFixedThreadPool(builder.threads);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Create a builder for a replay server
+     *
+     * @return A new builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the base URL to configure the client with
+     *
+     * @return Base URL including the API version path
+     */
+    public String getBaseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + basePath;
+    }
+
+    /**
+     * Get the number of requests served so far
+     *
+     * @return Request count
+     */
+    public long getRequestCount() {
+        return sequence.get();
+    }
+
+    /**
+     * Get the server's counters, also served as JSON at /replay/stats
+     *
+     * @return Requests, responses by status, injected errors, rate-limited, unmatched and recorded requests
+     */
+    public JSONObject getStats() {
+        JSONObject byStatus = new JSONObject();
+        for (Map.Entry<Integer, LongAdder> entry : new TreeMap<>(statusCounts).entrySet()) {
+            byStatus.put(String.valueOf(entry.getKey()), entry.getValue().sum());
+        }
+        return new JSONObject()
+                .put("requests", sequence.get())
+                .put("status", byStatus)
+                .put("injected", injected.sum())
+                .put("rateLimited", rateLimited.sum())
+                .put("unmatched", unmatched.sum())
+                .put("recorded", recorded.sum());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getRawPath();
+            if ("/replay/stats".equals(path)) {
+                send(exchange, 200, getStats().toString().getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            long number = sequence.getAndIncrement();
+            SplittableRandom random = new SplittableRandom(seed + number * 0x9E3779B97F4A7C15L);
+            long delay = latency.sampleNanos(random);
+            Response response = respond(exchange, path, random.nextDouble());
+            if (delay > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            statusCounts.computeIfAbsent(response.status, status -> new LongAdder()).increment();
+            sendCompressible(exchange, response.status, response.plain, response.gzipped);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void sendCompressible(HttpExchange exchange, int status, byte[] plain, byte[] gzipped)
+            throws IOException {
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            send(exchange, status, gzipped);
+        } else {
+            send(exchange, status, plain);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/hal+json");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+            out.write(body);
+        }
+        return buffer.toByteArray();
+    }
+
+    private Response respond(HttpExchange exchange, String path, double draw) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            return Response.error(405, "Method not allowed");
+        }
+        String id = exchange.getRequestHeaders().getFirst("app-id");
+        String key = exchange.getRequestHeaders().getFirst("app-key");
+        if (!credentials.isEmpty() && (key == null || !key.equals(credentials.get(id)))) {
+            return Response.error(401, "Authentication failed: application key is invalid");
+        }
+        if ((rate > 0 || quota > 0) && !usage.computeIfAbsent(String.valueOf(id), k -> new KeyUsage()).tryAcquire()) {
+            rateLimited.increment();
+            return Response.of(500, USAGE_LIMIT_BODY);
+        }
+        double cumulative = 0;
+        for (InjectedError error : errors) {
+            cumulative += error.probability;
+            if (draw < cumulative) {
+                injected.increment();
+                return error.response;
+            }
+        }
+        if (!path.startsWith(basePath + "/")) {
+            unmatched.increment();
+            return Response.error(404, "Not found");
+        }
+        String endpoint = path.substring(basePath.length());
+        String query = canonicalQuery(exchange.getRequestURI().getRawQuery());
+        String requestKey = query.isEmpty() ? endpoint : endpoint + "?" + query;
+        Response response = resolved.get(requestKey);
+        if (response == null) {
+            response = resolve(endpoint, query, exchange);
+            if (response.status != 502) {
+                if (resolved.size() >= MAX_RESOLVED) {
+                    resolved.clear();
+                }
+                resolved.put(requestKey, response);
+            }
+        }
+        return response;
+    }
+
+    private Response resolve(String endpoint, String query, HttpExchange exchange) throws IOException {
+        Recording recording = recordings.get(query.isEmpty() ? endpoint : endpoint + "?" + query);
+        if (recording == null) {
+            recording = recordings.get(endpoint);
+        }
+        if (recording != null) {
+            return recording.response;
+        }
+        if (upstream != null) {
+            return record(endpoint, query, exchange);
+        }
+        for (Template template : templates) {
+            Response response = template.match(endpoint);
+            if (response != null) {
+                return response;
+            }
+        }
+        unmatched.increment();
+        return Response.error(404, "Not found");
+    }
+
+    /**
+     * Forward a request to the upstream API with the caller's credentials and keep the response
+     */
+    private Response record(String endpoint, String query, HttpExchange exchange) throws IOException {
+        URL url = new URL(upstream + endpoint + (query.isEmpty() ? "" : "?" + query));
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        int status;
+        byte[] body;
+        try {
+            connection.setConnectTimeout(10_000);
+            connection.setReadTimeout(30_000);
+            connection.setRequestProperty("Accept", "application/json");
+            for (String header : new String[]{"app-id", "app-key"}) {
+                String value = exchange.getRequestHeaders().getFirst(header);
+                if (value != null) {
+                    connection.setRequestProperty(header, value);
+                }
+            }
+            status = connection.getResponseCode();
+            InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+            body = in != null ? readAll(in) : new byte[0];
+        } catch (IOException e) {
+            return Response.error(502, "Upstream request failed: " + e.getMessage());
+        } finally {
+            connection.disconnect();
+        }
+
+        Recording recording = new Recording(endpoint, query, status, new String(body, StandardCharsets.UTF_8));
+        recordings.put(recording.key(), recording);
+        recordings.putIfAbsent(endpoint, recording);
+        synchronized (this) {
+            try (BufferedWriter writer = Files.newBufferedWriter(recordTo, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.write(recording.toJson().toString());
+                writer.newLine();
+            }
+        }
+        recorded.increment();
+        return recording.response;
+    }
+
+    private void loadRecordings(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            JSONObject json = new JSONObject(line);
+            Recording recording = new Recording(json.getString("endpoint"), json.optString("query"),
+                    json.getInt("status"), json.getString("body"));
+            recordings.put(recording.key(), recording);
+            recordings.putIfAbsent(recording.endpoint, recording);
+        }
+    }
+
+    /**
+     * Sort the query's parameters, so the same request matches whatever order a client sends them in
+     */
+    static String canonicalQuery(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return "";
+        }
+        String[] parts = rawQuery.split("&");
+        Arrays.sort(parts);
+        return String.join("&", parts);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = input.read(chunk)) > 0) {
+                buffer.write(chunk, 0, read);
+            }
+            return buffer.toByteArray();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Token bucket and quota counter for one app-id
+     */
+    private final class KeyUsage {
+        private double tokens = burst;
+        private long refilledAt = System.nanoTime();
+        private long used;
+
+        synchronized boolean tryAcquire() {
+            if (quota > 0 && used >= quota) {
+                return false;
+            }
+            if (rate > 0) {
+                long now = System.nanoTime();
+                tokens = Math.min(burst, tokens + (now - refilledAt) / 1e9 * rate);
+                refilledAt = now;
+                if (tokens < 1) {
+                    return false;
+                }
+                tokens -= 1;
+            }
+            used++;
+            return true;
+        }
+    }
+
+    /**
+     * An encoded response, shared by every request it answers
+     */
+    private static final class Response {
+        final int status;
+        final byte[] plain;
+        final byte[] gzipped;
+
+        private Response(int status, byte[] plain) throws IOException {
+            this.status = status;
+            this.plain = plain;
+            this.gzipped = gzip(plain);
+        }
+
+        static Response of(int status, String body) throws IOException {
+            return new Response(status, body.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Response error(int status, String message) throws IOException {
+            return of(status, new JSONObject().put("error", message).toString());
+        }
+    }
+
+    private static final class Recording {
+        final String endpoint;
+        final String query;
+        final int status;
+        final String body;
+        final Response response;
+
+        Recording(String endpoint, String query, int status, String body) throws IOException {
+            this.endpoint = endpoint;
+            this.query = query;
+            this.status = status;
+            this.body = body;
+            this.response = Response.of(status, body);
+        }
+
+        String key() {
+            return query.isEmpty() ? endpoint : endpoint + "?" + query;
+        }
+
+        JSONObject toJson() {
+            return new JSONObject().put("endpoint", endpoint).put("query", query).put("status", status).put("body", body);
+        }
+    }
+
+    /**
+     * A blueprint sample and the endpoints it answers; item samples get the requested ID spliced in
+     */
+    private static final class Template {
+        private static final Pattern VARIABLE = Pattern.compile("\\{[^}]+\\}");
+        private static final Pattern FIRST_ID = Pattern.compile("\"id\"\\s*:\\s*\"?([^\",}\\s]+)\"?");
+
+        final Pattern pattern;
+        final Response fixed;
+        final String beforeId;
+        final String afterId;
+
+        Template(String path, String body) throws IOException {
+            Matcher variables = VARIABLE.matcher(path);
+            StringBuilder regex = new StringBuilder();
+            int last = 0;
+            while (variables.find()) {
+                regex.append(Pattern.quote(path.substring(last, variables.start()))).append("([^/]+)");
+                last = variables.end();
+            }
+            regex.append(Pattern.quote(path.substring(last)));
+            this.pattern = Pattern.compile(regex.toString());
+
+            Matcher id = path.endsWith("/{id}") ? FIRST_ID.matcher(body) : null;
+            if (id != null && id.find()) {
+                this.fixed = null;
+                this.beforeId = body.substring(0, id.start(1));
+                this.afterId = body.substring(id.end(1));
+            } else {
+                this.fixed = Response.of(200, body);
+                this.beforeId = null;
+                this.afterId = null;
+            }
+        }
+
+        Response match(String endpoint) throws IOException {
+            Matcher matcher = pattern.matcher(endpoint);
+            if (!matcher.matches()) {
+                return null;
+            }
+            if (fixed != null) {
+                return fixed;
+            }
+            String id = matcher.group(matcher.groupCount()).replace("\"", "");
+            return Response.of(200, beforeId + id + afterId);
+        }
+    }
+
+    private static final class InjectedError {
+        final double probability;
+        final Response response;
+
+        InjectedError(double probability, Response response) {
+            this.probability = probability;
+            this.response = response;
+        }
+    }
+
+    /**
+     * Latency Distribution
+     * Server-side delay added to each response
+     */
+    public abstract static class Latency {
+
+        abstract long sampleNanos(SplittableRandom random);
+
+        /**
+         * @return No added delay
+         */
+        public static Latency none() {
+            return fixed(0);
+        }
+
+        /**
+         * @param millis Delay of every response
+         */
+        public static Latency fixed(double millis) {
+            long nanos = (long) (millis * 1e6);
+            return new Latency() {
+                @Override
+                long sampleNanos(SplittableRandom random) {
+                    return nanos;
+                }
+
+                @Override
+                public String toString() {
+                    return "fixed:" + millis;
+                }
+            };
+        }
+
+        /**
+         * @param minMillis Shortest delay
+         * @param maxMillis Longest delay
+         */
+        public static Latency uniform(double minMillis, double maxMillis) {
+            return new Latency() {
+                @Override
+                long sampleNanos(SplittableRandom random) {
+                    return (long) ((minMillis + random.nextDouble() * (maxMillis - minMillis)) * 1e6);
+                }
+
+                @Override
+                public String toString() {
+                    return "uniform:" + minMillis + "," + maxMillis;
+                }
+            };
+        }
+
+        /**
+         * A long-tailed distribution, as real API latencies usually are
+         *
+         * @param medianMillis The median delay
+         * @param p99Millis    The 99th percentile delay, at least the median
+         */
+        public static Latency logNormal(double medianMillis, double p99Millis) {
+            if (medianMillis <= 0 || p99Millis < medianMillis) {
+                throw new IllegalArgumentException("Need 0 < median <= p99: " + medianMillis + ", " + p99Millis);
+            }
+            double mu = Math.log(medianMillis);
+            // 2.326 is the standard normal 99th percentile
+            double sigma = Math.log(p99Millis / medianMillis) / 2.326;
+            return new Latency() {
+                @Override
+                long sampleNanos(SplittableRandom random) {
+                    return (long) (Math.exp(mu + sigma * gaussian(random)) * 1e6);
+                }
+
+                @Override
+                public String toString() {
+                    return "lognormal:" + medianMillis + "," + p99Millis;
+                }
+            };
+        }
+
+        /**
+         * Parse a distribution: "fixed:20", "uniform:5,50" or "lognormal:20,200" (milliseconds)
+         */
+        public static Latency parse(String spec) {
+            String[] parts = spec.split(":", 2);
+            String[] values = parts.length > 1 ? parts[1].split(",") : new String[0];
+            switch (parts[0]) {
+                case "none":
+                    return none();
+                case "fixed":
+                    return fixed(Double.parseDouble(values[0]));
+                case "uniform":
+                    return uniform(Double.parseDouble(values[0]), Double.parseDouble(values[1]));
+                case "lognormal":
+                    return logNormal(Double.parseDouble(values[0]), Double.parseDouble(values[1]));
+                default:
+                    throw new IllegalArgumentException("Unknown latency distribution: " + spec);
+            }
+        }
+
+        private static double gaussian(SplittableRandom random) {
+            // Box-Muller; SplittableRandom has no nextGaussian before JDK 17
+            double u = 1.0 - random.nextDouble();
+            return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * random.nextDouble());
+        }
+    }
+
+    public static final class Builder {
+        private String host = "127.0.0.1";
+        private int port;
+        private String basePath = "/api/v1.0";
+        private int threads = 64;
+        private final Map<String, String> samples = new LinkedHashMap<>();
+        private final List<Path> recordingFiles = new ArrayList<>();
+        private Latency latency = Latency.none();
+        private final List<InjectedError> errors = new ArrayList<>();
+        private double rate;
+        private int burst;
+        private long quota;
+        private final Map<String, String> credentials = new LinkedHashMap<>();
+        private long seed = 1;
+        private String upstream;
+        private Path recordTo;
+
+        private Builder() {
+        }
+
+        /**
+         * Address to listen on (default 127.0.0.1)
+         */
+        public Builder host(String host) {
+            this.host = host;
+            return this;
+        }
+
+        /**
+         * Port to listen on (default 0: any free port)
+         */
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        /**
+         * Path the API is served under (default /api/v1.0)
+         */
+        public Builder basePath(String basePath) {
+            this.basePath = basePath.endsWith("/") ? basePath.substring(0, basePath.length() - 1) : basePath;
+            return this;
+        }
+
+        /**
+         * Worker threads; each one is busy for the added latency of the response it serves (default 64)
+         */
+        public Builder threads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Serve the example payloads of documentation/twittv.apib (see {@link ApibSamples#defaultLocation()})
+         */
+        public Builder apibSamples() throws IOException {
+            return samples(ApibSamples.load());
+        }
+
+        /**
+         * Serve sample bodies keyed by endpoint template, e.g. "/episodes/{id}"
+         */
+        public Builder samples(Map<String, String> samples) {
+            this.samples.putAll(samples);
+            return this;
+        }
+
+        /**
+         * Serve the responses recorded in a file, if it exists
+         */
+        public Builder recordings(Path file) {
+            recordingFiles.add(file);
+            return this;
+        }
+
+        /**
+         * Forward requests without a recording to an API and append its responses to a recordings file
+         *
+         * @param upstreamBaseUrl The API to record, e.g. https://twit.tv/api/v1.0
+         * @param file            The recordings file; existing recordings in it are served
+         */
+        public Builder record(String upstreamBaseUrl, Path file) {
+            this.upstream = upstreamBaseUrl.endsWith("/")
+                    ? upstreamBaseUrl.substring(0, upstreamBaseUrl.length() - 1) : upstreamBaseUrl;
+            this.recordTo = file;
+            return recordings(file);
+        }
+
+        /**
+         * Delay added to every response (default none)
+         */
+        public Builder latency(Latency latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * Answer a fraction of requests with an error. A 500 reports that usage limits are exceeded,
+         * as an exhausted 3scale plan does; other statuses get a generic error body.
+         *
+         * @param status      The HTTP status
+         * @param probability Fraction of requests, 0 to 1
+         */
+        public Builder error(int status, double probability) throws IOException {
+            Response response = status == 500 ? Response.of(500, USAGE_LIMIT_BODY)
+                    : Response.error(status, status == 401 ? "Authentication failed: application key is invalid"
+                    : status == 404 ? "Not found" : "Injected error");
+            return error(probability, response);
+        }
+
+        /**
+         * Answer a fraction of requests with an error and a custom body
+         */
+        public Builder error(int status, double probability, String body) throws IOException {
+            return error(probability, Response.of(status, body));
+        }
+
+        private Builder error(double probability, Response response) {
+            errors.add(new InjectedError(probability, response));
+            return this;
+        }
+
+        /**
+         * Emulate the plan's rate limit: requests of an app-id beyond the rate are answered 500 usage limits
+         *
+         * @param requestsPerSecond Sustained rate per app-id
+         * @param burst             Requests an idle app-id may send at once
+         */
+        public Builder rateLimit(double requestsPerSecond, int burst) {
+            this.rate = requestsPerSecond;
+            this.burst = Math.max(1, burst);
+            return this;
+        }
+
+        /**
+         * Emulate the plan's quota: after this many requests an app-id is answered 500 usage limits
+         */
+        public Builder quota(long requests) {
+            this.quota = requests;
+            return this;
+        }
+
+        /**
+         * Answer 401 unless requests carry these credentials; call again to accept several pairs
+         * (default: any credentials are accepted)
+         */
+        public Builder credentials(String appId, String appKey) {
+            credentials.put(appId, appKey);
+            return this;
+        }
+
+        /**
+         * Seed for injected errors and latencies (default 1)
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Start the server
+         *
+         * @return The running server; close it to stop
+         */
+        public ReplayServer start() throws IOException {
+            return new ReplayServer(this);
+        }
+    }
+
+    /**
+     * Run a replay server
+     *
+     * Usage: ReplayServer [port] [--latency=lognormal:20,200] [--error=500:0.01 ...] [--rate-limit=10,20]
+     * [--quota=requests] [--recordings=file] [--record=upstreamBaseUrl,file] [--seed=n]
+     */
+    public static void main(String[] args) throws Exception {
+        Builder builder = builder().port(8089).apibSamples();
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--latency=")) {
+                builder.latency(Latency.parse(value));
+            } else if (arg.startsWith("--error=")) {
+                String[] parts = value.split(":");
+                builder.error(Integer.parseInt(parts[0]), Double.parseDouble(parts[1]));
+            } else if (arg.startsWith("--rate-limit=")) {
+                String[] parts = value.split(",");
+                builder.rateLimit(Double.parseDouble(parts[0]), Integer.parseInt(parts[1]));
+            } else if (arg.startsWith("--quota=")) {
+                builder.quota(Long.parseLong(value));
+            } else if (arg.startsWith("--recordings=")) {
+                builder.recordings(Paths.get(value));
+            } else if (arg.startsWith("--record=")) {
+                String[] parts = value.split(",", 2);
+                builder.record(parts[0], Paths.get(parts[1]));
+            } else if (arg.startsWith("--seed=")) {
+                builder.seed(Long.parseLong(value));
+            } else {
+                builder.port(Integer.parseInt(arg));
+            }
+        }
+        ReplayServer server = builder.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.out.println("Replay server listening on " + server.getBaseUrl() + " (stats at /replay/stats)");
+    }
+}
@@ -0,0 +1,204 @@
+package tv.twit.api.bench;
+
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.json.JSONObject;
+import tv.twit.api.TransportConfig;
+import tv.twit.api.TwitApiClient;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup Benchmark
+ * Measures time to first response of a fresh JVM: each run starts a child JVM that builds a client,
+ * requests /shows from a local replay server and exits. Compares the credentials file with the default
+ * transport, the fast-start configuration (credentials from the environment, no cookie handling) and,
+ * on JDK 13+, the fast-start configuration with an AppCDS archive created by a training run.
+ * Reports the median and best of each.
+ * Usage: StartupBenchmark [runs]
+ *
+ * With --train the process makes the requests a typical short-lived tool makes against a replay server,
+ * for recording an AppCDS archive (see the appcds Maven profile).
+ */
+public class StartupBenchmark {
+
+    private static final String SHOWS = "{\"count\":1,\"shows\":[{\"id\":\"1635\",\"label\":\"This Week in Tech\"}]}";
+    private static final String SHOW = "{\"shows\":{\"id\":\"1635\",\"label\":\"This Week in Tech\"}}";
+    private static final String EPISODES = "{\"count\":1,\"episodes\":[{\"id\":\"52940\",\"label\":\"TWiT 1\"}]}";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && "--probe".equals(args[0])) {
+            probe(args[1]);
+            return;
+        }
+        if (args.length > 0 && "--train".equals(args[0])) {
+            train();
+            return;
+        }
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+
+        Path dir = Files.createTempDirectory("twit-startup");
+        Path work = Files.createDirectories(dir.resolve("work"));
+        Path archive = dir.resolve("probe.jsa");
+        try (ReplayServer server = startServer()) {
+            Files.write(dir.resolve("credentials.yml"), Arrays.asList(
+                    "twit_api:",
+                    "  app_id: bench",
+                    "  app_key: bench",
+                    "  base_url: " + server.getBaseUrl() + "  # local replay server"),
+                    StandardCharsets.UTF_8);
+
+            System.out.printf("%-44s %10s %10s%n", "configuration", "median ms", "best ms");
+            report("credentials file, default transport", run(work, server, "file", Collections.emptyList(), runs));
+            report("fast start (environment, no cookies)", run(work, server, "fast", Collections.emptyList(), runs));
+            if (Runtime.version().feature() < 13) {
+                System.out.println("AppCDS dynamic archives need JDK 13+, skipped");
+            } else if (!onlyJars()) {
+                System.out.println("AppCDS archives need a class path of jars, skipped: run from the jar-with-dependencies");
+            } else {
+                run(work, server, "train", Collections.singletonList("-XX:ArchiveClassesAtExit=" + archive), 1);
+                List<String> cds = Collections.singletonList("-XX:SharedArchiveFile=" + archive);
+                report("fast start + AppCDS", run(work, server, "fast", cds, runs));
+                List<String> cdsC1 = Arrays.asList("-XX:SharedArchiveFile=" + archive, "-XX:TieredStopAtLevel=1");
+                report("fast start + AppCDS + C1 only", run(work, server, "fast", cdsC1, runs));
+            }
+        } finally {
+            Files.deleteIfExists(archive);
+            Files.deleteIfExists(dir.resolve("credentials.yml"));
+            Files.deleteIfExists(work);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    /**
+     * Start child JVMs and time each from launch until it reports its first response
+     *
+     * @return Times in milliseconds
+     */
+    private static List<Long> run(Path work, ReplayServer server, String mode, List<String> jvmArgs, int runs)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(classPath());
+        command.add(StartupBenchmark.class.getName());
+        if ("train".equals(mode)) {
+            command.add("--train");
+        } else {
+            command.add("--probe");
+            command.add(mode);
+        }
+
+        List<Long> millis = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            ProcessBuilder builder = new ProcessBuilder(command).directory(work.toFile()).redirectErrorStream(true);
+            builder.environment().put("TWIT_APP_ID", "bench");
+            builder.environment().put("TWIT_APP_KEY", "bench");
+            builder.environment().put("TWIT_BASE_URL", server.getBaseUrl());
+            long start = System.nanoTime();
+            Process process = builder.start();
+            String result = null;
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("OK") && result == null) {
+                        millis.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                        result = line;
+                    } else if (result == null) {
+                        System.out.println("  " + line);
+                    }
+                }
+            }
+            if (!process.waitFor(60, TimeUnit.SECONDS) || process.exitValue() != 0 || result == null) {
+                throw new IllegalStateException("Startup probe failed: " + String.join(" ", command));
+            }
+        }
+        return millis;
+    }
+
+    private static ReplayServer startServer() throws IOException {
+        Map<String, String> samples = new HashMap<>();
+        samples.put("/shows", SHOWS);
+        samples.put("/shows/{id}", SHOW);
+        samples.put("/episodes", EPISODES);
+        return ReplayServer.builder().samples(samples).threads(2).start();
+    }
+
+    private static String classPath() {
+        // Resolve the entries so the archive's recorded class path matches the runs that use it
+        List<String> entries = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            entries.add(Paths.get(entry).toAbsolutePath().toString());
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private static boolean onlyJars() {
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (Files.isDirectory(Paths.get(entry))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void report(String name, List<Long> millis) {
+        List<Long> sorted = new ArrayList<>(millis);
+        Collections.sort(sorted);
+        System.out.printf("%-44s %10d %10d%n", name, sorted.get(sorted.size() / 2), sorted.get(0));
+    }
+
+    /**
+     * The child JVM: build a client, make one request and report
+     */
+    private static void probe(String mode) throws IOException {
+        TwitApiClient.Builder builder = "fast".equals(mode)
+                ? TwitApiClient.builder().environment().transport(TransportConfig.builder().cookies(false).build())
+                : TwitApiClient.builder().credentialsFile();
+        try (TwitApiClient client = builder.build()) {
+            JSONObject shows = client.getShows();
+            if (shows.has("error")) {
+                System.out.println("Request failed: " + shows);
+                System.exit(1);
+            }
+            System.out.println("OK " + shows.getJSONArray("shows").getJSONObject(0).getString("label"));
+        }
+    }
+
+    /**
+     * Load the classes a short-lived tool uses: both credential sources, a few requests, error handling
+     * and the TLS socket factory used for the real API
+     */
+    private static void train() throws IOException {
+        try (ReplayServer server = startServer();
+             TwitApiClient client = TwitApiClient.builder().appId("train").appKey("train")
+                     .baseUrl(server.getBaseUrl()).transport(TransportConfig.builder().cookies(false).build())
+                     .build()) {
+            for (int i = 0; i < 20; i++) {
+                client.getShows();
+                client.getShow("1635");
+                client.getEpisodes();
+            }
+        }
+        if (System.getenv("TWIT_APP_ID") != null) {
+            TwitApiClient.builder().environment().build().close();
+        }
+        SSLConnectionSocketFactory.getSocketFactory();
+        System.out.println("OK trained");
+    }
+}
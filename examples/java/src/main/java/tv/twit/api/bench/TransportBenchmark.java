@@ -0,0 +1,106 @@
+package tv.twit.api.bench;
+
+import org.json.JSONObject;
+import tv.twit.api.TransportConfig;
+import tv.twit.api.TwitApiClient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport Benchmark
+ * Measures throughput and latency of TwitApiClient against a local replay server as concurrency goes up,
+ * comparing a 2-connections-per-route client (the old HttpClients.createDefault() limit) with the pooled transport.
+ *
+ * Usage: TransportBenchmark [requestsPerLevel] [serverLatencyMillis]
+ */
+public class TransportBenchmark {
+
+    private static final int[] CONCURRENCY_LEVELS = {1, 2, 4, 8, 16, 32, 64};
+
+    public static void main(String[] args) throws Exception {
+        int requestsPerLevel = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long serverLatency = args.length > 1 ? Long.parseLong(args[1]) : 10;
+
+        String body = "{\"count\":1,\"shows\":[{\"id\":\"1635\",\"label\":\"This Week in Tech\"}]}";
+
+        TransportConfig legacy = TransportConfig.builder()
+                .maxTotalConnections(20)
+                .maxConnectionsPerRoute(2)
+                .connectionRequestTimeoutMillis(0)
+                .build();
+        TransportConfig pooled = TransportConfig.builder()
+                .maxTotalConnections(128)
+                .maxConnectionsPerRoute(128)
+                .build();
+
+        try (ReplayServer server = ReplayServer.builder().samples(Collections.singletonMap("/shows", body))
+                .latency(ReplayServer.Latency.fixed(serverLatency)).threads(256).start()) {
+            System.out.println("Replay server: " + server.getBaseUrl() + " (latency " + serverLatency + "ms)");
+            System.out.printf("%-8s %-12s %12s %10s %10s%n", "threads", "transport", "req/s", "p50 ms", "p99 ms");
+            for (int concurrency : CONCURRENCY_LEVELS) {
+                run("2/route", legacy, server.getBaseUrl(), concurrency, requestsPerLevel);
+                run("pooled", pooled, server.getBaseUrl(), concurrency, requestsPerLevel);
+            }
+        }
+    }
+
+    private static void run(String name, TransportConfig config, String baseUrl, int concurrency, int requests)
+            throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        try (TwitApiClient client = TwitApiClient.builder()
+                .appId("bench").appKey("bench").baseUrl(baseUrl).transport(config).build()) {
+            // Warm up connections and JIT
+            for (int i = 0; i < Math.min(200, requests); i++) {
+                client.getShows();
+            }
+
+            long[] latencies = new long[requests];
+            List<Future<?>> futures = new ArrayList<>(concurrency);
+            int perThread = requests / concurrency;
+            long start = System.nanoTime();
+            for (int t = 0; t < concurrency; t++) {
+                int offset = t * perThread;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        long begin = System.nanoTime();
+                        JSONObject response = client.getShows();
+                        latencies[offset + i] = System.nanoTime() - begin;
+                        if (response.has("error")) {
+                            throw new IllegalStateException("Request failed: " + response);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long elapsed = System.nanoTime() - start;
+
+            int completed = perThread * concurrency;
+            long[] measured = Arrays.copyOf(latencies, completed);
+            Arrays.sort(measured);
+            double throughput = completed / (elapsed / 1e9);
+            System.out.printf("%-8d %-12s %12.0f %10.2f %10.2f%n", concurrency, name, throughput,
+                    percentile(measured, 0.50) / 1e6, percentile(measured, 0.99) / 1e6);
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,67 @@
+package tv.twit.api.model;
+
+import java.io.IOException;
+
+/**
+ * A credit from /credits, linking a person to a role on a show or episode
+ */
+public final class Credit {
+    private String id;
+    private String label;
+    private String created;
+    private Embedded embedded = Embedded.EMPTY;
+
+    private Credit() {
+    }
+
+    static Credit read(JsonInput in) throws IOException {
+        Credit credit = new Credit();
+        String name;
+        while ((name = in.nextField()) != null) {
+            switch (name) {
+                case "id":
+                    credit.id = in.text();
+                    break;
+                case "label":
+                    credit.label = in.text();
+                    break;
+                case "created":
+                    credit.created = in.text();
+                    break;
+                case "_embedded":
+                    credit.embedded = in.embedded();
+                    break;
+                default:
+                    in.parser.skipChildren();
+            }
+        }
+        return credit;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return Person and role, e.g. "Shannon Morse : Host"
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    public String getCreated() {
+        return created;
+    }
+
+    /**
+     * @return The embedded roles and people, bound on first access
+     */
+    public Embedded getEmbedded() {
+        return embedded;
+    }
+
+    @Override
+    public String toString() {
+        return "Credit{" + id + ", " + label + "}";
+    }
+}
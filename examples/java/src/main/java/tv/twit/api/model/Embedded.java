@@ -0,0 +1,112 @@
+package tv.twit.api.model;
+
+import com.fasterxml.jackson.core.JsonToken;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A HAL _embedded section that is bound lazily.
+ * Decoding a model only records where its _embedded object starts and ends in the response buffer;
+ * a section such as "shows" or "credits" is parsed the first time it is asked for, and only that section.
+ * Until then the model keeps a reference to the response buffer.
+ */
+public final class Embedded {
+    static final Embedded EMPTY = new Embedded(new byte[0], 0, 0);
+
+    private final byte[] buffer;
+    private final int offset;
+    private final int length;
+    private final Map<String, List<?>> bound = new HashMap<>();
+
+    Embedded(byte[] buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * @return Size of the unparsed section in bytes
+     */
+    public int getByteLength() {
+        return length;
+    }
+
+    public List<Show> getShows() {
+        return bind("shows", Show::read);
+    }
+
+    public List<Episode> getEpisodes() {
+        return bind("episodes", Episode::read);
+    }
+
+    public List<Credit> getCredits() {
+        return bind("credits", Credit::read);
+    }
+
+    public List<Person> getPeople() {
+        return bind("people", Person::read);
+    }
+
+    public List<Term> getRoles() {
+        return bind("roles", Term::read);
+    }
+
+    public List<Term> getCategories() {
+        return bind("categories", Term::read);
+    }
+
+    public List<Term> getTopics() {
+        return bind("topics", Term::read);
+    }
+
+    /**
+     * Parse the whole section into an org.json tree, for embedded resources without a model (e.g. "offers")
+     *
+     * @return The section as a JSONObject
+     */
+    public JSONObject toJson() {
+        if (isEmpty()) {
+            return new JSONObject();
+        }
+        return new JSONObject(new String(buffer, offset, length, StandardCharsets.UTF_8));
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized <T> List<T> bind(String name, ModelReader<T> reader) {
+        List<?> items = bound.get(name);
+        if (items == null) {
+            items = isEmpty() ? Collections.emptyList() : parse(name, reader);
+            bound.put(name, items);
+        }
+        return (List<T>) items;
+    }
+
+    private <T> List<T> parse(String name, ModelReader<T> reader) {
+        try (JsonInput in = new JsonInput(buffer, offset, length)) {
+            if (in.parser.nextToken() != JsonToken.START_OBJECT) {
+                return Collections.emptyList();
+            }
+            String field;
+            while ((field = in.nextField()) != null) {
+                if (name.equals(field)) {
+                    return Collections.unmodifiableList(in.list(reader));
+                }
+                in.parser.skipChildren();
+            }
+            return Collections.emptyList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Malformed _embedded." + name, e);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package tv.twit.api.model;
+
+import java.io.IOException;
+
+/**
+ * An episode from /episodes.
+ * The showNotes HTML and image derivatives are skipped while decoding.
+ */
+public final class Episode {
+    private String id;
+    private String label;
+    private String episodeNumber;
+    private String teaser;
+    private String airingDate;
+    private String created;
+    private String changed;
+    private String cleanPath;
+    private boolean featured;
+    private boolean published;
+    private Image heroImage;
+    private MediaFile audio;
+    private MediaFile videoHd;
+    private MediaFile videoLarge;
+    private MediaFile videoSmall;
+    private Embedded embedded = Embedded.EMPTY;
+
+    private Episode() {
+    }
+
+    static Episode read(JsonInput in) throws IOException {
+        Episode episode = new Episode();
+        String name;
+        while ((name = in.nextField()) != null) {
+            switch (name) {
+                case "id":
+                    episode.id = in.text();
+                    break;
+                case "label":
+                    episode.label = in.text();
+                    break;
+                case "episodeNumber":
+                    episode.episodeNumber = in.text();
+                    break;
+                case "teaser":
+                    episode.teaser = in.text();
+                    break;
+                case "airingDate":
+                    episode.airingDate = in.text();
+                    break;
+                case "created":
+                    episode.created = in.text();
+                    break;
+                case "changed":
+                    episode.changed = in.text();
+                    break;
+                case "cleanPath":
+                    episode.cleanPath = in.text();
+                    break;
+                case "featured":
+                    episode.featured = in.bool();
+                    break;
+                case "published":
+                    episode.published = in.bool();
+                    break;
+                case "heroImage":
+                    episode.heroImage = in.object(Image::read);
+                    break;
+                case "video_audio":
+                    episode.audio = in.object(MediaFile::read);
+                    break;
+                case "video_hd":
+                    episode.videoHd = in.object(MediaFile::read);
+                    break;
+                case "video_large":
+                    episode.videoLarge = in.object(MediaFile::read);
+                    break;
+                case "video_small":
+                    episode.videoSmall = in.object(MediaFile::read);
+                    break;
+                case "_embedded":
+                    episode.embedded = in.embedded();
+                    break;
+                default:
+                    in.parser.skipChildren();
+            }
+        }
+        return episode;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getEpisodeNumber() {
+        return episodeNumber;
+    }
+
+    public String getTeaser() {
+        return teaser;
+    }
+
+    /**
+     * @return Airing date as an ISO-8601 timestamp, e.g. "2015-05-31T23:45:00Z"
+     */
+    public String getAiringDate() {
+        return airingDate;
+    }
+
+    public String getCreated() {
+        return created;
+    }
+
+    public String getChanged() {
+        return changed;
+    }
+
+    public String getCleanPath() {
+        return cleanPath;
+    }
+
+    public boolean isFeatured() {
+        return featured;
+    }
+
+    public boolean isPublished() {
+        return published;
+    }
+
+    public Image getHeroImage() {
+        return heroImage;
+    }
+
+    public MediaFile getAudio() {
+        return audio;
+    }
+
+    public MediaFile getVideoHd() {
+        return videoHd;
+    }
+
+    public MediaFile getVideoLarge() {
+        return videoLarge;
+    }
+
+    public MediaFile getVideoSmall() {
+        return videoSmall;
+    }
+
+    /**
+     * @return The embedded show, credits, categories and offers, bound on first access
+     */
+    public Embedded getEmbedded() {
+        return embedded;
+    }
+
+    @Override
+    public String toString() {
+        return "Episode{" + id + ", " + label + "}";
+    }
+}
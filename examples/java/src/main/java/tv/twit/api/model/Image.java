@@ -0,0 +1,70 @@
+package tv.twit.api.model;
+
+import java.io.IOException;
+
+/**
+ * An image file such as a hero image, cover art or picture.
+ * The map of resized derivatives is skipped while decoding.
+ */
+public final class Image {
+    private String url;
+    private String alt;
+    private String mimeType;
+    private int width;
+    private int height;
+
+    private Image() {
+    }
+
+    static Image read(JsonInput in) throws IOException {
+        Image image = new Image();
+        String name;
+        while ((name = in.nextField()) != null) {
+            switch (name) {
+                case "url":
+                    image.url = in.text();
+                    break;
+                case "alt":
+                    image.alt = in.text();
+                    break;
+                case "mimeType":
+                    image.mimeType = in.text();
+                    break;
+                case "width":
+                    image.width = in.intValue();
+                    break;
+                case "height":
+                    image.height = in.intValue();
+                    break;
+                default:
+                    in.parser.skipChildren();
+            }
+        }
+        return image;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getAlt() {
+        return alt;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public String toString() {
+        return "Image{" + url + ", " + width + "x" + height + "}";
+    }
+}
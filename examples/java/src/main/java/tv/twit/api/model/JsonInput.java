@@ -0,0 +1,195 @@
+package tv.twit.api.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A streaming parser over a UTF-8 buffer, with helpers shared by the model readers.
+ * Values are only decoded when a reader asks for them; skipped strings such as showNotes
+ * are scanned past without creating a String.
+ */
+final class JsonInput implements Closeable {
+    final JsonParser parser;
+    final byte[] buffer;
+    final int base;
+
+    JsonInput(byte[] buffer, int offset, int length) throws IOException {
+        this.parser = ModelDecoder.FACTORY.createParser(buffer, offset, length);
+        this.buffer = buffer;
+        this.base = offset;
+    }
+
+    /**
+     * Advance to the next field of the current object
+     *
+     * @return The field name with the parser on its value, or null at the end of the object
+     */
+    String nextField() throws IOException {
+        if (parser.nextToken() != JsonToken.FIELD_NAME) {
+            return null;
+        }
+        String name = parser.currentName();
+        parser.nextToken();
+        return name;
+    }
+
+    /**
+     * Read the current value as text; numbers are returned in their JSON form, objects and arrays are skipped
+     */
+    String text() throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == null || token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token.isStructStart()) {
+            parser.skipChildren();
+            return null;
+        }
+        return parser.getText();
+    }
+
+    /**
+     * Read the current value as an int; the API sends most numbers as strings. Returns 0 if absent or not a number
+     */
+    int intValue() throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getIntValue();
+        }
+        String value = text();
+        if (value == null || value.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Read the current value as a boolean; the API uses true/false as well as "1"/"0"
+     */
+    boolean bool() throws IOException {
+        switch (parser.currentToken()) {
+            case VALUE_TRUE:
+                return true;
+            case VALUE_NUMBER_INT:
+                return parser.getLongValue() != 0;
+            case VALUE_STRING:
+                String value = parser.getText();
+                return "1".equals(value) || "true".equalsIgnoreCase(value);
+            case START_OBJECT:
+            case START_ARRAY:
+                parser.skipChildren();
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Read an array of strings, or a single string as a one-element list
+     */
+    List<String> strings() throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_ARRAY) {
+            List<String> values = new ArrayList<>();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                String value = text();
+                if (value != null) {
+                    values.add(value);
+                }
+            }
+            return values;
+        }
+        String value = text();
+        return value != null ? Collections.singletonList(value) : Collections.emptyList();
+    }
+
+    /**
+     * Record the position of the current object and skip it, so it can be bound later
+     *
+     * @return The lazily bound section, or Embedded.EMPTY if the value is not an object
+     */
+    Embedded embedded() throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return Embedded.EMPTY;
+        }
+        int start = base + (int) parser.getTokenLocation().getByteOffset();
+        parser.skipChildren();
+        int end = base + (int) parser.getCurrentLocation().getByteOffset();
+        return new Embedded(buffer, start, end - start);
+    }
+
+    /**
+     * Read the current value as an object with a reader, or return null if it is not an object
+     */
+    <T> T object(ModelReader<T> reader) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        return reader.read(this);
+    }
+
+    /**
+     * Read an array of objects, or a single object as a one-element list
+     */
+    <T> List<T> list(ModelReader<T> reader) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            return Collections.singletonList(reader.read(this));
+        }
+        if (token != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return Collections.emptyList();
+        }
+        List<T> items = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            T item = object(reader);
+            if (item != null) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Read the href of _links.next, skipping the other links
+     */
+    String nextHref() throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        String href = null;
+        String name;
+        while ((name = nextField()) != null) {
+            if ("next".equals(name) && parser.currentToken() == JsonToken.START_OBJECT) {
+                String field;
+                while ((field = nextField()) != null) {
+                    if ("href".equals(field)) {
+                        href = text();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return href;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
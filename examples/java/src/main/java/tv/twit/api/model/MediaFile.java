@@ -0,0 +1,70 @@
+package tv.twit.api.model;
+
+import java.io.IOException;
+
+/**
+ * An episode download (video_audio, video_hd, video_large or video_small)
+ */
+public final class MediaFile {
+    private String format;
+    private String mediaUrl;
+    private String runningTime;
+    private String size;
+
+    private MediaFile() {
+    }
+
+    static MediaFile read(JsonInput in) throws IOException {
+        MediaFile file = new MediaFile();
+        String name;
+        while ((name = in.nextField()) != null) {
+            switch (name) {
+                case "format":
+                    file.format = in.text();
+                    break;
+                case "mediaUrl":
+                    file.mediaUrl = in.text();
+                    break;
+                case "runningTime":
+                    file.runningTime = in.text();
+                    break;
+                case "size":
+                    file.size = in.text();
+                    break;
+                default:
+                    in.parser.skipChildren();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * @return The format code: audio, hd, hi (large) or sds (small)
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    public String getMediaUrl() {
+        return mediaUrl;
+    }
+
+    /**
+     * @return Running time as hh:mm:ss
+     */
+    public String getRunningTime() {
+        return runningTime;
+    }
+
+    /**
+     * @return File size in bytes as sent by the API, may be null
+     */
+    public String getSize() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "MediaFile{" + format + ", " + mediaUrl + "}";
+    }
+}
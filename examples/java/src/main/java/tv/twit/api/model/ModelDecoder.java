@@ -0,0 +1,75 @@
+package tv.twit.api.model;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Model Decoder
+ * Decodes TWiT API responses into typed models with a streaming parser, without building an
+ * org.json tree. Only the fields the models expose are materialized; HTML bodies such as showNotes
+ * and image derivative maps are skipped, and _embedded sections are bound on first access.
+ * List and single-resource responses are both returned as a Page.
+ */
+public final class ModelDecoder {
+    static final JsonFactory FACTORY = new JsonFactory();
+
+    private ModelDecoder() {
+    }
+
+    public static Page<Show> shows(byte[] body) throws IOException {
+        return page(body, "shows", Show::read);
+    }
+
+    public static Page<Episode> episodes(byte[] body) throws IOException {
+        return page(body, "episodes", Episode::read);
+    }
+
+    public static Page<Stream> streams(byte[] body) throws IOException {
+        return page(body, "streams", Stream::read);
+    }
+
+    public static Page<Person> people(byte[] body) throws IOException {
+        return page(body, "people", Person::read);
+    }
+
+    public static Page<Credit> credits(byte[] body) throws IOException {
+        return page(body, "credits", Credit::read);
+    }
+
+    /**
+     * Decode a response body
+     *
+     * @param body      The UTF-8 response body
+     * @param itemsName The field holding the items: an array for lists, an object for single resources
+     * @param reader    Reads one item
+     * @return The decoded page
+     */
+    static <T> Page<T> page(byte[] body, String itemsName, ModelReader<T> reader) throws IOException {
+        try (JsonInput in = new JsonInput(body, 0, body.length)) {
+            if (in.parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(in.parser, "Expected a JSON object");
+            }
+            int count = 0;
+            List<T> items = Collections.emptyList();
+            String next = null;
+            String name;
+            while ((name = in.nextField()) != null) {
+                if (itemsName.equals(name)) {
+                    items = in.list(reader);
+                } else if ("count".equals(name)) {
+                    count = in.intValue();
+                } else if ("_links".equals(name)) {
+                    next = in.nextHref();
+                } else {
+                    in.parser.skipChildren();
+                }
+            }
+            return new Page<>(count, Collections.unmodifiableList(items), next);
+        }
+    }
+}
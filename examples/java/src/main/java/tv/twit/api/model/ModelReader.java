@@ -0,0 +1,14 @@
+package tv.twit.api.model;
+
+import java.io.IOException;
+
+/**
+ * Reads one model object, starting with the parser on its START_OBJECT token and
+ * leaving it on the matching END_OBJECT
+ *
+ * @param <T> The model type
+ */
+@FunctionalInterface
+interface ModelReader<T> {
+    T read(JsonInput in) throws IOException;
+}
@@ -0,0 +1,49 @@
+package tv.twit.api.model;
+
+import java.util.List;
+
+/**
+ * One page of a list response: the decoded items, the total count and the link to the next page
+ *
+ * @param <T> The model type
+ */
+public final class Page<T> {
+    private final int count;
+    private final List<T> items;
+    private final String nextHref;
+
+    Page(int count, List<T> items, String nextHref) {
+        this.count = count;
+        this.items = items;
+        this.nextHref = nextHref;
+    }
+
+    /**
+     * @return Total number of items across all pages, as reported by the API
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return The first item, or null if the page is empty (single-resource responses have one item)
+     */
+    public T first() {
+        return items.isEmpty() ? null : items.get(0);
+    }
+
+    /**
+     * @return The href of _links.next, or null on the last page
+     */
+    public String getNextHref() {
+        return nextHref;
+    }
+
+    public boolean hasNext() {
+        return nextHref != null;
+    }
+}
@@ -0,0 +1,97 @@
+package tv.twit.api.model;
+
+import java.io.IOException;
+
+/**
+ * A person from /people.
+ * The HTML bio and bio summary are skipped while decoding.
+ */
+public final class Person {
+    private String id;
+    private String label;
+    private String positionTitle;
+    private String cleanPath;
+    private boolean staff;
+    private boolean published;
+    private String changed;
+    private Image picture;
+
+    private Person() {
+    }
+
+    static Person read(JsonInput in) throws IOException {
+        Person person = new Person();
+        String name;
+        while ((name = in.nextField()) != null) {
+            switch (name) {
+                case "id":
+                    person.id = in.text();
+                    break;
+                case "label":
+                    person.label = in.text();
+                    break;
+                case "positionTitle":
+                    person.positionTitle = in.text();
+                    break;
+                case "cleanPath":
+                    person.cleanPath = in.text();
+                    break;
+                case "staff":
+                    person.staff = in.bool();
+                    break;
+                case "published":
+                    person.published = in.bool();
+                    break;
+                case "changed":
+                    person.changed = in.text();
+                    break;
+                case "picture":
+                    person.picture = in.object(Image::read);
+                    break;
+                default:
+                    in.parser.skipChildren();
+            }
+        }
+        return person;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return The person's name
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    public String getPositionTitle() {
+        return positionTitle;
+    }
+
+    public String getCleanPath() {
+        return cleanPath;
+    }
+
+    public boolean isStaff() {
+        return staff;
+    }
+
+    public boolean isPublished() {
+        return published;
+    }
+
+    public String getChanged() {
+        return changed;
+    }
+
+    public Image getPicture() {
+        return picture;
+    }
+
+    @Override
+    public String toString() {
+        return "Person{" + id + ", " + label + "}";
+    }
+}
@@ -0,0 +1,135 @@
+package tv.twit.api.model;
+
+import java.io.IOException;
+
+/**
+ * A show from /shows.
+ * The HTML description and the subscription option lists are skipped while decoding.
+ */
+public final class Show {
+    private String id;
+    private String label;
+    private String shortCode;
+    private String tagLine;
+    private String descriptionSummary;
+    private String showDate;
+    private String cleanPath;
+    private boolean active;
+    private String created;
+    private Image heroImage;
+    private Image coverArt;
+    private Embedded embedded = Embedded.EMPTY;
+
+    private Show() {
+    }
+
+    static Show read(JsonInput in) throws IOException {
+        Show show = new Show();
+        String name;
+        while ((name = in.nextField()) != null) {
+            switch (name) {
+                case "id":
+                    show.id = in.text();
+                    break;
+                case "label":
+                    show.label = in.text();
+                    break;
+                case "shortCode":
+                    show.shortCode = in.text();
+                    break;
+                case "tagLine":
+                    show.tagLine = in.text();
+                    break;
+                case "descriptionSummary":
+                    show.descriptionSummary = in.text();
+                    break;
+                case "showDate":
+                    show.showDate = in.text();
+                    break;
+                case "cleanPath":
+                    show.cleanPath = in.text();
+                    break;
+                case "active":
+                    show.active = in.bool();
+                    break;
+                case "created":
+                    show.created = in.text();
+                    break;
+                case "heroImage":
+                    show.heroImage = in.object(Image::read);
+                    break;
+                case "coverArt":
+                    show.coverArt = in.object(Image::read);
+                    break;
+                case "_embedded":
+                    show.embedded = in.embedded();
+                    break;
+                default:
+                    in.parser.skipChildren();
+            }
+        }
+        return show;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return The short code used in feed and file names, e.g. "ttg"
+     */
+    public String getShortCode() {
+        return shortCode;
+    }
+
+    public String getTagLine() {
+        return tagLine;
+    }
+
+    public String getDescriptionSummary() {
+        return descriptionSummary;
+    }
+
+    /**
+     * @return When the show records, e.g. "Records live weekends at 2:00pm Eastern"
+     */
+    public String getShowDate() {
+        return showDate;
+    }
+
+    public String getCleanPath() {
+        return cleanPath;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public String getCreated() {
+        return created;
+    }
+
+    public Image getHeroImage() {
+        return heroImage;
+    }
+
+    public Image getCoverArt() {
+        return coverArt;
+    }
+
+    /**
+     * @return The embedded credits, topics and categories, bound on first access
+     */
+    public Embedded getEmbedded() {
+        return embedded;
+    }
+
+    @Override
+    public String toString() {
+        return "Show{" + id + ", " + label + "}";
+    }
+}
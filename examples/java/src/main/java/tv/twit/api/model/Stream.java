@@ -0,0 +1,109 @@
+package tv.twit.api.model;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A live stream from /streams
+ */
+public final class Stream {
+    private String id;
+    private String label;
+    private String streamType;
+    private String streamSource;
+    private boolean preferred;
+    private List<String> capabilities = Collections.emptyList();
+    private List<String> bitRates = Collections.emptyList();
+    private List<String> resolutions = Collections.emptyList();
+    private Term provider;
+
+    private Stream() {
+    }
+
+    static Stream read(JsonInput in) throws IOException {
+        Stream stream = new Stream();
+        String name;
+        while ((name = in.nextField()) != null) {
+            switch (name) {
+                case "id":
+                    stream.id = in.text();
+                    break;
+                case "label":
+                    stream.label = in.text();
+                    break;
+                case "streamType":
+                    stream.streamType = in.text();
+                    break;
+                case "streamSource":
+                    stream.streamSource = in.text();
+                    break;
+                case "streamPreferred":
+                    stream.preferred = in.bool();
+                    break;
+                case "streamCapabilities":
+                    stream.capabilities = in.strings();
+                    break;
+                case "streamBitRates":
+                    stream.bitRates = in.strings();
+                    break;
+                case "streamResolutions":
+                    stream.resolutions = in.strings();
+                    break;
+                case "streamProviders":
+                    stream.provider = in.object(Term::read);
+                    break;
+                default:
+                    in.parser.skipChildren();
+            }
+        }
+        return stream;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return "video" or "audio"
+     */
+    public String getStreamType() {
+        return streamType;
+    }
+
+    public String getStreamSource() {
+        return streamSource;
+    }
+
+    public boolean isPreferred() {
+        return preferred;
+    }
+
+    /**
+     * @return Playback capabilities such as "hls" or "flash"
+     */
+    public List<String> getCapabilities() {
+        return capabilities;
+    }
+
+    public List<String> getBitRates() {
+        return bitRates;
+    }
+
+    public List<String> getResolutions() {
+        return resolutions;
+    }
+
+    public Term getProvider() {
+        return provider;
+    }
+
+    @Override
+    public String toString() {
+        return "Stream{" + id + ", " + label + "}";
+    }
+}
@@ -0,0 +1,56 @@
+package tv.twit.api.model;
+
+import java.io.IOException;
+
+/**
+ * A taxonomy term: a category, topic, role or streaming provider
+ */
+public final class Term {
+    private String id;
+    private String label;
+    private String vocabularyName;
+
+    private Term() {
+    }
+
+    static Term read(JsonInput in) throws IOException {
+        Term term = new Term();
+        String name;
+        while ((name = in.nextField()) != null) {
+            switch (name) {
+                case "id":
+                    term.id = in.text();
+                    break;
+                case "label":
+                    term.label = in.text();
+                    break;
+                case "vocabularyName":
+                    term.vocabularyName = in.text();
+                    break;
+                default:
+                    in.parser.skipChildren();
+            }
+        }
+        return term;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return The vocabulary the term belongs to, e.g. "Topics"
+     */
+    public String getVocabularyName() {
+        return vocabularyName;
+    }
+
+    @Override
+    public String toString() {
+        return "Term{" + id + ", " + label + "}";
+    }
+}
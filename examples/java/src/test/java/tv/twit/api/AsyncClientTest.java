@@ -0,0 +1,134 @@
+package tv.twit.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tv.twit.api.bench.StubServer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Async Client Test
+ * TwitApiAsyncClient against a stub server that holds every request until the test releases it: no more
+ * than maxInFlight requests reach the server at once, cancelling a queued or running future frees its slot
+ * for the next request, and close() cancels queued and in-flight requests.
+ */
+class AsyncClientTest {
+
+    private static final String SHOWS = "{\"count\":1,\"shows\":[{\"id\":\"1635\",\"label\":\"This Week in Tech\"}]}";
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger started = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private StubServer server;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new StubServer(this::held, 32);
+    }
+
+    @AfterEach
+    void stop() {
+        release.countDown();
+        server.close();
+    }
+
+    @Test
+    void inFlightRequestsAreCapped() {
+        try (TwitApiAsyncClient client = client(4)) {
+            List<CompletableFuture<JSONObject>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                futures.add(client.getShows());
+            }
+            assertTrue(TestSupport.await(2000, () -> started.get() == 4), "the first 4 requests are sent");
+            TestSupport.sleep(100);
+            assertEquals(4, started.get(), "the rest wait for a slot");
+            assertEquals(4, client.getInFlightCount());
+            assertEquals(16, client.getQueuedCount());
+
+            release.countDown();
+            for (CompletableFuture<JSONObject> future : futures) {
+                assertFalse(future.join().has("error"), "every request completes: " + future.join());
+            }
+            assertEquals(20, started.get());
+            assertEquals(4, maxActive.get(), "the server never sees more than 4 requests at once");
+            assertEquals(0, client.getInFlightCount());
+        }
+    }
+
+    @Test
+    void cancelledFuturesReleaseTheirSlot() {
+        try (TwitApiAsyncClient client = client(2)) {
+            CompletableFuture<JSONObject> running = client.getShows();
+            CompletableFuture<JSONObject> other = client.getShows();
+            CompletableFuture<JSONObject> queued = client.getShows();
+            assertTrue(TestSupport.await(2000, () -> started.get() == 2), "two requests are sent");
+
+            queued.cancel(true);
+            CompletableFuture<JSONObject> next = client.getShows();
+            TestSupport.sleep(100);
+            assertEquals(2, started.get(), "a cancelled queued request does not take a slot of its own");
+
+            running.cancel(true);
+            assertTrue(TestSupport.await(2000, () -> started.get() == 3),
+                    "cancelling a running request frees its slot for the next one");
+            assertEquals(2, client.getInFlightCount());
+
+            release.countDown();
+            assertFalse(other.join().has("error"));
+            assertFalse(next.join().has("error"));
+            assertTrue(running.isCancelled() && queued.isCancelled());
+            assertEquals(3, started.get(), "the cancelled queued request is never sent");
+            assertTrue(TestSupport.await(2000, () -> client.getInFlightCount() == 0), "every slot is released");
+        }
+    }
+
+    @Test
+    void closeCancelsQueuedAndInFlightRequests() {
+        List<CompletableFuture<JSONObject>> futures = new ArrayList<>();
+        TwitApiAsyncClient client = client(2);
+        for (int i = 0; i < 5; i++) {
+            futures.add(client.getShows());
+        }
+        assertTrue(TestSupport.await(2000, () -> started.get() == 2));
+
+        client.close();
+        for (CompletableFuture<JSONObject> future : futures) {
+            assertTrue(future.isCancelled(), "every pending future is cancelled");
+        }
+        JSONObject afterClose = client.getShows().join();
+        assertEquals("Client is closed", afterClose.optString("error"));
+        assertEquals(2, started.get());
+    }
+
+    private TwitApiAsyncClient client(int maxInFlight) {
+        return TwitApiAsyncClient.builder().appId("check").appKey("check").baseUrl(server.getBaseUrl())
+                .maxInFlight(maxInFlight).build();
+    }
+
+    private void held(HttpExchange exchange) throws IOException {
+        started.incrementAndGet();
+        maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        try {
+            release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            active.decrementAndGet();
+        }
+        TestSupport.send(exchange, 200, SHOWS);
+    }
+}
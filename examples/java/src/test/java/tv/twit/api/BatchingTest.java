@@ -0,0 +1,165 @@
+package tv.twit.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tv.twit.api.bench.StubServer;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Batching Test
+ * Concurrent item lookups are coalesced into filter[id] list requests, duplicates share one lookup,
+ * ids missing from a batch are not found without further requests, a list endpoint rejecting the id
+ * filter stops being batched, and a failed batch returns its error to every caller instead of being
+ * split into item requests. The stub's /people answers 400 to id filters, /credits answers with the
+ * usage-limit error, and episode "999" does not exist.
+ */
+class BatchingTest {
+
+    private final AtomicInteger listRequests = new AtomicInteger();
+    private final AtomicInteger itemRequests = new AtomicInteger();
+    private StubServer server;
+    private TwitApiClient client;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new StubServer(this::handle, 8);
+        client = TestSupport.client(server)
+                .bulk(BulkExecutor.Mode.PLATFORM, 64)
+                .batching(BatchConfig.builder().windowMillis(5).maxBatchSize(25).build())
+                .build();
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    void concurrentLookupsAreBatched() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            ids.add(String.valueOf(100 + i % 25));
+        }
+        List<JSONObject> episodes = client.fetchEpisodes(ids);
+        for (int i = 0; i < ids.size(); i++) {
+            JSONObject episode = episodes.get(i).optJSONObject("episodes");
+            assertTrue(episode != null && ids.get(i).equals(episode.optString("id")),
+                    "caller " + i + " gets its own episode: " + episodes.get(i));
+        }
+        BatchStats stats = client.getBatchStats();
+        assertTrue(stats.getDeduplicated() > 0, "duplicates share a lookup: " + stats);
+        assertTrue(listRequests.get() <= 5 && server.getRequestCount() <= 8,
+                "lookups are sent as a few list requests: " + stats + ", " + server.getRequestCount() + " requests");
+    }
+
+    @Test
+    void missingIdIsNotFound() {
+        List<JSONObject> mixed = client.fetchEpisodes(Arrays.asList("201", "999", "202"));
+        assertTrue(mixed.get(0).has("episodes") && mixed.get(2).has("episodes"), "found ids come from the batch");
+        assertEquals(404, mixed.get(1).optInt("code"), "missing id is not found");
+        assertEquals(0, itemRequests.get(), "missing ids are not fetched again");
+    }
+
+    @Test
+    void failedBatchIsNotSplitIntoItemRequests() {
+        List<JSONObject> credits = client.fetchAll(Arrays.asList("1", "2", "3", "4"), client::getCredit);
+        for (JSONObject credit : credits) {
+            assertEquals(500, credit.optInt("code"), "every caller gets the batch error: " + credit);
+            assertTrue(ApiResponses.isUsageLimit(credit));
+        }
+        assertEquals(0, itemRequests.get(), "no item request per id");
+        assertEquals(0, client.getBatchStats().getFallbacks());
+
+        int before = listRequests.get();
+        client.fetchAll(Arrays.asList("5", "6"), client::getCredit);
+        assertTrue(listRequests.get() > before, "a server-side failure does not disable batching");
+        assertEquals(0, itemRequests.get());
+    }
+
+    @Test
+    void rejectedFilterDisablesBatching() {
+        List<JSONObject> people = client.fetchAll(Arrays.asList("1", "2", "3", "4"), client::getPerson);
+        assertTrue(people.stream().allMatch(p -> p.has("people")), "people are still returned: " + people);
+        client.fetchAll(Arrays.asList("5", "6", "7"), client::getPerson);
+        assertTrue(listRequests.get() <= 1, "batching is disabled after the rejection: " + listRequests.get());
+    }
+
+    @Test
+    void batchedItemsAreCachedUnderTheirOwnKey() throws IOException {
+        try (TwitApiClient cached = TestSupport.client(server)
+                .cache(new LruResponseCache())
+                .bulk(BulkExecutor.Mode.PLATFORM, 8)
+                .batching(BatchConfig.builder().windowMillis(20).maxBatchSize(25).build())
+                .build()) {
+            cached.fetchEpisodes(Arrays.asList("1", "2"));
+            long afterBatch = server.getRequestCount();
+            cached.fetchEpisodes(Arrays.asList("2", "1"));
+            JSONObject first = cached.getEpisode("1");
+            JSONObject second = cached.getEpisode("2");
+            assertEquals("1", first.getJSONObject("episodes").getString("id"));
+            assertEquals("2", second.getJSONObject("episodes").getString("id"));
+            assertEquals(afterBatch, server.getRequestCount(), "later lookups are served from the cache");
+            assertEquals(4, cached.getCacheStats().getHits());
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String query = exchange.getRequestURI().getRawQuery();
+        String[] segments = path.substring(path.indexOf("/api/v1.0/") + "/api/v1.0/".length()).split("/");
+        String resource = segments[0];
+
+        if (segments.length > 1) {
+            itemRequests.incrementAndGet();
+            if ("999".equals(segments[1])) {
+                TestSupport.send(exchange, 404, "Not found");
+                return;
+            }
+            TestSupport.send(exchange, 200, new JSONObject().put(resource, item(segments[1])).toString());
+            return;
+        }
+
+        listRequests.incrementAndGet();
+        if ("people".equals(resource)) {
+            TestSupport.send(exchange, 400, "{\"title\":\"The filter id is not allowed\"}");
+            return;
+        }
+        if ("credits".equals(resource)) {
+            TestSupport.send(exchange, 500, "{\"title\":\"Authorization failed: usage limits are exceeded\"}");
+            return;
+        }
+        JSONArray items = new JSONArray();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                String[] parts = pair.split("=", 2);
+                if (decode(parts[0]).startsWith("filter[id][value]") && !"999".equals(decode(parts[1]))) {
+                    items.put(item(decode(parts[1])));
+                }
+            }
+        }
+        TestSupport.send(exchange, 200, new JSONObject().put("count", items.length()).put(resource, items).toString());
+    }
+
+    private static JSONObject item(String id) {
+        return new JSONObject().put("id", id).put("label", "Item " + id);
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+}
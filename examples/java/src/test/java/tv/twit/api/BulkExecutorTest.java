@@ -0,0 +1,133 @@
+package tv.twit.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Bulk Executor Test
+ * fetchAll in both modes: results come back in input order when later ids finish first, no more than
+ * maxConcurrency calls run at once, even across concurrent batches, a failed call fails its batch, and a
+ * batch started from inside one of the calls runs on the calling thread instead of waiting for a slot
+ * its own batch holds.
+ */
+class BulkExecutorTest {
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+
+    @Test
+    void resultsFollowInputOrder() {
+        for (BulkExecutor executor : executors(8)) {
+            try (BulkExecutor bulk = executor) {
+                List<String> ids = ids(40);
+                // Later ids sleep less, so they finish first
+                List<String> results = bulk.fetchAll(ids, id -> {
+                    TestSupport.sleep(40 - Integer.parseInt(id));
+                    return "item " + id;
+                });
+                for (int i = 0; i < ids.size(); i++) {
+                    assertEquals("item " + ids.get(i), results.get(i), bulk.getMode() + " result " + i);
+                }
+            }
+        }
+    }
+
+    @Test
+    void concurrencyIsCapped() {
+        for (BulkExecutor executor : executors(4)) {
+            try (BulkExecutor bulk = executor) {
+                maxActive.set(0);
+                List<String> results = bulk.fetchAll(ids(32), this::tracked);
+                assertEquals(32, results.size());
+                assertEquals(4, maxActive.get(), bulk.getMode() + " runs 4 calls at once: " + maxActive.get());
+            }
+        }
+    }
+
+    @Test
+    void capHoldsAcrossConcurrentBatches() {
+        for (BulkExecutor executor : executors(4)) {
+            try (BulkExecutor bulk = executor) {
+                maxActive.set(0);
+                List<CompletableFuture<List<String>>> batches = new ArrayList<>();
+                for (int i = 0; i < 3; i++) {
+                    batches.add(CompletableFuture.supplyAsync(() -> bulk.fetchAll(ids(16), this::tracked)));
+                }
+                for (CompletableFuture<List<String>> batch : batches) {
+                    assertEquals(16, batch.join().size());
+                }
+                assertTrue(maxActive.get() <= 4, bulk.getMode() + " max calls at once: " + maxActive.get());
+            }
+        }
+    }
+
+    @Test
+    void failedCallFailsTheBatch() {
+        for (BulkExecutor executor : executors(4)) {
+            try (BulkExecutor bulk = executor) {
+                IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                        () -> bulk.fetchAll(ids(8), id -> {
+                            if ("5".equals(id)) {
+                                throw new IllegalArgumentException("bad id " + id);
+                            }
+                            return id;
+                        }));
+                assertEquals("bad id 5", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    void nestedBatchRunsOnTheCallingThread() {
+        for (BulkExecutor executor : executors(2)) {
+            try (BulkExecutor bulk = executor) {
+                List<List<String>> results = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                        () -> bulk.fetchAll(ids(4), outer -> bulk.fetchAll(Arrays.asList("a", "b", "c"),
+                                inner -> outer + inner)));
+                assertEquals(4, results.size());
+                assertEquals(Arrays.asList("3a", "3b", "3c"), results.get(3), bulk.getMode() + " nested results");
+            }
+        }
+    }
+
+    private String tracked(String id) {
+        maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        try {
+            TestSupport.sleep(20);
+            return id;
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    /**
+     * A platform executor, plus a virtual one on JDK 21 and later
+     */
+    private static List<BulkExecutor> executors(int maxConcurrency) {
+        List<BulkExecutor> executors = new ArrayList<>();
+        executors.add(BulkExecutor.platformThreads(maxConcurrency));
+        if (BulkExecutor.isVirtualThreadsSupported()) {
+            executors.add(BulkExecutor.virtualThreads(maxConcurrency));
+        }
+        return executors;
+    }
+
+    private static List<String> ids(int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(String.valueOf(i));
+        }
+        return ids;
+    }
+}
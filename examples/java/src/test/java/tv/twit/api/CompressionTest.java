@@ -0,0 +1,84 @@
+package tv.twit.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tv.twit.api.bench.ApibSamples;
+import tv.twit.api.bench.StubServer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compression Test
+ * Response compression against a stub server that gzips a large /episodes page when the request accepts it:
+ * the client sends Accept-Encoding: gzip, the gzip body decodes through the streaming path to the same JSON
+ * as the uncompressed one and is counted as decompressed bytes, and compression(false) asks for identity.
+ */
+class CompressionTest {
+
+    private final Queue<String> acceptEncodings = new ConcurrentLinkedQueue<>();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private String page;
+    private byte[] plain;
+    private byte[] gzipped;
+    private StubServer server;
+
+    @BeforeEach
+    void start() throws IOException {
+        page = ApibSamples.enlargePage(ApibSamples.load().get("/episodes"), "episodes", 50);
+        plain = page.getBytes(StandardCharsets.UTF_8);
+        gzipped = StubServer.gzip(plain);
+        server = new StubServer(this::handle, 4);
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    @Test
+    void gzipBodyIsRequestedAndDecoded() throws IOException {
+        RequestListener listener = new RequestListener() {
+            @Override
+            public void onRequest(RequestEvent event) {
+                bytesIn.set(event.getBytesIn());
+            }
+        };
+        try (TwitApiClient client = TestSupport.client(server).listener(listener).build()) {
+            JSONObject episodes = client.getEpisodes();
+
+            assertTrue(acceptEncodings.poll().contains("gzip"), "the request accepts gzip");
+            assertTrue(gzipped.length * 4 < plain.length, "the stub sends a compressed body: " + gzipped.length);
+            assertTrue(new JSONObject(page).similar(episodes), "the gzip body decodes to the page");
+            assertEquals(plain.length, bytesIn.get(), "the decompressed body is counted");
+        }
+    }
+
+    @Test
+    void compressionCanBeTurnedOff() throws IOException {
+        try (TwitApiClient client = TestSupport.client(server)
+                .transport(TransportConfig.builder().compression(false).build()).build()) {
+            JSONObject episodes = client.getEpisodes();
+
+            String acceptEncoding = acceptEncodings.poll();
+            assertFalse(acceptEncoding.contains("gzip"), "no gzip is requested: " + acceptEncoding);
+            assertTrue(new JSONObject(page).similar(episodes));
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        acceptEncodings.add(acceptEncoding != null ? acceptEncoding : "");
+        StubServer.sendCompressible(exchange, 200, plain, gzipped);
+    }
+}
@@ -0,0 +1,107 @@
+package tv.twit.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tv.twit.api.bench.StubServer;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Conditional Request Test
+ * ETag/Last-Modified revalidation against a stub server that answers 304 Not Modified when the
+ * client's validators still match.
+ */
+class ConditionalRequestTest {
+
+    private static final String LAST_MODIFIED = "Sun, 31 May 2015 23:45:00 GMT";
+
+    private volatile int version = 1;
+    private final AtomicInteger fullResponses = new AtomicInteger();
+    private final AtomicInteger notModifiedResponses = new AtomicInteger();
+    private StubServer server;
+    private TwitApiClient client;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new StubServer(this::handle, 4);
+        client = TestSupport.client(server)
+                .cache(new LruResponseCache())
+                .cachePolicy(CachePolicy.builder().defaultTtl(50).build())
+                .build();
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    void etagRevalidation() {
+        JSONObject first = client.getEpisodes();
+        assertEquals(1, fullResponses.get(), "first request downloads the body");
+        assertEquals(1, first.getInt("version"));
+
+        client.getEpisodes();
+        assertEquals(1, server.getRequestCount(), "fresh entry is served without a request");
+
+        TestSupport.sleep(80);
+        JSONObject revalidated = client.getEpisodes();
+        assertEquals(1, notModifiedResponses.get(), "stale entry is revalidated with If-None-Match");
+        assertSame(first, revalidated, "304 serves the cached body");
+        assertEquals(1, client.getCacheStats().getRevalidated());
+
+        version = 2;
+        TestSupport.sleep(80);
+        JSONObject changed = client.getEpisodes();
+        assertEquals(2, fullResponses.get(), "changed resource is downloaded again");
+        assertEquals(2, changed.getInt("version"));
+    }
+
+    @Test
+    void lastModifiedRevalidation() {
+        client.getPeople();
+        TestSupport.sleep(80);
+        client.getPeople();
+        assertEquals(1, fullResponses.get());
+        assertEquals(1, notModifiedResponses.get(), "stale entry is revalidated with If-Modified-Since");
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if (path.endsWith("/people")) {
+            if (LAST_MODIFIED.equals(exchange.getRequestHeaders().getFirst("If-Modified-Since"))) {
+                notModified(exchange);
+                return;
+            }
+            exchange.getResponseHeaders().set("Last-Modified", LAST_MODIFIED);
+            full(exchange, "{\"count\":0,\"people\":[]}");
+            return;
+        }
+
+        String etag = "\"episodes-v" + version + "\"";
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            notModified(exchange);
+            return;
+        }
+        exchange.getResponseHeaders().set("ETag", etag);
+        full(exchange, "{\"count\":0,\"version\":" + version + ",\"episodes\":[]}");
+    }
+
+    private void full(HttpExchange exchange, String body) throws IOException {
+        fullResponses.incrementAndGet();
+        TestSupport.send(exchange, 200, body);
+    }
+
+    private void notModified(HttpExchange exchange) throws IOException {
+        notModifiedResponses.incrementAndGet();
+        StubServer.sendNotModified(exchange);
+    }
+}
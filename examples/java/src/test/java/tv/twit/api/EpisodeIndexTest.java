@@ -0,0 +1,216 @@
+package tv.twit.api;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Episode Index Test
+ * Feeds synthetic episodes into an {@link EpisodeIndex} and compares its answers for /episodes filter
+ * combinations with a brute-force scan of the same episodes, before and after updates and removals.
+ */
+class EpisodeIndexTest {
+
+    private static final int SIZE = 20000;
+    private static final long BASE_DATE = 1104537600L;
+
+    @TempDir
+    Path dir;
+
+    private final Random random = new Random(42);
+    private final Map<Integer, JSONObject> episodes = new LinkedHashMap<>();
+    private int[] dates;
+    private TwitApiClient client;
+    private CatalogMirror mirror;
+    private EpisodeIndex index;
+
+    @BeforeEach
+    void index() throws IOException {
+        client = TestSupport.client("http://127.0.0.1:1/api/v1.0").build();
+        mirror = CatalogMirror.builder(dir, client).resources("episodes").open();
+        index = EpisodeIndex.attach(mirror);
+        dates = shuffledDates(SIZE, random);
+        for (int i = 0; i < SIZE; i++) {
+            upsert(i);
+        }
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        index.detach();
+        mirror.close();
+        client.close();
+    }
+
+    @Test
+    void filtersMatchScan() {
+        compareAll();
+    }
+
+    @Test
+    void filtersMatchScanAfterUpdatesAndRemovals() {
+        for (int i = 0; i < SIZE; i += 3) {
+            upsert(i);
+        }
+        for (int i = 1; i < SIZE; i += 7) {
+            episodes.remove(100000 + i);
+            index.onRemove("episodes", String.valueOf(100000 + i));
+        }
+        assertEquals(episodes.size(), index.size(), "size follows removals");
+        compareAll();
+    }
+
+    @Test
+    void unsupportedFiltersAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> index.search(params("filter[label]", "Security Now")));
+    }
+
+    private void upsert(int i) {
+        JSONObject episode = episode(100000 + i, dates[i], random);
+        episodes.put(100000 + i, episode);
+        index.onUpsert("episodes", String.valueOf(100000 + i), episode);
+    }
+
+    private void compareAll() {
+        compare("show", params("filter[shows]", "7"), e -> has(e, "shows", 7));
+        compare("shows IN", params("filter[shows][value][0]", "3", "filter[shows][value][1]", "9",
+                "filter[shows][operator]", "IN"), e -> has(e, "shows", 3) || has(e, "shows", 9));
+        compare("topic and category", params("filter[topics]", "12", "filter[category]", "4"),
+                e -> has(e, "topics", 12) && has(e, "categories", 4));
+        compare("airingDate range, page 3", params(
+                "filter[airingDate][value][0]", "1262304000", "filter[airingDate][operator][0]", "\">=\"",
+                "filter[airingDate][value][1]", "1293840000", "filter[airingDate][operator][1]", "\"<=\"",
+                "page", "3", "range", "20"),
+                e -> date(e) >= 1262304000L && date(e) <= 1293840000L);
+        compare("featured, ascending", params("filter[featured]", "1", "sort", "airingDate"),
+                e -> e.getBoolean("featured"));
+        compare("not featured for a show", params("filter[featured]", "false", "filter[shows]", "2"),
+                e -> !e.getBoolean("featured") && has(e, "shows", 2));
+        compare("episode number", params("filter[episodeNumber]", "120"),
+                e -> "120".equals(e.getString("episodeNumber")));
+        compare("person and role", params("credits_people", "40", "credits_role", "76"),
+                e -> hasCredit(e, "people", 40) && hasCredit(e, "roles", 76));
+        compare("credit and date BETWEEN", params("filter[credits]", "5",
+                "filter[airingDate][value][0]", "1200000000", "filter[airingDate][value][1]", "1300000000",
+                "filter[airingDate][operator]", "BETWEEN"),
+                e -> has(e, "credits", 5) && date(e) >= 1200000000L && date(e) <= 1300000000L);
+        compare("show NOT IN", params("filter[shows][value][0]", "1", "filter[shows][value][1]", "2",
+                "filter[shows][operator]", "NOT IN", "range", "10"), e -> !has(e, "shows", 1) && !has(e, "shows", 2));
+    }
+
+    private void compare(String name, Map<String, String> params, Predicate<JSONObject> filter) {
+        List<JSONObject> matches = new ArrayList<>();
+        for (JSONObject episode : episodes.values()) {
+            if (filter.test(episode)) {
+                matches.add(episode);
+            }
+        }
+        boolean ascending = "airingDate".equals(params.get("sort"));
+        matches.sort((a, b) -> ascending ? Long.compare(date(a), date(b)) : Long.compare(date(b), date(a)));
+        int range = Integer.parseInt(params.getOrDefault("range", "50"));
+        int from = (Integer.parseInt(params.getOrDefault("page", "1")) - 1) * range;
+        int[] expected = matches.subList(Math.min(from, matches.size()), Math.min(from + range, matches.size()))
+                .stream().mapToInt(e -> e.getInt("id")).toArray();
+
+        EpisodeIndex.Result result = index.search(params);
+        assertEquals(matches.size(), result.getCount(), name);
+        assertArrayEquals(expected, result.getIds(), name);
+    }
+
+    private static JSONObject episode(int id, long airingDate, Random random) {
+        JSONObject embedded = new JSONObject();
+        embedded.put("shows", new JSONArray().put(term(1 + random.nextInt(40))));
+        embedded.put("topics", terms(random.nextInt(4), 200, random));
+        embedded.put("categories", terms(1 + random.nextInt(2), 20, random));
+        JSONArray credits = new JSONArray();
+        for (int i = 0, n = 1 + random.nextInt(3); i < n; i++) {
+            credits.put(term(1 + random.nextInt(2000))
+                    .put("people", term(1 + random.nextInt(500)))
+                    .put("roles", term(i == 0 ? 76 : 70 + random.nextInt(10))));
+        }
+        embedded.put("credits", credits);
+        return new JSONObject()
+                .put("id", id)
+                .put("label", "Episode " + id)
+                .put("episodeNumber", String.valueOf(1 + random.nextInt(1500)))
+                .put("airingDate", Instant.ofEpochSecond(airingDate).toString())
+                .put("featured", random.nextInt(20) == 0)
+                .put("_embedded", embedded);
+    }
+
+    private static JSONArray terms(int count, int bound, Random random) {
+        JSONArray terms = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            terms.put(term(1 + random.nextInt(bound)));
+        }
+        return terms;
+    }
+
+    private static JSONObject term(int id) {
+        return new JSONObject().put("id", String.valueOf(id)).put("label", "Term " + id);
+    }
+
+    private static int[] shuffledDates(int size, Random random) {
+        int[] dates = new int[size];
+        for (int i = 0; i < size; i++) {
+            dates[i] = (int) (BASE_DATE + i * 7200L);
+        }
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = dates[i];
+            dates[i] = dates[j];
+            dates[j] = swap;
+        }
+        return dates;
+    }
+
+    private static boolean has(JSONObject episode, String name, int id) {
+        JSONArray related = episode.getJSONObject("_embedded").getJSONArray(name);
+        for (int i = 0; i < related.length(); i++) {
+            if (related.getJSONObject(i).getString("id").equals(String.valueOf(id))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasCredit(JSONObject episode, String field, int id) {
+        JSONArray credits = episode.getJSONObject("_embedded").getJSONArray("credits");
+        for (int i = 0; i < credits.length(); i++) {
+            if (credits.getJSONObject(i).getJSONObject(field).getString("id").equals(String.valueOf(id))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long date(JSONObject episode) {
+        return Instant.parse(episode.getString("airingDate")).getEpochSecond();
+    }
+
+    private static Map<String, String> params(String... pairs) {
+        Map<String, String> params = new HashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            params.put(pairs[i], pairs[i + 1]);
+        }
+        return params;
+    }
+}
@@ -0,0 +1,153 @@
+package tv.twit.api;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tv.twit.api.bench.ApibSamples;
+import tv.twit.api.bench.CatalogStub;
+import tv.twit.api.bench.StubServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Export Test
+ * CatalogExport against a {@link CatalogStub}: every item is written once and in order to the gzip JSON
+ * Lines files, the columnar files read back to the same items, an export interrupted by a failing page
+ * resumes from its checkpoint and produces the same files as an uninterrupted one, and a rate-limited
+ * export runs at the rate limit.
+ */
+class ExportTest {
+
+    private static final int EPISODES = 1000;
+
+    @TempDir
+    Path full;
+
+    @TempDir
+    Path resumed;
+
+    private final AtomicInteger pagesBeforeFailure = new AtomicInteger(-1);
+    private StubServer server;
+    private TwitApiClient client;
+
+    @BeforeEach
+    void start() throws IOException {
+        CatalogStub catalog = new CatalogStub(ApibSamples.load(), 0).size("episodes", EPISODES).size("shows", 120);
+        server = new StubServer(exchange -> {
+            if (exchange.getRequestURI().getPath().endsWith("/episodes")
+                    && pagesBeforeFailure.getAndUpdate(n -> n >= 0 ? n - 1 : n) == 0) {
+                TestSupport.send(exchange, 500, "Internal error");
+                return;
+            }
+            catalog.handle(exchange);
+        }, 8);
+        client = TestSupport.client(server).build();
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    void fullExport() throws IOException {
+        ExportReport report = export(full).run();
+
+        List<JSONObject> lines = readJsonLines(full.resolve("episodes.jsonl.gz"));
+        assertEquals(EPISODES, lines.size(), report.toString());
+        for (int i = 0; i < lines.size(); i++) {
+            assertEquals(String.valueOf(100000 + i), lines.get(i).optString("id"), "items are written in order");
+        }
+        assertFalse(Files.exists(full.resolve("export.properties")), "the checkpoint is removed when complete");
+
+        List<JSONObject> rows = new ArrayList<>();
+        ColumnarReader.forEachRow(full.resolve("episodes.col.gz"), rows::add);
+        assertEquals(lines.size(), rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertTrue(rows.get(i).similar(lines.get(i)), "columnar rows read back to the same items: " + rows.get(i));
+        }
+        List<Object> ids = ColumnarReader.readColumn(full.resolve("episodes.col.gz"), "id");
+        assertEquals(EPISODES, ids.size());
+        assertEquals("100042", ids.get(42), "a single column can be read");
+
+        long jsonBytes = 0;
+        for (JSONObject line : lines) {
+            jsonBytes += line.toString().getBytes(StandardCharsets.UTF_8).length + 1;
+        }
+        assertTrue(Files.size(full.resolve("episodes.jsonl.gz")) < jsonBytes / 4, "JSON Lines are compressed");
+        assertTrue(Files.size(full.resolve("episodes.col.gz")) < jsonBytes / 4, "columns are compressed");
+    }
+
+    @Test
+    void interruptedExportResumes() throws IOException {
+        export(full).run();
+
+        pagesBeforeFailure.set(14);
+        TwitApiException failure = assertThrows(TwitApiException.class, () -> export(resumed).run(),
+                "the failing page stops the export");
+        assertEquals(500, failure.getCode());
+        assertTrue(Files.exists(resumed.resolve("export.properties")), "a checkpoint is kept");
+
+        ExportReport report = export(resumed).run();
+        ExportReport.ResourceResult result = report.getResults().get(1);
+        assertTrue(result.getResumedAfterPage() >= 10, "the export resumes after the last checkpoint: " + report);
+        assertEquals(EPISODES - result.getResumedAfterPage() * 50L, result.getFetched());
+        assertEquals(0, report.getResults().get(0).getFetched(), "completed resources are not fetched again");
+        assertEquals(readJsonLines(full.resolve("episodes.jsonl.gz")).toString(),
+                readJsonLines(resumed.resolve("episodes.jsonl.gz")).toString(),
+                "resumed files match an uninterrupted export");
+        assertEquals(ColumnarReader.readColumn(full.resolve("episodes.col.gz"), "label"),
+                ColumnarReader.readColumn(resumed.resolve("episodes.col.gz"), "label"));
+    }
+
+    @Test
+    void rateLimitedExportRunsAtTheLimit() throws IOException {
+        int rate = 50;
+        CatalogStub slow = new CatalogStub(ApibSamples.load(), 5).size("people", 5000);
+        try (StubServer slowServer = new StubServer(slow, 8);
+             TwitApiClient limited = TestSupport.client(slowServer).rateLimiter(RateLimiter.create(rate, 1)).build()) {
+            long start = System.nanoTime();
+            ExportReport report = CatalogExport.builder(full, limited).resources("people").pageSize(50).window(4).run();
+            double achieved = slowServer.getRequestCount() / ((System.nanoTime() - start) / 1e9);
+            assertTrue(achieved >= rate * 0.9, "throughput reaches the rate limit: " + achieved + " requests/s, " + report);
+        }
+    }
+
+    private CatalogExport.Builder export(Path dir) {
+        return CatalogExport.builder(dir, client)
+                .resources("shows", "episodes")
+                .formats(CatalogExport.Format.JSON_LINES, CatalogExport.Format.COLUMNAR)
+                .pageSize(50)
+                .window(4)
+                .checkpointPages(10);
+    }
+
+    private static List<JSONObject> readJsonLines(Path file) throws IOException {
+        List<JSONObject> items = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                items.add(new JSONObject(line));
+            }
+        }
+        return items;
+    }
+}
@@ -0,0 +1,301 @@
+package tv.twit.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tv.twit.api.bench.ApibSamples;
+import tv.twit.api.bench.StubServer;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Graph Fetch Test
+ * TwitApiClient.fetchGraph against a stub server built from the blueprint samples, which honours the
+ * fields parameter, embeds credits (with their people and roles) in shows and links shows and people to
+ * their episodes. A show page fetched as a graph is compared with the same page assembled from separate
+ * show, credit, person and episode calls: same content, fewer requests and fewer bytes. A deeper graph
+ * checks that incomplete embedded items are fetched through their self links, once per distinct item,
+ * and that the remaining links are followed level by level.
+ */
+class GraphFetchTest {
+
+    private static final int[] CREDIT_PEOPLE = {21, 22, 23, 21};
+    private static final Set<String> SHOW_FIELDS = new HashSet<>(Arrays.asList("id", "label", "tagLine", "coverArt"));
+    private static final Set<String> EPISODE_FIELDS = new HashSet<>(Arrays.asList("id", "label", "airingDate"));
+    private static final long LATENCY_MILLIS = 5;
+
+    private static Map<String, JSONObject> samples;
+
+    private final Counter counter = new Counter();
+    private StubServer server;
+    private TwitApiClient client;
+
+    @BeforeAll
+    static void loadSamples() throws IOException {
+        samples = new HashMap<>();
+        for (Map.Entry<String, String> entry : ApibSamples.load().entrySet()) {
+            samples.put(entry.getKey(), new JSONObject(entry.getValue()));
+        }
+    }
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new StubServer(GraphFetchTest::handle, 8);
+        client = TestSupport.client(server).listener(counter).build();
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    void showPageMatchesSeparateCalls() {
+        JSONObject show = client.getShow("1642");
+        List<JSONObject> credits = new ArrayList<>();
+        List<JSONObject> people = new ArrayList<>();
+        JSONArray embedded = show.getJSONObject("shows").getJSONObject("_embedded").getJSONArray("credits");
+        for (int i = 0; i < embedded.length(); i++) {
+            JSONObject credit = client.getCredit(embedded.getJSONObject(i).getString("id")).getJSONObject("credits");
+            credits.add(credit);
+            people.add(client.getPerson(credit.getJSONObject("_embedded").getJSONObject("people").getString("id"))
+                    .getJSONObject("people"));
+        }
+        Map<String, String> latest = new HashMap<>();
+        latest.put("filter[shows]", "1642");
+        latest.put("range", "5");
+        JSONArray episodes = client.getEpisodes(latest).getJSONArray("episodes");
+        long separateBytes = counter.bytes.get();
+
+        counter.reset();
+        JSONObject graph = client.fetchGraph("shows", "1642", showPage(null));
+
+        assertEquals(show.getJSONObject("shows").getString("label"), graph.getString("label"));
+        assertEquals(credits.size(), graph.getJSONArray("credits").length());
+        assertEquals(episodes.length(), graph.getJSONArray("episodes").length());
+        for (int i = 0; i < credits.size(); i++) {
+            JSONObject credit = graph.getJSONArray("credits").getJSONObject(i);
+            assertEquals(credits.get(i).getString("label"), credit.getString("label"));
+            assertEquals(people.get(i).getString("label"), credit.getJSONObject("people").getString("label"));
+            assertEquals(credits.get(i).getJSONObject("_embedded").getJSONObject("roles").getString("label"),
+                    credit.getJSONObject("roles").getString("label"));
+        }
+        for (int i = 0; i < episodes.length(); i++) {
+            assertEquals(episodes.getJSONObject(i).getString("id"),
+                    graph.getJSONArray("episodes").getJSONObject(i).getString("id"));
+        }
+
+        Set<String> showKeys = new HashSet<>(SHOW_FIELDS);
+        showKeys.addAll(Arrays.asList("credits", "episodes"));
+        assertTrue(showKeys.containsAll(graph.keySet()), "only the projected fields are kept: " + graph.keySet());
+        for (Object episode : graph.getJSONArray("episodes")) {
+            assertTrue(EPISODE_FIELDS.containsAll(((JSONObject) episode).keySet()));
+        }
+        assertEquals(2, counter.requests.get(),
+                "embedded credits and people are used without requests, the episodes link is followed");
+        assertTrue(counter.bytes.get() * 4 < separateBytes,
+                "fewer bytes are transferred: " + counter.bytes.get() + " vs " + separateBytes);
+    }
+
+    @Test
+    void deepGraphFetchesEachItemOnce() {
+        GraphShape personEpisodes = GraphShape.builder().fields("id", "label").limit(3).build();
+        JSONObject graph = client.fetchGraph("shows", "1642", showPage(personEpisodes));
+
+        JSONArray credits = graph.getJSONArray("credits");
+        for (int i = 0; i < credits.length(); i++) {
+            JSONObject person = credits.getJSONObject(i).getJSONObject("people");
+            assertEquals(String.valueOf(CREDIT_PEOPLE[i]), person.getString("id"));
+            assertEquals(3, person.getJSONArray("episodes").length(),
+                    "embedded people without an episodes link are fetched and their links followed");
+        }
+        // show; then its episodes and people 21, 22 and 23; then the episodes of each person
+        assertEquals(1 + 1 + 3 + 3, counter.requests.get(), "each distinct person is fetched once");
+    }
+
+    @Test
+    void graphsFetchedInABulkBatchComplete() throws IOException {
+        try (TwitApiClient bulk = TestSupport.client(server).bulk(BulkExecutor.Mode.PLATFORM, 2).build()) {
+            List<JSONObject> graphs = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> bulk.fetchAll(
+                    Arrays.asList("1642", "1643", "1644"), id -> bulk.fetchGraph("shows", id, showPage(null))));
+            for (JSONObject graph : graphs) {
+                assertEquals(CREDIT_PEOPLE.length, graph.getJSONArray("credits").length(),
+                        "a graph fetched from a bulk call does not wait on the slots of its own batch");
+            }
+        }
+    }
+
+    @Test
+    void failedRequestReturnsItsError() {
+        JSONObject missing = client.fetchGraph("shows", "404", showPage(null));
+        assertTrue(missing.has("error"));
+        assertEquals(404, missing.optInt("code"));
+    }
+
+    private static GraphShape showPage(GraphShape personEpisodes) {
+        GraphShape.Builder person = GraphShape.builder().fields("id", "label", "picture");
+        if (personEpisodes != null) {
+            person.relation("episodes", personEpisodes);
+        }
+        return GraphShape.builder()
+                .fields(SHOW_FIELDS.toArray(new String[0]))
+                .relation("credits", GraphShape.builder().fields("id", "label")
+                        .relation("people", person.build())
+                        .relation("roles", GraphShape.builder().fields("label").build())
+                        .build())
+                .relation("episodes", GraphShape.builder().fields(EPISODE_FIELDS.toArray(new String[0]))
+                        .param("sort", "-airingDate").limit(5).build())
+                .build();
+    }
+
+    /**
+     * Serve /shows/{id}, /credits/{id}, /people/{id} and /episodes from the samples, applying fields
+     */
+    private static void handle(HttpExchange exchange) throws IOException {
+        TestSupport.sleep(LATENCY_MILLIS);
+        String[] path = exchange.getRequestURI().getPath().replaceFirst("^/api/v1\\.0/", "").split("/");
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String resource = path[0];
+        Object body;
+        if (path.length == 2 && !"404".equals(path[1])) {
+            body = item(resource, path[1]);
+        } else if (path.length == 1 && "episodes".equals(resource)) {
+            JSONArray items = new JSONArray();
+            int range = Integer.parseInt(query.getOrDefault("range", "25"));
+            JSONObject sample = samples.get("/episodes").getJSONArray("episodes").getJSONObject(0);
+            for (int i = 0; i < range; i++) {
+                items.put(new JSONObject(sample.toMap()).put("id", String.valueOf(200000 + i)));
+            }
+            body = items;
+        } else {
+            TestSupport.send(exchange, 404, "{\"error\":\"not found\"}");
+            return;
+        }
+
+        String fields = query.get("fields");
+        if (fields != null) {
+            Set<String> names = new HashSet<>(Arrays.asList(fields.split(",")));
+            if (body instanceof JSONArray) {
+                JSONArray projected = new JSONArray();
+                for (Object item : (JSONArray) body) {
+                    projected.put(project((JSONObject) item, names));
+                }
+                body = projected;
+            } else {
+                body = project((JSONObject) body, names);
+            }
+        }
+        JSONObject response = new JSONObject().put(resource, body)
+                .put("_links", new JSONObject().put("self", new JSONObject().put("href",
+                        "https://twit.tv/api/v1.0/" + String.join("/", path))));
+        if (body instanceof JSONArray) {
+            response.put("count", ((JSONArray) body).length());
+        }
+        TestSupport.send(exchange, 200, response.toString());
+    }
+
+    private static JSONObject item(String resource, String id) {
+        JSONObject item = new JSONObject(samples.get("/" + resource + "/{id}").getJSONObject(resource).toMap());
+        item.put("id", id).put("self", "https://twit.tv/api/v1.0/" + resource + "/" + id);
+        if ("shows".equals(resource)) {
+            JSONObject sample = item.getJSONObject("_embedded").getJSONArray("credits").getJSONObject(0);
+            JSONArray credits = new JSONArray();
+            for (int i = 0; i < CREDIT_PEOPLE.length; i++) {
+                String person = String.valueOf(CREDIT_PEOPLE[i]);
+                JSONObject credit = new JSONObject(sample.toMap());
+                credit.put("id", String.valueOf(187 + i)).put("label", "Person " + person + " : Host")
+                        .put("self", "https://twit.tv/api/v1.0/credits/" + (187 + i));
+                credit.getJSONObject("people").put("id", person).put("label", "Person " + person)
+                        .put("self", "https://twit.tv/api/v1.0/people/" + person);
+                credits.put(credit);
+            }
+            item.getJSONObject("_embedded").put("credits", credits);
+            item.put("_links", new JSONObject().put("episodes", new JSONObject()
+                    .put("href", "https://twit.tv/api/v1.0/episodes?filter%5Bshows%5D=" + id)));
+        } else if ("credits".equals(resource)) {
+            int index = Integer.parseInt(id) - 187;
+            String person = String.valueOf(CREDIT_PEOPLE[index]);
+            item.put("label", "Person " + person + " : Host");
+            item.getJSONObject("_embedded").getJSONObject("people").put("id", person).put("label", "Person " + person);
+        } else if ("people".equals(resource)) {
+            item.put("label", "Person " + id);
+            item.put("_links", new JSONObject().put("episodes", new JSONObject()
+                    .put("href", "https://twit.tv/api/v1.0/episodes?credits_people=" + id)));
+        }
+        return item;
+    }
+
+    /**
+     * Keep the named fields, the named embedded relations and the links
+     */
+    private static JSONObject project(JSONObject item, Set<String> names) {
+        JSONObject projected = new JSONObject();
+        for (String name : item.keySet()) {
+            if (names.contains(name) || "_links".equals(name)) {
+                projected.put(name, item.get(name));
+            }
+        }
+        JSONObject embedded = item.optJSONObject("_embedded");
+        if (embedded != null) {
+            JSONObject kept = new JSONObject();
+            for (String name : embedded.keySet()) {
+                if (names.contains(name)) {
+                    kept.put(name, embedded.get(name));
+                }
+            }
+            projected.put("_embedded", kept);
+        }
+        return projected;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("&")) {
+                int eq = pair.indexOf('=');
+                query.put(URLDecoder.decode(eq >= 0 ? pair.substring(0, eq) : pair, StandardCharsets.UTF_8),
+                        eq >= 0 ? URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8) : "");
+            }
+        }
+        return query;
+    }
+
+    /**
+     * Counts requests and response bytes
+     */
+    private static final class Counter implements RequestListener {
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+
+        void reset() {
+            requests.set(0);
+            bytes.set(0);
+        }
+
+        @Override
+        public void onRequest(RequestEvent event) {
+            requests.incrementAndGet();
+            bytes.addAndGet(event.getBytesIn());
+        }
+    }
+}
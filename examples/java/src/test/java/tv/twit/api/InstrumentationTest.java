@@ -0,0 +1,248 @@
+package tv.twit.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tv.twit.api.bench.StubServer;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Instrumentation Test
+ * The request listener hooks and RequestMetrics against a stub server: latency per resource, counts by
+ * status and error class, bytes in and out, pool waits, cache outcomes and retries, for both clients.
+ * Also checks the histogram's accuracy, that recording allocates nothing, and that a client without a
+ * listener allocates no events or timings.
+ */
+class InstrumentationTest {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final AtomicInteger showFailuresLeft = new AtomicInteger();
+    private StubServer server;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new StubServer(this::handle, 8);
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    @Test
+    void histogramIsAccurateAndAllocationFree() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = new long[1_000_000];
+        Random random = new Random(1);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.pow(10, 3 + random.nextDouble() * 6);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        // Warm up first: the first pass through a fresh JVM allocates while the loop is compiled
+        LatencyHistogram warmup = new LatencyHistogram();
+        for (long value : values) {
+            warmup.record(value);
+        }
+        histogram.record(values[0]);
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+        for (int i = 1; i < values.length; i++) {
+            histogram.record(values[i]);
+        }
+        long allocated = THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            long exact = sorted[(int) Math.ceil(percentile / 100 * sorted.length) - 1];
+            long reported = histogram.getValueAtPercentile(percentile);
+            double error = Math.abs(reported - exact) / (double) exact;
+            assertTrue(error <= 0.0625, "p" + percentile + " exact " + exact + ", reported " + reported);
+        }
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(sorted[sorted.length - 1], histogram.getMax());
+        assertTrue(allocated < 1024, "recording allocates nothing: " + allocated + " bytes");
+    }
+
+    @Test
+    void clientMetrics() throws IOException {
+        RequestMetrics metrics = new RequestMetrics();
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        try (TwitApiClient client = TestSupport.client(server)
+                .cache(new LruResponseCache())
+                .retryPolicy(RetryPolicy.builder().maxAttempts(3).baseDelayMillis(5).build())
+                .listener(both(metrics, events))
+                .build()) {
+            for (int i = 0; i < 5; i++) {
+                client.getEpisode(String.valueOf(i));
+            }
+            for (int i = 0; i < 5; i++) {
+                client.getEpisode(String.valueOf(i));
+            }
+            client.getEpisode("999");
+            showFailuresLeft.set(2);
+            client.getShows();
+        }
+        try (TwitApiClient refused = TestSupport.client("http://127.0.0.1:1/api/v1.0").listener(metrics).build()) {
+            refused.getShows();
+        }
+
+        assertEquals(6, metrics.getLatency("episodes").getCount(), "latency is recorded per resource");
+        assertEquals(4, metrics.getLatency("shows").getCount());
+        assertEquals(6, count(metrics.getStatusCounts(), 200), "responses are counted by status");
+        assertEquals(1, count(metrics.getStatusCounts(), 404));
+        assertEquals(2, count(metrics.getStatusCounts(), 503));
+        assertEquals(1, count(metrics.getErrorCounts(), "HttpHostConnectException"),
+                "failed connections are counted by error class: " + metrics.getErrorCounts());
+        assertTrue(metrics.getBytesIn() > 6 * 30 && metrics.getBytesOut() > 9 * 60,
+                "bytes in and out are counted: " + metrics.getBytesIn() + " in, " + metrics.getBytesOut() + " out");
+        assertEquals(5, metrics.getCacheCount(RequestListener.CacheOutcome.HIT));
+        assertEquals(7, metrics.getCacheCount(RequestListener.CacheOutcome.MISS));
+        assertEquals(2, metrics.getRetries());
+        assertTrue(events.contains("/episodes/999 404"), "events carry the endpoint: " + events);
+    }
+
+    @Test
+    void poolWaitIsMeasured() throws IOException {
+        RequestMetrics metrics = new RequestMetrics();
+        try (TwitApiClient client = TestSupport.client(server)
+                .transport(TransportConfig.builder().maxTotalConnections(1).maxConnectionsPerRoute(1).build())
+                .bulk(BulkExecutor.Mode.PLATFORM, 4)
+                .listener(metrics)
+                .build()) {
+            client.fetchAll(Arrays.asList("slow", "slow", "slow", "slow"), id -> client.getPeople());
+        }
+        // One connection, 4 concurrent requests, 50ms latency
+        assertEquals(4, metrics.getPoolWait().getCount());
+        assertTrue(metrics.getPoolWait().getMax() >= 100_000_000L, "waiting is measured: " + metrics.getPoolWait());
+    }
+
+    @Test
+    void asyncClientMetrics() {
+        RequestMetrics metrics = new RequestMetrics();
+        try (TwitApiAsyncClient client = TwitApiAsyncClient.builder()
+                .appId("check").appKey("check").baseUrl(server.getBaseUrl())
+                .maxInFlight(2)
+                .listener(metrics)
+                .build()) {
+            List<CompletableFuture<JSONObject>> calls = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                calls.add(client.getPeople());
+            }
+            calls.add(client.getEpisode("999"));
+            CompletableFuture.allOf(calls.toArray(new CompletableFuture[0])).join();
+        }
+        assertEquals(6, metrics.getLatency("people").getCount(), "async exchanges are recorded");
+        assertEquals(1, count(metrics.getStatusCounts(), 404));
+        assertTrue(metrics.getPoolWait().getMax() >= 50_000_000L,
+                "queueing for an in-flight slot is measured: " + metrics.getPoolWait());
+        assertTrue(metrics.getBytesIn() > 0 && metrics.getBytesOut() > 0, "async bytes are counted");
+    }
+
+    @Test
+    void listenerCostsNothingWhenAbsent() throws IOException {
+        long[] without = allocationPerCall(null);
+        long[] with = allocationPerCall(new RequestMetrics());
+        assertTrue(without[0] < with[0], "without a listener no events or timings are allocated: "
+                + without[0] + " vs " + with[0] + " bytes per request");
+        assertTrue(with[1] <= without[1], "RequestMetrics counts cache hits without allocating: "
+                + with[1] + " vs " + without[1] + " bytes per hit");
+    }
+
+    /**
+     * @return Bytes allocated per uncached request (/episodes) and per cache hit (/shows)
+     */
+    private long[] allocationPerCall(RequestListener listener) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        long threadId = Thread.currentThread().getId();
+        long[] perCall = new long[2];
+        try (TwitApiClient client = TestSupport.client(server)
+                .cache(new LruResponseCache())
+                .cachePolicy(CachePolicy.builder().ttl("episodes", 0).build())
+                .listener(listener)
+                .build()) {
+            int requests = 2_000;
+            for (int round = 0; round < 2; round++) {
+                long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+                for (int i = 0; i < requests; i++) {
+                    client.getEpisodes(params);
+                }
+                perCall[0] = (THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore) / requests;
+            }
+            int hits = 50_000;
+            for (int round = 0; round < 2; round++) {
+                long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+                for (int i = 0; i < hits; i++) {
+                    client.getShows(params);
+                }
+                perCall[1] = (THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore) / hits;
+            }
+        }
+        return perCall;
+    }
+
+    private static RequestListener both(RequestMetrics metrics, List<String> events) {
+        return new RequestListener() {
+            @Override
+            public void onRequest(RequestEvent event) {
+                metrics.onRequest(event);
+                events.add(event.getEndpoint() + " " + event.getStatusCode());
+            }
+
+            @Override
+            public void onCacheLookup(String endpoint, CacheOutcome outcome) {
+                metrics.onCacheLookup(endpoint, outcome);
+            }
+
+            @Override
+            public void onRetry(int attempt, long delayMillis) {
+                metrics.onRetry(attempt, delayMillis);
+            }
+        };
+    }
+
+    private static <K> long count(Map<K, Long> counts, K key) {
+        Long count = counts.get(key);
+        return count != null ? count : 0;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String endpoint = path.substring(path.indexOf("/api/v1.0/") + "/api/v1.0/".length());
+        String[] segments = endpoint.split("/");
+        if (segments.length > 1 && "999".equals(segments[1])) {
+            TestSupport.send(exchange, 404, "Not found");
+            return;
+        }
+        if ("shows".equals(segments[0]) && showFailuresLeft.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+            TestSupport.send(exchange, 503, "Service unavailable");
+            return;
+        }
+        if ("people".equals(segments[0])) {
+            TestSupport.sleep(50);
+        }
+        JSONObject body = segments.length > 1
+                ? new JSONObject().put(segments[0], new JSONObject().put("id", segments[1]).put("label", "Item " + segments[1]))
+                : new JSONObject().put("count", 1).put(segments[0], new JSONArray().put(new JSONObject().put("id", "1")));
+        TestSupport.send(exchange, 200, body.toString());
+    }
+}
@@ -0,0 +1,260 @@
+package tv.twit.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tv.twit.api.bench.ReplayServer;
+import tv.twit.api.bench.StubServer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Key Pool Test
+ * Throughput against a server that limits each app-id grows with the number of keys, requests are spread
+ * evenly and counted per key, a key over its usage limits or with rejected credentials cools down while
+ * requests fail over to the other keys, a key is retried after its cool-down and cools down for longer if
+ * it fails again, and requests fail fast once every key is cooling down. A credentials file with only a
+ * keys list is enough, and a client with neither credentials nor keys is rejected when it is built.
+ */
+class KeyPoolTest {
+
+    private static final String SHOWS = "{\"count\":1,\"shows\":[{\"id\":\"1635\",\"label\":\"This Week in Tech\"}]}";
+    private static final String USAGE_LIMIT = "{\"error\":\"Authorization failed: usage limits are exceeded\"}";
+    private static final int PLAN_RATE = 20;
+    private static final int PLAN_BURST = 5;
+
+    @TempDir
+    Path dir;
+
+    private final Map<String, AtomicInteger> requestsByKey = new ConcurrentHashMap<>();
+
+    @Test
+    void throughputScalesWithKeys() throws Exception {
+        try (ReplayServer server = ReplayServer.builder().apibSamples().rateLimit(PLAN_RATE, PLAN_BURST)
+                .credentials("one", "key-1").credentials("two", "key-2").credentials("three", "key-3")
+                .credentials("warmup", "key-0").start()) {
+            // Pace each key a little below the plan, with a smaller burst, so that requests delayed on the way
+            // and arriving together never cross the server's limit
+            double paced = PLAN_RATE * 0.9;
+            int burst = PLAN_BURST - 2;
+            // Warm up on an app-id of its own: requests held up by class loading would reach the server together
+            try (TwitApiClient client = TwitApiClient.builder().baseUrl(server.getBaseUrl())
+                    .keyPool(KeyPool.builder().key("warmup", "key-0").rate(paced, burst).build()).build()) {
+                throughput(client, 8, 1);
+            }
+            RequestMetrics singleMetrics = new RequestMetrics();
+            double single;
+            try (TwitApiClient client = TwitApiClient.builder().baseUrl(server.getBaseUrl()).listener(singleMetrics)
+                    .keyPool(KeyPool.builder().key("one", "key-1").rate(paced, burst).build()).build()) {
+                single = throughput(client, 8, 3);
+            }
+
+            Path file = dir.resolve("credentials.yml");
+            Files.write(file, Arrays.asList(
+                    "twit_api:",
+                    "  base_url: " + server.getBaseUrl(),
+                    "  keys:",
+                    "    - app_id: one",
+                    "      app_key: key-1",
+                    "    - app_id: two",
+                    "      app_key: key-2",
+                    "    - app_id: three  # a third plan",
+                    "      app_key: key-3",
+                    "  key_pool:",
+                    "    rate: " + paced,
+                    "    burst: " + burst),
+                    StandardCharsets.UTF_8);
+            RequestMetrics metrics = new RequestMetrics();
+            double pooled;
+            List<KeyPool.KeyStats> stats;
+            try (TwitApiClient client = TwitApiClient.builder().credentialsFile(file).listener(metrics).build()) {
+                assertEquals(3, client.getKeyPool().size(), "the keys list of the credentials file builds the pool");
+                pooled = throughput(client, 8, 3);
+                stats = client.getKeyStats();
+            }
+
+            assertTrue(single >= paced * 0.8 && single <= PLAN_RATE * 1.2, "one key stays within its plan: " + single);
+            assertTrue(pooled >= single * 2.4, "three keys give at least 2.4x the throughput: " + pooled + " vs " + single);
+            assertEquals(Collections.singleton(200), singleMetrics.getStatusCounts().keySet(),
+                    "no request is over the usage limits");
+            assertEquals(Collections.singleton(200), metrics.getStatusCounts().keySet());
+            long min = stats.stream().mapToLong(KeyPool.KeyStats::getRequests).min().orElse(0);
+            long max = stats.stream().mapToLong(KeyPool.KeyStats::getRequests).max().orElse(0);
+            assertTrue(min > 0 && max <= min * 1.2, "requests are spread evenly over the keys: " + stats);
+            assertEquals(3, metrics.getKeyCounts().size(), "the metrics count requests per key");
+            for (KeyPool.KeyStats key : stats) {
+                assertEquals(key.getRequests(), (long) metrics.getKeyCounts().get(key.getAppId()));
+            }
+            assertEquals(3, metrics.toJson().getJSONObject("keys").length());
+        }
+    }
+
+    @Test
+    void singleCredentialsJoinThePool() throws IOException {
+        Path file = dir.resolve("credentials.yml");
+        Files.write(file, Arrays.asList(
+                "twit_api:",
+                "  app_id: one",
+                "  app_key: key-1",
+                "  keys:",
+                "    - app_id: two",
+                "      app_key: key-2"),
+                StandardCharsets.UTF_8);
+        try (TwitApiClient client = TwitApiClient.builder().credentialsFile(file).build()) {
+            assertEquals(2, client.getKeyPool().size());
+            assertEquals("one", client.getKeyStats().get(0).getAppId(), "app_id and app_key join the pool first");
+        }
+    }
+
+    @Test
+    void keysOnlyCredentials() throws IOException {
+        try (StubServer server = new StubServer(this::keyedApi, 4)) {
+            Path file = dir.resolve("credentials.yml");
+            Files.write(file, Arrays.asList(
+                    "twit_api:",
+                    "  base_url: " + server.getBaseUrl(),
+                    "  keys:",
+                    "    - app_id: one",
+                    "      app_key: key-1",
+                    "    - app_id: two",
+                    "      app_key: key-2"),
+                    StandardCharsets.UTF_8);
+            try (TwitApiClient client = TwitApiClient.builder().credentialsFile(file).build()) {
+                assertFalse(client.getShows().has("error"), "a credentials file with only a keys list works");
+                assertEquals(2, client.getKeyPool().size());
+            }
+        }
+        IllegalStateException missing = assertThrows(IllegalStateException.class,
+                () -> TwitApiClient.builder().baseUrl("http://localhost").build());
+        assertEquals("appId and appKey, or a key pool, are required", missing.getMessage());
+        assertThrows(IllegalStateException.class,
+                () -> TwitApiAsyncClient.builder().appId("one").baseUrl("http://localhost").build());
+    }
+
+    @Test
+    void failover() throws IOException {
+        try (StubServer server = new StubServer(this::keyedApi, 4);
+             TwitApiClient client = TwitApiClient.builder().baseUrl(server.getBaseUrl())
+                     .keyPool(KeyPool.builder().key("limited", "key").key("revoked", "key").key("good", "key")
+                             .cooldown(400, 5_000).build())
+                     .build()) {
+            int ok = 0;
+            for (int i = 0; i < 30; i++) {
+                if (!client.getShows().has("error")) {
+                    ok++;
+                }
+            }
+            List<KeyPool.KeyStats> stats = client.getKeyStats();
+            assertEquals(30, ok, "every request succeeds with another key");
+            assertEquals(2, client.getKeyPool().getFailovers());
+            assertEquals(KeyPool.State.COOLING_DOWN, stats.get(0).getState(), "the key over its limits cools down");
+            assertEquals("usage limits exceeded", stats.get(0).getCooldownReason());
+            assertEquals(KeyPool.State.COOLING_DOWN, stats.get(1).getState(), "the rejected key cools down");
+            assertEquals("authentication failed", stats.get(1).getCooldownReason());
+            assertEquals(6, requestsByKey.get("limited").get(), "keys get no requests while cooling down");
+            assertEquals(1, requestsByKey.get("revoked").get());
+            assertEquals(0, client.getResilienceStats().getRetries(), "failovers are not usage-limit retries");
+
+            TestSupport.sleep(450);
+            for (int i = 0; i < 6; i++) {
+                client.getShows();
+            }
+            stats = client.getKeyStats();
+            assertEquals(2, requestsByKey.get("revoked").get(), "keys are tried again after their cool-down");
+            assertEquals(7, requestsByKey.get("limited").get());
+            assertEquals(2, stats.get(1).getCooldowns());
+            assertTrue(stats.get(1).getCooldownRemainingMillis() > 400
+                            && stats.get(1).getCooldownRemainingMillis() <= 800,
+                    "a key that fails again cools down for longer: " + stats.get(1));
+        }
+    }
+
+    @Test
+    void everyKeyCoolingDown() throws IOException {
+        try (StubServer server = new StubServer(this::keyedApi, 4);
+             TwitApiClient revoked = TwitApiClient.builder().baseUrl(server.getBaseUrl())
+                     .keyPool(KeyPool.builder().key("revoked", "key").key("revoked-too", "key").build()).build();
+             TwitApiClient limited = TwitApiClient.builder().baseUrl(server.getBaseUrl())
+                     .keyPool(KeyPool.builder().key("revoked", "key").key("always-limited", "key").build()).build()) {
+            JSONObject first = revoked.getShows();
+            long start = System.nanoTime();
+            JSONObject second = revoked.getShows();
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertEquals(401, first.optInt("code"), "the last key's error is returned");
+            assertEquals(401, second.optInt("code"));
+            assertTrue(millis < 100, "requests fail fast: " + millis + "ms");
+            assertEquals(1, requestsByKey.get("revoked").get(), "requests do not reach the API");
+            assertEquals(1, requestsByKey.get("revoked-too").get());
+
+            limited.getShows();
+            JSONObject exhausted = limited.getShows();
+            assertEquals("API usage limits exceeded", exhausted.optString("error"));
+            assertEquals(1, limited.getKeyPool().getExhaustedCount());
+            assertEquals(1, limited.getResilienceStats().getUsageLimitErrors());
+        }
+    }
+
+    /**
+     * Call getShows from several threads until the time is up
+     *
+     * @return Successful requests per second
+     */
+    private static double throughput(TwitApiClient client, int callers, int seconds) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        LongAdder ok = new LongAdder();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        List<Future<?>> running = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            running.add(pool.submit(() -> {
+                while (System.nanoTime() - end < 0) {
+                    if (!client.getShows().has("error")) {
+                        ok.increment();
+                    }
+                }
+            }));
+        }
+        for (Future<?> caller : running) {
+            caller.get();
+        }
+        pool.shutdown();
+        return ok.sum() / ((System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Answer like the API would for the app-id: "limited" is over its usage limits after 5 requests,
+     * "always-limited" always is, app-ids starting with "revoked" are rejected, any other is served
+     */
+    private void keyedApi(HttpExchange exchange) throws IOException {
+        String appId = String.valueOf(exchange.getRequestHeaders().getFirst("app-id"));
+        int count = requestsByKey.computeIfAbsent(appId, k -> new AtomicInteger()).incrementAndGet();
+        if (appId.startsWith("revoked")) {
+            TestSupport.send(exchange, 401, "{\"error\":\"Authentication failed\"}");
+        } else if (("limited".equals(appId) && count > 5) || "always-limited".equals(appId)) {
+            TestSupport.send(exchange, 500, USAGE_LIMIT);
+        } else {
+            TestSupport.send(exchange, 200, SHOWS);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package tv.twit.api;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tv.twit.api.bench.ApibSamples;
+import tv.twit.api.bench.CatalogStub;
+import tv.twit.api.bench.StubServer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Mirror Sync Test
+ * The catalog mirror against a {@link CatalogStub}: a full sync stores every item, a reopened mirror
+ * serves reads from its saved index, an incremental sync fetches only changed and new items, a full
+ * sync drops items the API no longer returns, and a torn record at the end of the log is discarded on open.
+ * A full sync keeps items the crawl skipped because the list shifted under it, and syncs bypass the
+ * response cache.
+ */
+class MirrorSyncTest {
+
+    private static final int EPISODES = 500;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void syncReopenAndRecover() throws IOException {
+        CatalogStub catalog = new CatalogStub(ApibSamples.load(), 0)
+                .size("episodes", EPISODES).size("shows", 40).size("people", 60);
+        try (StubServer server = new StubServer(catalog, 8);
+             TwitApiClient client = TestSupport.client(server).build()) {
+
+            try (CatalogMirror mirror = open(client)) {
+                SyncReport report = mirror.sync();
+                assertEquals(EPISODES, mirror.size("episodes"), report.toString());
+                assertEquals(40, mirror.size("shows"));
+                assertEquals(60, mirror.size("people"));
+                JSONObject episode = mirror.get("episodes", "100007");
+                assertEquals("100007", episode.optString("id"), "items read back intact");
+            }
+
+            try (CatalogMirror mirror = open(client)) {
+                assertEquals(EPISODES, mirror.size("episodes"), "index loads with every item");
+                for (int i = 0; i < EPISODES; i++) {
+                    assertTrue(mirror.getBytes("episodes", String.valueOf(100000 + i)).length > 0);
+                }
+
+                catalog.touch("episodes", 3).touch("episodes", 10).touch("episodes", 25).size("episodes", EPISODES + 5);
+                long requestsBefore = server.getRequestCount();
+                SyncReport report = mirror.sync();
+                SyncReport.ResourceResult result = result(report, "episodes");
+                assertFalse(result.isFull(), "sync is incremental");
+                assertEquals(8, result.getWritten(), "only changed and new episodes are written");
+                assertEquals(3, server.getRequestCount() - requestsBefore, "one page per resource");
+                assertTrue(mirror.contains("episodes", String.valueOf(100000 + EPISODES + 4)), "new episodes are stored");
+            }
+
+            catalog.size("people", 55);
+            try (CatalogMirror mirror = open(client)) {
+                SyncReport report = mirror.fullSync();
+                assertEquals(5, result(report, "people").getRemoved(), report.toString());
+                assertEquals(55, mirror.size("people"));
+                assertFalse(mirror.contains("people", "100059"), "removed people are dropped");
+                assertEquals(0, result(report, "episodes").getWritten(), "unchanged items are not rewritten");
+            }
+
+            try (FileChannel channel = FileChannel.open(dir.resolve("records.log"), StandardOpenOption.APPEND)) {
+                channel.write(ByteBuffer.wrap(new byte[]{0, 0, 1, 0, 42, 42}));
+            }
+            try (CatalogMirror mirror = open(client)) {
+                assertEquals(EPISODES + 5, mirror.size("episodes"), "records survive a torn tail");
+                assertNotNull(mirror.get("episodes", "100003"));
+                catalog.touch("episodes", 4);
+                mirror.incrementalSync();
+            }
+            try (CatalogMirror mirror = open(client)) {
+                assertNotNull(mirror.get("episodes", "100004"), "records appended after the torn tail are readable");
+                assertEquals(EPISODES + 5, mirror.size("episodes"));
+            }
+        }
+    }
+
+    @Test
+    void shiftedListKeepsSkippedItems() throws IOException {
+        CatalogStub catalog = new CatalogStub(ApibSamples.load(), 0).size("people", 60);
+        AtomicBoolean shifted = new AtomicBoolean(true);
+        try (StubServer server = new StubServer(exchange -> {
+            // Delete the first person once page 1 is served, so person 10 moves onto page 1 and the crawl skips it
+            String query = String.valueOf(exchange.getRequestURI().getRawQuery());
+            if (query.matches("(.*&)?page=([2-9]|\\d\\d+)(&.*)?") && shifted.compareAndSet(false, true)) {
+                catalog.remove("people", 0);
+            }
+            catalog.handle(exchange);
+        }, 8);
+             TwitApiClient client = TestSupport.client(server).build();
+             CatalogMirror mirror = CatalogMirror.builder(dir, client).resources("people").pageSize(10).window(4).open()) {
+            mirror.fullSync();
+            assertEquals(60, mirror.size("people"));
+
+            catalog.remove("people", 30);
+            shifted.set(false);
+            SyncReport report = mirror.fullSync();
+            assertTrue(shifted.get(), "the list shifted during the crawl");
+            assertEquals(1, result(report, "people").getRemoved(), report.toString());
+            assertTrue(mirror.contains("people", "100010"), "an item skipped by the crawl is kept");
+            assertFalse(mirror.contains("people", "100030"), "a deleted item is dropped");
+        }
+    }
+
+    @Test
+    void syncBypassesTheCache() throws IOException {
+        CatalogStub catalog = new CatalogStub(ApibSamples.load(), 0).size("episodes", 50);
+        try (StubServer server = new StubServer(catalog, 8);
+             TwitApiClient client = TestSupport.client(server).cache(new LruResponseCache()).build();
+             CatalogMirror mirror = CatalogMirror.builder(dir, client).resources("episodes").open()) {
+            mirror.fullSync();
+            mirror.incrementalSync();
+            catalog.touch("episodes", 7);
+            SyncReport report = mirror.incrementalSync();
+            assertEquals(1, result(report, "episodes").getWritten(), "the changed episode is not read from the cache");
+            assertEquals(0, client.getCacheStats().getHits());
+        }
+    }
+
+    private CatalogMirror open(TwitApiClient client) throws IOException {
+        return CatalogMirror.builder(dir, client).resources("shows", "episodes", "people").pageSize(100).open();
+    }
+
+    private static SyncReport.ResourceResult result(SyncReport report, String resource) {
+        return report.getResults().stream().filter(r -> r.getResource().equals(resource)).findFirst()
+                .orElseThrow(IllegalStateException::new);
+    }
+}
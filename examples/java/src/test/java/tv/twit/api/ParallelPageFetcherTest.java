@@ -0,0 +1,136 @@
+package tv.twit.api;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Parallel Page Fetcher Test
+ * ParallelPageFetcher over a fake fetcher whose later pages answer sooner: pages are reassembled in
+ * page order with no more than the window in flight, a partial last page is planned from the count,
+ * resuming from a page skips the earlier ones, a response without a count falls back to following the
+ * next links, and a failed page fails the fetch.
+ */
+class ParallelPageFetcherTest {
+
+    private static final int PER_PAGE = 10;
+
+    private final List<String> requested = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+
+    @Test
+    void pagesAreDeliveredInOrder() {
+        ResourceQuery query = query(95, true);
+        List<Integer> pageNumbers = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+
+        long delivered = query.parallel(4).forEachPage((page, items) -> {
+            pageNumbers.add(page);
+            for (int i = 0; i < items.length(); i++) {
+                ids.add(items.getJSONObject(i).getString("id"));
+            }
+        });
+
+        assertEquals(95, delivered);
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), pageNumbers, "pages arrive in page order");
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(String.valueOf(i), ids.get(i));
+        }
+        assertEquals(10, requested.size(), "the last page is planned from the count: " + requested);
+        assertTrue(maxActive.get() <= 4, "at most the window is in flight: " + maxActive.get());
+        assertTrue(maxActive.get() > 1, "pages are fetched concurrently");
+    }
+
+    @Test
+    void resumeSkipsEarlierPages() {
+        List<Integer> pageNumbers = new ArrayList<>();
+
+        long delivered = query(50, true).parallel(3).forEachPage(4, (page, items) -> pageNumbers.add(page));
+
+        assertEquals(20, delivered);
+        assertEquals(List.of(4, 5), pageNumbers);
+        assertEquals(List.of("1", "4", "5"), sorted(requested), "page 1 plans the range, 2 and 3 are skipped");
+    }
+
+    @Test
+    void missingCountFallsBackToNextLinks() {
+        List<Integer> pageNumbers = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+
+        long delivered = query(35, false).parallel(4).forEachPage((page, items) -> {
+            pageNumbers.add(page);
+            for (int i = 0; i < items.length(); i++) {
+                ids.add(items.getJSONObject(i).getString("id"));
+            }
+        });
+
+        assertEquals(35, delivered);
+        assertEquals(List.of(1, 2, 3, 4), pageNumbers);
+        assertEquals("34", ids.get(34));
+        assertEquals(List.of("1", "2", "3", "4"), requested, "one page at a time, following the links");
+        assertEquals(1, maxActive.get());
+
+        requested.clear();
+        List<Integer> resumed = new ArrayList<>();
+        assertEquals(15, query(35, false).parallel(4).forEachPage(3, (page, items) -> resumed.add(page)));
+        assertEquals(List.of(3, 4), resumed);
+    }
+
+    @Test
+    void failedPageFailsTheFetch() {
+        ResourceQuery query = new ResourceQuery("/people", "people", params -> "3".equals(params.get("page"))
+                ? new JSONObject().put("error", "Service unavailable").put("code", 503)
+                : page(Integer.parseInt(params.get("page")), 50, true));
+
+        TwitApiException e = assertThrows(TwitApiException.class,
+                () -> query.parallel(2).forEachPage((page, items) -> { }));
+        assertEquals(503, e.getCode());
+    }
+
+    private ResourceQuery query(int total, boolean withCount) {
+        return new ResourceQuery("/people", "people", params -> {
+            int number = Integer.parseInt(params.getOrDefault("page", "1"));
+            requested.add(String.valueOf(number));
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                // Later pages answer sooner, so they arrive out of order
+                TestSupport.sleep(Math.max(0, 40 - number * 4));
+                return page(number, total, withCount);
+            } finally {
+                active.decrementAndGet();
+            }
+        });
+    }
+
+    private static JSONObject page(int number, int total, boolean withCount) {
+        JSONArray people = new JSONArray();
+        for (int id = (number - 1) * PER_PAGE; id < Math.min(total, number * PER_PAGE); id++) {
+            people.put(new JSONObject().put("id", String.valueOf(id)));
+        }
+        JSONObject page = new JSONObject().put("people", people);
+        if (withCount) {
+            page.put("count", total);
+        }
+        JSONObject links = new JSONObject();
+        if (number * PER_PAGE < total) {
+            links.put("next", new JSONObject().put("href", "https://twit.tv/api/v1.0/people?page=" + (number + 1)));
+        }
+        return page.put("_links", links);
+    }
+
+    private static List<String> sorted(List<String> values) {
+        List<String> copy = new ArrayList<>(values);
+        Collections.sort(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,242 @@
+package tv.twit.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tv.twit.api.bench.StubServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Proxy Test
+ * Runs a TwitApiProxy in front of a stub upstream and drives it from several clients at once, standing
+ * in for separate JVMs: concurrent identical requests reach the upstream once, the shared cache absorbs
+ * a hot set of items, one rate limiter paces all clients, errors and 304 revalidations pass through, and
+ * gzipped and plain bodies carry different ETags.
+ */
+class ProxyTest {
+
+    private static final long UPSTREAM_LATENCY_MILLIS = 20;
+    private static final int CLIENTS = 8;
+
+    private final ConcurrentHashMap<String, AtomicInteger> upstreamRequests = new ConcurrentHashMap<>();
+    private final RateLimiter limiter = RateLimiter.create(50, 10);
+    private final List<TwitApiClient> clients = new ArrayList<>();
+    private StubServer upstream;
+    private TwitApiClient proxied;
+    private TwitApiProxy proxy;
+
+    @BeforeEach
+    void start() throws IOException {
+        upstream = new StubServer(this::handle, 32);
+        proxied = TestSupport.client(upstream).cache(new LruResponseCache()).rateLimiter(limiter).build();
+        proxy = TwitApiProxy.builder(proxied).port(0).threads(BulkExecutor.Mode.VIRTUAL, 64).start();
+        for (int i = 0; i < CLIENTS; i++) {
+            clients.add(TwitApiClient.builder()
+                    .appId("caller").appKey("caller").baseUrl(proxy.getBaseUrl())
+                    .bulk(BulkExecutor.Mode.PLATFORM, 25)
+                    .build());
+        }
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        for (TwitApiClient client : clients) {
+            client.close();
+        }
+        proxy.close();
+        proxied.close();
+        upstream.close();
+    }
+
+    @Test
+    void concurrentIdenticalRequestsAreCoalesced() throws InterruptedException {
+        List<JSONObject> responses = fetchShowsFromEveryClient();
+        assertEquals(CLIENTS * 25, responses.size());
+        assertTrue(responses.stream().allMatch(r -> r.optInt("count") == 20), "every caller gets the shows");
+        assertEquals(1, upstream("shows"), "the upstream is asked once");
+    }
+
+    @Test
+    void sharedCacheAbsorbsHotSet() throws InterruptedException {
+        AtomicInteger mismatched = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (TwitApiClient client : clients) {
+            Thread thread = new Thread(() -> {
+                List<String> ids = new ArrayList<>();
+                for (int i = 0; i < 200; i++) {
+                    ids.add(String.valueOf(100 + i % 20));
+                }
+                client.fetchAll(ids, id -> {
+                    JSONObject episode = client.getEpisode(id);
+                    JSONObject item = episode.optJSONObject("episodes");
+                    if (item == null || !id.equals(item.optString("id"))) {
+                        mismatched.incrementAndGet();
+                    }
+                    return episode;
+                });
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, mismatched.get(), "every caller gets its own episode");
+        assertEquals(20, upstream("episodes/"), "each episode is fetched from the upstream once");
+    }
+
+    @Test
+    void sharedRateLimit() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int c = 0; c < 4; c++) {
+            TwitApiClient client = clients.get(c);
+            List<String> ids = new ArrayList<>();
+            for (int i = 0; i < 15; i++) {
+                ids.add(String.valueOf(1000 + c * 15 + i));
+            }
+            Thread thread = new Thread(() -> client.fetchAll(ids, client::getEpisode));
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        // 10 from the burst, 50 at 50/s
+        assertTrue(elapsedMillis >= 900, "combined rate stays within the limit: " + elapsedMillis + "ms");
+        assertTrue(limiter.getThrottledCount() >= 40, "waits are counted: " + limiter.getThrottledCount());
+    }
+
+    @Test
+    void errorsPassThrough() {
+        JSONObject missing = clients.get(0).getEpisode("999");
+        assertEquals(404, missing.optInt("code"));
+        assertTrue(proxy.getStats().getLong("errors") >= 1, "the error is counted");
+    }
+
+    @Test
+    void cachingClientRevalidates() throws IOException {
+        try (TwitApiClient client = TwitApiClient.builder()
+                .appId("caller").appKey("caller").baseUrl(proxy.getBaseUrl())
+                .cache(new LruResponseCache())
+                .cachePolicy(CachePolicy.builder().ttl("shows", 1).build())
+                .build()) {
+            client.getShows();
+            TestSupport.sleep(5);
+            JSONObject shows = client.getShows();
+            assertEquals(20, shows.optInt("count"), "the stale copy is still served");
+            assertEquals(1, client.getCacheStats().getRevalidated());
+            assertEquals(1, proxy.getStats().getLong("notModified"), "the proxy answers 304");
+        }
+    }
+
+    @Test
+    void encodingsHaveTheirOwnETag() throws IOException {
+        HttpURLConnection gzip = open("/shows", "gzip", null);
+        assertEquals(200, gzip.getResponseCode());
+        assertEquals("gzip", gzip.getHeaderField("Content-Encoding"));
+        assertEquals("Accept-Encoding", gzip.getHeaderField("Vary"));
+        String gzipEtag = gzip.getHeaderField("ETag");
+        gzip.getInputStream().readAllBytes();
+
+        HttpURLConnection plain = open("/shows", "identity", null);
+        assertEquals(200, plain.getResponseCode());
+        assertNull(plain.getHeaderField("Content-Encoding"));
+        assertEquals("Accept-Encoding", plain.getHeaderField("Vary"));
+        String plainEtag = plain.getHeaderField("ETag");
+        plain.getInputStream().readAllBytes();
+        assertNotEquals(plainEtag, gzipEtag, "the gzipped body has its own ETag");
+
+        HttpURLConnection revalidated = open("/shows", "gzip", "W/" + gzipEtag);
+        assertEquals(304, revalidated.getResponseCode());
+        assertEquals(gzipEtag, revalidated.getHeaderField("ETag"));
+        assertEquals(304, open("/shows", "identity", "\"other\", " + plainEtag).getResponseCode());
+        assertEquals(200, open("/shows", "identity", gzipEtag).getResponseCode(),
+                "the gzip ETag does not validate the plain body");
+    }
+
+    @Test
+    void statsAreServedAsJson() throws Exception {
+        fetchShowsFromEveryClient();
+        String statsUrl = proxy.getBaseUrl().replace("/api/v1.0", "/proxy/stats");
+        try (InputStream in = new URL(statsUrl).openStream()) {
+            JSONObject stats = new JSONObject(new JSONTokener(in));
+            assertTrue(stats.getJSONObject("cache").getLong("coalesced") > 0, stats.toString());
+        }
+    }
+
+    private HttpURLConnection open(String endpoint, String acceptEncoding, String ifNoneMatch) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(proxy.getBaseUrl() + endpoint).openConnection();
+        connection.setRequestProperty("Accept-Encoding", acceptEncoding);
+        if (ifNoneMatch != null) {
+            connection.setRequestProperty("If-None-Match", ifNoneMatch);
+        }
+        return connection;
+    }
+
+    private List<JSONObject> fetchShowsFromEveryClient() throws InterruptedException {
+        List<JSONObject> responses = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (TwitApiClient client : clients) {
+            Thread thread = new Thread(() ->
+                    responses.addAll(client.fetchAll(Collections.nCopies(25, "shows"), id -> client.getShows())));
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return responses;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        TestSupport.sleep(UPSTREAM_LATENCY_MILLIS);
+        String path = exchange.getRequestURI().getPath();
+        String endpoint = path.substring(path.indexOf("/api/v1.0/") + "/api/v1.0/".length());
+        String[] segments = endpoint.split("/");
+        upstreamRequests.computeIfAbsent(segments.length > 1 ? segments[0] + "/" : segments[0],
+                k -> new AtomicInteger()).incrementAndGet();
+
+        if (segments.length > 1) {
+            if ("999".equals(segments[1])) {
+                TestSupport.send(exchange, 404, "Not found");
+                return;
+            }
+            TestSupport.send(exchange, 200, new JSONObject().put(segments[0], item(segments[1])).toString());
+            return;
+        }
+        JSONArray items = new JSONArray();
+        for (int i = 0; i < 20; i++) {
+            items.put(item(String.valueOf(1600 + i)).put("description", "Show description " + i));
+        }
+        TestSupport.send(exchange, 200, new JSONObject().put("count", items.length()).put(segments[0], items).toString());
+    }
+
+    private static JSONObject item(String id) {
+        return new JSONObject().put("id", id).put("label", "Item " + id);
+    }
+
+    private int upstream(String key) {
+        AtomicInteger count = upstreamRequests.get(key);
+        return count != null ? count.get() : 0;
+    }
+}
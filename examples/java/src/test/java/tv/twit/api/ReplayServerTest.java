@@ -0,0 +1,201 @@
+package tv.twit.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tv.twit.api.bench.LoadGenerator;
+import tv.twit.api.bench.ReplayServer;
+import tv.twit.api.bench.StubServer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Replay Server Test
+ * The replay server and the load generator: blueprint samples with the requested item IDs, credential
+ * checks, seeded error injection that repeats from run to run, the latency distribution, rate-limit and
+ * quota emulation, recording from an upstream and replaying the recording without it, and a short load
+ * run at a target rate.
+ */
+class ReplayServerTest {
+
+    @TempDir
+    Path dir;
+
+    private final AtomicInteger upstreamRequests = new AtomicInteger();
+
+    @Test
+    void blueprintSamples() throws IOException {
+        try (ReplayServer server = ReplayServer.builder().apibSamples().start();
+             TwitApiClient client = client(server, "check")) {
+            JSONObject shows = client.getShows();
+            assertTrue(shows.getJSONArray("shows").length() > 0, "list samples are served");
+            assertEquals("12345", client.getEpisode("12345").getJSONObject("episodes").optString("id"),
+                    "item samples carry the requested ID");
+            int missing;
+            try {
+                missing = client.query("/nonexistent").firstPage().optInt("code");
+            } catch (TwitApiException e) {
+                missing = e.getCode();
+            }
+            assertEquals(404, missing, "unknown endpoints are answered 404");
+        }
+    }
+
+    @Test
+    void credentials() throws IOException {
+        try (ReplayServer server = ReplayServer.builder().apibSamples().credentials("check", "check").start();
+             TwitApiClient good = client(server, "check");
+             TwitApiClient bad = client(server, "wrong")) {
+            assertFalse(good.getShows().has("error"), "matching credentials are accepted");
+            JSONObject rejected = bad.getShows();
+            assertEquals(401, rejected.optInt("code"));
+            assertEquals("Authentication failed", rejected.optString("error"));
+        }
+    }
+
+    @Test
+    void seededErrorInjectionRepeats() throws IOException {
+        int requests = 400;
+        List<List<Integer>> runs = new ArrayList<>();
+        for (int run = 0; run < 2; run++) {
+            List<Integer> codes = new ArrayList<>();
+            try (ReplayServer server = ReplayServer.builder().apibSamples().seed(7)
+                    .error(500, 0.10).error(404, 0.05).start();
+                 TwitApiClient client = client(server, "check")) {
+                for (int i = 0; i < requests; i++) {
+                    codes.add(client.getShows().optInt("code", 200));
+                }
+            }
+            runs.add(codes);
+        }
+        long usageLimits = runs.get(0).stream().filter(code -> code == 500).count();
+        long notFound = runs.get(0).stream().filter(code -> code == 404).count();
+        assertTrue(usageLimits >= requests * 0.06 && usageLimits <= requests * 0.14,
+                "10% usage-limit errors: " + usageLimits);
+        assertTrue(notFound >= requests * 0.02 && notFound <= requests * 0.08, "5% not found: " + notFound);
+        assertEquals(runs.get(0), runs.get(1), "runs with the same seed fail the same requests");
+    }
+
+    @Test
+    void latencyDistribution() throws IOException {
+        LatencyHistogram latencies = new LatencyHistogram();
+        try (ReplayServer server = ReplayServer.builder().apibSamples()
+                .latency(ReplayServer.Latency.logNormal(10, 40)).start();
+             TwitApiClient client = client(server, "check")) {
+            client.getStreams();
+            for (int i = 0; i < 200; i++) {
+                long start = System.nanoTime();
+                client.getStreams();
+                latencies.record(System.nanoTime() - start);
+            }
+        }
+        double median = latencies.getValueAtPercentile(50) / 1e6;
+        double p90 = latencies.getValueAtPercentile(90) / 1e6;
+        assertTrue(median >= 8 && median <= 20, "the median is near 10ms: " + latencies);
+        assertTrue(p90 >= median * 1.5, "the distribution has a tail: " + latencies);
+    }
+
+    @Test
+    void rateLimitAndQuota() throws IOException {
+        try (ReplayServer server = ReplayServer.builder().apibSamples().rateLimit(20, 5).start();
+             TwitApiClient client = client(server, "check");
+             TwitApiClient other = TwitApiClient.builder().appId("other").appKey("other")
+                     .baseUrl(server.getBaseUrl()).build()) {
+            int limited = 0;
+            for (int i = 0; i < 40; i++) {
+                if ("API usage limits exceeded".equals(client.getStreams().optString("error"))) {
+                    limited++;
+                }
+            }
+            assertTrue(limited >= 20 && limited <= 35,
+                    "requests beyond the rate report usage limits exceeded: " + limited + " of 40");
+            assertFalse(other.getStreams().has("error"), "each app-id has its own budget");
+            TestSupport.sleep(300);
+            assertFalse(client.getStreams().has("error"), "the budget refills");
+        }
+        try (ReplayServer server = ReplayServer.builder().apibSamples().quota(10).start();
+             TwitApiClient client = client(server, "check")) {
+            int ok = 0;
+            for (int i = 0; i < 15; i++) {
+                if (!client.getStreams().has("error")) {
+                    ok++;
+                }
+            }
+            assertEquals(10, ok, "the quota allows 10 requests");
+        }
+    }
+
+    @Test
+    void recordAndReplay() throws IOException {
+        Path file = dir.resolve("recordings.jsonl");
+        Map<String, String> page = new LinkedHashMap<>();
+        page.put("range", "5");
+        page.put("page", "2");
+        JSONObject live;
+        try (StubServer upstream = new StubServer(this::upstream, 4);
+             ReplayServer recorder = ReplayServer.builder().record(upstream.getBaseUrl(), file).start();
+             TwitApiClient client = client(recorder, "secret-key")) {
+            live = client.getShows(page);
+            client.getShows(page);
+            JSONObject missing = client.getShow("999");
+            assertEquals(1, live.optInt("count"), "responses are forwarded");
+            assertEquals(404, missing.optInt("code"));
+            assertEquals(2, upstreamRequests.get(), "each request reaches the upstream once");
+        }
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertTrue(lines.stream().noneMatch(line -> line.contains("secret-key")), "credentials are not recorded");
+
+        try (ReplayServer replay = ReplayServer.builder().recordings(file).start();
+             TwitApiClient client = client(replay, "check")) {
+            assertTrue(live.similar(client.getShows(page)), "the recording replays without the upstream");
+            assertEquals(404, client.getShow("999").optInt("code"), "recorded errors replay");
+            assertEquals(1, client.getShows().optInt("count"), "other queries fall back to the endpoint's recording");
+            assertEquals(2, upstreamRequests.get(), "the upstream is not asked again");
+        }
+    }
+
+    @Test
+    void loadGeneratorReachesTargetRate() throws Exception {
+        try (ReplayServer server = ReplayServer.builder().apibSamples().latency(ReplayServer.Latency.fixed(5)).start();
+             TwitApiClient client = client(server, "check")) {
+            LoadGenerator.Report report = LoadGenerator.builder(client).rate(200)
+                    .duration(2, TimeUnit.SECONDS).warmup(1, TimeUnit.SECONDS).concurrency(32).build().run();
+            assertTrue(report.getThroughput() >= 180, "the target rate is reached:\n" + report);
+            assertEquals(Collections.singleton("ok"), report.getOutcomes().keySet(), "every request succeeds");
+            assertTrue(report.getResponseTime().getValueAtPercentile(50) >= TimeUnit.MILLISECONDS.toNanos(5),
+                    "the server latency shows in the response time");
+            assertTrue(report.getByOperation().values().stream().allMatch(histogram -> histogram.getCount() > 0),
+                    "every operation of the mix runs");
+        }
+    }
+
+    private static TwitApiClient client(ReplayServer server, String key) {
+        return TwitApiClient.builder().appId("check").appKey(key).baseUrl(server.getBaseUrl()).build();
+    }
+
+    private void upstream(HttpExchange exchange) throws IOException {
+        upstreamRequests.incrementAndGet();
+        if (exchange.getRequestHeaders().getFirst("app-key") == null) {
+            TestSupport.send(exchange, 401, "{\"error\":\"Authentication parameters missing\"}");
+        } else if (exchange.getRequestURI().getPath().endsWith("/999")) {
+            TestSupport.send(exchange, 404, "{\"error\":\"Not found\"}");
+        } else {
+            TestSupport.send(exchange, 200, "{\"count\":1,\"shows\":[{\"id\":\"1635\",\"label\":\"This Week in Tech\"}]}");
+        }
+    }
+}
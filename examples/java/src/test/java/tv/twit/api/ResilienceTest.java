@@ -0,0 +1,121 @@
+package tv.twit.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tv.twit.api.bench.StubServer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Resilience Test
+ * The shared rate limiter, retries with backoff and the usage-limit circuit breaker against a stub
+ * server: /shows fails with 503 a configurable number of times, /streams always reports that usage
+ * limits are exceeded.
+ */
+class ResilienceTest {
+
+    private final AtomicInteger showFailuresLeft = new AtomicInteger();
+    private final AtomicInteger usageLimitResponses = new AtomicInteger();
+    private StubServer server;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new StubServer(this::handle, 8);
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    @Test
+    void sharedRateLimiter() throws Exception {
+        RateLimiter limiter = RateLimiter.create(20, 5);
+        try (TwitApiClient first = TestSupport.client(server).rateLimiter(limiter).build();
+             TwitApiClient second = TestSupport.client(server).rateLimiter(limiter).build()) {
+            long start = System.nanoTime();
+            List<String> ids = new ArrayList<>();
+            for (int i = 0; i < 15; i++) {
+                ids.add(String.valueOf(i));
+            }
+            Thread other = new Thread(() -> second.fetchEpisodes(ids));
+            other.start();
+            first.fetchEpisodes(ids);
+            other.join();
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            // 30 requests, 5 from the burst and 25 at 20/s
+            assertTrue(elapsedMillis >= 1100, "combined rate stays within the shared budget: " + elapsedMillis + "ms");
+            assertTrue(limiter.getThrottledCount() >= 20, "waits are counted: " + limiter.getThrottledCount());
+        }
+    }
+
+    @Test
+    void retriesWithBackoff() throws IOException {
+        RetryPolicy policy = RetryPolicy.builder().maxAttempts(3).baseDelayMillis(20).build();
+        try (TwitApiClient client = TestSupport.client(server).retryPolicy(policy).build()) {
+            showFailuresLeft.set(2);
+            JSONObject shows = client.getShows();
+            assertFalse(shows.has("error"), "third attempt succeeds");
+            assertEquals(2, client.getResilienceStats().getRetries());
+
+            showFailuresLeft.set(5);
+            JSONObject failed = client.getShows();
+            assertEquals(503, failed.optInt("code"), "error is returned after the last attempt");
+            assertEquals(2, showFailuresLeft.get(), "attempts are capped");
+        }
+    }
+
+    @Test
+    void circuitBreaker() throws IOException {
+        RateLimiter limiter = RateLimiter.create(100, 10);
+        try (TwitApiClient client = TestSupport.client(server)
+                .rateLimiter(limiter)
+                .retryPolicy(RetryPolicy.builder().baseDelayMillis(20).build())
+                .circuitBreaker(new CircuitBreaker(5, 1000, 300))
+                .build()) {
+            JSONObject first = client.getStreams();
+            assertEquals("API usage limits exceeded", first.optString("error"));
+            assertEquals(1, usageLimitResponses.get(), "usage-limit error is not retried");
+            assertEquals(50.0, limiter.getCurrentRate(), "rate is reduced");
+
+            JSONObject rejected = client.getStreams();
+            assertTrue(rejected.optBoolean("circuitOpen"), "open circuit fails fast");
+            assertEquals(1, usageLimitResponses.get());
+            assertEquals(1, client.getResilienceStats().getRejected());
+
+            TestSupport.sleep(350);
+            client.getStreams();
+            assertEquals(2, usageLimitResponses.get(), "half-open circuit sends one trial request");
+            assertEquals(CircuitBreaker.State.OPEN, client.getResilienceStats().getCircuitState(),
+                    "failed trial re-opens the circuit");
+
+            TestSupport.sleep(350);
+            JSONObject episodes = client.getEpisodes();
+            assertFalse(episodes.has("error"));
+            assertEquals(CircuitBreaker.State.CLOSED, client.getResilienceStats().getCircuitState(),
+                    "successful trial closes the circuit");
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if (path.endsWith("/streams")) {
+            usageLimitResponses.incrementAndGet();
+            TestSupport.send(exchange, 500, "{\"error\":\"Authorization failed: usage limits are exceeded\"}");
+        } else if (path.endsWith("/shows") && showFailuresLeft.getAndDecrement() > 0) {
+            TestSupport.send(exchange, 503, "Service Unavailable");
+        } else {
+            TestSupport.send(exchange, 200, "{\"count\":0,\"items\":[]}");
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package tv.twit.api;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Resource Query Test
+ * ResourceQuery over a fake fetcher that serves numbered pages and records the parameters of each
+ * request: items are yielded across pages by following _links.next, the next link's query is merged
+ * over the current parameters, a next link to the same page ends the iteration, short-circuiting stream
+ * operations stop fetching pages, and an error page surfaces as a TwitApiException.
+ */
+class ResourceQueryTest {
+
+    private final List<Map<String, String>> requests = new ArrayList<>();
+
+    @Test
+    void nextLinksAreFollowed() {
+        ResourceQuery query = query(pages(3, 2));
+
+        List<String> ids = query.stream().map(item -> item.getString("id")).collect(Collectors.toList());
+
+        assertEquals(List.of("1-0", "1-1", "2-0", "2-1", "3-0", "3-1"), ids);
+        assertEquals(3, requests.size());
+        assertNull(requests.get(0).get("page"), "the first page is requested without a page parameter");
+        assertEquals("2", requests.get(1).get("page"));
+        assertEquals("3", requests.get(2).get("page"));
+    }
+
+    @Test
+    void nextLinkQueryIsMergedOverCurrentParams() {
+        ResourceQuery query = query(pages(2, 1)).filter("shows", "1635").pageSize(1).sort("-airingDate");
+
+        assertEquals(2, query.stream().count());
+        Map<String, String> second = requests.get(1);
+        assertEquals("1635", second.get("filter[shows]"), "a filter missing from the next link is kept");
+        assertEquals("-airingDate", second.get("sort"));
+        assertEquals("1", second.get("range"));
+        assertEquals("2", second.get("page"));
+
+        Map<String, String> current = new LinkedHashMap<>();
+        current.put("range", "25");
+        Map<String, String> next = ResourceQuery.nextParams(
+                "https:\\/\\/twit.tv\\/api\\/v1.0\\/episodes?page=2&range=50&filter%5Bshows%5D=1635", current);
+        assertEquals("50", next.get("range"), "the next link's values win");
+        assertEquals("2", next.get("page"));
+        assertEquals("1635", next.get("filter[shows]"), "escaped slashes and encoded names are decoded");
+    }
+
+    @Test
+    void nextLinkToTheSamePageStops() {
+        ResourceQuery query = query(params -> page(1, 2, "/episodes?page=1"));
+        query.startPage(1);
+
+        assertEquals(2, query.stream().count());
+        assertEquals(1, requests.size(), "a next link to the current page is not followed");
+
+        assertNull(ResourceQuery.nextParams(new JSONObject(), new LinkedHashMap<>()), "no links, no next page");
+        assertNull(ResourceQuery.nextParams("", new LinkedHashMap<>()));
+    }
+
+    @Test
+    void emptyPageEndsTheIteration() {
+        ResourceQuery query = query(params -> params.containsKey("page")
+                ? page(2, 0, "/episodes?page=3")
+                : page(1, 2, "/episodes?page=2"));
+
+        Iterator<JSONObject> items = query.iterator();
+        assertTrue(items.hasNext());
+        items.next();
+        items.next();
+        assertFalse(items.hasNext(), "an empty page ends the iteration even with a next link");
+        assertThrows(NoSuchElementException.class, items::next);
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    void streamStopsEarly() {
+        ResourceQuery query = query(pages(100, 2));
+
+        assertEquals("1-0", query.stream().findFirst().get().getString("id"));
+        assertEquals(1, requests.size(), "findFirst fetches one page");
+
+        requests.clear();
+        List<JSONObject> five = query.stream().limit(5).collect(Collectors.toList());
+        assertEquals("3-0", five.get(4).getString("id"));
+        assertEquals(3, requests.size(), "limit(5) with two items per page fetches three pages");
+
+        requests.clear();
+        Iterator<JSONObject> lazy = query.iterator();
+        assertEquals(0, requests.size(), "nothing is fetched until the first item is asked for");
+        lazy.hasNext();
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    void errorPageThrows() throws IOException, ClassNotFoundException {
+        JSONObject error = new JSONObject().put("error", "Authorization failed: usage limits are exceeded")
+                .put("code", 500);
+        ResourceQuery query = query(params -> params.containsKey("page") ? error : page(1, 2, "/episodes?page=2"));
+
+        Iterator<JSONObject> items = query.iterator();
+        items.next();
+        items.next();
+        TwitApiException e = assertThrows(TwitApiException.class, items::hasNext);
+        assertEquals(500, e.getCode());
+        assertEquals(error, e.getError());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(e);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            TwitApiException copy = (TwitApiException) in.readObject();
+            assertEquals(500, copy.getCode());
+            assertTrue(error.similar(copy.getError()), "the error object is rebuilt: " + copy.getError());
+        }
+    }
+
+    private ResourceQuery query(Function<Map<String, String>, JSONObject> fetcher) {
+        return new ResourceQuery("/episodes", "episodes", params -> {
+            requests.add(new LinkedHashMap<>(params));
+            return fetcher.apply(params);
+        });
+    }
+
+    /**
+     * Serve pages 1 to count, each linking to the next one
+     */
+    private static Function<Map<String, String>, JSONObject> pages(int count, int perPage) {
+        return params -> {
+            int number = Integer.parseInt(params.getOrDefault("page", "1"));
+            return page(number, perPage, number < count ? "/episodes?page=" + (number + 1) : null);
+        };
+    }
+
+    private static JSONObject page(int number, int items, String next) {
+        JSONArray episodes = new JSONArray();
+        for (int i = 0; i < items; i++) {
+            episodes.put(new JSONObject().put("id", number + "-" + i));
+        }
+        JSONObject links = new JSONObject();
+        if (next != null) {
+            links.put("next", new JSONObject().put("href", "https://twit.tv/api/v1.0" + next));
+        }
+        return new JSONObject().put("count", 1000).put("episodes", episodes).put("_links", links);
+    }
+}
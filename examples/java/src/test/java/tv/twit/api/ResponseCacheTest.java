@@ -0,0 +1,178 @@
+package tv.twit.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tv.twit.api.bench.StubServer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Response Cache Test
+ * The client's response cache against a stub server that counts upstream requests per path: the LRU
+ * cache evicts the least recently used entries by count and by weight and counts its evictions,
+ * /streams expires on its short TTL while /shows is still served from the cache, and concurrent misses
+ * for one key make a single upstream request.
+ */
+class ResponseCacheTest {
+
+    private static final int BODY_BYTES = 1000;
+
+    private final Map<String, AtomicInteger> upstream = new ConcurrentHashMap<>();
+    private final AtomicInteger started = new AtomicInteger();
+    private volatile CountDownLatch release = new CountDownLatch(0);
+    private StubServer server;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new StubServer(this::handle, 32);
+    }
+
+    @AfterEach
+    void stop() {
+        release.countDown();
+        server.close();
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvictedByCount() throws IOException {
+        try (TwitApiClient client = TestSupport.client(server).cache(new LruResponseCache(3, 1 << 20)).build()) {
+            client.getShow("1");
+            client.getShow("2");
+            client.getShow("3");
+            client.getShow("1");
+            client.getShow("4");
+
+            CacheStats stats = client.getCacheStats();
+            assertEquals(3, stats.getSize());
+            assertEquals(1, stats.getEvictions(), "adding a fourth entry evicts one");
+            client.getShow("1");
+            client.getShow("3");
+            client.getShow("4");
+            assertEquals(1, upstream("/shows/1"), "a recently used entry is kept");
+            assertEquals(1, upstream("/shows/3"));
+            client.getShow("2");
+            assertEquals(2, upstream("/shows/2"), "the least recently used entry was evicted");
+            assertEquals(2, client.getCacheStats().getEvictions());
+        }
+    }
+
+    @Test
+    void entriesAreEvictedByWeight() throws IOException {
+        LruResponseCache cache = new LruResponseCache(100, BODY_BYTES * 5 / 2);
+        try (TwitApiClient client = TestSupport.client(server).cache(cache).build()) {
+            client.getShow("1");
+            client.getShow("2");
+            assertEquals(2, cache.size());
+            assertTrue(cache.weight() >= 2 * BODY_BYTES && cache.weight() <= BODY_BYTES * 5 / 2,
+                    "entries are weighed by body size: " + cache.weight());
+
+            client.getShow("3");
+            assertEquals(2, cache.size(), "a third body does not fit");
+            assertEquals(1, client.getCacheStats().getEvictions());
+            assertTrue(client.getCacheStats().getWeight() <= BODY_BYTES * 5 / 2);
+            client.getShow("1");
+            assertEquals(2, upstream("/shows/1"), "the eldest entry made room");
+        }
+        try (TwitApiClient client = TestSupport.client(server).cache(new LruResponseCache(100, BODY_BYTES / 2))
+                .build()) {
+            client.getShow("5");
+            client.getShow("5");
+            assertEquals(2, upstream("/shows/5"), "a body larger than the whole cache is not stored");
+            assertEquals(0, client.getCacheStats().getSize());
+        }
+    }
+
+    @Test
+    void ttlsArePerResource() throws IOException {
+        assertEquals(15_000, CachePolicy.defaults().ttlMillis("/streams"));
+        assertEquals(60 * 60 * 1000, CachePolicy.defaults().ttlMillis("/shows/1635"));
+
+        CachePolicy policy = CachePolicy.builder().ttl("streams", 100).build();
+        try (TwitApiClient client = TestSupport.client(server).cache(new LruResponseCache()).cachePolicy(policy)
+                .build()) {
+            JSONObject shows = client.getShows();
+            client.getStreams();
+            client.getStreams();
+            assertEquals(1, upstream("/streams"), "a fresh /streams response is served from the cache");
+
+            TestSupport.sleep(250);
+            assertSame(shows, client.getShows(), "/shows is still fresh");
+            client.getStreams();
+            assertEquals(1, upstream("/shows"));
+            assertEquals(2, upstream("/streams"), "/streams expired on its short TTL");
+        }
+    }
+
+    @Test
+    void concurrentMissesMakeOneRequest() throws Exception {
+        release = new CountDownLatch(1);
+        int callers = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try (TwitApiClient client = TestSupport.client(server).cache(new LruResponseCache()).build()) {
+            List<CompletableFuture<JSONObject>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(CompletableFuture.supplyAsync(() -> client.getShow("1635"), pool));
+            }
+            assertTrue(TestSupport.await(2000, () -> client.getCacheStats().getCoalesced() == callers - 1),
+                    "the other callers wait for the first: " + client.getCacheStats());
+            release.countDown();
+
+            JSONObject first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (CompletableFuture<JSONObject> result : results) {
+                assertSame(first, result.get(5, TimeUnit.SECONDS), "every caller gets the one response");
+            }
+            assertEquals(1, upstream("/shows/1635"), "one upstream request for " + callers + " misses");
+            assertEquals(1, started.get());
+            assertEquals(1, client.getCacheStats().getMisses());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private int upstream(String path) {
+        AtomicInteger count = upstream.get(path);
+        return count != null ? count.get() : 0;
+    }
+
+    /**
+     * Answer every path with a body of about BODY_BYTES, holding requests until released
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath().replaceFirst("^/api/v1\\.0", "");
+        upstream.computeIfAbsent(path, key -> new AtomicInteger()).incrementAndGet();
+        started.incrementAndGet();
+        try {
+            release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        String[] segments = path.split("/");
+        JSONObject item = new JSONObject().put("id", segments.length > 2 ? segments[2] : "1");
+        String resource = segments[1];
+        JSONObject body = new JSONObject().put(resource, item);
+        int padding = BODY_BYTES - body.toString().getBytes(StandardCharsets.UTF_8).length - "\"label\":\"\",".length();
+        char[] label = new char[padding];
+        Arrays.fill(label, 'x');
+        item.put("label", new String(label));
+        TestSupport.send(exchange, 200, body.toString());
+    }
+}
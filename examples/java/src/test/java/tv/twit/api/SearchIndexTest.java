@@ -0,0 +1,199 @@
+package tv.twit.api;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tv.twit.api.bench.ApibSamples;
+import tv.twit.api.bench.CatalogStub;
+import tv.twit.api.bench.StubServer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Search Index Test
+ * Feeds synthetic episodes with HTML show notes into a {@link SearchIndex} and compares match counts
+ * for terms, phrases and filter[tid] with a brute-force scan, checks ranking and incremental updates,
+ * and checks the shape of the results for blueprint sample episodes synced from a {@link CatalogStub}.
+ */
+class SearchIndexTest {
+
+    private static final int SIZE = 4000;
+
+    @TempDir
+    Path dir;
+
+    private final Random random = new Random(7);
+    private final String[] vocabulary = vocabulary(5000, random);
+    private final Map<Integer, String> texts = new HashMap<>();
+    private final Map<Integer, Integer> topics = new HashMap<>();
+    private StubServer server;
+    private TwitApiClient client;
+    private CatalogMirror mirror;
+    private SearchIndex index;
+
+    @BeforeEach
+    void start() throws IOException {
+        CatalogStub catalog = new CatalogStub(ApibSamples.load(), 0).size("episodes", 60).size("people", 20);
+        server = new StubServer(catalog, 8);
+        client = TestSupport.client(server).build();
+        mirror = CatalogMirror.builder(dir, client).resources("episodes", "people").open();
+        index = SearchIndex.attach(mirror);
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        index.detach();
+        mirror.close();
+        client.close();
+        server.close();
+    }
+
+    @Test
+    void matchesScan() {
+        indexSynthetic();
+        compareAll();
+    }
+
+    @Test
+    void labelMatchesRankFirst() {
+        index.onUpsert("episodes", "999999", episode(999999, "Passkeys explained", "<p>All about passkeys.</p>", 5));
+        index.onUpsert("episodes", "999998", episode(999998, "Episode 999998", "<p>We mention passkeys once.</p>", 5));
+        SearchIndex.Result ranked = index.find("passkeys", Collections.emptyMap());
+        assertEquals(2, ranked.getCount());
+        assertEquals(999999, ranked.getIds()[0], "the one with the term in its label ranks first");
+    }
+
+    @Test
+    void incrementalUpdates() {
+        indexSynthetic();
+        index.onUpsert("episodes", "999999", episode(999999, "Passkeys explained", "<p>All about passkeys.</p>", 5));
+        index.onUpsert("episodes", "999998", episode(999998, "Episode 999998", "<p>We mention passkeys once.</p>", 5));
+        index.onUpsert("episodes", "999999", episode(999999, "Hardware keys", "<p>Security keys.</p>", 5));
+        assertEquals(1, index.search("passkeys", Collections.emptyMap()).getInt("count"),
+                "changed text no longer matches its old terms");
+
+        for (int i = 0; i < SIZE; i += 2) {
+            String notes = text(300 + random.nextInt(900));
+            index.onUpsert("episodes", String.valueOf(1000 + i), episode(1000 + i, "Episode " + i, notes, topics.get(1000 + i)));
+            texts.put(1000 + i, (" episode " + i + " " + plain(notes) + " ").toLowerCase());
+        }
+        for (int i = 1; i < SIZE; i += 5) {
+            index.onRemove("episodes", String.valueOf(1000 + i));
+            texts.remove(1000 + i);
+        }
+        texts.put(999998, " episode 999998 we mention passkeys once. ");
+        texts.put(999999, " hardware keys security keys. ");
+        topics.put(999998, 5);
+        topics.put(999999, 5);
+        compareAll();
+    }
+
+    @Test
+    void syncedMirrorResults() throws IOException {
+        mirror.sync();
+        JSONObject results = index.search("tech guy", Collections.singletonMap("range", "5"));
+        JSONArray items = results.getJSONArray("search");
+        assertTrue(results.getInt("count") > 0 && items.length() == 5, "synced episodes are searchable: " + results);
+        JSONObject first = items.getJSONObject(0);
+        assertTrue(first.has("label"));
+        assertEquals("episode", first.getString("type"));
+        assertTrue(first.getString("body").length() <= 203, "body is shortened: " + first.getString("body"));
+        assertFalse(first.getString("body").contains("<"), "body is plain text: " + first.getString("body"));
+        assertTrue(results.getJSONObject("facets").getJSONArray("tid").length() > 0, "tid facets are reported");
+    }
+
+    private void indexSynthetic() {
+        for (int i = 0; i < SIZE; i++) {
+            String notes = text(300 + random.nextInt(900));
+            int topic = 1 + random.nextInt(100);
+            index.onUpsert("episodes", String.valueOf(1000 + i), episode(1000 + i, "Episode " + i, notes, topic));
+            texts.put(1000 + i, (" episode " + i + " " + plain(notes) + " ").toLowerCase());
+            topics.put(1000 + i, topic);
+        }
+    }
+
+    private void compareAll() {
+        String common = vocabulary[3];
+        String rare = vocabulary[800];
+        String phrase = vocabulary[1] + " " + vocabulary[2];
+        compare(rare, null, t -> t.contains(" " + rare + " "));
+        compare(common + " " + rare, null, t -> t.contains(" " + common + " ") && t.contains(" " + rare + " "));
+        compare("\"" + phrase + "\"", null, t -> t.contains(" " + phrase + " "));
+        compare(common, "17", t -> t.contains(" " + common + " "));
+        compare("", "42", t -> true);
+    }
+
+    private void compare(String keywords, String tid, Predicate<String> filter) {
+        int expected = 0;
+        for (Map.Entry<Integer, String> entry : texts.entrySet()) {
+            if ((tid == null || topics.get(entry.getKey()) == Integer.parseInt(tid)) && filter.test(entry.getValue())) {
+                expected++;
+            }
+        }
+        Map<String, String> params = new HashMap<>();
+        if (tid != null) {
+            params.put("filter[tid]", tid);
+        }
+        assertEquals(expected, index.search(keywords, params).getInt("count"),
+                "'" + keywords + "'" + (tid != null ? " in tid " + tid : ""));
+    }
+
+    private static String plain(String html) {
+        return html.replaceAll("<[^>]+>", " ").replace("&amp;", " ").replaceAll("\\s+", " ");
+    }
+
+    private static JSONObject episode(int id, String label, String notes, int topic) {
+        JSONObject embedded = new JSONObject()
+                .put("topics", new JSONArray().put(new JSONObject().put("id", String.valueOf(topic))));
+        return new JSONObject().put("id", String.valueOf(id)).put("label", label)
+                .put("showNotes", notes).put("_embedded", embedded);
+    }
+
+    /**
+     * Zipf-distributed words wrapped in paragraphs with the odd link and entity
+     */
+    private String text(int words) {
+        StringBuilder text = new StringBuilder("<p>");
+        for (int i = 0; i < words; i++) {
+            int rank = (int) Math.min(vocabulary.length - 1, Math.floor(Math.exp(random.nextDouble() * Math.log(vocabulary.length))) - 1);
+            if (i % 97 == 96) {
+                text.append("</p>\n<p>");
+            } else if (i % 41 == 40) {
+                text.append("<a href=\"https://twit.tv/").append(vocabulary[rank]).append("\">")
+                        .append(vocabulary[rank]).append("</a> &amp; ");
+                continue;
+            }
+            text.append(vocabulary[rank]).append(' ');
+        }
+        return text.append("</p>").toString();
+    }
+
+    private static String[] vocabulary(int size, Random random) {
+        List<String> words = new ArrayList<>();
+        while (words.size() < size) {
+            StringBuilder word = new StringBuilder();
+            for (int i = 0, n = 3 + random.nextInt(6); i < n; i++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            if (!words.contains(word.toString())) {
+                words.add(word.toString());
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+}
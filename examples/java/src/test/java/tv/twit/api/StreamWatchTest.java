@@ -0,0 +1,159 @@
+package tv.twit.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import tv.twit.api.bench.StubServer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Stream Watch Test
+ * The /streams change feed against a stub server with ETag support: many listeners share one poller,
+ * unchanged polls are answered 304 and stretch the interval, and only added, removed and changed streams
+ * reach the listeners, including a Flow subscriber.
+ */
+class StreamWatchTest {
+
+    private final List<JSONObject> streams = new CopyOnWriteArrayList<>();
+    private volatile int version = 1;
+    private final AtomicInteger fullResponses = new AtomicInteger();
+    private final AtomicInteger notModifiedResponses = new AtomicInteger();
+
+    @Test
+    void listenersFollowTheFeed() throws IOException {
+        for (int i = 1; i <= 4; i++) {
+            streams.add(stream(i, "Stream " + i));
+        }
+        PollingConfig polling = PollingConfig.builder()
+                .minIntervalMillis(50).maxIntervalMillis(400).backoffFactor(2).build();
+
+        try (StubServer server = new StubServer(this::handle, 4);
+             TwitApiClient client = TestSupport.client(server).polling(polling).build()) {
+
+            List<Recorder> recorders = new ArrayList<>();
+            List<ChangeSubscription> subscriptions = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                Recorder recorder = new Recorder();
+                recorders.add(recorder);
+                subscriptions.add(client.watchStreams(recorder));
+            }
+            assertTrue(TestSupport.await(2000, () -> recorders.stream().allMatch(r -> r.count(ItemChange.Type.ADDED) == 4)),
+                    "every listener receives the current streams as ADDED");
+            assertTrue(server.getRequestCount() <= 8, "listeners share one poller: " + server.getRequestCount());
+
+            int before = fullResponses.get();
+            long start = server.getRequestCount();
+            TestSupport.sleep(1500);
+            long quiet = server.getRequestCount() - start;
+            assertEquals(before, fullResponses.get(), "unchanged polls are answered 304");
+            assertTrue(notModifiedResponses.get() > 0);
+            assertTrue(quiet <= 8, "the interval stretches while nothing changes: " + quiet + " polls in 1500ms");
+            assertTrue(recorders.stream().allMatch(r -> r.changes.size() == 4), "listeners hear nothing");
+
+            streams.set(1, stream(2, "Stream 2 (HD)"));
+            streams.remove(3);
+            streams.add(stream(5, "Stream 5"));
+            version++;
+            assertTrue(TestSupport.await(2000, () -> recorders.stream().allMatch(r -> r.changes.size() == 7)),
+                    "every listener sees the same changes");
+            Recorder first = recorders.get(0);
+            assertEquals(1, first.count(ItemChange.Type.CHANGED));
+            assertEquals("2", first.last(ItemChange.Type.CHANGED).getId());
+            assertEquals(Collections.singleton("label"), first.last(ItemChange.Type.CHANGED).getChangedFields());
+            assertEquals(5, first.count(ItemChange.Type.ADDED));
+            assertEquals("5", first.last(ItemChange.Type.ADDED).getId());
+            assertEquals(1, first.count(ItemChange.Type.REMOVED));
+            assertEquals("4", first.last(ItemChange.Type.REMOVED).getId());
+
+            Recorder late = new Recorder();
+            subscriptions.add(client.watchStreams(late));
+            List<ItemChange> published = new CopyOnWriteArrayList<>();
+            ChangePublisher publisher = client.publishStreams();
+            publisher.subscribe(new Flow.Subscriber<ItemChange>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(ItemChange item) {
+                    published.add(item);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            });
+            assertTrue(TestSupport.await(2000, () -> late.count(ItemChange.Type.ADDED) == 4),
+                    "a late listener is sent the current streams");
+            streams.remove(0);
+            version++;
+            assertTrue(TestSupport.await(2000, () -> published.stream().anyMatch(
+                    c -> c.getType() == ItemChange.Type.REMOVED && "1".equals(c.getId()))),
+                    "a Flow subscriber receives changes");
+            publisher.close();
+
+            subscriptions.forEach(ChangeSubscription::close);
+            TestSupport.sleep(100);
+            long stopped = server.getRequestCount();
+            TestSupport.sleep(900);
+            assertEquals(stopped, server.getRequestCount(), "polling stops after the last subscription closes");
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String etag = "\"streams-" + version + "\"";
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            notModifiedResponses.incrementAndGet();
+            StubServer.sendNotModified(exchange);
+            return;
+        }
+        fullResponses.incrementAndGet();
+        JSONObject body = new JSONObject().put("count", streams.size()).put("streams", new JSONArray(streams));
+        exchange.getResponseHeaders().set("ETag", etag);
+        TestSupport.send(exchange, 200, body.toString());
+    }
+
+    private static JSONObject stream(int id, String label) {
+        return new JSONObject().put("id", id).put("label", label).put("streamType", "video")
+                .put("streamResolutions", new JSONArray().put("640X360"));
+    }
+
+    private static final class Recorder implements ChangeListener {
+        final List<ItemChange> changes = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onChange(ItemChange change) {
+            changes.add(change);
+        }
+
+        long count(ItemChange.Type type) {
+            return changes.stream().filter(c -> c.getType() == type).count();
+        }
+
+        ItemChange last(ItemChange.Type type) {
+            ItemChange last = null;
+            for (ItemChange change : changes) {
+                if (change.getType() == type) {
+                    last = change;
+                }
+            }
+            return last;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package tv.twit.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import tv.twit.api.bench.StubServer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Test Support
+ * Helpers shared by the tests: a client builder with test credentials for a stub server, sending a
+ * string body from a stub handler, and waiting for a condition with a deadline instead of a fixed sleep.
+ */
+final class TestSupport {
+
+    private TestSupport() {
+    }
+
+    static TwitApiClient.Builder client(String baseUrl) {
+        return TwitApiClient.builder().appId("check").appKey("check").baseUrl(baseUrl);
+    }
+
+    static TwitApiClient.Builder client(StubServer server) {
+        return client(server.getBaseUrl());
+    }
+
+    static void send(HttpExchange exchange, int status, String body) throws IOException {
+        StubServer.send(exchange, status, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Poll a condition until it holds or the timeout passes
+     *
+     * @return Whether the condition held before the timeout
+     */
+    static boolean await(long timeoutMillis, BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            sleep(10);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,55 @@
+package tv.twit.api;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * URL Template Test
+ * Query parameters are sorted and percent-encoded whatever map they come from, parameters with a null
+ * value are left out of both the URL and the cache key, and URIs without parameters are reused.
+ */
+class UrlTemplateTest {
+
+    private static final String BASE_URL = "https://twit.tv/api/v1.0";
+
+    @Test
+    void paramsAreSortedAndEncoded() {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("sort", "-airingDate");
+        params.put("filter[airingDate][operator]", ">=");
+        params.put("filter[shows]", "1635");
+        String expected = BASE_URL + "/episodes?filter%5BairingDate%5D%5Boperator%5D=%3E%3D"
+                + "&filter%5Bshows%5D=1635&sort=-airingDate";
+        assertEquals(expected, UrlTemplate.url(BASE_URL, "/episodes", params));
+        assertEquals(expected, UrlTemplate.url(BASE_URL, "/episodes", new TreeMap<>(params)));
+        assertEquals("caf%C3%A9%20%F0%9F%8E%A7", UrlTemplate.encode("café 🎧"));
+    }
+
+    @Test
+    void nullValuesAreLeftOut() {
+        Map<String, String> params = new HashMap<>();
+        params.put("range", "5");
+        params.put("filter[shows]", null);
+        assertEquals(BASE_URL + "/episodes?range=5", UrlTemplate.url(BASE_URL, "/episodes", params));
+        assertEquals("/episodes?range=5", UrlTemplate.key("/episodes", params));
+        params.put("range", null);
+        assertEquals("/episodes", UrlTemplate.key("/episodes", params));
+        assertEquals(BASE_URL + "/episodes",
+                UrlTemplate.url(BASE_URL, "/episodes", Collections.singletonMap("page", null)));
+    }
+
+    @Test
+    void plainUrisAreReused() throws URISyntaxException {
+        UrlTemplate template = new UrlTemplate(BASE_URL);
+        assertSame(template.uri("/shows", Collections.emptyMap()), template.uri("/shows", Collections.emptyMap()));
+    }
+}
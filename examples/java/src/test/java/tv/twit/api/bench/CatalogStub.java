@@ -0,0 +1,236 @@
+package tv.twit.api.bench;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Catalog Stub
+ * A paged list handler for the stub server. Each resource ("episodes", "shows", ...) holds a
+ * configurable number of synthetic items cloned from the blueprint samples with unique ids, served
+ * with page/range paging, a total count and HAL next links like the real API, and one at a time
+ * from /resource/id. {@link #remove} deletes an item, shifting the pages after it.
+ * Items get synthetic created/changed timestamps (one minute apart) and support sort=[-]created|changed
+ * and filter[created|changed][value]/[operator] with unix timestamps, so incremental syncs can be tested;
+ * {@link #touch} marks an item as changed now.
+ */
+public class CatalogStub implements HttpHandler {
+    private static final int DEFAULT_RANGE = 25;
+    private static final long CREATED_BASE = 1400000000L;
+
+    private final Map<String, JSONArray> samples = new HashMap<>();
+    private final Map<String, Integer> sizes = new ConcurrentHashMap<>();
+    private final Map<String, Map<Integer, Long>> touched = new ConcurrentHashMap<>();
+    private final Map<String, Set<Integer>> removed = new ConcurrentHashMap<>();
+    private final long latencyMillis;
+
+    /**
+     * @param samples       Blueprint sample bodies from {@link ApibSamples#load()}
+     * @param latencyMillis Artificial latency per page request
+     */
+    public CatalogStub(Map<String, String> samples, long latencyMillis) {
+        for (Map.Entry<String, String> entry : samples.entrySet()) {
+            String path = entry.getKey();
+            if (path.indexOf('/', 1) >= 0) {
+                continue;
+            }
+            String resource = path.substring(1);
+            JSONArray items = new JSONObject(entry.getValue()).optJSONArray(resource);
+            if (items != null && !items.isEmpty()) {
+                this.samples.put(resource, items);
+            }
+        }
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Set the number of items a resource holds
+     *
+     * @param resource The resource name, e.g. "episodes"
+     * @param size     Total number of items
+     * @return This stub
+     */
+    public CatalogStub size(String resource, int size) {
+        if (!samples.containsKey(resource)) {
+            throw new IllegalArgumentException("No sample items for resource: " + resource);
+        }
+        sizes.put(resource, size);
+        return this;
+    }
+
+    /**
+     * Mark an item as changed now, so it sorts first by -changed
+     *
+     * @param resource The resource name
+     * @param index    The item index (its id is 100000 + index)
+     * @return This stub
+     */
+    public CatalogStub touch(String resource, int index) {
+        touched.computeIfAbsent(resource, r -> new ConcurrentHashMap<>()).put(index, Instant.now().getEpochSecond());
+        return this;
+    }
+
+    /**
+     * Delete an item, so it is no longer listed and its item request is answered 404
+     *
+     * @param resource The resource name
+     * @param index    The item index (its id is 100000 + index)
+     * @return This stub
+     */
+    public CatalogStub remove(String resource, int index) {
+        removed.computeIfAbsent(resource, r -> ConcurrentHashMap.newKeySet()).add(index);
+        return this;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        String path = exchange.getRequestURI().getPath();
+        String resource = path.substring(path.lastIndexOf('/') + 1);
+        if (!samples.containsKey(resource)) {
+            handleItem(exchange, path);
+            return;
+        }
+        JSONArray sample = samples.get(resource);
+        if (!sizes.containsKey(resource)) {
+            notFound(exchange);
+            return;
+        }
+
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        int range = Integer.parseInt(query.getOrDefault("range", String.valueOf(DEFAULT_RANGE)));
+        int page = Integer.parseInt(query.getOrDefault("page", "1"));
+        int total = sizes.get(resource);
+
+        List<Integer> indexes = select(resource, total, query);
+        JSONArray items = new JSONArray();
+        int from = (page - 1) * range;
+        for (int i = from; i < Math.min(indexes.size(), from + range); i++) {
+            items.put(item(resource, sample, indexes.get(i)));
+        }
+        total = indexes.size();
+
+        JSONObject links = new JSONObject();
+        links.put("self", new JSONObject().put("href", "/api/v1.0/" + resource + "?page=" + page));
+        if (from + range < total) {
+            links.put("next", new JSONObject().put("title", "Next")
+                    .put("href", "https://twit.tv/api/v1.0/" + resource + "?page=" + (page + 1)));
+        }
+        JSONObject body = new JSONObject();
+        body.put("count", total);
+        body.put(resource, items);
+        body.put("_links", links);
+        StubServer.send(exchange, 200, body.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Answer /resource/id with the item, or 404 if it does not exist
+     */
+    private void handleItem(HttpExchange exchange, String path) throws IOException {
+        int slash = path.lastIndexOf('/');
+        String resource = path.substring(path.lastIndexOf('/', slash - 1) + 1, slash);
+        JSONArray sample = samples.get(resource);
+        int index;
+        try {
+            index = Integer.parseInt(path.substring(slash + 1)) - 100000;
+        } catch (NumberFormatException e) {
+            index = -1;
+        }
+        if (sample == null || index < 0 || index >= sizes.getOrDefault(resource, 0)
+                || removed.getOrDefault(resource, Collections.emptySet()).contains(index)) {
+            notFound(exchange);
+            return;
+        }
+        JSONObject body = new JSONObject().put(resource, item(resource, sample, index));
+        StubServer.send(exchange, 200, body.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void notFound(HttpExchange exchange) throws IOException {
+        StubServer.send(exchange, 404, "{\"error\":\"not found\"}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Apply the sort and date filter parameters
+     *
+     * @return Indexes of the matching items in response order
+     */
+    private List<Integer> select(String resource, int total, Map<String, String> query) {
+        List<Integer> indexes = new ArrayList<>(total);
+        Set<Integer> deleted = removed.getOrDefault(resource, Collections.emptySet());
+        for (int i = 0; i < total; i++) {
+            if (!deleted.contains(i)) {
+                indexes.add(i);
+            }
+        }
+        for (String field : new String[]{"created", "changed"}) {
+            String value = query.get("filter[" + field + "][value]");
+            if (value != null) {
+                long bound = Long.parseLong(value);
+                boolean atMost = "<=".equals(query.get("filter[" + field + "][operator]"));
+                indexes.removeIf(i -> atMost ? timestamp(resource, field, i) > bound : timestamp(resource, field, i) < bound);
+            }
+        }
+        String sort = query.get("sort");
+        if (sort != null) {
+            String field = sort.startsWith("-") ? sort.substring(1) : sort;
+            Comparator<Integer> order = Comparator.comparingLong(i -> timestamp(resource, field, i));
+            indexes.sort(sort.startsWith("-") ? order.reversed() : order);
+        }
+        return indexes;
+    }
+
+    private long timestamp(String resource, String field, int index) {
+        long created = CREATED_BASE + index * 60L;
+        if ("changed".equals(field)) {
+            Long changed = touched.getOrDefault(resource, new HashMap<>()).get(index);
+            return changed != null ? changed : created;
+        }
+        return created;
+    }
+
+    /**
+     * Build synthetic item {@code index}: a copy of a sample item with a unique id and timestamps
+     */
+    protected JSONObject item(String resource, JSONArray sample, int index) {
+        JSONObject item = new JSONObject(sample.getJSONObject(index % sample.length()).toMap());
+        item.put("id", String.valueOf(100000 + index));
+        item.put("created", Instant.ofEpochSecond(timestamp(resource, "created", index)).toString());
+        item.put("changed", Instant.ofEpochSecond(timestamp(resource, "changed", index)).toString());
+        return item;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+}
@@ -0,0 +1,151 @@
+package tv.twit.api.bench;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local Stub Server
+ * A minimal in-process HTTP server that stands in for the TWiT API in tests and the JMH benchmarks
+ */
+public class StubServer implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong requestCount = new AtomicLong();
+
+    static {
+        // Without TCP_NODELAY responses on reused connections stall on Nagle + delayed ACK (~40ms each)
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    /**
+     * Start a stub server on a free local port that answers every request with the same JSON body
+     *
+     * @param body         The JSON body to return
+     * @param latencyMillis Artificial server-side latency per request
+     * @param workerThreads Number of server worker threads
+     */
+    public StubServer(String body, long latencyMillis, int workerThreads) throws IOException {
+        this(fixedResponse(body.getBytes(StandardCharsets.UTF_8), latencyMillis), workerThreads);
+    }
+
+    /**
+     * Start a stub server on a free local port with a custom handler
+     *
+     * @param handler       The handler for every request
+     * @param workerThreads Number of server worker threads
+     */
+    public StubServer(HttpHandler handler, int workerThreads) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        this.executor = Executors.newFixedThreadPool(workerThreads);
+        server.createContext("/", exchange -> {
+            requestCount.incrementAndGet();
+            handler.handle(exchange);
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    private static HttpHandler fixedResponse(byte[] body, long latencyMillis) throws IOException {
+        byte[] gzipped = gzip(body);
+        return exchange -> {
+            if (latencyMillis > 0) {
+                try {
+                    Thread.sleep(latencyMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            sendCompressible(exchange, 200, body, gzipped);
+        };
+    }
+
+    /**
+     * Compress a response body with gzip
+     */
+    public static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+            out.write(body);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Send a JSON response, gzip-encoded if the client accepts it, and close the exchange
+     *
+     * @param plain   The uncompressed body
+     * @param gzipped The same body compressed with {@link #gzip(byte[])}
+     */
+    public static void sendCompressible(HttpExchange exchange, int status, byte[] plain, byte[] gzipped)
+            throws IOException {
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            send(exchange, status, gzipped);
+        } else {
+            send(exchange, status, plain);
+        }
+    }
+
+    /**
+     * Send a JSON response and close the exchange
+     */
+    public static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/hal+json");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Send a 304 Not Modified response and close the exchange
+     */
+    public static void sendNotModified(HttpExchange exchange) throws IOException {
+        // The JDK server drops the connection after a 304, so tell the client not to reuse it
+        exchange.getResponseHeaders().set("Connection", "close");
+        exchange.sendResponseHeaders(304, -1);
+        exchange.close();
+    }
+
+    /**
+     * Get the base URL to configure the client with
+     *
+     * @return Base URL including the API version path
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v1.0";
+    }
+
+    /**
+     * Get the number of requests served so far
+     *
+     * @return Request count
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package tv.twit.api.model;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import tv.twit.api.bench.ApibSamples;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Model Decoder Test
+ * ModelDecoder against the blueprint samples: the typed fields match the same responses parsed with
+ * org.json, each item's lazily bound _embedded section covers exactly its own _embedded object (also after
+ * multi-byte text earlier in the buffer), a section is parsed once, and showNotes and other unmodelled
+ * fields are skipped without disturbing the fields around them.
+ */
+class ModelDecoderTest {
+
+    private static Map<String, String> samples;
+
+    @BeforeAll
+    static void loadSamples() throws IOException {
+        samples = ApibSamples.load();
+    }
+
+    @Test
+    void episodeListMatchesOrgJson() throws IOException {
+        JSONObject expected = new JSONObject(samples.get("/episodes"));
+        Page<Episode> page = ModelDecoder.episodes(bytes(samples.get("/episodes")));
+
+        assertEquals(expected.getInt("count"), page.getCount());
+        assertEquals(expected.getJSONObject("_links").getJSONObject("next").getString("href"), page.getNextHref());
+        JSONArray episodes = expected.getJSONArray("episodes");
+        assertEquals(episodes.length(), page.getItems().size());
+        for (int i = 0; i < episodes.length(); i++) {
+            assertEpisode(episodes.getJSONObject(i), page.getItems().get(i));
+        }
+    }
+
+    @Test
+    void singleResourcesMatchOrgJson() throws IOException {
+        JSONObject episode = new JSONObject(samples.get("/episodes/{id}")).getJSONObject("episodes");
+        Page<Episode> episodes = ModelDecoder.episodes(bytes(samples.get("/episodes/{id}")));
+        assertEquals(1, episodes.getItems().size());
+        assertFalse(episodes.hasNext());
+        assertEpisode(episode, episodes.first());
+
+        JSONObject show = new JSONObject(samples.get("/shows/{id}")).getJSONObject("shows");
+        Show decoded = ModelDecoder.shows(bytes(samples.get("/shows/{id}"))).first();
+        assertEquals(text(show, "id"), decoded.getId());
+        assertEquals(text(show, "label"), decoded.getLabel());
+        assertEquals(text(show, "shortCode"), decoded.getShortCode());
+        assertEquals(text(show, "tagLine"), decoded.getTagLine());
+        assertEquals(flag(show, "active"), decoded.isActive());
+        assertEquals(show.getJSONObject("coverArt").getString("url"), decoded.getCoverArt().getUrl());
+        assertTrue(show.getJSONObject("_embedded").similar(decoded.getEmbedded().toJson()));
+
+        JSONArray credits = show.getJSONObject("_embedded").getJSONArray("credits");
+        List<Credit> decodedCredits = decoded.getEmbedded().getCredits();
+        assertEquals(credits.length(), decodedCredits.size());
+        for (int i = 0; i < credits.length(); i++) {
+            assertEquals(text(credits.getJSONObject(i), "id"), decodedCredits.get(i).getId());
+            assertEquals(text(credits.getJSONObject(i), "label"), decodedCredits.get(i).getLabel());
+        }
+    }
+
+    @Test
+    void embeddedSectionsAreBoundLazilyAtTheirOwnOffsets() throws IOException {
+        JSONObject list = new JSONObject(samples.get("/episodes"));
+        JSONObject sample = list.getJSONArray("episodes").getJSONObject(0);
+        JSONArray episodes = new JSONArray();
+        for (int i = 0; i < 5; i++) {
+            JSONObject episode = new JSONObject(sample.toMap());
+            // Multi-byte labels before each _embedded section: offsets must be byte offsets, not char offsets
+            episode.put("id", String.valueOf(60000 + i)).put("label", "Café ☕ " + i);
+            episode.getJSONObject("_embedded").getJSONArray("shows").getJSONObject(0).put("label", "Show " + i);
+            episodes.put(episode);
+        }
+        list.put("episodes", episodes);
+
+        byte[] body = bytes(list.toString());
+        Page<Episode> page = ModelDecoder.episodes(body);
+        assertEquals(5, page.getItems().size());
+        for (int i = 0; i < 5; i++) {
+            Episode episode = page.getItems().get(i);
+            JSONObject embedded = episodes.getJSONObject(i).getJSONObject("_embedded");
+            assertEquals("Café ☕ " + i, episode.getLabel());
+            assertEquals(bytes(embedded.toString()).length, episode.getEmbedded().getByteLength(),
+                    "the section spans exactly its _embedded object");
+            assertTrue(embedded.similar(episode.getEmbedded().toJson()), "episode " + i + " embedded section");
+
+            List<Show> shows = episode.getEmbedded().getShows();
+            assertEquals("Show " + i, shows.get(0).getLabel());
+            assertSame(shows, episode.getEmbedded().getShows(), "a section is parsed once");
+        }
+        assertTrue(page.first().getEmbedded().getPeople().isEmpty(), "a section that is not there binds empty");
+    }
+
+    @Test
+    void showNotesAreSkipped() throws IOException {
+        JSONObject response = new JSONObject(samples.get("/episodes/{id}"));
+        JSONObject episode = response.getJSONObject("episodes");
+        assertTrue(text(episode, "showNotes").length() > 500, "the sample has long show notes");
+
+        // Nested fields with model names inside skipped values must not leak into the model
+        episode.put("showNotes", new JSONObject().put("id", "notes").put("label", "notes")
+                .put("_embedded", new JSONObject().put("shows", new JSONArray())));
+        episode.put("relatedLinks", new JSONArray().put(new JSONObject().put("teaser", "link")));
+        Episode decoded = ModelDecoder.episodes(bytes(response.toString())).first();
+
+        assertEquals(text(episode, "id"), decoded.getId());
+        assertEquals(text(episode, "label"), decoded.getLabel());
+        assertEquals(text(episode, "teaser"), decoded.getTeaser());
+        assertTrue(episode.getJSONObject("_embedded").similar(decoded.getEmbedded().toJson()));
+        assertFalse(decoded.toString().contains("notes"), "show notes are not kept: " + decoded);
+    }
+
+    @Test
+    void emptyAndMissingItems() throws IOException {
+        Page<Stream> empty = ModelDecoder.streams(bytes("{\"count\":0,\"streams\":[]}"));
+        assertEquals(0, empty.getCount());
+        assertTrue(empty.getItems().isEmpty());
+        assertNull(empty.first());
+
+        Episode bare = ModelDecoder.episodes(bytes("{\"episodes\":{\"id\":\"1\"}}")).first();
+        assertEquals("1", bare.getId());
+        assertTrue(bare.getEmbedded().isEmpty());
+        assertTrue(bare.getEmbedded().getShows().isEmpty());
+    }
+
+    private static void assertEpisode(JSONObject expected, Episode episode) {
+        assertEquals(text(expected, "id"), episode.getId());
+        assertEquals(text(expected, "label"), episode.getLabel());
+        assertEquals(text(expected, "episodeNumber"), episode.getEpisodeNumber());
+        assertEquals(text(expected, "airingDate"), episode.getAiringDate());
+        assertEquals(text(expected, "cleanPath"), episode.getCleanPath());
+        assertEquals(flag(expected, "published"), episode.isPublished());
+        assertEquals(expected.getJSONObject("heroImage").getString("url"), episode.getHeroImage().getUrl());
+        assertEquals(expected.getJSONObject("video_audio").getString("mediaUrl"), episode.getAudio().getMediaUrl());
+        assertTrue(expected.getJSONObject("_embedded").similar(episode.getEmbedded().toJson()));
+    }
+
+    /**
+     * A value as the API sends it, which is a string or a number depending on the resource
+     */
+    private static String text(JSONObject item, String name) {
+        return String.valueOf(item.get(name));
+    }
+
+    private static boolean flag(JSONObject item, String name) {
+        String value = text(item, name);
+        return "1".equals(value) || "true".equalsIgnoreCase(value);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}